@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the GC profiler so that every run reports the allocation rate next to the throughput and
+ * latency percentiles. It takes the same arguments as the JMH runner, such as a regex of the benchmarks to run.
+ */
+public class BenchmarkRunner {
+    private static final List<String> INFO_OPTIONS = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+
+    /**
+     * Main.
+     *
+     * @param args The JMH arguments.
+     * @throws Exception if the arguments are invalid or the benchmarks fail.
+     */
+    public static void main(String[] args) throws Exception {
+        if (Arrays.stream(args).anyMatch(INFO_OPTIONS::contains)) {
+            Main.main(args);
+            return;
+        }
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.query.LazyPubSubMessageSerDe;
+import com.yahoo.bullet.bql.query.ProcessedQuery;
+import com.yahoo.bullet.bql.query.QueryBuilder;
+import com.yahoo.bullet.bql.query.QueryProcessor;
+import com.yahoo.bullet.bql.tree.QueryNode;
+import com.yahoo.bullet.bql.util.ExpressionFormatter;
+import com.yahoo.bullet.pubsub.Metadata;
+import com.yahoo.bullet.pubsub.PubSubMessage;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.typesystem.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of the compiler and the end to end paths over the {@link QueryCorpus}. The inputs of each
+ * stage are computed once in {@link #setup()} so that a benchmark only measures its own stage.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompilerBenchmark {
+    @Param
+    private QueryCorpus query;
+
+    private String bql;
+    private Schema schema;
+    private BQLParser parser;
+    private QueryNode queryNode;
+    private ProcessedQuery processedQuery;
+    private BulletQueryBuilder builder;
+    private BulletQueryBuilder templatedBuilder;
+    private LazyPubSubMessageSerDe serDe;
+    private LazyPubSubMessageSerDe cachedSerDe;
+
+    /**
+     * Builds the inputs of every stage for the query.
+     */
+    @Setup
+    public void setup() {
+        bql = query.getBql();
+        parser = new BQLParser();
+        queryNode = parser.createQueryNode(bql);
+        processedQuery = QueryProcessor.visit(queryNode);
+
+        BQLConfig config = QueryCorpus.createConfig();
+        schema = config.getSchema();
+        templatedBuilder = new BulletQueryBuilder(config);
+        cachedSerDe = new LazyPubSubMessageSerDe(config);
+
+        // Without the caches, every call compiles the query from scratch
+        BQLConfig uncached = QueryCorpus.createConfig();
+        uncached.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 0);
+        uncached.set(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, 0);
+        uncached.validate();
+        builder = new BulletQueryBuilder(uncached);
+        serDe = new LazyPubSubMessageSerDe(uncached);
+    }
+
+    /**
+     * Parses the BQL into a {@link QueryNode}.
+     *
+     * @return The {@link QueryNode}.
+     */
+    @Benchmark
+    public QueryNode parse() {
+        return parser.createQueryNode(bql);
+    }
+
+    /**
+     * Processes the parsed query.
+     *
+     * @return The {@link ProcessedQuery}.
+     */
+    @Benchmark
+    public ProcessedQuery process() {
+        return QueryProcessor.visit(queryNode);
+    }
+
+    /**
+     * Type checks and builds the processed query.
+     *
+     * @return The {@link Query}.
+     */
+    @Benchmark
+    public Query build() {
+        return new QueryBuilder(processedQuery, schema).getQuery();
+    }
+
+    /**
+     * Formats the parsed query back into BQL.
+     *
+     * @return The formatted BQL.
+     */
+    @Benchmark
+    public String format() {
+        return ExpressionFormatter.format(queryNode, true);
+    }
+
+    /**
+     * Builds the query from its BQL with every cache disabled.
+     *
+     * @return The {@link BQLResult}.
+     */
+    @Benchmark
+    public BQLResult buildQuery() {
+        return builder.buildQuery(bql);
+    }
+
+    /**
+     * Builds the query from its BQL with the template cache, so the built query is rebound after the first call.
+     *
+     * @return The {@link BQLResult}.
+     */
+    @Benchmark
+    public BQLResult buildQueryTemplated() {
+        return templatedBuilder.buildQuery(bql);
+    }
+
+    /**
+     * Converts a query message into a configured query with every cache disabled.
+     *
+     * @return The converted {@link PubSubMessage}.
+     */
+    @Benchmark
+    public PubSubMessage fromMessage() {
+        return serDe.fromMessage(new PubSubMessage("id", bql, new Metadata(Metadata.Signal.CUSTOM, null)));
+    }
+
+    /**
+     * Converts a query message into a configured query with the query cache of the serde.
+     *
+     * @return The converted {@link PubSubMessage}.
+     */
+    @Benchmark
+    public PubSubMessage fromMessageCached() {
+        return cachedSerDe.fromMessage(new PubSubMessage("id", bql, new Metadata(Metadata.Signal.CUSTOM, null)));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.PredicateIndex;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.querying.Filter;
+import com.yahoo.bullet.record.BulletRecord;
+import com.yahoo.bullet.record.simple.TypedSimpleBulletRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares matching records against many standing queries with a {@link PredicateIndex} against evaluating the filter
+ * of every query. The mixed queries mix indexable equalities, IN lists and ranges with unindexable disjunctions, and
+ * the range queries are all short overlapping ranges on one field.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PredicateIndexBenchmark {
+    private static final String[] STRINGS = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    private static final int RECORDS = 1024;
+
+    @Param({"1000", "10000"})
+    private int queries;
+
+    @Param({"mixed", "ranges"})
+    private String workload;
+
+    private PredicateIndex index;
+    private List<Filter> filters;
+    private BulletRecord[] records;
+    private int next;
+
+    /**
+     * Builds the queries and the records to match.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        BulletQueryBuilder builder = new BulletQueryBuilder(QueryCorpus.createConfig());
+        index = new PredicateIndex();
+        filters = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            Query query = builder.buildQuery("SELECT * FROM STREAM(MAX, TIME) WHERE " + createFilter(random, workload)).getQuery();
+            index.add(String.valueOf(i), query);
+            filters.add(new Filter(query.getFilter()));
+        }
+        records = new BulletRecord[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            TypedSimpleBulletRecord record = new TypedSimpleBulletRecord();
+            record.setInteger("abc", random.nextInt(1020));
+            record.setString("c", STRINGS[random.nextInt(STRINGS.length)]);
+            record.setFloat("def", random.nextFloat());
+            records[i] = record;
+        }
+    }
+
+    /**
+     * Matches the next record with the index.
+     *
+     * @return The IDs of the matching queries.
+     */
+    @Benchmark
+    public List<String> index() {
+        return index.match(nextRecord());
+    }
+
+    /**
+     * Matches the next record by evaluating the filter of every query.
+     *
+     * @return The number of matching queries.
+     */
+    @Benchmark
+    public int scan() {
+        BulletRecord record = nextRecord();
+        int matches = 0;
+        for (Filter filter : filters) {
+            if (filter.match(record)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private BulletRecord nextRecord() {
+        next = (next + 1) % RECORDS;
+        return records[next];
+    }
+
+    private static String createFilter(Random random, String workload) {
+        int abc = random.nextInt(1000);
+        if (workload.equals("ranges")) {
+            return "abc BETWEEN (" + abc + ", " + (abc + random.nextInt(20)) + ")";
+        }
+        String c = STRINGS[random.nextInt(STRINGS.length)];
+        switch (random.nextInt(6)) {
+            case 0:
+                return "abc = " + abc + " AND c = '" + c + "'";
+            case 1:
+                return "abc IN (" + abc + ", " + (abc + 1) + ", " + (abc + 2) + ")";
+            case 2:
+                return "abc BETWEEN (" + abc + ", " + (abc + 10) + ") AND c != '" + c + "'";
+            case 3:
+                return "abc > " + abc + " AND abc < " + (abc + 20) + " AND def > 0.5";
+            case 4:
+                return "c = '" + c + "' AND def < " + random.nextFloat();
+            default:
+                return "c = '" + c + "' OR abc = " + abc;
+        }
+    }
+}
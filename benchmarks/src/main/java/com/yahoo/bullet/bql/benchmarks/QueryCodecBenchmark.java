@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.QueryCodec;
+import com.yahoo.bullet.common.SerializerDeserializer;
+import com.yahoo.bullet.query.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding compiled queries with {@link QueryCodec} against Java serialization.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryCodecBenchmark {
+    @Param
+    private QueryCorpus query;
+
+    private Query compiled;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    /**
+     * Compiles the query and encodes it both ways.
+     */
+    @Setup
+    public void setup() {
+        compiled = new BulletQueryBuilder(QueryCorpus.createConfig()).buildQuery(query.getBql()).getQuery();
+        encoded = QueryCodec.encode(compiled);
+        serialized = SerializerDeserializer.toBytes(compiled);
+    }
+
+    /**
+     * Encodes the query with {@link QueryCodec}.
+     *
+     * @return The encoded query.
+     */
+    @Benchmark
+    public byte[] encode() {
+        return QueryCodec.encode(compiled);
+    }
+
+    /**
+     * Decodes the query with {@link QueryCodec}.
+     *
+     * @return The decoded {@link Query}.
+     */
+    @Benchmark
+    public Query decode() {
+        return QueryCodec.decode(encoded);
+    }
+
+    /**
+     * Serializes the query with Java serialization.
+     *
+     * @return The serialized query.
+     */
+    @Benchmark
+    public byte[] serialize() {
+        return SerializerDeserializer.toBytes(compiled);
+    }
+
+    /**
+     * Deserializes the query with Java serialization.
+     *
+     * @return The deserialized {@link Query}.
+     */
+    @Benchmark
+    public Query deserialize() {
+        return SerializerDeserializer.fromBytes(serialized);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.common.BulletConfig;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The queries that the benchmarks run. They cover the shapes of queries that are common in practice and the ones that
+ * stress particular stages of the compiler. They are valid against the schema in benchmark_schema.json.
+ */
+public enum QueryCorpus {
+    SIMPLE_RAW("SELECT * FROM STREAM(30000, TIME) WHERE abc > 5 AND c = 'foo' LIMIT 10"),
+    DEEP_EXPRESSION("SELECT " + nest("abc", 32) + " AS x, " + nest("def", 16) + " AS y FROM STREAM(30000, TIME) WHERE " +
+                    IntStream.range(0, 32).mapToObj(i -> "(abc > " + i + " AND def < " + i + ".5)").collect(Collectors.joining(" OR ")) +
+                    " LIMIT 100"),
+    BIG_IN_LIST("SELECT abc, c FROM STREAM(30000, TIME) WHERE c IN (" +
+                IntStream.range(0, 1000).mapToObj(i -> "'value" + i + "'").collect(Collectors.joining(", ")) + ") LIMIT 100"),
+    GROUP_BY("SELECT abc, c, COUNT(*) AS n, SUM(def), AVG(def), MIN(a), MAX(a) FROM STREAM(30000, TIME) WHERE b AND a > 100 " +
+             "GROUP BY abc, c HAVING COUNT(*) > 10 ORDER BY n DESC LIMIT 50"),
+    TOP_K("SELECT TOP(10, 5, abc, c) FROM STREAM(30000, TIME) WHERE def > 1.5"),
+    DISTRIBUTION("SELECT QUANTILE(def, LINEAR, 11) FROM STREAM(30000, TIME) WHERE abc BETWEEN (1, 100)"),
+    LATERAL_VIEW("SELECT c, e FROM STREAM(30000, TIME) LATERAL VIEW OUTER EXPLODE(eee) AS e WHERE e != 'x' AND abc > 1 LIMIT 100"),
+    OUTER_QUERY("SELECT c, COUNT(*) AS n FROM (SELECT c, abc + 1 AS x FROM STREAM(30000, TIME) WHERE abc > 1 WINDOWING TUMBLING(5000, TIME)) " +
+                "WHERE x < 1000 GROUP BY c ORDER BY n DESC LIMIT 10");
+
+    public static final String SCHEMA_FILE = "benchmark_schema.json";
+
+    private final String bql;
+
+    QueryCorpus(String bql) {
+        this.bql = bql;
+    }
+
+    /**
+     * Gets the BQL of this query.
+     *
+     * @return The BQL string.
+     */
+    public String getBql() {
+        return bql;
+    }
+
+    /**
+     * Creates a validated {@link BQLConfig} with the schema of the corpus.
+     *
+     * @return The {@link BQLConfig}.
+     */
+    public static BQLConfig createConfig() {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, SCHEMA_FILE);
+        config.validate();
+        return config;
+    }
+
+    private static String nest(String field, int depth) {
+        String expression = field;
+        for (int i = 1; i <= depth; i++) {
+            expression = "(" + expression + (i % 2 == 0 ? " * " : " + ") + i + ")";
+        }
+        return expression;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.benchmarks;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.QueryCodec;
+import com.yahoo.bullet.bql.util.QueryGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Hammers one shared {@link BulletQueryBuilder} from an increasing number of threads with a mixed corpus of the
+ * {@link QueryCorpus} and generated queries. Every result is checked against the result of compiling the same query on
+ * a single thread with a separate builder, and the throughput at each thread count is reported along with the speedup
+ * and efficiency over a single thread. Efficiency well below 1 with idle cores points at contention on shared state.
+ * It exits with a non-zero status if any result did not match.
+ *
+ * <p>The arguments are optional: {@code --threads=1,2,4,8,16,32,64 --seconds=5 --queries=2000 --seed=42}.</p>
+ */
+public class StressHarness {
+    private static final String THREADS = "--threads=";
+    private static final String SECONDS = "--seconds=";
+    private static final String QUERIES = "--queries=";
+    private static final String SEED = "--seed=";
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final BulletQueryBuilder builder;
+    private final List<String> corpus;
+    private final List<String> expected;
+
+    /**
+     * Creates a harness over a corpus and compiles the expected results of the corpus on the calling thread.
+     *
+     * @param config The {@link BQLConfig} to create the builders with.
+     * @param corpus The BQL queries to compile.
+     */
+    public StressHarness(BQLConfig config, List<String> corpus) {
+        BulletQueryBuilder reference = new BulletQueryBuilder(config);
+        this.builder = new BulletQueryBuilder(config);
+        this.corpus = corpus;
+        this.expected = corpus.stream().map(bql -> describe(reference.buildQuery(bql))).collect(Collectors.toList());
+    }
+
+    /**
+     * The outcome of running the corpus from some number of threads.
+     */
+    public static class Run {
+        private final int threads;
+        private final long queries;
+        private final long mismatches;
+        private final long nanos;
+
+        private Run(int threads, long queries, long mismatches, long nanos) {
+            this.threads = threads;
+            this.queries = queries;
+            this.mismatches = mismatches;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the number of queries compiled per second across all the threads.
+         *
+         * @return The throughput.
+         */
+        public double getThroughput() {
+            return queries * (double) NANOS_PER_SECOND / nanos;
+        }
+
+        /**
+         * Gets the number of results that did not match the single-threaded results.
+         *
+         * @return The number of mismatches.
+         */
+        public long getMismatches() {
+            return mismatches;
+        }
+    }
+
+    /**
+     * Compiles the corpus from the given number of threads on the shared builder for a while. Each thread starts at a
+     * different offset in the corpus and cycles through it.
+     *
+     * @param threads The number of threads.
+     * @param nanos How long to run for in nanoseconds.
+     * @return The {@link Run}.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    public Run run(int threads, long nanos) throws InterruptedException {
+        AtomicLong queries = new AtomicLong();
+        AtomicLong mismatches = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        long[] deadline = new long[1];
+        for (int i = 0; i < threads; i++) {
+            int offset = i * corpus.size() / threads;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0L;
+                for (int j = offset; System.nanoTime() < deadline[0]; j = (j + 1) % corpus.size(), count++) {
+                    if (!expected.get(j).equals(describe(builder.buildQuery(corpus.get(j))))) {
+                        mismatches.incrementAndGet();
+                        System.err.println("Mismatch on " + Thread.currentThread().getName() + ": " + corpus.get(j));
+                    }
+                }
+                queries.addAndGet(count);
+            }, "stress-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + nanos;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new Run(threads, queries.get(), mismatches.get(), System.nanoTime() - begin);
+    }
+
+    /**
+     * Main.
+     *
+     * @param args The optional arguments described above.
+     * @throws Exception if the arguments are invalid or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = {1, 2, 4, 8, 16, 32, 64};
+        long seconds = 5L;
+        int size = 2000;
+        long seed = 42L;
+        for (String arg : args) {
+            if (arg.startsWith(THREADS)) {
+                threadCounts = Arrays.stream(arg.substring(THREADS.length()).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith(SECONDS)) {
+                seconds = Long.parseLong(arg.substring(SECONDS.length()));
+            } else if (arg.startsWith(QUERIES)) {
+                size = Integer.parseInt(arg.substring(QUERIES.length()));
+            } else if (arg.startsWith(SEED)) {
+                seed = Long.parseLong(arg.substring(SEED.length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        BQLConfig config = QueryCorpus.createConfig();
+        List<String> corpus = new ArrayList<>(new QueryGenerator(config.getSchema(), seed).next(size));
+        Arrays.stream(QueryCorpus.values()).map(QueryCorpus::getBql).forEach(corpus::add);
+        StressHarness harness = new StressHarness(config, corpus);
+
+        System.out.printf("%d queries, %d processors%n", corpus.size(), Runtime.getRuntime().availableProcessors());
+        harness.run(threadCounts[0], seconds * NANOS_PER_SECOND);
+        System.out.printf("%8s %14s %8s %11s %11s%n", "threads", "queries/s", "speedup", "efficiency", "mismatches");
+        double baseline = 0.0;
+        long mismatches = 0L;
+        for (int threads : threadCounts) {
+            Run run = harness.run(threads, seconds * NANOS_PER_SECOND);
+            baseline = baseline == 0.0 ? run.getThroughput() / run.threads : baseline;
+            double speedup = run.getThroughput() / baseline;
+            System.out.printf("%8d %14.1f %8.2f %11.2f %11d%n", run.threads, run.getThroughput(), speedup, speedup / run.threads, run.mismatches);
+            mismatches += run.mismatches;
+        }
+        if (mismatches > 0L) {
+            System.exit(1);
+        }
+    }
+
+    // The errors or the encoded query and its cost, which is equal for equal results
+    private static String describe(BQLResult result) {
+        if (result.hasErrors()) {
+            return result.getErrors().toString();
+        }
+        return Base64.getEncoder().encodeToString(QueryCodec.encode(result.getQuery())) + ":" + result.getCost();
+    }
+}
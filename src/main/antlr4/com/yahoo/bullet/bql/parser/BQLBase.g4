@@ -11,7 +11,7 @@
 grammar BQLBase;
 
 statement
-    : query ';'? EOF
+    : EXPLAIN? query ';'? EOF
     ;
 
 query
@@ -82,6 +82,7 @@ include
 
 expression
     : valueExpression                                                                                                   #value
+    | parameter                                                                                                         #parameterExpression
     | fieldExpression (':' fieldType)?                                                                                  #field
     | subFieldExpression (':' fieldType)?                                                                               #subField
     | subSubFieldExpression (':' fieldType)?                                                                            #subSubField
@@ -95,6 +96,7 @@ expression
     | left=expression op=(LT | LTE | GT | GTE) modifier=(ANY | ALL)? right=expression                                   #infix
     | left=expression op=(EQ | NEQ) modifier=(ANY | ALL)? right=expression                                              #infix
     | left=expression NOT? op=RLIKE modifier=ANY? right=expression                                                      #infix
+    | value=expression NOT? LIKE modifier=ANY? pattern=expression                                                       #likePredicate
     | left=expression NOT? op=IN right=expression                                                                       #infixIn
     | left=expression NOT? op=IN '(' expressions ')'                                                                    #infixIn
     | value=expression NOT? BETWEEN '(' lower=expression ',' upper=expression ')'                                       #betweenPredicate
@@ -116,6 +118,11 @@ valueExpression
     | STRING                                                                                                            #stringLiteral
     ;
 
+parameter
+    : '?'                                                                                                               #positionalParameter
+    | ':' name=identifier                                                                                               #namedParameter
+    ;
+
 fieldExpression
     : field=identifier
     ;
@@ -209,6 +216,7 @@ nonReserved
     | TOP
     | COUNT | SUM | AVG | MIN
     | NOW
+    | EXPLAIN
     ;
 
 ALL: 'ALL';
@@ -221,6 +229,7 @@ BY: 'BY';
 CAST: 'CAST';
 DESC: 'DESC';
 DISTINCT: 'DISTINCT';
+EXPLAIN: 'EXPLAIN';
 FIRST: 'FIRST';
 FROM: 'FROM';
 GROUP: 'GROUP';
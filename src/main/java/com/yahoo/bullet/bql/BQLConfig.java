@@ -14,9 +14,45 @@ import lombok.extern.slf4j.Slf4j;
 public class BQLConfig extends BulletConfig {
     // Settings
     public static final String BQL_MAX_QUERY_LENGTH = "bullet.bql.max.query.length";
+    public static final String BQL_MAX_QUERY_NODES = "bullet.bql.max.query.nodes";
+    public static final String BQL_MAX_EXPRESSION_DEPTH = "bullet.bql.max.expression.depth";
+    public static final String BQL_MAX_LIST_SIZE = "bullet.bql.max.list.size";
+    public static final String BQL_MAX_RLIKE_OPERATIONS = "bullet.bql.max.rlike.operations";
+    public static final String BQL_MAX_TABLE_FUNCTIONS = "bullet.bql.max.table.functions";
+    public static final String BQL_MAX_OUTER_QUERY_DEPTH = "bullet.bql.max.outer.query.depth";
+    public static final String BQL_MAX_QUERY_COST = "bullet.bql.max.query.cost";
+    public static final String BQL_QUERY_COST_BUDGET = "bullet.bql.query.cost.budget";
+    public static final String BQL_QUERY_CACHE_SIZE = "bullet.bql.query.cache.size";
+    public static final String BQL_QUERY_TEMPLATE_CACHE_SIZE = "bullet.bql.query.template.cache.size";
+    public static final String BQL_COMPILATION_PROFILE_ENABLE = "bullet.bql.compilation.profile.enable";
+    public static final String BQL_COMPILATION_THREADS = "bullet.bql.compilation.threads";
+    public static final String BQL_COMPILATION_TIMEOUT_MS = "bullet.bql.compilation.timeout.ms";
+    public static final String BQL_SERVER_HOST = "bullet.bql.server.host";
+    public static final String BQL_SERVER_PORT = "bullet.bql.server.port";
+    public static final String BQL_SERVER_THREADS = "bullet.bql.server.threads";
+    public static final String BQL_SERVER_MAX_BATCH_SIZE = "bullet.bql.server.max.batch.size";
+    public static final String BQL_SERVER_MAX_REQUEST_BYTES = "bullet.bql.server.max.request.bytes";
 
     // Defaults
     public static final int DEFAULT_BQL_MAX_QUERY_LENGTH = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_QUERY_NODES = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_EXPRESSION_DEPTH = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_LIST_SIZE = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_RLIKE_OPERATIONS = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_TABLE_FUNCTIONS = Integer.MAX_VALUE;
+    public static final int DEFAULT_BQL_MAX_OUTER_QUERY_DEPTH = Integer.MAX_VALUE;
+    public static final long DEFAULT_BQL_MAX_QUERY_COST = Long.MAX_VALUE;
+    public static final long DEFAULT_BQL_QUERY_COST_BUDGET = Long.MAX_VALUE;
+    public static final int DEFAULT_BQL_QUERY_CACHE_SIZE = 1024;
+    public static final int DEFAULT_BQL_QUERY_TEMPLATE_CACHE_SIZE = 1024;
+    public static final boolean DEFAULT_BQL_COMPILATION_PROFILE_ENABLE = false;
+    public static final int DEFAULT_BQL_COMPILATION_THREADS = 0;
+    public static final long DEFAULT_BQL_COMPILATION_TIMEOUT_MS = 0L;
+    public static final String DEFAULT_BQL_SERVER_HOST = "localhost";
+    public static final int DEFAULT_BQL_SERVER_PORT = 9090;
+    public static final int DEFAULT_BQL_SERVER_THREADS = 8;
+    public static final int DEFAULT_BQL_SERVER_MAX_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BQL_SERVER_MAX_REQUEST_BYTES = 1048576;
 
     // Default configuration
     private static final String DEFAULT_BQL_CONFIGURATION = "bullet_bql_defaults.yaml";
@@ -29,6 +65,76 @@ public class BQLConfig extends BulletConfig {
                  .defaultTo(DEFAULT_BQL_MAX_QUERY_LENGTH)
                  .checkIf(Validator::isPositive)
                  .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_QUERY_NODES)
+                 .defaultTo(DEFAULT_BQL_MAX_QUERY_NODES)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_EXPRESSION_DEPTH)
+                 .defaultTo(DEFAULT_BQL_MAX_EXPRESSION_DEPTH)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_LIST_SIZE)
+                 .defaultTo(DEFAULT_BQL_MAX_LIST_SIZE)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_RLIKE_OPERATIONS)
+                 .defaultTo(DEFAULT_BQL_MAX_RLIKE_OPERATIONS)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_TABLE_FUNCTIONS)
+                 .defaultTo(DEFAULT_BQL_MAX_TABLE_FUNCTIONS)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_OUTER_QUERY_DEPTH)
+                 .defaultTo(DEFAULT_BQL_MAX_OUTER_QUERY_DEPTH)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_MAX_QUERY_COST)
+                 .defaultTo(DEFAULT_BQL_MAX_QUERY_COST)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asLong);
+        VALIDATOR.define(BQL_QUERY_COST_BUDGET)
+                 .defaultTo(DEFAULT_BQL_QUERY_COST_BUDGET)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asLong);
+        VALIDATOR.define(BQL_QUERY_CACHE_SIZE)
+                 .defaultTo(DEFAULT_BQL_QUERY_CACHE_SIZE)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_QUERY_TEMPLATE_CACHE_SIZE)
+                 .defaultTo(DEFAULT_BQL_QUERY_TEMPLATE_CACHE_SIZE)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_COMPILATION_PROFILE_ENABLE)
+                 .defaultTo(DEFAULT_BQL_COMPILATION_PROFILE_ENABLE)
+                 .checkIf(Validator::isBoolean);
+        VALIDATOR.define(BQL_COMPILATION_THREADS)
+                 .defaultTo(DEFAULT_BQL_COMPILATION_THREADS)
+                 .checkIf(Validator.isInRange(0, Integer.MAX_VALUE))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_COMPILATION_TIMEOUT_MS)
+                 .defaultTo(DEFAULT_BQL_COMPILATION_TIMEOUT_MS)
+                 .checkIf(Validator.isInRange(0, Long.MAX_VALUE))
+                 .castTo(Validator::asLong);
+        VALIDATOR.define(BQL_SERVER_HOST)
+                 .defaultTo(DEFAULT_BQL_SERVER_HOST)
+                 .checkIf(Validator::isString);
+        VALIDATOR.define(BQL_SERVER_PORT)
+                 .defaultTo(DEFAULT_BQL_SERVER_PORT)
+                 .checkIf(Validator.isInRange(0, 65535))
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_SERVER_THREADS)
+                 .defaultTo(DEFAULT_BQL_SERVER_THREADS)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_SERVER_MAX_BATCH_SIZE)
+                 .defaultTo(DEFAULT_BQL_SERVER_MAX_BATCH_SIZE)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
+        VALIDATOR.define(BQL_SERVER_MAX_REQUEST_BYTES)
+                 .defaultTo(DEFAULT_BQL_SERVER_MAX_REQUEST_BYTES)
+                 .checkIf(Validator::isPositive)
+                 .castTo(Validator::asInt);
     }
 
     /**
@@ -5,25 +5,98 @@
  */
 package com.yahoo.bullet.bql;
 
+import com.yahoo.bullet.bql.query.CompilationProfile;
+import com.yahoo.bullet.bql.query.QueryPlan;
+import com.yahoo.bullet.bql.query.RetainedSizeEstimator;
+import com.yahoo.bullet.bql.query.RetainedSizeEstimator.RetainedSize;
+import com.yahoo.bullet.bql.tree.QueryNode;
+import com.yahoo.bullet.bql.util.QueryFingerprinter;
+import com.yahoo.bullet.bql.util.QueryFingerprinter.Fingerprint;
 import com.yahoo.bullet.common.BulletError;
 import com.yahoo.bullet.query.Query;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 public class BQLResult {
     private Query query;
     private String bql;
     private List<BulletError> errors;
+    private long cost;
+    private QueryPlan plan;
+    // Only set if profiling is enabled
+    @Setter(AccessLevel.PACKAGE)
+    private CompilationProfile profile;
+    @Getter(AccessLevel.NONE)
+    private QueryNode queryNode;
+    @Getter(AccessLevel.NONE)
+    private Fingerprint fingerprint;
+    @Getter(AccessLevel.NONE)
+    private RetainedSize retainedSize;
+    // The builder whose running-cost budget holds the cost of the query, if any
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<BulletQueryBuilder> admission = new AtomicReference<>();
 
-    BQLResult(Query query, String bql) {
+    BQLResult(Query query, QueryNode queryNode, String bql, long cost) {
         this.query = query;
+        this.queryNode = queryNode;
         this.bql = bql;
+        this.cost = cost;
     }
 
-    BQLResult(List<BulletError> errors) {
+    BQLResult(QueryPlan plan, QueryNode queryNode, String bql, long cost) {
+        this.plan = plan;
+        this.queryNode = queryNode;
+        this.bql = bql;
+        this.cost = cost;
+    }
+
+    BQLResult(List<BulletError> errors, QueryNode queryNode) {
         this.errors = errors;
+        this.queryNode = queryNode;
+    }
+
+    BQLResult(List<BulletError> errors) {
+        this(errors, null);
+    }
+
+    /**
+     * Returns the {@link Fingerprint} of the shape of the query. See {@link QueryFingerprinter} for what is normalized.
+     * The fingerprint is computed the first time it is requested.
+     *
+     * @return The {@link Fingerprint} of the query or null if the query could not be parsed.
+     */
+    public Fingerprint getFingerprint() {
+        if (fingerprint == null && queryNode != null) {
+            fingerprint = QueryFingerprinter.fingerprint(queryNode);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the estimated heap retained by the query with a breakdown by its components. See
+     * {@link RetainedSizeEstimator} for how it is estimated. The size is estimated the first time it is requested.
+     *
+     * @return The {@link RetainedSize} of the query or null if there is no query.
+     */
+    public RetainedSize getRetainedSize() {
+        if (retainedSize == null && query != null) {
+            retainedSize = RetainedSizeEstimator.estimate(query);
+        }
+        return retainedSize;
+    }
+
+    /**
+     * Returns the number of nodes in the AST of the query. See {@link CompilationProfile#countNodes(QueryNode)}.
+     *
+     * @return The number of nodes or 0 if the query could not be parsed.
+     */
+    public int getNodeCount() {
+        return queryNode == null ? 0 : CompilationProfile.countNodes(queryNode);
     }
 
     /**
@@ -34,4 +107,34 @@ public class BQLResult {
     public boolean hasErrors() {
         return errors != null;
     }
+
+    /**
+     * Returns whether or not this is the result of an EXPLAIN statement. If so, there is a {@link QueryPlan} instead
+     * of a {@link Query}.
+     *
+     * @return True if this result has a plan and false otherwise.
+     */
+    public boolean isExplain() {
+        return plan != null;
+    }
+
+    /**
+     * Records that the cost of this query is held by the budget of the given builder.
+     *
+     * @param builder The {@link BulletQueryBuilder} that admitted the query.
+     * @return True if the query was not already admitted and false otherwise.
+     */
+    boolean admit(BulletQueryBuilder builder) {
+        return admission.compareAndSet(null, builder);
+    }
+
+    /**
+     * Records that the cost of this query is no longer held by the budget of the given builder.
+     *
+     * @param builder The {@link BulletQueryBuilder} to release the query from.
+     * @return True if the query was admitted by the builder and false otherwise.
+     */
+    boolean release(BulletQueryBuilder builder) {
+        return admission.compareAndSet(builder, null);
+    }
 }
@@ -5,31 +5,113 @@
  */
 package com.yahoo.bullet.bql;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.BulletError;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Compiles BQL from the command line. With no query files, it reads one query per line from stdin and prints each
+ * {@link com.yahoo.bullet.query.Query} or its errors until an empty line. With query files, it runs in batch mode: the
+ * queries in the files (one per line, blank lines are skipped and {@code -} is stdin) are compiled in parallel and a
+ * JSON line with the compiled query, the errors, the query length, the number of AST nodes and the compile time is
+ * written for each query in the order of the files. A summary of the throughput and the compile time percentiles is
+ * printed to stderr at the end.
+ *
+ * <p>The optional arguments are {@code --config=<yaml file> --schema=<json file> --threads=<count> --output=<file>}.
+ * The schema overrides the one in the config. If neither is given, the test schema of this project is used.</p>
+ */
 @Slf4j
 public class BulletBQL {
+    private static final String CONFIG = "--config=";
+    private static final String SCHEMA = "--schema=";
+    private static final String THREADS = "--threads=";
+    private static final String OUTPUT = "--output=";
+    private static final String STDIN = "-";
+    private static final String DEFAULT_SCHEMA = "src/test/resources/test_schema.json";
+    // The number of queries per thread that can be compiled ahead of the one being written
+    private static final int QUEUED_QUERIES_PER_THREAD = 64;
+    private static final double NANOS_PER_MS = 1e6;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
     /**
-     * Print out a Bullet JSON by parsing BQL using default BulletConfig.
+     * Print out a Bullet JSON by parsing BQL using default BulletConfig or compile files of BQL in batch mode.
      *
-     * @param args A BQL string.
+     * @param args The optional arguments and query files described above.
      */
     public static void main(String[] args) {
-        BQLConfig config = new BQLConfig();
-        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "src/test/resources/test_schema.json");
+        String configFile = null;
+        String schemaFile = null;
+        String outputFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (String arg : args == null ? new String[0] : args) {
+            if (arg.startsWith(CONFIG)) {
+                configFile = arg.substring(CONFIG.length());
+            } else if (arg.startsWith(SCHEMA)) {
+                schemaFile = arg.substring(SCHEMA.length());
+            } else if (arg.startsWith(THREADS)) {
+                threads = Integer.parseInt(arg.substring(THREADS.length()));
+            } else if (arg.startsWith(OUTPUT)) {
+                outputFile = arg.substring(OUTPUT.length());
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        BQLConfig config = configFile == null ? new BQLConfig() : new BQLConfig(configFile);
+        if (schemaFile != null || configFile == null) {
+            config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, schemaFile == null ? DEFAULT_SCHEMA : schemaFile);
+        }
         config.validate();
 
         BulletQueryBuilder builder = new BulletQueryBuilder(config);
+        if (files.isEmpty()) {
+            compileInteractively(builder);
+            return;
+        }
+        try (PrintWriter out = createWriter(outputFile)) {
+            compileBatch(builder, files, threads, out).print(System.err);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    private static void compileInteractively(BulletQueryBuilder builder) {
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
         while (true) {
             try {
                 String line = reader.readLine();
-                if (line.isEmpty()) {
+                if (line == null || line.isEmpty()) {
                     return;
                 }
                 BQLResult result = builder.buildQuery(line);
@@ -44,4 +126,167 @@ public class BulletBQL {
             }
         }
     }
+
+    private static PrintWriter createWriter(String outputFile) throws IOException {
+        if (outputFile == null) {
+            return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() {
+                    // Leave stdout open
+                    flush();
+                }
+            };
+        }
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+    }
+
+    // Compiles the queries on a pool and writes the results in order as they finish, so that only a bounded number of
+    // queries are held in memory however large the files are
+    private static Summary compileBatch(BulletQueryBuilder builder, List<String> files, int threads, PrintWriter out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<Compilation>> pending = new ArrayDeque<>();
+        Summary summary = new Summary(threads);
+        try {
+            for (String file : files) {
+                try (BufferedReader reader = createReader(file)) {
+                    String line;
+                    for (int number = 1; (line = reader.readLine()) != null; number++) {
+                        if (line.trim().isEmpty()) {
+                            continue;
+                        }
+                        if (pending.size() >= threads * QUEUED_QUERIES_PER_THREAD) {
+                            write(pending.poll(), summary, out);
+                        }
+                        String bql = line;
+                        int lineNumber = number;
+                        pending.add(pool.submit(() -> compile(builder, file, lineNumber, bql)));
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), summary, out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        summary.finish();
+        return summary;
+    }
+
+    private static BufferedReader createReader(String file) throws IOException {
+        if (STDIN.equals(file)) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+    }
+
+    private static void write(Future<Compilation> future, Summary summary, PrintWriter out) {
+        Compilation compilation;
+        try {
+            compilation = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compiling", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not compile a query", e.getCause());
+        }
+        out.println(compilation.json);
+        summary.add(compilation);
+    }
+
+    private static Compilation compile(BulletQueryBuilder builder, String file, int line, String bql) {
+        long start = System.nanoTime();
+        BQLResult result = builder.buildQuery(bql);
+        long nanos = System.nanoTime() - start;
+
+        JsonObject json = new JsonObject();
+        json.addProperty("file", file);
+        json.addProperty("line", line);
+        json.addProperty("bql", bql);
+        json.addProperty("query", result.getQuery() == null ? null : result.getQuery().toString());
+        if (result.isExplain()) {
+            json.addProperty("plan", result.getPlan().toString());
+        }
+        json.add("errors", toJson(result.getErrors()));
+        json.addProperty("length", bql.length());
+        json.addProperty("nodes", result.getNodeCount());
+        json.addProperty("timeMs", nanos / NANOS_PER_MS);
+        return new Compilation(GSON.toJson(json), nanos, result.hasErrors());
+    }
+
+    // The errors as an array of error objects, which is empty if there are none
+    static JsonArray toJson(List<BulletError> errors) {
+        JsonArray array = new JsonArray();
+        if (errors != null) {
+            for (BulletError error : errors) {
+                JsonObject json = new JsonObject();
+                json.addProperty(BulletError.ERROR_KEY, error.getError());
+                json.add(BulletError.RESOLUTIONS_KEY, GSON.toJsonTree(error.getResolutions()));
+                array.add(json);
+            }
+        }
+        return array;
+    }
+
+    private static class Compilation {
+        private final String json;
+        private final long nanos;
+        private final boolean failed;
+
+        private Compilation(String json, long nanos, boolean failed) {
+            this.json = json;
+            this.nanos = nanos;
+            this.failed = failed;
+        }
+    }
+
+    // The throughput of a batch and the distribution of its compile times
+    private static class Summary {
+        private final int threads;
+        private final long start = System.nanoTime();
+        private long[] times = new long[1024];
+        private int queries;
+        private int failures;
+        private long elapsed;
+
+        private Summary(int threads) {
+            this.threads = threads;
+        }
+
+        private void add(Compilation compilation) {
+            if (queries == times.length) {
+                times = Arrays.copyOf(times, queries * 2);
+            }
+            times[queries++] = compilation.nanos;
+            failures += compilation.failed ? 1 : 0;
+        }
+
+        private void finish() {
+            elapsed = System.nanoTime() - start;
+            Arrays.sort(times, 0, queries);
+        }
+
+        private void print(PrintStream out) {
+            double seconds = elapsed / (NANOS_PER_MS * 1000.0);
+            out.printf("Compiled %d queries (%d with errors) in %.3f s on %d threads: %.1f queries/s%n",
+                       queries, failures, seconds, threads, queries / seconds);
+            if (queries == 0) {
+                return;
+            }
+            StringBuilder builder = new StringBuilder("Compile time (ms):");
+            for (double percentile : PERCENTILES) {
+                String label = percentile % 1.0 == 0.0 ? String.valueOf((int) percentile) : String.valueOf(percentile);
+                builder.append(String.format(" p%s %.3f,", label, getPercentile(percentile) / NANOS_PER_MS));
+            }
+            builder.append(String.format(" max %.3f", times[queries - 1] / NANOS_PER_MS));
+            out.println(builder);
+        }
+
+        // Nearest-rank percentile of the sorted times
+        private long getPercentile(double percentile) {
+            int rank = (int) Math.ceil(percentile / 100.0 * queries);
+            return times[Math.max(rank, 1) - 1];
+        }
+    }
 }
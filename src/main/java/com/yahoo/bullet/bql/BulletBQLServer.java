@@ -0,0 +1,419 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.bullet.bql.metrics.CompilerListener;
+import com.yahoo.bullet.bql.metrics.CompilerListeners;
+import com.yahoo.bullet.bql.metrics.CompilerMetrics;
+import com.yahoo.bullet.bql.metrics.Histogram;
+import com.yahoo.bullet.bql.query.QueryCodec;
+import com.yahoo.bullet.bql.util.LRUCache;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lightweight HTTP server on the JDK's built-in {@link HttpServer} that compiles BQL with a shared
+ * {@link BulletQueryBuilder}. It lets services that are not on the JVM compile queries through a co-located sidecar.
+ * Connections are kept alive between requests and requests are handled on a fixed pool of
+ * {@link BQLConfig#BQL_SERVER_THREADS} threads. The endpoints are:
+ *
+ * <ul>
+ *   <li>{@code POST /compile} compiles the BQL in the UTF-8 request body.</li>
+ *   <li>{@code POST /compile/batch} compiles a JSON array of BQL strings in parallel and returns the results in order.
+ *   Identical queries in a batch are compiled once.</li>
+ *   <li>{@code GET /cache} returns the size and the hits and misses of the template cache of the builder and
+ *   {@code DELETE /cache} clears it.</li>
+ *   <li>{@code GET /metrics} returns the request counts of the server and the {@link CompilerMetrics} of the JVM.</li>
+ *   <li>{@code GET /health} returns a fixed status.</li>
+ * </ul>
+ *
+ * <p>A compiled query is returned as a JSON object with the {@code bql}, the {@code query} as text, the query encoded
+ * by {@link QueryCodec} in Base64 as {@code encoded}, the estimated {@code cost} and the {@code errors}, which is empty
+ * if the query was built. Requests that cannot be handled get a JSON object with an {@code error} and a 4xx status.</p>
+ */
+@Slf4j
+public class BulletBQLServer implements AutoCloseable {
+    private static final String CONFIG = "--config=";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String GET = "GET";
+    private static final String POST = "POST";
+    private static final String DELETE = "DELETE";
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int INTERNAL_ERROR = 500;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0};
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+    private static final AtomicInteger SERVERS = new AtomicInteger();
+
+    private final BulletQueryBuilder builder;
+    private final String host;
+    private final int port;
+    private final int threads;
+    private final int maxBatchSize;
+    private final int maxRequestBytes;
+    private final CompilerMetrics metrics = new CompilerMetrics();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private HttpServer server;
+    private ExecutorService pool;
+
+    /**
+     * Constructor that creates a server that is not started yet.
+     *
+     * @param bulletConfig A {@link BulletConfig} that will merge with {@link BQLConfig}.
+     */
+    public BulletBQLServer(BulletConfig bulletConfig) {
+        BQLConfig config = new BQLConfig(bulletConfig);
+        builder = new BulletQueryBuilder(config);
+        host = config.getAs(BQLConfig.BQL_SERVER_HOST, String.class);
+        port = config.getAs(BQLConfig.BQL_SERVER_PORT, Integer.class);
+        threads = config.getAs(BQLConfig.BQL_SERVER_THREADS, Integer.class);
+        maxBatchSize = config.getAs(BQLConfig.BQL_SERVER_MAX_BATCH_SIZE, Integer.class);
+        maxRequestBytes = config.getAs(BQLConfig.BQL_SERVER_MAX_REQUEST_BYTES, Integer.class);
+    }
+
+    /**
+     * Binds the server and starts handling requests. The {@link CompilerMetrics} of the server are registered as a
+     * {@link CompilerListener} until the server is closed.
+     *
+     * @throws IOException if the server could not be bound.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server has already been started");
+        }
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/compile", exchange -> handle(exchange, this::handleCompile));
+        server.createContext("/cache", exchange -> handle(exchange, this::handleCache));
+        server.createContext("/metrics", exchange -> handle(exchange, this::handleMetrics));
+        server.createContext("/health", exchange -> handle(exchange, this::handleHealth));
+        server.createContext("/", exchange -> handle(exchange, this::handleUnknown));
+        int id = SERVERS.incrementAndGet();
+        AtomicInteger count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable, "bql-server-" + id + "-" + count.incrementAndGet()));
+        server.setExecutor(pool);
+        CompilerListeners.register(metrics);
+        server.start();
+        log.info("Compiling BQL on http://{}:{}", host, getPort());
+    }
+
+    /**
+     * Gets the port that the server is bound to, which is only known after it is started if the configured port is 0.
+     *
+     * @return The bound port or the configured port if the server is not started.
+     */
+    public synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the metrics of the compiler that the server reports. They include the compilations of every
+     * {@link BulletQueryBuilder} in the JVM while the server is started.
+     *
+     * @return The {@link CompilerMetrics}.
+     */
+    public CompilerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops the server and its threads. Requests that are being handled are abandoned.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        pool.shutdownNow();
+        CompilerListeners.unregister(metrics);
+        server = null;
+    }
+
+    /**
+     * Starts a server with the defaults or the settings in a YAML file given as {@code --config=<file>} and runs until
+     * the JVM is stopped.
+     *
+     * @param args The optional config argument.
+     * @throws IOException if the server could not be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        String configFile = null;
+        for (String arg : args) {
+            if (!arg.startsWith(CONFIG)) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+            configFile = arg.substring(CONFIG.length());
+        }
+        BulletBQLServer server = new BulletBQLServer(configFile == null ? new BQLConfig() : new BQLConfig(configFile));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    }
+
+    // A handler that returns the status and the body of the response or throws a RequestException to reject it
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static class Response {
+        private final int status;
+        private final JsonElement body;
+
+        private Response(int status, JsonElement body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static class RequestException extends RuntimeException {
+        private static final long serialVersionUID = -3386839528419370112L;
+
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        requests.increment();
+        Response response;
+        try {
+            response = handler.handle(exchange);
+        } catch (RequestException e) {
+            rejectedRequests.increment();
+            response = error(e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Could not handle a request to " + exchange.getRequestURI(), e);
+            response = error(INTERNAL_ERROR, "Could not handle the request.");
+        }
+        // The body has a known length so that the connection can be kept alive for the next request
+        byte[] body = GSON.toJson(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response handleCompile(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/compile")) {
+            checkMethod(exchange, POST);
+            queries.increment();
+            return new Response(OK, toJson(builder.buildQueryFromBytes(readBody(exchange))));
+        }
+        if (path.equals("/compile/batch")) {
+            checkMethod(exchange, POST);
+            List<String> bqls = parseBatch(readBody(exchange));
+            batches.increment();
+            queries.add(bqls.size());
+            JsonArray results = new JsonArray();
+            builder.buildQueries(bqls).forEach(result -> results.add(toJson(result)));
+            return new Response(OK, results);
+        }
+        throw new RequestException(NOT_FOUND, "Unknown path " + path);
+    }
+
+    private Response handleCache(HttpExchange exchange) throws IOException {
+        checkPath(exchange, "/cache");
+        LRUCache<String, ?> cache = builder.getTemplateCache();
+        if (DELETE.equals(exchange.getRequestMethod())) {
+            cache.clear();
+        } else {
+            checkMethod(exchange, GET);
+        }
+        JsonObject template = new JsonObject();
+        template.addProperty("size", cache.size());
+        template.addProperty("hits", cache.getHits());
+        template.addProperty("misses", cache.getMisses());
+        JsonObject json = new JsonObject();
+        json.add(CompilerListener.TEMPLATE_CACHE, template);
+        return new Response(OK, json);
+    }
+
+    private Response handleMetrics(HttpExchange exchange) throws IOException {
+        checkPath(exchange, "/metrics");
+        checkMethod(exchange, GET);
+        JsonObject server = new JsonObject();
+        server.addProperty("requests", requests.sum());
+        server.addProperty("rejectedRequests", rejectedRequests.sum());
+        server.addProperty("batches", batches.sum());
+        server.addProperty("queries", queries.sum());
+
+        JsonObject errors = new JsonObject();
+        metrics.getErrorCounts().forEach((error, count) -> errors.addProperty(error.name(), count));
+        JsonObject caches = new JsonObject();
+        for (String name : new String[] {CompilerListener.QUERY_CACHE, CompilerListener.TEMPLATE_CACHE}) {
+            JsonObject cache = new JsonObject();
+            cache.addProperty("hits", metrics.getCacheHits(name));
+            cache.addProperty("misses", metrics.getCacheMisses(name));
+            cache.addProperty("hitRate", metrics.getCacheHitRate(name));
+            caches.add(name, cache);
+        }
+        JsonObject latencies = new JsonObject();
+        for (AggregationType type : AggregationType.values()) {
+            Histogram histogram = metrics.getLatencies(type);
+            if (histogram.getCount() > 0L) {
+                latencies.add(type.name(), toJson(histogram));
+            }
+        }
+
+        JsonObject json = new JsonObject();
+        json.add("server", server);
+        json.addProperty("parses", metrics.getParseCount());
+        json.addProperty("fallbacks", metrics.getFallbackCount());
+        json.add("errors", errors);
+        json.add("caches", caches);
+        json.add("latencies", latencies);
+        json.add("failureLatencies", toJson(metrics.getFailureLatencies()));
+        json.add("queryLengths", toJson(metrics.getQueryLengths()));
+        json.add("nodeCounts", toJson(metrics.getNodeCounts()));
+        return new Response(OK, json);
+    }
+
+    private Response handleHealth(HttpExchange exchange) throws IOException {
+        checkPath(exchange, "/health");
+        checkMethod(exchange, GET);
+        JsonObject json = new JsonObject();
+        json.addProperty("status", "OK");
+        return new Response(OK, json);
+    }
+
+    private Response handleUnknown(HttpExchange exchange) {
+        throw new RequestException(NOT_FOUND, "Unknown path " + exchange.getRequestURI().getPath());
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && parseLength(length) > maxRequestBytes) {
+            throw tooLarge();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > maxRequestBytes) {
+                    throw tooLarge();
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    // The JDK server rejects most malformed lengths itself but the header is not trusted to be a number regardless
+    static long parseLength(String length) {
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(BAD_REQUEST, "The Content-Length header is not a number.");
+        }
+    }
+
+    private List<String> parseBatch(byte[] body) {
+        JsonElement json;
+        try {
+            json = new JsonParser().parse(new String(body, StandardCharsets.UTF_8));
+        } catch (JsonParseException e) {
+            throw new RequestException(BAD_REQUEST, "The batch is not valid JSON.");
+        }
+        if (!json.isJsonArray()) {
+            throw new RequestException(BAD_REQUEST, "The batch must be a JSON array of BQL strings.");
+        }
+        JsonArray array = json.getAsJsonArray();
+        if (array.size() > maxBatchSize) {
+            throw new RequestException(PAYLOAD_TOO_LARGE, "The batch has more than " + maxBatchSize + " queries.");
+        }
+        List<String> bqls = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()) {
+                throw new RequestException(BAD_REQUEST, "The batch must be a JSON array of BQL strings.");
+            }
+            bqls.add(element.getAsString());
+        }
+        return bqls;
+    }
+
+    private RequestException tooLarge() {
+        return new RequestException(PAYLOAD_TOO_LARGE, "The request body is larger than " + maxRequestBytes + " bytes.");
+    }
+
+    private static void checkPath(HttpExchange exchange, String path) {
+        String requested = exchange.getRequestURI().getPath();
+        if (!requested.equals(path)) {
+            throw new RequestException(NOT_FOUND, "Unknown path " + requested);
+        }
+    }
+
+    private static void checkMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new RequestException(METHOD_NOT_ALLOWED, "Use " + method + " for " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private static Response error(int status, String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        return new Response(status, json);
+    }
+
+    private static JsonObject toJson(BQLResult result) {
+        JsonObject json = new JsonObject();
+        json.addProperty("bql", result.getBql());
+        json.addProperty("query", result.getQuery() == null ? null : result.getQuery().toString());
+        json.addProperty("encoded", result.getQuery() == null ? null : Base64.getEncoder().encodeToString(QueryCodec.encode(result.getQuery())));
+        if (result.isExplain()) {
+            json.addProperty("plan", result.getPlan().toString());
+        }
+        json.addProperty("cost", result.getCost());
+        json.add("errors", BulletBQL.toJson(result.getErrors()));
+        return json;
+    }
+
+    private static JsonObject toJson(Histogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", histogram.getCount());
+        json.addProperty("mean", histogram.getMean());
+        for (double percentile : PERCENTILES) {
+            json.addProperty("p" + (int) percentile, histogram.getValueAtPercentile(percentile));
+        }
+        json.addProperty("max", histogram.getMax());
+        return json;
+    }
+}
@@ -5,33 +5,75 @@
  */
 package com.yahoo.bullet.bql;
 
+import com.yahoo.bullet.bql.metrics.CompilerListener;
+import com.yahoo.bullet.bql.metrics.CompilerListeners;
+import com.yahoo.bullet.bql.parser.ByteArrayCharStream;
 import com.yahoo.bullet.bql.parser.ParsingException;
+import com.yahoo.bullet.bql.query.CompilationDeadline;
+import com.yahoo.bullet.bql.query.CompilationProfile;
+import com.yahoo.bullet.bql.query.CompilationProfile.Phase;
 import com.yahoo.bullet.bql.query.ProcessedQuery;
+import com.yahoo.bullet.bql.query.QueryCostEstimator;
 import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.bql.query.QueryLimits;
 import com.yahoo.bullet.bql.query.QueryProcessor;
+import com.yahoo.bullet.bql.query.QueryTemplate;
 import com.yahoo.bullet.bql.parser.BQLParser;
 import com.yahoo.bullet.bql.query.QueryBuilder;
+import com.yahoo.bullet.bql.tree.ParameterNode;
 import com.yahoo.bullet.bql.tree.QueryNode;
 import com.yahoo.bullet.bql.util.ExpressionFormatter;
+import com.yahoo.bullet.bql.util.LRUCache;
 import com.yahoo.bullet.common.BulletConfig;
 import com.yahoo.bullet.common.BulletError;
 import com.yahoo.bullet.common.BulletException;
 import com.yahoo.bullet.common.Utilities;
 import com.yahoo.bullet.query.Query;
 import com.yahoo.bullet.typesystem.Schema;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 @Slf4j
 public class BulletQueryBuilder implements Serializable {
     private static final long serialVersionUID = -4892719761308177347L;
+    private static final long IDLE_THREAD_SECONDS = 60L;
+    private static final AtomicInteger POOLS = new AtomicInteger();
 
-    private final BQLParser bqlParser = new BQLParser();
+    private final BQLParser bqlParser;
     private final BQLConfig config;
     private final Schema schema;
     private final int maxQueryLength;
+    private final QueryCostEstimator costEstimator;
+    private final long maxQueryCost;
+    private final long queryCostBudget;
+    private final AtomicLong runningCost = new AtomicLong();
+    private final boolean profileEnabled;
+    private final int compilationThreads;
+    private final long compilationTimeout;
+    @Getter
+    private transient LRUCache<String, QueryTemplate.Plan> templateCache;
+    // Created the first time a query is compiled asynchronously unless it is given
+    private transient volatile Executor executor;
 
     /**
      * Constructor that initializes a BulletQueryBuilder.
@@ -40,42 +82,255 @@ public class BulletQueryBuilder implements Serializable {
      */
     public BulletQueryBuilder(BulletConfig bulletConfig) {
         config = new BQLConfig(bulletConfig);
+        bqlParser = new BQLParser(new QueryLimits(config));
         schema = config.getSchema();
         maxQueryLength = config.getAs(BQLConfig.BQL_MAX_QUERY_LENGTH, Integer.class);
+        costEstimator = new QueryCostEstimator(config);
+        maxQueryCost = config.getAs(BQLConfig.BQL_MAX_QUERY_COST, Long.class);
+        queryCostBudget = config.getAs(BQLConfig.BQL_QUERY_COST_BUDGET, Long.class);
+        templateCache = new LRUCache<>(CompilerListener.TEMPLATE_CACHE, config.getAs(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, Integer.class));
+        profileEnabled = config.getAs(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, Boolean.class);
+        compilationThreads = config.getAs(BQLConfig.BQL_COMPILATION_THREADS, Integer.class);
+        compilationTimeout = config.getAs(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, Long.class);
     }
 
     /**
-     * Build a Bullet {@link Query} from BQL string.
+     * Constructor that initializes a BulletQueryBuilder that compiles batches and asynchronous queries on the given
+     * {@link Executor} instead of the one set by {@link BQLConfig#BQL_COMPILATION_THREADS}.
+     *
+     * @param bulletConfig A {@link BulletConfig} that will merge with {@link BQLConfig}.
+     * @param executor The {@link Executor} to compile queries on.
+     */
+    public BulletQueryBuilder(BulletConfig bulletConfig, Executor executor) {
+        this(bulletConfig);
+        this.executor = executor;
+    }
+
+    /**
+     * Build a Bullet {@link Query} from BQL string. If the string is an EXPLAIN statement, the result contains the
+     * {@link com.yahoo.bullet.bql.query.QueryPlan} of the query instead. If
+     * {@link BQLConfig#BQL_COMPILATION_PROFILE_ENABLE} is set, the result also has the {@link CompilationProfile} of
+     * the query. The compilation is reported to the {@link CompilerListeners} if any are registered. The compilation is
+     * aborted if it takes longer than {@link BQLConfig#BQL_COMPILATION_TIMEOUT_MS}.
      *
      * @param bql The BQL String that contains a query.
      * @return A {@link BQLResult}.
      */
     public BQLResult buildQuery(String bql) {
+        return buildQuery(bql, createDeadline());
+    }
+
+    /**
+     * Build a Bullet {@link Query} from BQL string like {@link #buildQuery(String)} but abort the compilation with an
+     * error if the given {@link CompilationDeadline} passes or is cancelled first.
+     *
+     * @param bql The BQL String that contains a query.
+     * @param deadline The {@link CompilationDeadline} of the compilation or null for none.
+     * @return A {@link BQLResult}.
+     */
+    public BQLResult buildQuery(String bql, CompilationDeadline deadline) {
         if (Utilities.isEmpty(bql)) {
             return makeError(QueryError.EMPTY_QUERY.format());
         }
-        if (bql.length() > maxQueryLength) {
+        return buildQuery(bql.length(), (profile, current) -> bqlParser.createQueryNode(bql, profile, current), deadline);
+    }
+
+    /**
+     * Build a Bullet {@link Query} from UTF-8 encoded BQL, such as the payload of a
+     * {@link com.yahoo.bullet.pubsub.PubSubMessage}. The bytes are lexed directly and not converted to a String first.
+     * The byte array must not be modified while the query is being built.
+     *
+     * @param bql The UTF-8 encoded BQL that contains a query.
+     * @return A {@link BQLResult}.
+     */
+    public BQLResult buildQueryFromBytes(byte[] bql) {
+        if (bql == null || bql.length == 0) {
+            return makeError(QueryError.EMPTY_QUERY.format());
+        }
+        ByteArrayCharStream stream = new ByteArrayCharStream(bql);
+        return buildQuery(stream.size(), (profile, deadline) -> bqlParser.createQueryNode(stream, profile, deadline), createDeadline());
+    }
+
+    /**
+     * Builds a Bullet {@link Query} from a BQL string asynchronously. The query is compiled on the executor set by
+     * {@link BQLConfig#BQL_COMPILATION_THREADS} or given to the constructor. Cancelling the returned future aborts the
+     * compilation if it is running so that it does not hold on to its thread. The time limit of
+     * {@link BQLConfig#BQL_COMPILATION_TIMEOUT_MS} starts when the compilation starts, not while it waits for a thread.
+     *
+     * @param bql The BQL String that contains a query.
+     * @return A {@link CompletableFuture} of the {@link BQLResult}.
+     */
+    public CompletableFuture<BQLResult> buildQueryAsync(String bql) {
+        CompilationDeadline deadline = new CompilationDeadline(compilationTimeout);
+        CompletableFuture<BQLResult> future = CompletableFuture.supplyAsync(() -> {
+            deadline.start();
+            return buildQuery(bql, deadline);
+        }, getExecutor());
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                deadline.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Builds a batch of BQL strings in parallel and asynchronously. Identical strings in the batch are only compiled
+     * once and share the same {@link BQLResult}, so the {@link Query} in it must not be modified and its cost can only
+     * be acquired once at a time. Cancelling the returned future cancels the compilations of the batch.
+     *
+     * @param bqls The BQL Strings that contain the queries.
+     * @return A {@link CompletableFuture} of the {@link BQLResult} of each string in the order of the batch.
+     */
+    public CompletableFuture<List<BQLResult>> buildQueriesAsync(Collection<String> bqls) {
+        Map<String, CompletableFuture<BQLResult>> compiled = new HashMap<>();
+        List<CompletableFuture<BQLResult>> results = new ArrayList<>(bqls.size());
+        for (String bql : bqls) {
+            results.add(compiled.computeIfAbsent(bql, this::buildQueryAsync));
+        }
+        CompletableFuture<List<BQLResult>> batch = CompletableFuture.allOf(compiled.values().toArray(new CompletableFuture<?>[0]))
+                                                                    .thenApply(done -> {
+                                                                        List<BQLResult> built = new ArrayList<>(results.size());
+                                                                        results.forEach(result -> built.add(result.join()));
+                                                                        return built;
+                                                                    });
+        batch.whenComplete((built, throwable) -> {
+            if (batch.isCancelled()) {
+                compiled.values().forEach(future -> future.cancel(true));
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Builds a batch of BQL strings in parallel and waits for them. See {@link #buildQueriesAsync(Collection)}.
+     *
+     * @param bqls The BQL Strings that contain the queries.
+     * @return The {@link BQLResult} of each string in the order of the batch.
+     */
+    public List<BQLResult> buildQueries(Collection<String> bqls) {
+        return buildQueriesAsync(bqls).join();
+    }
+
+    private Executor getExecutor() {
+        Executor current = executor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (executor == null) {
+                executor = compilationThreads == 0 ? ForkJoinPool.commonPool() : createPool(compilationThreads);
+            }
+            return executor;
+        }
+    }
+
+    // A bounded pool of daemon threads that exit when idle so that an unused builder does not hold on to them
+    private static Executor createPool(int threads) {
+        int pool = POOLS.incrementAndGet();
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "bql-compiler-" + pool + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private CompilationDeadline createDeadline() {
+        return compilationTimeout > 0L ? new CompilationDeadline(compilationTimeout) : null;
+    }
+
+    private BQLResult buildQuery(int length, BiFunction<CompilationProfile, CompilationDeadline, QueryNode> parser, CompilationDeadline deadline) {
+        boolean listening = CompilerListeners.isListening();
+        if (!profileEnabled && !listening) {
+            return buildQuery(length, parser, null, deadline);
+        }
+        // The listeners get the parser fallbacks and node counts from the profile
+        long start = System.nanoTime();
+        CompilationProfile profile = new CompilationProfile();
+        BQLResult result = buildQuery(length, parser, profile, deadline);
+        if (listening) {
+            report(CompilerListeners.getListener(), result, profile, length, System.nanoTime() - start);
+        }
+        if (profileEnabled) {
+            result.setProfile(profile);
+        }
+        return result;
+    }
+
+    private static void report(CompilerListener listener, BQLResult result, CompilationProfile profile, int length, long nanos) {
+        int nodes = profile.getCount(Phase.BUILD_AST);
+        if (nodes > 0) {
+            listener.onParse(length, nodes, profile.getCount(Phase.PARSE_LL) > 0);
+        }
+        if (result.hasErrors()) {
+            listener.onCompile(null, nanos);
+            result.getErrors().forEach(error -> listener.onError(QueryError.fromError(error)));
+        } else if (result.getQuery() != null) {
+            listener.onCompile(result.getQuery().getAggregation().getType(), nanos);
+        }
+    }
+
+    private BQLResult buildQuery(int length, BiFunction<CompilationProfile, CompilationDeadline, QueryNode> parser, CompilationProfile profile,
+                                 CompilationDeadline deadline) {
+        if (length > maxQueryLength) {
             String resolution = "Please reduce the length of the query to at most " + maxQueryLength + " characters.";
-            return makeError(QueryError.QUERY_TOO_LONG.formatWithResolution(resolution, bql.length()));
+            return makeError(QueryError.QUERY_TOO_LONG.formatWithResolution(resolution, length));
         }
         try {
             // Parse BQL into node tree
-            QueryNode queryNode = bqlParser.createQueryNode(bql);
+            QueryNode queryNode = parser.apply(profile, deadline);
+            int nodes = profile != null ? profile.getCount(Phase.BUILD_AST) : 0;
+            if (!queryNode.getParameters().isEmpty()) {
+                return new BQLResult(Collections.singletonList(QueryError.QUERY_HAS_PARAMETERS.format()), queryNode);
+            }
+
+            // Reuse the plan of a query that only differed in the literals of its WHERE clause
+            long start = start(profile);
+            QueryTemplate template = templateCache.getCapacity() > 0 && !queryNode.isExplain() ? new QueryTemplate(queryNode) : null;
+            if (template != null) {
+                QueryTemplate.Plan plan = templateCache.get(template.getKey());
+                if (plan != null) {
+                    Query query = plan.bind(template);
+                    stop(profile, Phase.TEMPLATE, start, nodes);
+                    configure(query, profile);
+                    return makeResult(query, queryNode, profile);
+                }
+            }
+            stop(profile, Phase.TEMPLATE, start, template != null ? nodes : 0);
 
             // Parse node tree into query components
+            check(deadline);
+            start = start(profile);
             ProcessedQuery processedQuery = QueryProcessor.visit(queryNode);
-            if (!processedQuery.validate()) {
-                return new BQLResult(processedQuery.getErrors());
+            boolean valid = processedQuery.validate();
+            stop(profile, Phase.PROCESS, start, nodes);
+            if (!valid) {
+                return new BQLResult(processedQuery.getErrors(), queryNode);
             }
 
-            QueryBuilder builder = new QueryBuilder(processedQuery, schema);
+            check(deadline);
+            start = start(profile);
+            QueryBuilder builder = new QueryBuilder(processedQuery, schema, deadline);
+            stop(profile, Phase.TYPE_CHECK, start, nodes);
             if (builder.hasErrors()) {
-                return new BQLResult(builder.getErrors());
+                return new BQLResult(builder.getErrors(), queryNode);
             }
             Query query = builder.getQuery();
-            query.configure(config);
+            configure(query, profile);
 
-            return new BQLResult(query, ExpressionFormatter.format(queryNode, true));
+            if (queryNode.isExplain()) {
+                return new BQLResult(builder.getPlan(), queryNode, format(queryNode, profile), costEstimator.estimate(query));
+            }
+            if (template != null) {
+                QueryTemplate.Plan plan = template.createPlan(builder);
+                if (plan != null) {
+                    templateCache.putIfAbsent(template.getKey(), plan);
+                }
+            }
+            return makeResult(query, queryNode, profile);
         } catch (BulletException e) {
             return makeError(e.getError());
         } catch (ParsingException e) {
@@ -85,6 +340,160 @@ public class BulletQueryBuilder implements Serializable {
         }
     }
 
+    private void configure(Query query, CompilationProfile profile) {
+        long start = start(profile);
+        query.configure(config);
+        stop(profile, Phase.CONFIGURE, start, 0);
+    }
+
+    private static String format(QueryNode queryNode, CompilationProfile profile) {
+        long start = start(profile);
+        String bql = ExpressionFormatter.format(queryNode, true);
+        stop(profile, Phase.FORMAT, start, bql.length());
+        return bql;
+    }
+
+    private static void check(CompilationDeadline deadline) {
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    // Nothing is timed when there is no profile
+    private static long start(CompilationProfile profile) {
+        return profile != null ? System.nanoTime() : 0L;
+    }
+
+    private static void stop(CompilationProfile profile, Phase phase, long start, int count) {
+        if (profile != null) {
+            profile.add(phase, System.nanoTime() - start, count);
+        }
+    }
+
+    /**
+     * Prepares a BQL query with bind parameters in its WHERE clause. The parameters are either all positional (?) or
+     * all named (:name) and their types are inferred from the expressions that they are used in. The query is parsed,
+     * type checked and built once here, and each {@link PreparedQuery#bind(Object...)} only checks the bound values
+     * and copies the WHERE clause.
+     *
+     * @param bql The BQL String that contains a query with parameters.
+     * @return A {@link PreparedQuery}.
+     */
+    public PreparedQuery prepare(String bql) {
+        if (Utilities.isEmpty(bql)) {
+            return new PreparedQuery(Collections.singletonList(QueryError.EMPTY_QUERY.format()), null);
+        }
+        if (bql.length() > maxQueryLength) {
+            String resolution = "Please reduce the length of the query to at most " + maxQueryLength + " characters.";
+            return new PreparedQuery(Collections.singletonList(QueryError.QUERY_TOO_LONG.formatWithResolution(resolution, bql.length())), null);
+        }
+        try {
+            QueryNode queryNode = bqlParser.createQueryNode(bql);
+            if (queryNode.isExplain()) {
+                return new PreparedQuery(Collections.singletonList(QueryError.EXPLAIN_PREPARED.format()), queryNode);
+            }
+            ProcessedQuery processedQuery = QueryProcessor.visit(queryNode);
+            if (!processedQuery.validate()) {
+                return new PreparedQuery(processedQuery.getErrors(), queryNode);
+            }
+            QueryBuilder builder = new QueryBuilder(processedQuery, schema);
+            if (builder.hasErrors()) {
+                return new PreparedQuery(builder.getErrors(), queryNode);
+            }
+            List<ParameterNode> parameters = queryNode.getParameters();
+            QueryTemplate.Plan plan = QueryTemplate.createPlan(builder, parameters);
+            if (plan == null) {
+                List<BulletError> errors = new ArrayList<>();
+                for (ParameterNode parameter : parameters) {
+                    if (QueryTemplate.createPlan(builder, Collections.singletonList(parameter)) == null) {
+                        errors.add(QueryError.PARAMETER_NOT_BINDABLE.format(parameter.getLocation(), parameter));
+                    }
+                }
+                return new PreparedQuery(errors, queryNode);
+            }
+            return new PreparedQuery(this, queryNode, plan);
+        } catch (BulletException e) {
+            return new PreparedQuery(Collections.singletonList(e.getError()), null);
+        } catch (ParsingException e) {
+            return new PreparedQuery(Collections.singletonList(QueryError.GENERIC_PARSING_ERROR.format(e.getMessage())), null);
+        } catch (Exception e) {
+            return new PreparedQuery(Collections.singletonList(QueryError.GENERIC_ERROR.format(e.getMessage())), null);
+        }
+    }
+
+    /**
+     * Acquires the estimated cost of a successfully built query from the global running-cost budget. This should be
+     * called before the query is submitted and, if it succeeds, must be paired with a call to
+     * {@link #release(BQLResult)} once the query is done. A result holds its cost in at most one budget at a time.
+     *
+     * @param result The {@link BQLResult} of a query without errors.
+     * @return An {@link Optional} containing a {@link BulletError} if the budget cannot fit the query or empty otherwise.
+     * @throws IllegalStateException if the result already holds its cost in a budget.
+     */
+    public Optional<BulletError> acquire(BQLResult result) {
+        if (!result.admit(this)) {
+            throw new IllegalStateException("The cost of the query has already been acquired");
+        }
+        long cost = result.getCost();
+        while (true) {
+            long current = runningCost.get();
+            long remaining = queryCostBudget - current;
+            if (cost > remaining) {
+                result.release(this);
+                String resolution = "Please try again once running queries have finished or reduce the cost of the query.";
+                return Optional.of(QueryError.QUERY_COST_BUDGET_EXCEEDED.formatWithResolution(resolution, cost, remaining));
+            }
+            if (runningCost.compareAndSet(current, current + cost)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Releases the estimated cost of a query previously acquired with {@link #acquire(BQLResult)} back to the global
+     * running-cost budget. Nothing is released if the query does not hold its cost in the budget of this builder, such
+     * as when it was already released, was rejected or was acquired by another builder.
+     *
+     * @param result The {@link BQLResult} that was acquired.
+     */
+    public void release(BQLResult result) {
+        if (result.release(this)) {
+            runningCost.addAndGet(-result.getCost());
+        }
+    }
+
+    /**
+     * Gets the total estimated cost of the queries currently holding a part of the global running-cost budget.
+     *
+     * @return The running cost.
+     */
+    public long getRunningCost() {
+        return runningCost.get();
+    }
+
+    BQLResult makeBoundResult(Query query, QueryNode queryNode, String bql) {
+        query.configure(config);
+        return makeResult(query, queryNode, bql);
+    }
+
+    private BQLResult makeResult(Query query, QueryNode queryNode, CompilationProfile profile) {
+        return makeResult(query, queryNode, format(queryNode, profile));
+    }
+
+    private BQLResult makeResult(Query query, QueryNode queryNode, String bql) {
+        long cost = costEstimator.estimate(query);
+        if (cost > maxQueryCost) {
+            String resolution = "Please simplify the query or shorten its duration to reduce its cost to at most " + maxQueryCost + ".";
+            return new BQLResult(Collections.singletonList(QueryError.QUERY_TOO_EXPENSIVE.formatWithResolution(resolution, cost)), queryNode);
+        }
+        return new BQLResult(query, queryNode, bql, cost);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        templateCache = new LRUCache<>(CompilerListener.TEMPLATE_CACHE, config.getAs(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, Integer.class));
+    }
+
     private BQLResult makeError(BulletError error) {
         return new BQLResult(Collections.singletonList(error));
     }
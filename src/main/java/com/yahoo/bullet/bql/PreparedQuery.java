@@ -0,0 +1,229 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql;
+
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.bql.query.QueryTemplate;
+import com.yahoo.bullet.bql.tree.ExpressionNode;
+import com.yahoo.bullet.bql.tree.ListExpressionNode;
+import com.yahoo.bullet.bql.tree.LiteralNode;
+import com.yahoo.bullet.bql.tree.ParameterNode;
+import com.yahoo.bullet.bql.tree.QueryNode;
+import com.yahoo.bullet.bql.util.ExpressionFormatter;
+import com.yahoo.bullet.common.BulletError;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.typesystem.Type;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A query with bind parameters that was parsed, type checked and built once by {@link BulletQueryBuilder#prepare(String)}.
+ * Binding values to it only checks the values against the types of the parameters and copies the WHERE clause of the
+ * built query with the values in place of the parameters.
+ *
+ * Numeric values are converted to the type of the parameter if they can be without loss. Lists are bound to list
+ * parameters, such as the right operand of IN. NULL cannot be bound.
+ */
+@Getter
+public class PreparedQuery {
+    @Getter(AccessLevel.NONE)
+    private BulletQueryBuilder queryBuilder;
+    @Getter(AccessLevel.NONE)
+    private QueryNode queryNode;
+    @Getter(AccessLevel.NONE)
+    private QueryTemplate.Plan plan;
+    private List<BulletError> errors;
+    // The distinct parameters in the order that they first appear
+    private List<ParameterNode> parameters = Collections.emptyList();
+    private List<Type> parameterTypes = Collections.emptyList();
+
+    PreparedQuery(BulletQueryBuilder queryBuilder, QueryNode queryNode, QueryTemplate.Plan plan) {
+        this.queryBuilder = queryBuilder;
+        this.queryNode = queryNode;
+        this.plan = plan;
+        this.parameters = queryNode.getParameters();
+        this.parameterTypes = plan.getParameterTypes();
+    }
+
+    PreparedQuery(List<BulletError> errors, QueryNode queryNode) {
+        this.errors = errors;
+        this.queryNode = queryNode;
+    }
+
+    /**
+     * Returns whether or not there are errors. A query with errors cannot be bound.
+     *
+     * @return True if there are errors and false otherwise.
+     */
+    public boolean hasErrors() {
+        return errors != null;
+    }
+
+    /**
+     * Binds the given values to the parameters in the order that they first appear in the query. For named
+     * parameters, each distinct name takes one value.
+     *
+     * @param values The values of the parameters.
+     * @return A {@link BQLResult} with the configured {@link Query} or the errors of the bind.
+     */
+    public BQLResult bind(Object... values) {
+        if (hasErrors()) {
+            return new BQLResult(errors, queryNode);
+        }
+        List<Object> valueList = values == null ? Collections.singletonList(null) : Arrays.asList(values);
+        if (valueList.size() != parameters.size()) {
+            return new BQLResult(Collections.singletonList(QueryError.PARAMETER_COUNT_MISMATCH.format(parameters.size(), valueList.size())), queryNode);
+        }
+        return bind(valueList);
+    }
+
+    /**
+     * Binds the given values to the named parameters of the query.
+     *
+     * @param values The values of the parameters by their names.
+     * @return A {@link BQLResult} with the configured {@link Query} or the errors of the bind.
+     */
+    public BQLResult bind(Map<String, ?> values) {
+        if (hasErrors()) {
+            return new BQLResult(errors, queryNode);
+        }
+        List<BulletError> bindErrors = new ArrayList<>();
+        List<Object> valueList = new ArrayList<>(parameters.size());
+        for (ParameterNode parameter : parameters) {
+            if (!parameter.isNamed() || !values.containsKey(parameter.getParameterName())) {
+                bindErrors.add(QueryError.PARAMETER_NOT_BOUND.format(parameter.getLocation(), parameter));
+            } else {
+                valueList.add(values.get(parameter.getParameterName()));
+            }
+        }
+        if (!bindErrors.isEmpty()) {
+            return new BQLResult(bindErrors, queryNode);
+        }
+        return bind(valueList);
+    }
+
+    private BQLResult bind(List<Object> values) {
+        List<BulletError> bindErrors = new ArrayList<>();
+        List<Serializable> converted = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Type type = parameterTypes.get(i);
+            Serializable value = convert(values.get(i), type);
+            if (value == null) {
+                ParameterNode parameter = parameters.get(i);
+                bindErrors.add(QueryError.PARAMETER_VALUE_MISMATCH.format(parameter.getLocation(), parameter, type, values.get(i)));
+            }
+            converted.add(value);
+        }
+        if (!bindErrors.isEmpty()) {
+            return new BQLResult(bindErrors, queryNode);
+        }
+        List<Expression> expressions = new ArrayList<>(converted.size());
+        for (int i = 0; i < converted.size(); i++) {
+            expressions.add(toExpression(converted.get(i), parameterTypes.get(i)));
+        }
+        Query query = plan.bind(expressions);
+        String bql = new BindingFormatter(converted).process(queryNode);
+        return queryBuilder.makeBoundResult(query, queryNode, bql);
+    }
+
+    private static Serializable convert(Object value, Type type) {
+        if (!Type.isList(type)) {
+            return convertPrimitive(value, type);
+        }
+        if (!(value instanceof List)) {
+            return null;
+        }
+        ArrayList<Serializable> list = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            Serializable converted = convertPrimitive(item, type.getSubType());
+            if (converted == null) {
+                return null;
+            }
+            list.add(converted);
+        }
+        return list;
+    }
+
+    private static Serializable convertPrimitive(Object value, Type type) {
+        if (value == null) {
+            return null;
+        }
+        if (Type.getType(value) == type) {
+            return (Serializable) value;
+        }
+        if (!(value instanceof Number) || !Type.isNumeric(type)) {
+            return null;
+        }
+        Number number = (Number) value;
+        boolean integral = value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+        switch (type) {
+            case INTEGER:
+                return integral && number.longValue() == number.intValue() ? number.intValue() : null;
+            case LONG:
+                return integral ? number.longValue() : null;
+            case FLOAT:
+                if (integral) {
+                    return isExact(number.longValue(), number.floatValue()) ? number.floatValue() : null;
+                }
+                return number.floatValue() == number.doubleValue() ? number.floatValue() : null;
+            default:
+                if (integral) {
+                    return isExact(number.longValue(), number.doubleValue()) ? number.doubleValue() : null;
+                }
+                return number.doubleValue();
+        }
+    }
+
+    // Whether the integral value converts to the floating point value without losing precision
+    private static boolean isExact(long value, double converted) {
+        return new BigDecimal(converted).compareTo(BigDecimal.valueOf(value)) == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Expression toExpression(Serializable value, Type type) {
+        if (!(value instanceof List)) {
+            return new ValueExpression(value);
+        }
+        List<Serializable> values = (List<Serializable>) value;
+        List<Expression> expressions = values.stream().map(ValueExpression::new).collect(Collectors.toCollection(ArrayList::new));
+        ListExpression expression = new ListExpression(expressions);
+        expression.setType(type);
+        return expression;
+    }
+
+    private static class BindingFormatter extends ExpressionFormatter.Formatter {
+        private final List<Serializable> values;
+
+        BindingFormatter(List<Serializable> values) {
+            super(true);
+            this.values = values;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected String visitParameter(ParameterNode node, Void context) {
+            Serializable value = values.get(node.getIndex());
+            if (!(value instanceof List)) {
+                return process(new LiteralNode(value, node.getLocation()));
+            }
+            List<ExpressionNode> literals = ((List<Serializable>) value).stream().map(item -> new LiteralNode(item, node.getLocation()))
+                                                                                 .collect(Collectors.toList());
+            return process(new ListExpressionNode(literals, node.getLocation()));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+
+/**
+ * Receives events from the compiler, such as the latency of building a query and the errors it failed with. Register
+ * it with {@link CompilerListeners#register(CompilerListener)} to receive the events of every compilation in the JVM.
+ * The methods are called on the compiling threads, so implementations must be thread-safe and should be fast. Every
+ * method does nothing by default. {@link CompilerMetrics} is a default implementation that aggregates the events.
+ */
+public interface CompilerListener {
+    String QUERY_CACHE = "query";
+    String TEMPLATE_CACHE = "template";
+
+    /**
+     * Called when a query was parsed.
+     *
+     * @param length The length of the query in characters.
+     * @param nodes The number of nodes in the parsed query.
+     * @param fallback Whether the query had to be parsed again in LL mode after SLL mode failed.
+     */
+    default void onParse(int length, int nodes, boolean fallback) {
+    }
+
+    /**
+     * Called when a query was built or failed to build.
+     *
+     * @param type The {@link AggregationType} of the built query or null if it failed to build.
+     * @param nanos The time spent building the query in nanoseconds.
+     */
+    default void onCompile(AggregationType type, long nanos) {
+    }
+
+    /**
+     * Called for each error a query failed to build with.
+     *
+     * @param error The {@link QueryError} of the error or null if the error did not come from the compiler.
+     */
+    default void onError(QueryError error) {
+    }
+
+    /**
+     * Called when a cache of the compiler was looked up.
+     *
+     * @param cache The name of the cache, such as {@link #QUERY_CACHE} or {@link #TEMPLATE_CACHE}.
+     * @param hit Whether a value was found.
+     */
+    default void onCacheLookup(String cache, boolean hit) {
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+
+import java.util.Arrays;
+
+/**
+ * The registry of the {@link CompilerListener} instances in the JVM. Registering and unregistering are synchronized but
+ * the compiler only reads a volatile field to get the listener to call, and does not collect anything for the events
+ * when no listener is registered.
+ */
+public final class CompilerListeners {
+    private static final CompilerListener NONE = new CompilerListener() { };
+    private static CompilerListener[] listeners = new CompilerListener[0];
+    private static volatile CompilerListener listener = NONE;
+
+    private CompilerListeners() {
+    }
+
+    /**
+     * Registers a listener. A listener that is already registered is not added again.
+     *
+     * @param listener The non-null {@link CompilerListener} to register.
+     */
+    public static synchronized void register(CompilerListener listener) {
+        if (Arrays.asList(listeners).contains(listener)) {
+            return;
+        }
+        CompilerListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        update(updated);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The {@link CompilerListener} to unregister.
+     * @return True if the listener was registered and false otherwise.
+     */
+    public static synchronized boolean unregister(CompilerListener listener) {
+        CompilerListener[] updated = Arrays.stream(listeners).filter(l -> l != listener).toArray(CompilerListener[]::new);
+        if (updated.length == listeners.length) {
+            return false;
+        }
+        update(updated);
+        return true;
+    }
+
+    /**
+     * Gets the listener that passes the events on to every registered listener.
+     *
+     * @return The {@link CompilerListener}, which does nothing if no listeners are registered.
+     */
+    public static CompilerListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns whether any listener is registered.
+     *
+     * @return True if a listener is registered and false otherwise.
+     */
+    public static boolean isListening() {
+        return listener != NONE;
+    }
+
+    private static void update(CompilerListener[] updated) {
+        listeners = updated;
+        if (updated.length == 0) {
+            listener = NONE;
+        } else if (updated.length == 1) {
+            listener = updated[0];
+        } else {
+            listener = new Composite(updated);
+        }
+    }
+
+    private static class Composite implements CompilerListener {
+        private final CompilerListener[] listeners;
+
+        private Composite(CompilerListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void onParse(int length, int nodes, boolean fallback) {
+            for (CompilerListener listener : listeners) {
+                listener.onParse(length, nodes, fallback);
+            }
+        }
+
+        @Override
+        public void onCompile(AggregationType type, long nanos) {
+            for (CompilerListener listener : listeners) {
+                listener.onCompile(type, nanos);
+            }
+        }
+
+        @Override
+        public void onError(QueryError error) {
+            for (CompilerListener listener : listeners) {
+                listener.onError(error);
+            }
+        }
+
+        @Override
+        public void onCacheLookup(String cache, boolean hit) {
+            for (CompilerListener listener : listeners) {
+                listener.onCacheLookup(cache, hit);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free {@link CompilerListener} that aggregates the events of the compiler into striped counters and
+ * {@link Histogram} instances. It keeps the compile latencies per query type, the error counts per {@link QueryError},
+ * the SLL to LL parser fallbacks, the hit rates of the caches and the distributions of the query lengths and node
+ * counts. Register it with {@link CompilerListeners#register(CompilerListener)} and read it periodically to export the
+ * metrics.
+ */
+public class CompilerMetrics implements CompilerListener {
+    private final Map<AggregationType, Histogram> latencies = new EnumMap<>(AggregationType.class);
+    private final Map<QueryError, LongAdder> errors = new EnumMap<>(QueryError.class);
+    private final LongAdder otherErrors = new LongAdder();
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final ConcurrentMap<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+    /**
+     * The compile latencies in nanoseconds of the queries that failed to build.
+     */
+    @Getter
+    private final Histogram failureLatencies = new Histogram();
+    /**
+     * The lengths in characters of the parsed queries.
+     */
+    @Getter
+    private final Histogram queryLengths = new Histogram();
+    /**
+     * The number of nodes in the parsed queries.
+     */
+    @Getter
+    private final Histogram nodeCounts = new Histogram();
+
+    /**
+     * Constructor.
+     */
+    public CompilerMetrics() {
+        // The maps are filled up front so that they are only read afterwards
+        for (AggregationType type : AggregationType.values()) {
+            latencies.put(type, new Histogram());
+        }
+        for (QueryError error : QueryError.values()) {
+            errors.put(error, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onParse(int length, int nodes, boolean fallback) {
+        parses.increment();
+        if (fallback) {
+            fallbacks.increment();
+        }
+        queryLengths.record(length);
+        nodeCounts.record(nodes);
+    }
+
+    @Override
+    public void onCompile(AggregationType type, long nanos) {
+        (type == null ? failureLatencies : latencies.get(type)).record(nanos);
+    }
+
+    @Override
+    public void onError(QueryError error) {
+        (error == null ? otherErrors : errors.get(error)).increment();
+    }
+
+    @Override
+    public void onCacheLookup(String cache, boolean hit) {
+        caches.computeIfAbsent(cache, k -> new LongAdder[] {new LongAdder(), new LongAdder()})[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * Gets the compile latencies of the queries of the given type that were built.
+     *
+     * @param type The {@link AggregationType} of the queries.
+     * @return The {@link Histogram} of the latencies in nanoseconds.
+     */
+    public Histogram getLatencies(AggregationType type) {
+        return latencies.get(type);
+    }
+
+    /**
+     * Gets the number of errors of the given kind.
+     *
+     * @param error The {@link QueryError} or null for the errors that did not come from the compiler.
+     * @return The number of errors.
+     */
+    public long getErrorCount(QueryError error) {
+        return (error == null ? otherErrors : errors.get(error)).sum();
+    }
+
+    /**
+     * Gets the counts of the errors that occurred at least once.
+     *
+     * @return A {@link Map} of the {@link QueryError} to its count.
+     */
+    public Map<QueryError, Long> getErrorCounts() {
+        Map<QueryError, Long> counts = new EnumMap<>(QueryError.class);
+        errors.forEach((error, count) -> {
+            long sum = count.sum();
+            if (sum > 0L) {
+                counts.put(error, sum);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Gets the number of parsed queries.
+     *
+     * @return The number of parsed queries.
+     */
+    public long getParseCount() {
+        return parses.sum();
+    }
+
+    /**
+     * Gets the number of parsed queries that had to be parsed again in LL mode.
+     *
+     * @return The number of fallbacks.
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found a value in the given cache.
+     *
+     * @param cache The name of the cache.
+     * @return The number of hits.
+     */
+    public long getCacheHits(String cache) {
+        LongAdder[] counts = caches.get(cache);
+        return counts == null ? 0L : counts[0].sum();
+    }
+
+    /**
+     * Gets the number of lookups that did not find a value in the given cache.
+     *
+     * @param cache The name of the cache.
+     * @return The number of misses.
+     */
+    public long getCacheMisses(String cache) {
+        LongAdder[] counts = caches.get(cache);
+        return counts == null ? 0L : counts[1].sum();
+    }
+
+    /**
+     * Gets the fraction of the lookups that found a value in the given cache.
+     *
+     * @param cache The name of the cache.
+     * @return The hit rate or 0 if the cache was not looked up.
+     */
+    public double getCacheHitRate(String cache) {
+        long hits = getCacheHits(cache);
+        long total = hits + getCacheMisses(cache);
+        return total == 0L ? 0.0 : (double) hits / total;
+    }
+}
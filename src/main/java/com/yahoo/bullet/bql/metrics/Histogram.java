@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative longs with log-linear buckets like an HDR histogram. Values below 16 are counted
+ * exactly and larger values fall into one of 16 buckets per power of two, so a value read back from the histogram is
+ * within about 6% of the recorded value. Negative values are recorded as 0. Reads are not atomic with respect to
+ * concurrent recording.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0L);
+        counts.incrementAndGet(getIndex(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return The sum.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The exact maximum or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return The mean or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0L ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Gets the value at the given percentile. This is the largest value in the bucket that the percentile falls into,
+     * but never more than the largest recorded value.
+     *
+     * @param percentile The percentile from 0 to 100.
+     * @return The value at the percentile or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0L;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "{count: " + getCount() + ", mean: " + getMean() + ", p50: " + getValueAtPercentile(50.0) +
+               ", p99: " + getValueAtPercentile(99.0) + ", max: " + getMax() + "}";
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1L);
+    }
+}
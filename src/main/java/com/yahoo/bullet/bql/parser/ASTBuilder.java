@@ -10,6 +10,10 @@
  */
 package com.yahoo.bullet.bql.parser;
 
+import com.yahoo.bullet.bql.query.CompilationDeadline;
+import com.yahoo.bullet.bql.query.PatternAnalyzer;
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.bql.query.QueryLimits;
 import com.yahoo.bullet.bql.tree.BetweenPredicateNode;
 import com.yahoo.bullet.bql.tree.CastExpressionNode;
 import com.yahoo.bullet.bql.tree.CountDistinctNode;
@@ -20,6 +24,7 @@ import com.yahoo.bullet.bql.tree.GroupOperationNode;
 import com.yahoo.bullet.bql.tree.IdentifierNode;
 import com.yahoo.bullet.bql.tree.BinaryExpressionNode;
 import com.yahoo.bullet.bql.tree.LateralViewNode;
+import com.yahoo.bullet.bql.tree.LikePredicateNode;
 import com.yahoo.bullet.bql.tree.LinearDistributionNode;
 import com.yahoo.bullet.bql.tree.ListExpressionNode;
 import com.yahoo.bullet.bql.tree.LiteralNode;
@@ -29,6 +34,7 @@ import com.yahoo.bullet.bql.tree.Node;
 import com.yahoo.bullet.bql.tree.NodeLocation;
 import com.yahoo.bullet.bql.tree.NullPredicateNode;
 import com.yahoo.bullet.bql.tree.OrderByNode;
+import com.yahoo.bullet.bql.tree.ParameterNode;
 import com.yahoo.bullet.bql.tree.ParenthesesExpressionNode;
 import com.yahoo.bullet.bql.tree.QueryNode;
 import com.yahoo.bullet.bql.tree.RegionDistributionNode;
@@ -42,6 +48,7 @@ import com.yahoo.bullet.bql.tree.TopKNode;
 import com.yahoo.bullet.bql.tree.UnaryExpressionNode;
 import com.yahoo.bullet.bql.tree.WindowIncludeNode;
 import com.yahoo.bullet.bql.tree.WindowNode;
+import com.yahoo.bullet.common.BulletException;
 import com.yahoo.bullet.query.Window.Unit;
 import com.yahoo.bullet.query.aggregations.DistributionType;
 import com.yahoo.bullet.query.expressions.Operation;
@@ -50,9 +57,13 @@ import com.yahoo.bullet.querying.aggregations.grouping.GroupOperation;
 import com.yahoo.bullet.typesystem.Type;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -61,9 +72,62 @@ import static com.yahoo.bullet.query.aggregations.DistributionType.PMF;
 import static com.yahoo.bullet.query.aggregations.DistributionType.QUANTILE;
 
 class ASTBuilder extends BQLBaseBaseVisitor<Node> {
+    // Checked for every visited parse tree node if not null
+    private final CompilationDeadline deadline;
+    // Checked as the parse tree is visited so that an overly complex query fails before the rest of it is built
+    private final QueryLimits limits;
+    private Node lastNode;
+    private int nodes;
+    private int expressionDepth;
+    private int regexOperations;
+    private int tableFunctions;
+    // The distinct parameters of the statement in the order that they first appear
+    private final List<ParameterNode> parameters = new ArrayList<>();
+    private final Map<String, ParameterNode> namedParameters = new HashMap<>();
+    private int positionalParameters;
+    private boolean inWhere;
+
+    ASTBuilder(CompilationDeadline deadline) {
+        this(deadline, QueryLimits.NONE);
+    }
+
+    ASTBuilder(CompilationDeadline deadline, QueryLimits limits) {
+        this.deadline = deadline;
+        this.limits = limits;
+    }
+
+    @Override
+    public Node visit(ParseTree tree) {
+        if (deadline != null) {
+            deadline.check();
+        }
+        // Parentheses do not make an expression any harder to evaluate so they do not count towards its depth
+        boolean nested = tree instanceof BQLBaseParser.ExpressionContext && !(tree instanceof BQLBaseParser.ParenthesesContext);
+        if (nested && ++expressionDepth > limits.getMaxExpressionDepth()) {
+            throw limitError(QueryError.EXPRESSION_TOO_DEEP, (ParserRuleContext) tree, limits.getMaxExpressionDepth());
+        }
+        Node node = super.visit(tree);
+        if (nested) {
+            expressionDepth--;
+        }
+        // Rules that pass the node of their child through are not counted again
+        if (node != null && node != lastNode) {
+            lastNode = node;
+            if (++nodes > limits.getMaxNodes()) {
+                throw limitError(QueryError.QUERY_TOO_MANY_NODES, (ParserRuleContext) tree, limits.getMaxNodes());
+            }
+        }
+        return node;
+    }
+
     @Override
     public Node visitStatement(BQLBaseParser.StatementContext context) {
-        return visit(context.query());
+        QueryNode queryNode = (QueryNode) visit(context.query());
+        queryNode.setExplain(context.EXPLAIN() != null);
+        if (!parameters.isEmpty()) {
+            queryNode.setParameters(parameters);
+        }
+        return queryNode;
     }
 
     @Override
@@ -71,7 +135,7 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
         return new QueryNode((SelectNode) visit(context.select()),
                              (StreamNode) visit(context.stream()),
                              (LateralViewNode) visitIfPresent(context.lateralView()),
-                             stripParentheses((ExpressionNode) visitIfPresent(context.where)),
+                             visitWhere(context.where),
                              (GroupByNode) visitIfPresent(context.groupBy()),
                              stripParentheses((ExpressionNode) visitIfPresent(context.having)),
                              (OrderByNode) visitIfPresent(context.orderBy()),
@@ -82,6 +146,10 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
 
     @Override
     public Node visitOuterQuery(BQLBaseParser.OuterQueryContext context) {
+        // The grammar only allows one level of outer query
+        if (limits.getMaxOuterQueryDepth() < 1) {
+            throw limitError(QueryError.OUTER_QUERY_TOO_DEEP, context, limits.getMaxOuterQueryDepth());
+        }
         QueryNode innerQuery = (QueryNode) visit(context.innerQuery());
         innerQuery.setOuterQuery(new QueryNode((SelectNode) visit(context.select()),
                                                null,
@@ -227,6 +295,7 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
 
     @Override
     public Node visitListExpression(BQLBaseParser.ListExpressionContext context) {
+        checkListSize(context.expressions(), context);
         return new ListExpressionNode(visitExpressionsList(context.expressions()), getLocation(context));
     }
 
@@ -246,6 +315,18 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
                                         getLocation(context));
     }
 
+    @Override
+    public Node visitLikePredicate(BQLBaseParser.LikePredicateContext context) {
+        ExpressionNode value = (ExpressionNode) visit(context.value);
+        ExpressionNode pattern = (ExpressionNode) visit(context.pattern);
+        addRegexOperations(getLikeRegexOperations(pattern, context.modifier != null), context);
+        return new LikePredicateNode(value,
+                                     pattern,
+                                     context.NOT() != null,
+                                     context.modifier != null,
+                                     getLocation(context));
+    }
+
     @Override
     public Node visitUnary(BQLBaseParser.UnaryContext context) {
         return new UnaryExpressionNode(getOperation(context.op),
@@ -318,6 +399,9 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
 
     @Override
     public Node visitTableFunction(BQLBaseParser.TableFunctionContext context) {
+        if (++tableFunctions > limits.getMaxTableFunctions()) {
+            throw limitError(QueryError.TOO_MANY_TABLE_FUNCTIONS, context, limits.getMaxTableFunctions());
+        }
         if (context.op.getType() == BQLBaseLexer.EXPLODE) {
             return new TableFunctionNode(TableFunctionType.EXPLODE,
                                          (ExpressionNode) visit(context.expression()),
@@ -331,6 +415,9 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
 
     @Override
     public Node visitInfix(BQLBaseParser.InfixContext context) {
+        if (context.op.getType() == BQLBaseLexer.RLIKE) {
+            checkRegexOperations(context);
+        }
         return new BinaryExpressionNode((ExpressionNode) visit(context.left),
                                         (ExpressionNode) visit(context.right),
                                         getOperation(context.op, context.modifier, context.NOT() != null),
@@ -349,6 +436,7 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
                 rightNode = (ExpressionNode) visit(context.right);
             }
         } else {
+            checkListSize(context.expressions(), context.expressions());
             rightNode = new ListExpressionNode(visitExpressionsList(context.expressions()), true, getLocation(context.expressions()));
         }
         return new BinaryExpressionNode((ExpressionNode) visit(context.left),
@@ -372,7 +460,8 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
         // TODO add another parser rule so we only use one instanceof
         if (expressionContext instanceof BQLBaseParser.InfixContext ||
             expressionContext instanceof BQLBaseParser.NullPredicateContext ||
-            expressionContext instanceof BQLBaseParser.BetweenPredicateContext) {
+            expressionContext instanceof BQLBaseParser.BetweenPredicateContext ||
+            expressionContext instanceof BQLBaseParser.LikePredicateContext) {
             return new ParenthesesExpressionNode(expression, getLocation(context));
         }
         return expression;
@@ -415,8 +504,48 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
         return new LiteralNode(unquoteSingle(context.getText()), getLocation(context));
     }
 
+    // ************** Parameters **************
+
+    @Override
+    public Node visitPositionalParameter(BQLBaseParser.PositionalParameterContext context) {
+        validateParameter(!namedParameters.isEmpty(), context);
+        ParameterNode parameter = new ParameterNode(null, positionalParameters++, getLocation(context));
+        parameters.add(parameter);
+        return parameter;
+    }
+
+    @Override
+    public Node visitNamedParameter(BQLBaseParser.NamedParameterContext context) {
+        validateParameter(positionalParameters > 0, context);
+        String name = ((IdentifierNode) visit(context.name)).getValue();
+        ParameterNode parameter = namedParameters.get(name);
+        if (parameter == null) {
+            parameter = new ParameterNode(name, namedParameters.size(), getLocation(context));
+            namedParameters.put(name, parameter);
+            parameters.add(parameter);
+        }
+        return new ParameterNode(name, parameter.getIndex(), getLocation(context));
+    }
+
+    private void validateParameter(boolean mixed, ParserRuleContext context) {
+        if (!inWhere) {
+            throw parseError("Parameters are only supported in the WHERE clause of the query.", context);
+        }
+        if (mixed) {
+            throw parseError("Positional (?) and named (:name) parameters cannot be mixed.", context);
+        }
+    }
+
     // ***************** Helpers *****************
 
+    private ExpressionNode visitWhere(BQLBaseParser.ExpressionContext where) {
+        // Parameters are only allowed in the WHERE clause of the innermost query
+        inWhere = true;
+        ExpressionNode expression = stripParentheses((ExpressionNode) visitIfPresent(where));
+        inWhere = false;
+        return expression;
+    }
+
     private ExpressionNode stripParentheses(ExpressionNode expression) {
         if (expression instanceof ParenthesesExpressionNode) {
             return ((ParenthesesExpressionNode) expression).getExpression();
@@ -439,6 +568,42 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
                                 .collect(Collectors.toList());
     }
 
+    private void checkListSize(BQLBaseParser.ExpressionsContext context, ParserRuleContext list) {
+        if (context != null && context.expression().size() > limits.getMaxListSize()) {
+            throw limitError(QueryError.LIST_TOO_LARGE, list, limits.getMaxListSize());
+        }
+    }
+
+    // Each pattern in the list of an RLIKE ANY is a separate regex match
+    private void checkRegexOperations(BQLBaseParser.InfixContext context) {
+        int operations = 1;
+        if (context.modifier != null && context.right instanceof BQLBaseParser.ListContext) {
+            BQLBaseParser.ExpressionsContext patterns = ((BQLBaseParser.ListContext) context.right).listExpression().expressions();
+            operations = patterns == null ? 0 : patterns.expression().size();
+        }
+        addRegexOperations(operations, context);
+    }
+
+    // A LIKE only matches with regexes if it has patterns that are not compiled into equality or SUBSTRING checks
+    private int getLikeRegexOperations(ExpressionNode pattern, boolean any) {
+        ExpressionNode stripped = stripParentheses(pattern);
+        List<ExpressionNode> values = stripped instanceof ListExpressionNode ? ((ListExpressionNode) stripped).getExpressions() : Collections.singletonList(stripped);
+        List<String> patterns = new ArrayList<>();
+        for (ExpressionNode value : values) {
+            if (value instanceof LiteralNode && ((LiteralNode) value).getValue() instanceof String) {
+                patterns.add((String) ((LiteralNode) value).getValue());
+            }
+        }
+        return PatternAnalyzer.countLikeRegexes(patterns, any);
+    }
+
+    private void addRegexOperations(int operations, ParserRuleContext context) {
+        regexOperations += operations;
+        if (regexOperations > limits.getMaxRegexOperations()) {
+            throw limitError(QueryError.TOO_MANY_RLIKE_OPERATIONS, context, limits.getMaxRegexOperations());
+        }
+    }
+
     private List<ExpressionNode> visitExpressionsList(BQLBaseParser.ExpressionsContext context) {
         if (context == null) {
             return Collections.emptyList();
@@ -641,6 +806,10 @@ class ASTBuilder extends BQLBaseBaseVisitor<Node> {
         return new NodeLocation(token.getLine(), token.getCharPositionInLine());
     }
 
+    private static BulletException limitError(QueryError error, ParserRuleContext context, int limit) {
+        return new BulletException(error.format(getLocation(context), limit));
+    }
+
     private static ParsingException parseError(String message, ParserRuleContext context) {
         return new ParsingException(message,
                                     null,
@@ -10,20 +10,33 @@
  */
 package com.yahoo.bullet.bql.parser;
 
+import com.yahoo.bullet.bql.query.CompilationDeadline;
+import com.yahoo.bullet.bql.query.CompilationProfile;
+import com.yahoo.bullet.bql.query.CompilationProfile.Phase;
+import com.yahoo.bullet.bql.query.QueryLimits;
 import com.yahoo.bullet.bql.tree.Node;
 import com.yahoo.bullet.bql.tree.QueryNode;
 import lombok.AllArgsConstructor;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
 import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.Pair;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import java.io.Serializable;
@@ -41,6 +54,24 @@ public class BQLParser implements Serializable {
     };
     private static final long serialVersionUID = 5317239669163568232L;
 
+    private final QueryLimits limits;
+
+    /**
+     * Creates a parser that does not limit the complexity of the queries that it parses.
+     */
+    public BQLParser() {
+        this(QueryLimits.NONE);
+    }
+
+    /**
+     * Creates a parser that rejects queries that exceed the given {@link QueryLimits} while building their AST.
+     *
+     * @param limits The {@link QueryLimits} to enforce.
+     */
+    public BQLParser(QueryLimits limits) {
+        this.limits = limits;
+    }
+
     /**
      * Create a {@link QueryNode} which is a {@link Node} Tree from given BQL String.
      *
@@ -49,16 +80,98 @@ public class BQLParser implements Serializable {
      * @throws ParsingException when query is not valid.
      */
     public QueryNode createQueryNode(String bql) {
-        return (QueryNode) invokeParser(bql, BQLBaseParser::statement);
+        return createQueryNode(new ANTLRInputStream(bql));
+    }
+
+    /**
+     * Create a {@link QueryNode} which is a {@link Node} Tree from given BQL String and record the lexing, parsing and
+     * AST building phases in the given {@link CompilationProfile}.
+     *
+     * @param bql A BQL String.
+     * @param profile The {@link CompilationProfile} to record the phases in or null to not record them.
+     * @return A {@link QueryNode} which is a {@link Node} Tree.
+     * @throws ParsingException when query is not valid.
+     */
+    public QueryNode createQueryNode(String bql, CompilationProfile profile) {
+        return createQueryNode(new ANTLRInputStream(bql), profile);
     }
 
-    private Node invokeParser(String bql, Function<BQLBaseParser, ParserRuleContext> parseFunction) {
+    /**
+     * Create a {@link QueryNode} which is a {@link Node} Tree from given BQL String, record the lexing, parsing and AST
+     * building phases in the given {@link CompilationProfile} and abort if the given {@link CompilationDeadline} passes.
+     *
+     * @param bql A BQL String.
+     * @param profile The {@link CompilationProfile} to record the phases in or null to not record them.
+     * @param deadline The {@link CompilationDeadline} to check while lexing, parsing and building the AST or null.
+     * @return A {@link QueryNode} which is a {@link Node} Tree.
+     * @throws ParsingException when query is not valid.
+     * @throws com.yahoo.bullet.common.BulletException when the deadline passes or is cancelled or a limit is exceeded.
+     */
+    public QueryNode createQueryNode(String bql, CompilationProfile profile, CompilationDeadline deadline) {
+        return createQueryNode(new ANTLRInputStream(bql), profile, deadline);
+    }
+
+    /**
+     * Create a {@link QueryNode} which is a {@link Node} Tree from the given {@link CharStream} of BQL. This can be
+     * used with a {@link ByteArrayCharStream} to parse a UTF-8 encoded BQL payload without converting it to a String.
+     *
+     * @param bql A {@link CharStream} of BQL.
+     * @return A {@link QueryNode} which is a {@link Node} Tree.
+     * @throws ParsingException when query is not valid.
+     */
+    public QueryNode createQueryNode(CharStream bql) {
+        return (QueryNode) invokeParser(bql, BQLBaseParser::statement, null, null);
+    }
+
+    /**
+     * Create a {@link QueryNode} which is a {@link Node} Tree from the given {@link CharStream} of BQL and record the
+     * lexing, parsing and AST building phases in the given {@link CompilationProfile}.
+     *
+     * @param bql A {@link CharStream} of BQL.
+     * @param profile The {@link CompilationProfile} to record the phases in or null to not record them.
+     * @return A {@link QueryNode} which is a {@link Node} Tree.
+     * @throws ParsingException when query is not valid.
+     */
+    public QueryNode createQueryNode(CharStream bql, CompilationProfile profile) {
+        return createQueryNode(bql, profile, null);
+    }
+
+    /**
+     * Create a {@link QueryNode} which is a {@link Node} Tree from the given {@link CharStream} of BQL, record the
+     * lexing, parsing and AST building phases in the given {@link CompilationProfile} and abort if the given
+     * {@link CompilationDeadline} passes.
+     *
+     * @param bql A {@link CharStream} of BQL.
+     * @param profile The {@link CompilationProfile} to record the phases in or null to not record them.
+     * @param deadline The {@link CompilationDeadline} to check while lexing, parsing and building the AST or null.
+     * @return A {@link QueryNode} which is a {@link Node} Tree.
+     * @throws ParsingException when query is not valid.
+     * @throws com.yahoo.bullet.common.BulletException when the deadline passes or is cancelled or a limit is exceeded.
+     */
+    public QueryNode createQueryNode(CharStream bql, CompilationProfile profile, CompilationDeadline deadline) {
+        QueryNode queryNode = (QueryNode) invokeParser(bql, BQLBaseParser::statement, profile, deadline);
+        if (profile != null) {
+            profile.add(Phase.BUILD_AST, 0L, CompilationProfile.countNodes(queryNode));
+        }
+        return queryNode;
+    }
+
+    private Node invokeParser(CharStream bql, Function<BQLBaseParser, ParserRuleContext> parseFunction, CompilationProfile profile,
+                              CompilationDeadline deadline) {
         try {
-            BQLBaseLexer lexer = new BQLBaseLexer(new CaseInsensitiveStream(new ANTLRInputStream(bql)));
+            CaseInsensitiveStream stream = new CaseInsensitiveStream(bql);
+            BQLBaseLexer lexer = deadline == null ? new BQLBaseLexer(stream) : new DeadlineLexer(stream, deadline);
             CommonTokenStream tokenStream = new CommonTokenStream(lexer);
             BQLBaseParser parser = new BQLBaseParser(tokenStream);
 
             parser.addParseListener(new PostProcessor(asList(parser.getRuleNames())));
+            if (deadline != null) {
+                // Prediction can look ahead through many tokens without entering a rule, so it checks the deadline too
+                ParserATNSimulator interpreter = parser.getInterpreter();
+                parser.setInterpreter(new DeadlineATNSimulator(parser, interpreter.atn, interpreter.decisionToDFA,
+                                                               interpreter.getSharedContextCache(), deadline));
+                parser.addParseListener(new DeadlineListener(deadline));
+            }
 
             lexer.removeErrorListeners();
             lexer.addErrorListener(ERROR_LISTENER);
@@ -66,24 +179,128 @@ public class BQLParser implements Serializable {
             parser.removeErrorListeners();
             parser.addErrorListener(ERROR_LISTENER);
 
-            ParserRuleContext tree;
-            try {
-                // First, try parsing with potentially faster SLL mode.
-                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-                tree = parseFunction.apply(parser);
-            } catch (ParseCancellationException ex) {
-                // If we fail, parse with LL mode.
-                tokenStream.reset(); // rewind input stream.
-                parser.reset();
-                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
-                tree = parseFunction.apply(parser);
+            if (profile == null) {
+                return new ASTBuilder(deadline, limits).visit(parse(parser, tokenStream, parseFunction));
             }
-            return new ASTBuilder().visit(tree);
+            // Lex everything up front so that lexing is not counted as parsing
+            long start = System.nanoTime();
+            tokenStream.fill();
+            profile.add(Phase.LEX, System.nanoTime() - start, tokenStream.getNumberOfOnChannelTokens());
+
+            ParserRuleContext tree = parse(parser, tokenStream, parseFunction, profile);
+
+            start = System.nanoTime();
+            Node node = new ASTBuilder(deadline, limits).visit(tree);
+            profile.add(Phase.BUILD_AST, System.nanoTime() - start, 0);
+            return node;
         } catch (StackOverflowError e) {
             throw new ParsingException("Stack overflow while parsing.");
         }
     }
 
+    private static ParserRuleContext parse(BQLBaseParser parser, CommonTokenStream tokenStream,
+                                           Function<BQLBaseParser, ParserRuleContext> parseFunction) {
+        try {
+            // First, try parsing with potentially faster SLL mode.
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            return parseFunction.apply(parser);
+        } catch (ParseCancellationException ex) {
+            // If we fail, parse with LL mode.
+            tokenStream.reset(); // rewind input stream.
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parseFunction.apply(parser);
+        }
+    }
+
+    private static ParserRuleContext parse(BQLBaseParser parser, CommonTokenStream tokenStream,
+                                           Function<BQLBaseParser, ParserRuleContext> parseFunction, CompilationProfile profile) {
+        long start = System.nanoTime();
+        try {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            ParserRuleContext tree = parseFunction.apply(parser);
+            profile.add(Phase.PARSE_SLL, System.nanoTime() - start, countNodes(tree));
+            return tree;
+        } catch (ParseCancellationException ex) {
+            profile.add(Phase.PARSE_SLL, System.nanoTime() - start, 0);
+            start = System.nanoTime();
+            tokenStream.reset();
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            ParserRuleContext tree = parseFunction.apply(parser);
+            profile.add(Phase.PARSE_LL, System.nanoTime() - start, countNodes(tree));
+            return tree;
+        }
+    }
+
+    private static int countNodes(ParseTree tree) {
+        int count = 1;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            count += countNodes(tree.getChild(i));
+        }
+        return count;
+    }
+
+    // Checks the deadline every few tokens since lexing a token is cheap
+    private static class DeadlineLexer extends BQLBaseLexer {
+        private static final int CHECK_INTERVAL = 64;
+
+        private final CompilationDeadline deadline;
+        private int tokens;
+
+        DeadlineLexer(CharStream input, CompilationDeadline deadline) {
+            super(input);
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Token nextToken() {
+            if (++tokens % CHECK_INTERVAL == 0) {
+                deadline.check();
+            }
+            return super.nextToken();
+        }
+    }
+
+    // Checks the deadline for every token of lookahead during prediction
+    private static class DeadlineATNSimulator extends ParserATNSimulator {
+        private final CompilationDeadline deadline;
+
+        DeadlineATNSimulator(BQLBaseParser parser, ATN atn, DFA[] decisionToDFA, PredictionContextCache sharedContextCache,
+                             CompilationDeadline deadline) {
+            super(parser, atn, decisionToDFA, sharedContextCache);
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected ATNConfigSet computeReachSet(ATNConfigSet closure, int t, boolean fullCtx) {
+            deadline.check();
+            return super.computeReachSet(closure, t, fullCtx);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class DeadlineListener implements ParseTreeListener {
+        private final CompilationDeadline deadline;
+
+        @Override
+        public void enterEveryRule(ParserRuleContext context) {
+            deadline.check();
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext context) {
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+        }
+    }
+
     @AllArgsConstructor
     private class PostProcessor extends BQLBaseBaseListener {
         private final List<String> ruleNames;
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharStream} that reads UTF-8 encoded BQL directly from a byte array. If the bytes are all ASCII, they are
+ * read in place without decoding the payload into a {@link String} or a char array. Otherwise, the bytes are decoded
+ * once into a char buffer. The byte array must not be modified while the stream is in use.
+ */
+public class ByteArrayCharStream implements CharStream {
+    private final byte[] bytes;
+    private final char[] chars;
+    private final int size;
+    private int index = 0;
+
+    /**
+     * Constructor that takes a UTF-8 encoded byte array.
+     *
+     * @param bytes The non-null UTF-8 bytes to read.
+     */
+    public ByteArrayCharStream(byte[] bytes) {
+        if (isASCII(bytes)) {
+            this.bytes = bytes;
+            this.chars = null;
+            this.size = bytes.length;
+        } else {
+            CharBuffer buffer = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes));
+            this.bytes = null;
+            this.chars = buffer.array();
+            this.size = buffer.limit();
+        }
+    }
+
+    /**
+     * Returns whether the stream is reading the bytes in place.
+     *
+     * @return A boolean denoting whether the payload was ASCII and did not need to be decoded.
+     */
+    public boolean isInPlace() {
+        return bytes != null;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size - 1);
+        if (start >= size) {
+            return "";
+        }
+        int count = stop - start + 1;
+        if (bytes != null) {
+            return new String(bytes, start, count, StandardCharsets.US_ASCII);
+        }
+        return new String(chars, start, count);
+    }
+
+    @Override
+    public void consume() {
+        if (index >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        index++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        if (i < 0) {
+            i++;
+        }
+        int position = index + i - 1;
+        if (position < 0 || position >= size) {
+            return IntStream.EOF;
+        }
+        return bytes != null ? bytes[position] : chars[position];
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = Math.max(0, Math.min(index, size));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return IntStream.UNKNOWN_SOURCE_NAME;
+    }
+
+    private static boolean isASCII(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.common.BulletException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time limit and cancellation flag for compiling a query. The lexer, the parser (including its prediction), the AST
+ * builder and the {@link QueryBuilder} check it as they go and abort the compilation with
+ * {@link QueryError#COMPILATION_TIMED_OUT} or {@link QueryError#COMPILATION_CANCELLED}. A deadline can be cancelled
+ * from any thread. The time limit starts when the deadline is created and can be restarted with {@link #start()}, so
+ * that a compilation that waits for a thread can be cancelled while it waits without the wait counting against it.
+ */
+public class CompilationDeadline {
+    private final long timeout;
+    private volatile long expiry;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a deadline that expires after the given time from now.
+     *
+     * @param timeout The time limit in milliseconds or 0 for no time limit, in which case the deadline can only be
+     *                cancelled.
+     */
+    public CompilationDeadline(long timeout) {
+        this.timeout = timeout;
+        start();
+    }
+
+    /**
+     * Restarts the time limit from now. The cancellation flag is not affected.
+     */
+    public void start() {
+        expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Cancels the compilation. It is aborted the next time the deadline is checked.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether or not the compilation was cancelled.
+     *
+     * @return True if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether or not the time limit has passed.
+     *
+     * @return True if there is a time limit and it has passed.
+     */
+    public boolean isExpired() {
+        return timeout > 0L && System.nanoTime() - expiry > 0L;
+    }
+
+    /**
+     * Aborts the compilation if it was cancelled or the time limit has passed.
+     *
+     * @throws BulletException with {@link QueryError#COMPILATION_CANCELLED} or {@link QueryError#COMPILATION_TIMED_OUT}.
+     */
+    public void check() {
+        if (cancelled) {
+            throw new BulletException(QueryError.COMPILATION_CANCELLED.format());
+        }
+        if (isExpired()) {
+            throw new BulletException(QueryError.COMPILATION_TIMED_OUT.format(timeout));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.tree.DefaultTraversalVisitor;
+import com.yahoo.bullet.bql.tree.Node;
+import com.yahoo.bullet.bql.tree.QueryNode;
+
+/**
+ * The time spent in each phase of compiling a query along with the number of items the phase worked on. A phase that
+ * did not run, such as LL parsing when SLL parsing succeeds, has no time and no count. This is only collected when
+ * {@link com.yahoo.bullet.bql.BQLConfig#BQL_COMPILATION_PROFILE_ENABLE} is set.
+ */
+public class CompilationProfile {
+    public enum Phase {
+        LEX,
+        PARSE_SLL,
+        PARSE_LL,
+        BUILD_AST,
+        TEMPLATE,
+        PROCESS,
+        TYPE_CHECK,
+        CONFIGURE,
+        FORMAT
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+    private final int[] counts = new int[PHASES.length];
+
+    /**
+     * Adds time and items to a phase.
+     *
+     * @param phase The {@link Phase} to add to.
+     * @param nanos The time spent in nanoseconds.
+     * @param count The number of items the phase worked on.
+     */
+    public void add(Phase phase, long nanos, int count) {
+        this.nanos[phase.ordinal()] += nanos;
+        counts[phase.ordinal()] += count;
+    }
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase The {@link Phase}.
+     * @return The time in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Gets the number of items a phase worked on. These are the tokens for {@link Phase#LEX}, the parse tree nodes for
+     * parsing, the AST nodes for building the AST, templating, processing and type checking and the characters of the
+     * formatted query for formatting. Configuring the query has no count.
+     *
+     * @param phase The {@link Phase}.
+     * @return The number of items.
+     */
+    public int getCount(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    /**
+     * Gets the time spent in all the phases.
+     *
+     * @return The total time in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0L;
+        for (long phase : nanos) {
+            total += phase;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (Phase phase : PHASES) {
+            int i = phase.ordinal();
+            if (nanos[i] != 0L || counts[i] != 0) {
+                builder.append(builder.length() > 1 ? ", " : "").append(phase).append(": ").append(nanos[i]).append("ns/").append(counts[i]);
+            }
+        }
+        return builder.append(", TOTAL: ").append(getTotalNanos()).append("ns}").toString();
+    }
+
+    /**
+     * Counts the nodes of a {@link QueryNode} tree including the nodes of its outer query.
+     *
+     * @param node The {@link QueryNode}.
+     * @return The number of nodes.
+     */
+    public static int countNodes(QueryNode node) {
+        NodeCounter counter = new NodeCounter();
+        counter.process(node);
+        return counter.count;
+    }
+
+    private static class NodeCounter extends DefaultTraversalVisitor<Void, Void> {
+        private int count;
+
+        @Override
+        public Void process(Node node, Void context) {
+            if (node != null) {
+                count++;
+            }
+            return super.process(node, context);
+        }
+
+        @Override
+        protected Void visitQuery(QueryNode node, Void context) {
+            super.visitQuery(node, context);
+            return process(node.getOuterQuery(), context);
+        }
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.aggregations.Aggregation;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import com.yahoo.bullet.query.aggregations.GroupAll;
+import com.yahoo.bullet.query.aggregations.GroupBy;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.querying.aggregations.grouping.GroupOperation;
+import com.yahoo.bullet.querying.aggregations.grouping.GroupOperation.GroupOperationType;
+import com.yahoo.bullet.typesystem.Type;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Statically checks whether a compiled query B can be derived from another compiled query A, so that B can be answered
+ * from A instead of scanning the data again.
+ *
+ * B is derivable from A only if the filter of B implies the filter of A. Implication is decided per conjunct: each
+ * conjunct of A must either be a conjunct of B or be an equality, IN, comparison or BETWEEN on a field that the
+ * equality, IN, comparison and BETWEEN conjuncts of B on the same field imply. Other predicates are never considered
+ * implied unless they are identical, so the check may miss derivations but never reports a wrong one. The only
+ * exception is {@link Kind#APPROXIMATE_ROLLUP}, which is not {@link Derivation#isDerivable()}.
+ *
+ * A also has to see every record that B needs. A query with a RAW aggregation closes once it has collected as many
+ * records as its size, so B is only derived from it if B reads the same records and collects no more of them. A query
+ * with a GROUP BY aggregation stops adding groups once it has as many as its size, so a rollup is only a
+ * {@link Kind#ROLLUP} if the filter of A limits every group field of A to a list of values and A has room for every
+ * combination of them. Otherwise, B is derived from the records of A if it can be and the rollup is an
+ * {@link Kind#APPROXIMATE_ROLLUP} if it cannot.
+ */
+public final class ContainmentChecker {
+    private static final Set<GroupOperationType> ROLLUP_OPERATIONS =
+            EnumSet.of(GroupOperationType.COUNT, GroupOperationType.COUNT_FIELD, GroupOperationType.SUM, GroupOperationType.MIN, GroupOperationType.MAX);
+
+    static final String OUTER_QUERY = "Queries with outer queries are not supported.";
+    static final String TABLE_FUNCTION = "The queries have different table functions.";
+    static final String FILTER = "The filter of B does not imply the filter of A.";
+    static final String DURATION = "A does not run for as long as B.";
+    static final String FIELDS = "B reads fields that A does not keep.";
+    static final String SIZE = "A can stop before it reads every record that B needs.";
+    static final String TRUNCATION = "A can drop groups once it has as many as its size, so the rollup can be incomplete.";
+
+    public enum Kind {
+        // B is the same query as A
+        IDENTICAL,
+        // B is computed from the records that A aggregates by applying the residual filter and then the projection,
+        // aggregation and post-aggregations of B
+        STREAM,
+        // B is computed from the group by results of A by applying the residual filter, grouping the results again by
+        // the fields of B and combining the operations (counts are summed)
+        ROLLUP,
+        // B is computed like a ROLLUP but A can drop groups once it has as many as its size, so B can miss groups or
+        // have partial operations
+        APPROXIMATE_ROLLUP,
+        // B cannot be derived from A
+        NONE
+    }
+
+    /**
+     * How B is derived from A.
+     */
+    @Getter
+    public static class Derivation {
+        private final Kind kind;
+        // The conjuncts of the filter of B that A does not apply. For a rollup, it reads the results of A.
+        private final Expression residualFilter;
+        // For a rollup, the names in the results of A of the group fields and operations of B by their names in B
+        private final Map<String, String> names;
+        private final String reason;
+
+        private Derivation(Kind kind, Expression residualFilter, Map<String, String> names, String reason) {
+            this.kind = kind;
+            this.residualFilter = residualFilter;
+            this.names = names;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns whether B can be derived exactly from A.
+         *
+         * @return True if B is derivable and false otherwise, which includes an {@link Kind#APPROXIMATE_ROLLUP}.
+         */
+        public boolean isDerivable() {
+            return kind != Kind.NONE && kind != Kind.APPROXIMATE_ROLLUP;
+        }
+
+        @Override
+        public String toString() {
+            return kind + (reason != null ? ": " + reason : "") + (residualFilter != null ? " WHERE " + CompiledExpressionFormatter.format(residualFilter) : "");
+        }
+    }
+
+    // The values that a field can take. The values, if not null, take precedence over the bounds.
+    private static class Constraint {
+        private Set<Serializable> values;
+        private double lower = Double.NEGATIVE_INFINITY;
+        private boolean lowerInclusive = true;
+        private double upper = Double.POSITIVE_INFINITY;
+        private boolean upperInclusive = true;
+
+        private void intersect(Constraint other) {
+            if (other.values != null) {
+                if (values == null) {
+                    values = new HashSet<>(other.values);
+                } else {
+                    values.removeIf(value -> !other.contains(value));
+                }
+            }
+            if (other.lower > lower || other.lower == lower && !other.lowerInclusive) {
+                lower = other.lower;
+                lowerInclusive = other.lowerInclusive;
+            }
+            if (other.upper < upper || other.upper == upper && !other.upperInclusive) {
+                upper = other.upper;
+                upperInclusive = other.upperInclusive;
+            }
+        }
+
+        private boolean contains(Serializable value) {
+            if (values != null) {
+                return values.stream().anyMatch(item -> isEqual(item, value));
+            }
+            if (!(value instanceof Number)) {
+                return false;
+            }
+            double number = ((Number) value).doubleValue();
+            return (number > lower || lowerInclusive && number == lower) && (number < upper || upperInclusive && number == upper);
+        }
+
+        // Whether every value that this constraint allows is allowed by the other
+        private boolean isWithin(Constraint other) {
+            if (values != null) {
+                return values.stream().allMatch(other::contains);
+            }
+            if (other.values != null) {
+                return lower == upper && lowerInclusive && upperInclusive && other.contains(lower);
+            }
+            boolean lowerWithin = lower > other.lower || lower == other.lower && (other.lowerInclusive || !lowerInclusive);
+            boolean upperWithin = upper < other.upper || upper == other.upper && (other.upperInclusive || !upperInclusive);
+            return lowerWithin && upperWithin;
+        }
+    }
+
+    private ContainmentChecker() {
+    }
+
+    /**
+     * Checks whether query B can be derived from query A.
+     *
+     * @param a The running {@link Query}.
+     * @param b The new {@link Query}.
+     * @return The {@link Derivation} of B from A.
+     */
+    public static Derivation check(Query a, Query b) {
+        if (a.toString().equals(b.toString())) {
+            return new Derivation(Kind.IDENTICAL, null, Collections.emptyMap(), null);
+        }
+        if (a.getOuterQuery() != null || b.getOuterQuery() != null) {
+            return none(OUTER_QUERY);
+        }
+        if (!Objects.equals(Objects.toString(a.getTableFunction(), null), Objects.toString(b.getTableFunction(), null))) {
+            return none(TABLE_FUNCTION);
+        }
+        List<Expression> conjunctsA = getConjuncts(a.getFilter());
+        List<Expression> conjunctsB = getConjuncts(b.getFilter());
+        if (!implies(conjunctsB, conjunctsA)) {
+            return none(FILTER);
+        }
+        if (getDuration(a) < getDuration(b)) {
+            return none(DURATION);
+        }
+        List<Expression> residual = new ArrayList<>(conjunctsB);
+        residual.removeAll(conjunctsA);
+        Expression residualFilter = and(residual);
+        Derivation rollup = checkRollup(a, b, conjunctsA, residualFilter);
+        if (rollup != null && rollup.kind == Kind.ROLLUP) {
+            return rollup;
+        }
+        if (!isStreamDerivable(a, b, residualFilter)) {
+            return rollup != null ? rollup : none(FIELDS);
+        }
+        if (a.getAggregation().getType() == AggregationType.RAW && !isRawDerivable(a, b, residualFilter)) {
+            return none(SIZE);
+        }
+        return new Derivation(Kind.STREAM, residualFilter, Collections.emptyMap(), null);
+    }
+
+    private static Derivation none(String reason) {
+        return new Derivation(Kind.NONE, null, Collections.emptyMap(), reason);
+    }
+
+    private static Derivation checkRollup(Query a, Query b, List<Expression> conjunctsA, Expression residualFilter) {
+        Aggregation aggregationA = a.getAggregation();
+        Aggregation aggregationB = b.getAggregation();
+        if (aggregationA.getType() != AggregationType.GROUP || aggregationB.getType() != AggregationType.GROUP ||
+            (a.getPostAggregations() != null && !a.getPostAggregations().isEmpty()) ||
+            !Objects.equals(Objects.toString(a.getWindow()), Objects.toString(b.getWindow())) || getDuration(a) != getDuration(b)) {
+            return null;
+        }
+        // The group fields of A by what they compute
+        Map<String, String> groupsA = new HashMap<>();
+        getFieldsToNames(aggregationA).forEach((field, name) -> groupsA.put(resolve(a, field), name));
+        Map<String, String> names = new LinkedHashMap<>();
+        for (Map.Entry<String, String> group : getFieldsToNames(aggregationB).entrySet()) {
+            String name = groupsA.get(resolve(b, group.getKey()));
+            if (name == null) {
+                return null;
+            }
+            names.put(group.getValue(), name);
+        }
+        for (GroupOperation operation : getOperations(aggregationB)) {
+            GroupOperation match = findOperation(a, getOperations(aggregationA), b, operation);
+            if (match == null) {
+                return null;
+            }
+            names.put(operation.getName(), match.getName());
+        }
+        Expression rewritten = null;
+        if (residualFilter != null) {
+            rewritten = rewrite(residualFilter, groupsA);
+            if (rewritten == null) {
+                return null;
+            }
+        }
+        if (!isGroupLimited(aggregationA.getSize(), groupsA.keySet(), conjunctsA)) {
+            return new Derivation(Kind.APPROXIMATE_ROLLUP, rewritten, names, TRUNCATION);
+        }
+        return new Derivation(Kind.ROLLUP, rewritten, names, null);
+    }
+
+    // Whether the filter of A limits its groups to no more than its size. Each group field must be one of a list of
+    // values, which also rules out the null group
+    private static boolean isGroupLimited(Integer size, Set<String> groups, List<Expression> conjunctsA) {
+        if (size == null) {
+            return false;
+        }
+        Map<String, Constraint> constraints = new HashMap<>();
+        getConstraints(conjunctsA).forEach((field, constraint) -> constraints.put(CompiledExpressionFormatter.format(field), constraint));
+        long count = 1L;
+        for (String group : groups) {
+            Constraint constraint = constraints.get(group);
+            if (constraint == null || constraint.values == null) {
+                return false;
+            }
+            count *= constraint.values.size();
+            if (count > size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A closes once it has collected as many records as its size, so B must read exactly the records of A and must close
+    // no later than A
+    private static boolean isRawDerivable(Query a, Query b, Expression residualFilter) {
+        return residualFilter == null && b.getAggregation().getType() == AggregationType.RAW &&
+               isWithinSize(b.getAggregation().getSize(), a.getAggregation().getSize());
+    }
+
+    // A missing size is the default size, which is only known once the query is configured, so it is only comparable
+    // to another missing size
+    private static boolean isWithinSize(Integer sizeB, Integer sizeA) {
+        if (sizeA == null || sizeB == null) {
+            return sizeA == null && sizeB == null;
+        }
+        return sizeB <= sizeA;
+    }
+
+    private static GroupOperation findOperation(Query a, Set<GroupOperation> operationsA, Query b, GroupOperation operation) {
+        if (!ROLLUP_OPERATIONS.contains(operation.getType())) {
+            return null;
+        }
+        String field = operation.getField() != null ? resolve(b, operation.getField()) : null;
+        for (GroupOperation candidate : operationsA) {
+            if (candidate.getType() == operation.getType() &&
+                Objects.equals(field, candidate.getField() != null ? resolve(a, candidate.getField()) : null)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // Replaces the subexpressions of the filter that A groups by with the fields that hold them in the results of A
+    private static Expression rewrite(Expression filter, Map<String, String> groupsA) {
+        Map<Expression, Expression> replacements = new HashMap<>();
+        Set<Expression> created = Collections.newSetFromMap(new IdentityHashMap<>());
+        visit(filter, expression -> {
+            String name = groupsA.get(CompiledExpressionFormatter.format(expression));
+            if (name != null && !replacements.containsKey(expression)) {
+                FieldExpression field = new FieldExpression(name);
+                field.setType(expression.getType());
+                replacements.put(expression, field);
+                created.add(field);
+            }
+        });
+        Expression rewritten = QueryTemplate.substitute(filter, replacements);
+        // Every field that is left must be one of the group fields of A
+        List<FieldExpression> fields = new ArrayList<>();
+        visit(rewritten, expression -> {
+            if (expression instanceof FieldExpression) {
+                fields.add((FieldExpression) expression);
+            }
+        });
+        return fields.stream().allMatch(created::contains) ? rewritten : null;
+    }
+
+    private static boolean isStreamDerivable(Query a, Query b, Expression residualFilter) {
+        Projection projectionA = a.getProjection();
+        Projection projectionB = b.getProjection();
+        boolean keepsRecords = projectionB.getType() != Projection.Type.NO_COPY;
+        // B emits the records it reads as they are, so A must not add or remove fields
+        if (keepsRecords && b.getAggregation().getType() == AggregationType.RAW && projectionA.getType() != Projection.Type.PASS_THROUGH) {
+            return false;
+        }
+        Set<String> fields = new HashSet<>();
+        Consumer<Expression> collector = expression -> {
+            if (expression instanceof FieldExpression) {
+                fields.add(((FieldExpression) expression).getField());
+            }
+        };
+        if (residualFilter != null) {
+            visit(residualFilter, collector);
+        }
+        Set<String> projected = new HashSet<>();
+        if (projectionB.getFields() != null) {
+            for (Field field : projectionB.getFields()) {
+                visit(field.getValue(), collector);
+                projected.add(field.getName());
+            }
+        }
+        if (keepsRecords) {
+            Aggregation aggregation = b.getAggregation();
+            List<String> aggregated = new ArrayList<>(getFieldsToNames(aggregation).keySet());
+            if (aggregation.getType() != AggregationType.GROUP && aggregation.getFields() != null) {
+                aggregated.addAll(aggregation.getFields());
+            }
+            getOperations(aggregation).stream().map(GroupOperation::getField).filter(Objects::nonNull).forEach(aggregated::add);
+            aggregated.stream().filter(field -> !projected.contains(field)).forEach(fields::add);
+        }
+        return fields.stream().allMatch(field -> isKept(projectionA, field));
+    }
+
+    private static boolean isKept(Projection projection, String name) {
+        if (projection.getType() == Projection.Type.PASS_THROUGH) {
+            return true;
+        }
+        Field field = projection.getFields().stream().filter(f -> f.getName().equals(name)).findFirst().orElse(null);
+        if (field == null) {
+            return projection.getType() == Projection.Type.COPY;
+        }
+        Expression value = field.getValue();
+        return value instanceof FieldExpression && ((FieldExpression) value).getField().equals(name) &&
+               ((FieldExpression) value).getKey() == null && ((FieldExpression) value).getSubKey() == null;
+    }
+
+    // What the field with the given name in the record that the aggregation of the query reads computes
+    private static String resolve(Query query, String name) {
+        List<Field> fields = query.getProjection().getFields();
+        if (fields != null) {
+            for (Field field : fields) {
+                if (field.getName().equals(name)) {
+                    return CompiledExpressionFormatter.format(field.getValue());
+                }
+            }
+        }
+        return name;
+    }
+
+    private static Map<String, String> getFieldsToNames(Aggregation aggregation) {
+        return aggregation instanceof GroupBy ? ((GroupBy) aggregation).getFieldsToNames() : Collections.emptyMap();
+    }
+
+    private static Set<GroupOperation> getOperations(Aggregation aggregation) {
+        if (aggregation instanceof GroupBy) {
+            return ((GroupBy) aggregation).getOperations();
+        }
+        return aggregation instanceof GroupAll ? ((GroupAll) aggregation).getOperations() : Collections.emptySet();
+    }
+
+    private static long getDuration(Query query) {
+        return query.getDuration() != null ? query.getDuration() : Long.MAX_VALUE;
+    }
+
+    private static boolean implies(List<Expression> conjunctsB, List<Expression> conjunctsA) {
+        Map<Expression, Constraint> constraintsB = getConstraints(conjunctsB);
+        for (Expression conjunct : conjunctsA) {
+            if (conjunctsB.contains(conjunct)) {
+                continue;
+            }
+            FieldExpression field = getConstrainedField(conjunct);
+            Constraint constraintB = field != null ? constraintsB.get(field) : null;
+            if (constraintB == null || !constraintB.isWithin(getConstraint(conjunct))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<Expression, Constraint> getConstraints(List<Expression> conjuncts) {
+        Map<Expression, Constraint> constraints = new HashMap<>();
+        for (Expression conjunct : conjuncts) {
+            FieldExpression field = getConstrainedField(conjunct);
+            if (field != null) {
+                constraints.computeIfAbsent(field, k -> new Constraint()).intersect(getConstraint(conjunct));
+            }
+        }
+        return constraints;
+    }
+
+    private static FieldExpression getConstrainedField(Expression conjunct) {
+        if (conjunct instanceof NAryExpression) {
+            NAryExpression nary = (NAryExpression) conjunct;
+            List<Expression> operands = nary.getOperands();
+            return nary.getOp() == Operation.BETWEEN && operands.get(0) instanceof FieldExpression &&
+                   isNumber(operands.get(1)) && isNumber(operands.get(2)) ? (FieldExpression) operands.get(0) : null;
+        }
+        if (!(conjunct instanceof BinaryExpression)) {
+            return null;
+        }
+        BinaryExpression binary = (BinaryExpression) conjunct;
+        Expression left = binary.getLeft();
+        Expression right = binary.getRight();
+        switch (binary.getOp()) {
+            case EQUALS:
+                if (left instanceof FieldExpression && isLiteral(right)) {
+                    return (FieldExpression) left;
+                }
+                return right instanceof FieldExpression && isLiteral(left) ? (FieldExpression) right : null;
+            case EQUALS_ANY:
+            case IN:
+                return left instanceof FieldExpression && isLiteralList(right) ? (FieldExpression) left : null;
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUALS:
+                if (left instanceof FieldExpression && isNumber(right)) {
+                    return (FieldExpression) left;
+                }
+                return right instanceof FieldExpression && isNumber(left) ? (FieldExpression) right : null;
+            default:
+                return null;
+        }
+    }
+
+    // Only called on conjuncts that getConstrainedField returns a field for
+    private static Constraint getConstraint(Expression conjunct) {
+        Constraint constraint = new Constraint();
+        if (conjunct instanceof NAryExpression) {
+            List<Expression> operands = ((NAryExpression) conjunct).getOperands();
+            constraint.lower = toDouble(operands.get(1));
+            constraint.upper = toDouble(operands.get(2));
+            return constraint;
+        }
+        BinaryExpression binary = (BinaryExpression) conjunct;
+        boolean flipped = !(binary.getLeft() instanceof FieldExpression);
+        Expression value = flipped ? binary.getLeft() : binary.getRight();
+        switch (binary.getOp()) {
+            case EQUALS:
+                constraint.values = new HashSet<>(Collections.singletonList(((ValueExpression) value).getValue()));
+                break;
+            case EQUALS_ANY:
+            case IN:
+                constraint.values = new HashSet<>(getLiterals(value));
+                break;
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUALS:
+                Operation op = binary.getOp();
+                boolean inclusive = op == Operation.GREATER_THAN_OR_EQUALS || op == Operation.LESS_THAN_OR_EQUALS;
+                boolean lower = op == Operation.GREATER_THAN || op == Operation.GREATER_THAN_OR_EQUALS;
+                if (lower != flipped) {
+                    constraint.lower = toDouble(value);
+                    constraint.lowerInclusive = inclusive;
+                } else {
+                    constraint.upper = toDouble(value);
+                    constraint.upperInclusive = inclusive;
+                }
+                break;
+            default:
+                break;
+        }
+        return constraint;
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof ValueExpression && Type.isPrimitive(expression.getType());
+    }
+
+    private static boolean isNumber(Expression expression) {
+        return expression instanceof ValueExpression && Type.isNumeric(expression.getType()) && !Double.isNaN(toDouble(expression));
+    }
+
+    private static boolean isLiteralList(Expression expression) {
+        if (expression instanceof ValueExpression) {
+            return Type.isPrimitiveList(expression.getType());
+        }
+        return expression instanceof ListExpression && ((ListExpression) expression).getValues().stream().allMatch(ContainmentChecker::isLiteral);
+    }
+
+    private static List<Serializable> getLiterals(Expression expression) {
+        List<Serializable> literals = new ArrayList<>();
+        if (expression instanceof ValueExpression) {
+            for (Object value : (List<?>) ((ValueExpression) expression).getValue()) {
+                literals.add((Serializable) value);
+            }
+        } else {
+            ((ListExpression) expression).getValues().forEach(value -> literals.add(((ValueExpression) value).getValue()));
+        }
+        return literals;
+    }
+
+    private static double toDouble(Expression expression) {
+        return ((Number) ((ValueExpression) expression).getValue()).doubleValue();
+    }
+
+    private static boolean isEqual(Serializable value, Serializable other) {
+        if (value instanceof Number && other instanceof Number) {
+            if (isIntegral(value) && isIntegral(other)) {
+                return ((Number) value).longValue() == ((Number) other).longValue();
+            }
+            return Double.compare(((Number) value).doubleValue(), ((Number) other).doubleValue()) == 0;
+        }
+        return Objects.equals(value, other);
+    }
+
+    private static boolean isIntegral(Serializable value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static List<Expression> getConjuncts(Expression filter) {
+        List<Expression> conjuncts = new ArrayList<>();
+        if (filter != null) {
+            addConjuncts(filter, conjuncts);
+        }
+        return conjuncts;
+    }
+
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOp() == Operation.AND) {
+            addConjuncts(((BinaryExpression) expression).getLeft(), conjuncts);
+            addConjuncts(((BinaryExpression) expression).getRight(), conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+
+    private static Expression and(List<Expression> conjuncts) {
+        Expression result = null;
+        for (Expression conjunct : conjuncts) {
+            if (result == null) {
+                result = conjunct;
+            } else {
+                result = new BinaryExpression(result, conjunct, Operation.AND);
+                result.setType(Type.BOOLEAN);
+            }
+        }
+        return result;
+    }
+
+    private static void visit(Expression expression, Consumer<Expression> consumer) {
+        consumer.accept(expression);
+        if (expression instanceof UnaryExpression) {
+            visit(((UnaryExpression) expression).getOperand(), consumer);
+        } else if (expression instanceof BinaryExpression) {
+            visit(((BinaryExpression) expression).getLeft(), consumer);
+            visit(((BinaryExpression) expression).getRight(), consumer);
+        } else if (expression instanceof NAryExpression) {
+            ((NAryExpression) expression).getOperands().forEach(operand -> visit(operand, consumer));
+        } else if (expression instanceof ListExpression) {
+            ((ListExpression) expression).getValues().forEach(value -> visit(value, consumer));
+        } else if (expression instanceof CastExpression) {
+            visit(((CastExpression) expression).getValue(), consumer);
+        }
+    }
+}
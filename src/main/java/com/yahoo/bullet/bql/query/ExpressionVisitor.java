@@ -14,16 +14,19 @@ import com.yahoo.bullet.bql.tree.DistributionNode;
 import com.yahoo.bullet.bql.tree.ExpressionNode;
 import com.yahoo.bullet.bql.tree.FieldExpressionNode;
 import com.yahoo.bullet.bql.tree.GroupOperationNode;
+import com.yahoo.bullet.bql.tree.LikePredicateNode;
 import com.yahoo.bullet.bql.tree.ListExpressionNode;
 import com.yahoo.bullet.bql.tree.LiteralNode;
 import com.yahoo.bullet.bql.tree.NAryExpressionNode;
 import com.yahoo.bullet.bql.tree.Node;
 import com.yahoo.bullet.bql.tree.NullPredicateNode;
+import com.yahoo.bullet.bql.tree.ParameterNode;
 import com.yahoo.bullet.bql.tree.ParenthesesExpressionNode;
 import com.yahoo.bullet.bql.tree.SubFieldExpressionNode;
 import com.yahoo.bullet.bql.tree.TableFunctionNode;
 import com.yahoo.bullet.bql.tree.TopKNode;
 import com.yahoo.bullet.bql.tree.UnaryExpressionNode;
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
 import com.yahoo.bullet.common.BulletError;
 import com.yahoo.bullet.query.expressions.BinaryExpression;
 import com.yahoo.bullet.query.expressions.CastExpression;
@@ -36,21 +39,41 @@ import com.yahoo.bullet.query.expressions.UnaryExpression;
 import com.yahoo.bullet.query.expressions.ValueExpression;
 import com.yahoo.bullet.typesystem.Schema;
 import com.yahoo.bullet.typesystem.Type;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static com.yahoo.bullet.bql.query.TypeSetter.setType;
 
 @RequiredArgsConstructor
 public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, LayeredSchema> {
+    private static final Map<Type, Serializable> PLACEHOLDER_VALUES = new EnumMap<>(Type.class);
+
+    static {
+        PLACEHOLDER_VALUES.put(Type.BOOLEAN, false);
+        PLACEHOLDER_VALUES.put(Type.INTEGER, 0);
+        PLACEHOLDER_VALUES.put(Type.LONG, 0L);
+        PLACEHOLDER_VALUES.put(Type.FLOAT, 0.0f);
+        PLACEHOLDER_VALUES.put(Type.DOUBLE, 0.0);
+        PLACEHOLDER_VALUES.put(Type.STRING, "");
+    }
+
     private final List<BulletError> errors;
+    private final List<String> rewrites;
     private Map<Node, Expression> mapping = new HashMap<>();
+    // Checked for every processed node if set
+    @Setter(AccessLevel.PACKAGE)
+    private CompilationDeadline deadline;
 
     @Override
     public Expression process(Node node) {
@@ -62,6 +85,9 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
         if (node == null) {
             return null;
         }
+        if (deadline != null) {
+            deadline.check();
+        }
         Expression expression = mapping.get(node);
         if (expression != null) {
             return expression;
@@ -132,6 +158,16 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
         return listExpression;
     }
 
+    private Expression visitListExpression(ListExpressionNode node, Type type, LayeredSchema layeredSchema) {
+        Type subType = type.getSubType();
+        List<Expression> expressions = node.getExpressions().stream().map(expression -> processOperand(expression, subType, layeredSchema))
+                                                                     .collect(Collectors.toCollection(ArrayList::new));
+        ListExpression listExpression = new ListExpression(expressions);
+        setType(node, listExpression, errors);
+        mapping.put(node, listExpression);
+        return listExpression;
+    }
+
     @Override
     protected Expression visitNullPredicate(NullPredicateNode node, LayeredSchema layeredSchema) {
         Expression operand = process(node.getExpression(), layeredSchema);
@@ -144,9 +180,18 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
 
     @Override
     protected Expression visitBetweenPredicate(BetweenPredicateNode node, LayeredSchema layeredSchema) {
-        Expression value = process(node.getExpression(), layeredSchema);
-        Expression lower = process(node.getLower(), layeredSchema);
-        Expression upper = process(node.getUpper(), layeredSchema);
+        Expression value;
+        Expression lower;
+        Expression upper;
+        if (node.getExpression() instanceof ParameterNode) {
+            lower = process(node.getLower(), layeredSchema);
+            upper = processOperand(node.getUpper(), lower.getType(), layeredSchema);
+            value = processOperand(node.getExpression(), Type.isUnknown(lower.getType()) ? upper.getType() : lower.getType(), layeredSchema);
+        } else {
+            value = process(node.getExpression(), layeredSchema);
+            lower = processOperand(node.getLower(), value.getType(), layeredSchema);
+            upper = processOperand(node.getUpper(), value.getType(), layeredSchema);
+        }
         NAryExpression expression;
         if (node.isNot()) {
             expression = new NAryExpression(Arrays.asList(value, lower, upper), Operation.NOT_BETWEEN);
@@ -158,9 +203,27 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
         return expression;
     }
 
+    @Override
+    protected Expression visitLikePredicate(LikePredicateNode node, LayeredSchema layeredSchema) {
+        Expression value = processOperand(node.getExpression(), Type.STRING, layeredSchema);
+        // The patterns are compiled based on their values so they cannot be parameters
+        Expression pattern = process(node.getPattern(), layeredSchema);
+        Optional<List<BulletError>> likeErrors = TypeChecker.validateLikeType(node, value, pattern);
+        Expression expression;
+        if (likeErrors.isPresent() && !likeErrors.get().isEmpty()) {
+            errors.addAll(likeErrors.get());
+            expression = new BinaryExpression(value, pattern, node.isAny() ? Operation.REGEX_LIKE_ANY : Operation.REGEX_LIKE);
+            expression.setType(Type.BOOLEAN);
+        } else {
+            expression = PatternAnalyzer.compileLike(value, PatternAnalyzer.getLiteralPatterns(pattern), node.isAny(), node.isNot());
+        }
+        mapping.put(node, expression);
+        return expression;
+    }
+
     @Override
     protected Expression visitUnaryExpression(UnaryExpressionNode node, LayeredSchema layeredSchema) {
-        Expression operand = process(node.getExpression(), layeredSchema);
+        Expression operand = processOperand(node.getExpression(), node.getOp() == Operation.NOT ? Type.BOOLEAN : null, layeredSchema);
         UnaryExpression expression = new UnaryExpression(operand, node.getOp());
         setType(node, expression, errors);
         mapping.put(node, expression);
@@ -226,10 +289,26 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
 
     @Override
     protected Expression visitBinaryExpression(BinaryExpressionNode node, LayeredSchema layeredSchema) {
-        Expression left = process(node.getLeft(), layeredSchema);
-        Expression right = process(node.getRight(), layeredSchema);
-        BinaryExpression expression = new BinaryExpression(left, right, node.getOp());
-        setType(node, expression, errors);
+        Operation op = node.getOp();
+        Expression left;
+        Expression right;
+        if (node.getLeft() instanceof ParameterNode && !(node.getRight() instanceof ParameterNode)) {
+            right = process(node.getRight(), layeredSchema);
+            left = processOperand(node.getLeft(), getOperandType(op, right.getType(), true), layeredSchema);
+        } else {
+            left = processOperand(node.getLeft(), getOperandType(op, null, true), layeredSchema);
+            right = processOperand(node.getRight(), getOperandType(op, left.getType(), false), layeredSchema);
+        }
+        BinaryExpression binaryExpression = new BinaryExpression(left, right, node.getOp());
+        int errorCount = errors.size();
+        setType(node, binaryExpression, errors);
+        Expression expression = binaryExpression;
+        if (errors.size() == errorCount) {
+            expression = PatternAnalyzer.rewrite(binaryExpression);
+            if (expression != binaryExpression) {
+                addRewrite("Rewrote " + CompiledExpressionFormatter.format(binaryExpression) + " into " + CompiledExpressionFormatter.format(expression) + ".");
+            }
+        }
         mapping.put(node, expression);
         return expression;
     }
@@ -248,7 +327,129 @@ public class ExpressionVisitor extends DefaultTraversalVisitor<Expression, Layer
         return expression;
     }
 
+    @Override
+    protected Expression visitParameter(ParameterNode node, LayeredSchema layeredSchema) {
+        // Only reached when the parameter is not used where its type can be inferred
+        errors.add(QueryError.PARAMETER_TYPE_NOT_INFERRED.format(node.getLocation(), node));
+        ValueExpression expression = new ValueExpression(null);
+        expression.setType(Type.UNKNOWN);
+        return expression;
+    }
+
+    // If the operand is a parameter, or a list with parameters, the parameters take the type that the operand is expected to have
+    private Expression processOperand(ExpressionNode node, Type type, LayeredSchema layeredSchema) {
+        if (node instanceof ParameterNode) {
+            return processParameter((ParameterNode) node, type, layeredSchema);
+        }
+        if (node instanceof ListExpressionNode && isPrimitiveList(type) && !mapping.containsKey(node) &&
+            ((ListExpressionNode) node).getExpressions().stream().anyMatch(ParameterNode.class::isInstance)) {
+            return visitListExpression((ListExpressionNode) node, type, layeredSchema);
+        }
+        return process(node, layeredSchema);
+    }
+
+    private Expression processParameter(ParameterNode node, Type type, LayeredSchema layeredSchema) {
+        Expression expression = mapping.get(node);
+        if (expression != null) {
+            if (type != null && !Type.isUnknown(type) && expression.getType() != type) {
+                errors.add(QueryError.PARAMETER_TYPE_CONFLICT.format(node.getLocation(), node, expression.getType(), type));
+            }
+            return expression;
+        }
+        if (!Type.isPrimitive(type) && !isPrimitiveList(type)) {
+            return visitParameter(node, layeredSchema);
+        }
+        expression = placeholder(type);
+        mapping.put(node, expression);
+        return expression;
+    }
+
+    private static Expression placeholder(Type type) {
+        Expression expression;
+        if (Type.isList(type)) {
+            expression = new ListExpression(new ArrayList<>());
+        } else {
+            expression = new ValueExpression(PLACEHOLDER_VALUES.get(type));
+        }
+        expression.setType(type);
+        return expression;
+    }
+
+    private static Type getOperandType(Operation op, Type other, boolean left) {
+        switch (op) {
+            case AND:
+            case OR:
+            case XOR:
+                return Type.BOOLEAN;
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQUALS:
+            case NOT_EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUALS:
+                return other;
+            case EQUALS_ANY:
+            case EQUALS_ALL:
+            case NOT_EQUALS_ANY:
+            case NOT_EQUALS_ALL:
+            case GREATER_THAN_ANY:
+            case GREATER_THAN_ALL:
+            case GREATER_THAN_OR_EQUALS_ANY:
+            case GREATER_THAN_OR_EQUALS_ALL:
+            case LESS_THAN_ANY:
+            case LESS_THAN_ALL:
+            case LESS_THAN_OR_EQUALS_ANY:
+            case LESS_THAN_OR_EQUALS_ALL:
+            case IN:
+            case NOT_IN:
+                return left ? getSubType(other) : getListType(other);
+            case REGEX_LIKE:
+            case REGEX_LIKE_ANY:
+            case NOT_REGEX_LIKE:
+            case NOT_REGEX_LIKE_ANY:
+                // The patterns are compiled based on their values so they cannot be parameters
+                return left ? Type.STRING : null;
+            case SIZE_IS:
+                return left ? null : Type.INTEGER;
+            case CONTAINS_KEY:
+                return left ? null : Type.STRING;
+            case CONTAINS_VALUE:
+                return left ? null : getSubType(other);
+            default:
+                return null;
+        }
+    }
+
+    private static Type getSubType(Type type) {
+        return type != null && (Type.isList(type) || Type.isMap(type)) ? type.getSubType() : null;
+    }
+
+    private static Type getListType(Type type) {
+        return Type.PRIMITIVE_LISTS.stream().filter(listType -> listType.getSubType() == type).findFirst().orElse(null);
+    }
+
+    private static boolean isPrimitiveList(Type type) {
+        return type != null && Type.isPrimitiveList(type);
+    }
+
+    private void addRewrite(String rewrite) {
+        // The same node is visited again after a schema layer is added
+        if (!rewrites.contains(rewrite)) {
+            rewrites.add(rewrite);
+        }
+    }
+
     void resetMapping() {
-        mapping.clear();
+        // A new map is created since the builder keeps the map of the WHERE clause
+        mapping = new HashMap<>();
+    }
+
+    Map<Node, Expression> getMapping() {
+        return mapping;
     }
 }
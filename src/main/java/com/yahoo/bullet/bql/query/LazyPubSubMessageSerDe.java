@@ -5,13 +5,28 @@
  */
 package com.yahoo.bullet.bql.query;
 
+import com.yahoo.bullet.bql.BQLConfig;
 import com.yahoo.bullet.bql.BQLResult;
 import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.metrics.CompilerListener;
+import com.yahoo.bullet.bql.util.LRUCache;
 import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.SerializerDeserializer;
 import com.yahoo.bullet.pubsub.Metadata;
 import com.yahoo.bullet.pubsub.PubSubMessage;
 import com.yahoo.bullet.pubsub.PubSubMessageSerDe;
 import com.yahoo.bullet.query.Query;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * This {@link PubSubMessageSerDe} is to be used to create a {@link PubSubMessage} for a query without actually creating
@@ -24,11 +39,23 @@ import com.yahoo.bullet.query.Query;
  * string is converted back to a {@link Query} using the {@link #toQuery(String)} method and configured with the
  * provided {@link BulletConfig}.
  *
+ * The payload may also be the UTF-8 encoded query as a byte array, in which case it is converted with
+ * {@link #toQuery(byte[])} and the query string in the {@link Metadata} is only decoded when it is read. By default,
+ * the BQL is lexed directly from the bytes, unless a subclass overrides {@link #toQuery(String)} and not
+ * {@link #toQuery(byte[])}, in which case the bytes are decoded and passed to {@link #toQuery(String)} instead. The
+ * {@link PubSubMessage} is reused and a plain {@link Metadata} is rewritten in place instead of being copied.
+ *
  * The {@link #toMessage(PubSubMessage)} does nothing by default, so you can safely use it for sending signals and other
  * messages or even regular query {@link PubSubMessage}! Do note that this SerDe identifies its lazy Query messages by
  * placing a {@link Metadata.Signal#CUSTOM} in its metadata. This is what it uses to process its messages in the
  * {@link #fromMessage(PubSubMessage)}. You will want to not send other messages with that signal.
  *
+ * The configured {@link Query} objects are cached by their query string in a bounded cache of size
+ * {@link BQLConfig#BQL_QUERY_CACHE_SIZE}. The cache is shared by all the instances of this SerDe in the JVM that have
+ * the same settings, so the same query sent to many of them is only compiled once. Only the caches of the most recently
+ * created settings are kept for sharing. Queries are cached in their {@link QueryCodec} encoding and every message
+ * gets its own decoded copy, so the {@link Query} in a message can be modified without affecting other messages.
+ *
  * Note, it is essential that the BQL query provided be valid if using the default BQL conversion in
  * {@link #toQuery(String)}! Otherwise, {@link #fromMessage(PubSubMessage)} will throw a {@link RuntimeException} when
  * it cannot create a {@link Query} object from the BQL query string.
@@ -36,7 +63,16 @@ import com.yahoo.bullet.query.Query;
 public class LazyPubSubMessageSerDe extends PubSubMessageSerDe {
     private static final long serialVersionUID = -6866473821452218792L;
 
-    private BulletQueryBuilder queryBuilder;
+    // The number of distinct settings that keep a cache shared by the instances with those settings
+    private static final int MAX_SHARED_CACHES = 16;
+    // Shared by all the instances of a class in the JVM that have the same settings
+    private static final LRUCache<List<Object>, LRUCache<Object, CachedQuery>> CACHES = new LRUCache<>(MAX_SHARED_CACHES);
+
+    protected BulletQueryBuilder queryBuilder;
+    @Getter(AccessLevel.PACKAGE)
+    private transient LRUCache<Object, CachedQuery> cache;
+    // Whether a subclass converts query strings with its own toQuery(String)
+    private transient boolean convertsStrings;
 
     /**
      * Constructor.
@@ -46,6 +82,8 @@ public class LazyPubSubMessageSerDe extends PubSubMessageSerDe {
     public LazyPubSubMessageSerDe(BulletConfig config) {
         super(config);
         queryBuilder = new BulletQueryBuilder(config);
+        cache = getSharedCache(getClass(), config);
+        convertsStrings = overridesToQuery(getClass());
     }
 
     @Override
@@ -63,31 +101,257 @@ public class LazyPubSubMessageSerDe extends PubSubMessageSerDe {
         if (!message.hasSignal(Metadata.Signal.CUSTOM)) {
             return message;
         }
-        String queryString = message.getContentAsString();
-        Query query = toQuery(queryString);
+        Serializable content = message.getContent();
         Metadata original = message.getMetadata();
-        // Need to copy it if it's a custom Metadata with other fields besides the standard metadata fields
-        Metadata meta = original.copy();
-        meta.setSignal(null);
-        meta.setContent(queryString);
-        meta.setCreated(original.getCreated());
-        return new PubSubMessage(message.getId(), query, meta);
+        Metadata meta;
+        Query query;
+        if (content instanceof byte[]) {
+            byte[] payload = (byte[]) content;
+            query = getQuery(payload);
+            meta = isPlain(original) ? new PayloadMetadata(payload, original.getCreated()) : copy(original, new String(payload, PubSubMessage.CHARSET));
+        } else {
+            String queryString = (String) content;
+            query = getQuery(queryString);
+            meta = toMetadata(original, queryString);
+        }
+        message.setContent(query);
+        message.setMetadata(meta);
+        return message;
     }
 
     /**
-     * Convert the given String query back to a {@link Query} object. Override if you stored something else instead of
-     * BQL.
+     * Convert the given String query back to a configured {@link Query} object. Override if you stored something else
+     * instead of BQL.
      *
      * @param queryString The query.
      * @return A valid {@link Query} object.
      */
     protected Query toQuery(String queryString) {
-        BQLResult result = queryBuilder.buildQuery(queryString);
+        return toQuery(queryBuilder.buildQuery(queryString));
+    }
+
+    /**
+     * Convert the given UTF-8 encoded query payload back to a configured {@link Query} object. The BQL is lexed without
+     * converting it to a String unless {@link #toQuery(String)} is overridden, in which case the payload is decoded and
+     * passed to it. Override if you stored something else instead of BQL.
+     *
+     * @param payload The UTF-8 encoded query.
+     * @return A valid {@link Query} object.
+     */
+    protected Query toQuery(byte[] payload) {
+        if (convertsStrings) {
+            return toQuery(new String(payload, PubSubMessage.CHARSET));
+        }
+        return toQuery(queryBuilder.buildQueryFromBytes(payload));
+    }
+
+    private static Query toQuery(BQLResult result) {
         if (result.hasErrors()) {
             throw new RuntimeException("The SerDe does not handle invalid BQL!");
         }
-        Query query = result.getQuery();
-        query.configure(config);
+        // The builder already configured the query with the same config
+        return result.getQuery();
+    }
+
+    /**
+     * Gets a copy of the configured {@link Query} for the given query string from the cache or converts it with
+     * {@link #toQuery(String)} and caches it.
+     *
+     * @param queryString The query.
+     * @return A valid {@link Query} object that is not shared with other messages.
+     */
+    protected Query getQuery(String queryString) {
+        CachedQuery cached = cache.get(queryString);
+        if (cached != null) {
+            return cached.copy(config);
+        }
+        Query query = toQuery(queryString);
+        cache.putIfAbsent(queryString, CachedQuery.of(query));
         return query;
     }
+
+    private Query getQuery(byte[] payload) {
+        ByteBuffer key = ByteBuffer.wrap(payload);
+        CachedQuery cached = cache.get(key);
+        if (cached != null) {
+            return cached.copy(config);
+        }
+        Query query = toQuery(payload);
+        // The key is copied so that the cache does not hold on to a buffer that the PubSub might reuse
+        cache.putIfAbsent(ByteBuffer.wrap(payload.clone()), CachedQuery.of(query));
+        return query;
+    }
+
+    /**
+     * Rewrites the {@link Metadata} of a query message to hold the query string instead of the signal. A plain
+     * {@link Metadata} is rewritten in place while subclasses are copied so that their other fields are kept.
+     *
+     * @param original The {@link Metadata} of the query message.
+     * @param queryString The query string to set as the content.
+     * @return The rewritten {@link Metadata}.
+     */
+    protected static Metadata toMetadata(Metadata original, String queryString) {
+        if (!isPlain(original)) {
+            return copy(original, queryString);
+        }
+        original.setSignal(null);
+        original.setContent(queryString);
+        return original;
+    }
+
+    private static boolean isPlain(Metadata metadata) {
+        return metadata.getClass() == Metadata.class;
+    }
+
+    private static Metadata copy(Metadata original, String queryString) {
+        // Need to copy it if it's a custom Metadata with other fields besides the standard metadata fields
+        Metadata meta = original.copy();
+        meta.setSignal(null);
+        meta.setContent(queryString);
+        meta.setCreated(original.getCreated());
+        return meta;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cache = getSharedCache(getClass(), config);
+        convertsStrings = overridesToQuery(getClass());
+    }
+
+    // Whether a subclass overrides toQuery(String) without also overriding toQuery(byte[])
+    private static boolean overridesToQuery(Class<?> serDeClass) {
+        return declares(serDeClass, String.class) && !declares(serDeClass, byte[].class);
+    }
+
+    private static boolean declares(Class<?> serDeClass, Class<?> parameter) {
+        for (Class<?> type = serDeClass; type != LazyPubSubMessageSerDe.class; type = type.getSuperclass()) {
+            try {
+                type.getDeclaredMethod("toQuery", parameter);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+                // Look in the superclass
+            }
+        }
+        return false;
+    }
+
+    private static LRUCache<Object, CachedQuery> getSharedCache(Class<?> serDeClass, BulletConfig config) {
+        BQLConfig bqlConfig = new BQLConfig(config);
+        List<Object> key = Arrays.asList(serDeClass, new HashMap<>(bqlConfig.getAll(Optional.empty())));
+        LRUCache<Object, CachedQuery> cache = CACHES.get(key);
+        if (cache != null) {
+            return cache;
+        }
+        return CACHES.putIfAbsent(key, new LRUCache<>(CompilerListener.QUERY_CACHE, bqlConfig.getAs(BQLConfig.BQL_QUERY_CACHE_SIZE, Integer.class)));
+    }
+
+    /**
+     * A cached {@link Query} that is stored encoded so that every message gets its own copy. Queries that cannot be
+     * encoded with {@link QueryCodec} are stored with Java serialization instead.
+     */
+    static final class CachedQuery {
+        private final byte[] bytes;
+        private final boolean encoded;
+
+        private CachedQuery(byte[] bytes, boolean encoded) {
+            this.bytes = bytes;
+            this.encoded = encoded;
+        }
+
+        /**
+         * Creates a {@link CachedQuery} for the given configured {@link Query}.
+         *
+         * @param query The configured {@link Query} to cache.
+         * @return The {@link CachedQuery}.
+         */
+        static CachedQuery of(Query query) {
+            try {
+                return new CachedQuery(QueryCodec.encode(query), true);
+            } catch (IllegalArgumentException e) {
+                return new CachedQuery(SerializerDeserializer.toBytes(query), false);
+            }
+        }
+
+        /**
+         * Creates a {@link CachedQuery} for a configured {@link Query} that is already encoded with {@link QueryCodec}.
+         *
+         * @param plan The encoded {@link Query}, which must not be modified afterwards.
+         * @return The {@link CachedQuery}.
+         */
+        static CachedQuery ofPlan(byte[] plan) {
+            return new CachedQuery(plan, true);
+        }
+
+        /**
+         * Creates a new copy of the cached {@link Query}.
+         *
+         * @param config The {@link BulletConfig} that the cached {@link Query} was configured with.
+         * @return A new configured {@link Query}.
+         */
+        Query copy(BulletConfig config) {
+            Query query = decode();
+            if (encoded) {
+                query.configure(config);
+            }
+            return query;
+        }
+
+        /**
+         * Creates a new copy of the cached {@link Query} as it was cached. Unlike {@link #copy(BulletConfig)}, a query
+         * that was encoded with {@link QueryCodec} is not configured.
+         *
+         * @return A new {@link Query}.
+         */
+        Query decode() {
+            return encoded ? QueryCodec.decode(bytes) : SerializerDeserializer.fromBytes(bytes);
+        }
+    }
+
+    /**
+     * The {@link Metadata} for a query sent as a UTF-8 payload. The query string is only decoded from a copy of the
+     * payload when the content is read, so the PubSub can reuse the payload buffer. It is serialized as a plain
+     * {@link Metadata}.
+     */
+    private static class PayloadMetadata extends Metadata {
+        private static final long serialVersionUID = 3129264640537213917L;
+
+        private volatile byte[] payload;
+
+        private PayloadMetadata(byte[] payload, long created) {
+            this.payload = payload.clone();
+            setCreated(created);
+        }
+
+        @Override
+        public Serializable getContent() {
+            byte[] bytes = payload;
+            if (bytes != null) {
+                super.setContent(new String(bytes, PubSubMessage.CHARSET));
+                payload = null;
+            }
+            return super.getContent();
+        }
+
+        @Override
+        public void setContent(Serializable content) {
+            payload = null;
+            super.setContent(content);
+        }
+
+        @Override
+        public boolean hasContent() {
+            return payload != null || super.hasContent();
+        }
+
+        @Override
+        public Metadata copy() {
+            Metadata meta = new Metadata(getSignal(), getContent());
+            meta.setCreated(getCreated());
+            return meta;
+        }
+
+        private Object writeReplace() {
+            return copy();
+        }
+    }
 }
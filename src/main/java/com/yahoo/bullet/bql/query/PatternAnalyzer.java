@@ -0,0 +1,513 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.typesystem.Type;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Analyzes the literal patterns of RLIKE and RLIKE ANY at build time. Patterns are compiled once to reject invalid ones,
+ * checked for nested unbounded quantifiers that can backtrack catastrophically and classified so that trivial patterns
+ * can be rewritten into cheaper string operations.
+ *
+ * RLIKE matches the entire value, so anchors at the ends of a pattern have no effect. A leading {@code (?s)} flag is
+ * allowed. Since {@code .} does not match line terminators without it, prefix and suffix patterns are only rewritten if
+ * the pattern starts with {@code (?s)}, where a leading or trailing {@code .*} matches any prefix or suffix of the value.
+ *
+ * LIKE patterns, where {@code %} matches any sequence of characters, {@code _} matches any single character and a
+ * backslash escapes the next character, are compiled the same way. Patterns that are not exact, prefix or suffix
+ * matches fall back to an equivalent regex.
+ */
+public class PatternAnalyzer {
+    /**
+     * The shape of a pattern.
+     */
+    public enum Shape {
+        // The pattern matches a single literal value
+        EXACT,
+        // The pattern is a literal followed by .*
+        PREFIX,
+        // The pattern is .* followed by a literal
+        SUFFIX,
+        // The pattern is a literal surrounded by .*
+        CONTAINS,
+        // Anything else
+        REGEX
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Analysis {
+        private final Shape shape;
+        private final String literal;
+    }
+
+    private static final Analysis REGEX = new Analysis(Shape.REGEX, null);
+    private static final String WILDCARD = ".*";
+    private static final String METACHARACTERS = ".[]{}()*+?^$|";
+    private static final char LIKE_ANY_SEQUENCE = '%';
+    private static final char LIKE_ANY_CHARACTER = '_';
+    private static final char LIKE_ESCAPE = '\\';
+    private static final String DOTALL = "(?s)";
+
+    /**
+     * Compiles the given pattern.
+     *
+     * @param pattern The pattern to compile.
+     * @return The compiled {@link Pattern}.
+     * @throws PatternSyntaxException if the pattern is not a valid regular expression.
+     */
+    public static Pattern compile(String pattern) {
+        return Pattern.compile(pattern);
+    }
+
+    /**
+     * Classifies the given pattern. The pattern is assumed to be valid. A leading {@code (?s)} flag is ignored.
+     *
+     * @param pattern The pattern to classify.
+     * @return An {@link Analysis} with the {@link Shape} of the pattern and its literal part if it has one.
+     */
+    public static Analysis analyze(String pattern) {
+        String body = pattern;
+        if (body.startsWith(DOTALL)) {
+            body = body.substring(DOTALL.length());
+        }
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$") && !isEscaped(body, body.length() - 1)) {
+            body = body.substring(0, body.length() - 1);
+        }
+        boolean leading = body.startsWith(WILDCARD);
+        if (leading) {
+            body = body.substring(WILDCARD.length());
+        }
+        boolean trailing = body.endsWith(WILDCARD) && !isEscaped(body, body.length() - WILDCARD.length());
+        if (trailing) {
+            body = body.substring(0, body.length() - WILDCARD.length());
+        }
+        String literal = unescape(body);
+        if (literal == null || literal.isEmpty() && (leading || trailing)) {
+            return REGEX;
+        }
+        if (leading && trailing) {
+            return new Analysis(Shape.CONTAINS, literal);
+        } else if (leading) {
+            return new Analysis(Shape.SUFFIX, literal);
+        } else if (trailing) {
+            return new Analysis(Shape.PREFIX, literal);
+        }
+        return new Analysis(Shape.EXACT, literal);
+    }
+
+    /**
+     * Checks if the given pattern has an unbounded quantifier applied to a group that itself contains an unbounded
+     * quantifier, such as {@code (a+)+} or {@code (.*)*}. These can take exponential time on values that do not match.
+     *
+     * @param pattern The pattern to check.
+     * @return True if the pattern is prone to catastrophic backtracking.
+     */
+    public static boolean isBacktrackingProne(String pattern) {
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        boolean[] current = {false};
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(pattern, i);
+            } else if (c == '[') {
+                i = skipClass(pattern, i);
+            } else if (c == '(') {
+                groups.push(current);
+                current = new boolean[] {false};
+                i++;
+            } else if (c == ')') {
+                boolean inner = current[0];
+                if (!groups.isEmpty()) {
+                    current = groups.pop();
+                }
+                i++;
+                int quantifier = unboundedQuantifierLength(pattern, i);
+                if (quantifier > 0) {
+                    if (inner) {
+                        return true;
+                    }
+                    i += quantifier;
+                }
+                current[0] |= inner || quantifier > 0;
+            } else {
+                int quantifier = unboundedQuantifierLength(pattern, i);
+                if (quantifier > 0) {
+                    current[0] = true;
+                    i += quantifier;
+                } else {
+                    i++;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites a type-checked RLIKE, NOT RLIKE, RLIKE ANY or NOT RLIKE ANY with literal patterns into a cheaper
+     * equivalent if there is one. Exact patterns become equality checks and prefix or suffix patterns that start with
+     * {@code (?s)} become a SUBSTRING equality check. Without the flag, the {@code .*} does not match line terminators
+     * so they are left as regexes. There is no cheaper operation for contains patterns so they are left as regexes.
+     *
+     * @param expression The {@link BinaryExpression} to rewrite.
+     * @return The rewritten {@link Expression} or the given expression if it cannot be rewritten.
+     */
+    public static Expression rewrite(BinaryExpression expression) {
+        Operation op = expression.getOp();
+        Expression right = expression.getRight();
+        switch (op) {
+            case REGEX_LIKE:
+            case NOT_REGEX_LIKE:
+                if (!isStringValue(right)) {
+                    return expression;
+                }
+                return rewrite(expression, (String) ((ValueExpression) right).getValue(), op == Operation.NOT_REGEX_LIKE);
+            case REGEX_LIKE_ANY:
+            case NOT_REGEX_LIKE_ANY:
+                if (!(right instanceof ListExpression)) {
+                    return expression;
+                }
+                List<Expression> values = new ArrayList<>();
+                for (Expression pattern : ((ListExpression) right).getValues()) {
+                    if (!isStringValue(pattern)) {
+                        return expression;
+                    }
+                    Analysis analysis = analyze((String) ((ValueExpression) pattern).getValue());
+                    if (analysis.getShape() != Shape.EXACT) {
+                        return expression;
+                    }
+                    values.add(new ValueExpression(analysis.getLiteral()));
+                }
+                return binary(expression.getLeft(), stringList(values), op == Operation.REGEX_LIKE_ANY ? Operation.EQUALS_ANY : Operation.NOT_IN);
+            default:
+                return expression;
+        }
+    }
+
+    private static Expression rewrite(BinaryExpression expression, String pattern, boolean not) {
+        Analysis analysis = analyze(pattern);
+        if (analysis.getShape() != Shape.EXACT && !pattern.startsWith(DOTALL)) {
+            return expression;
+        }
+        Expression rewritten = specialize(expression.getLeft(), analysis, not);
+        return rewritten != null ? rewritten : expression;
+    }
+
+    /**
+     * Classifies the given LIKE pattern.
+     *
+     * @param pattern The LIKE pattern to classify.
+     * @return An {@link Analysis} with the {@link Shape} of the pattern and its literal part if it has one.
+     */
+    public static Analysis analyzeLike(String pattern) {
+        StringBuilder literal = new StringBuilder();
+        boolean leading = false;
+        boolean trailing = false;
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c == LIKE_ANY_CHARACTER) {
+                return REGEX;
+            } else if (c == LIKE_ANY_SEQUENCE) {
+                if (trailing) {
+                    continue;
+                }
+                if (literal.length() == 0) {
+                    leading = true;
+                } else {
+                    trailing = true;
+                }
+            } else if (trailing) {
+                // A literal after a % that follows a literal
+                return REGEX;
+            } else {
+                if (c == LIKE_ESCAPE && i + 1 < length) {
+                    c = pattern.charAt(++i);
+                }
+                literal.append(c);
+            }
+        }
+        if (literal.length() == 0 && (leading || trailing)) {
+            return REGEX;
+        }
+        if (leading && trailing) {
+            return new Analysis(Shape.CONTAINS, literal.toString());
+        } else if (leading) {
+            return new Analysis(Shape.SUFFIX, literal.toString());
+        } else if (trailing) {
+            return new Analysis(Shape.PREFIX, literal.toString());
+        }
+        return new Analysis(Shape.EXACT, literal.toString());
+    }
+
+    /**
+     * Translates the given LIKE pattern into an equivalent regex for RLIKE.
+     *
+     * @param pattern The LIKE pattern to translate.
+     * @return The equivalent regex.
+     */
+    public static String likeToRegex(String pattern) {
+        StringBuilder regex = new StringBuilder(DOTALL);
+        StringBuilder literal = new StringBuilder();
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c == LIKE_ANY_SEQUENCE || c == LIKE_ANY_CHARACTER) {
+                appendQuoted(regex, literal);
+                regex.append(c == LIKE_ANY_SEQUENCE ? WILDCARD : ".");
+            } else {
+                if (c == LIKE_ESCAPE && i + 1 < length) {
+                    c = pattern.charAt(++i);
+                }
+                literal.append(c);
+            }
+        }
+        appendQuoted(regex, literal);
+        return regex.toString();
+    }
+
+    /**
+     * Compiles a LIKE, NOT LIKE, LIKE ANY or NOT LIKE ANY into an {@link Expression}. Exact patterns become equality
+     * checks and prefix or suffix patterns become a SUBSTRING equality check. Everything else becomes an RLIKE with the
+     * translated pattern.
+     *
+     * @param value The value to match.
+     * @param patterns The LIKE patterns. There must be exactly one if it is not a LIKE ANY.
+     * @param any Whether this is a LIKE ANY.
+     * @param not Whether this is negated.
+     * @return The compiled {@link Expression}.
+     */
+    public static Expression compileLike(Expression value, List<String> patterns, boolean any, boolean not) {
+        if (!any) {
+            String pattern = patterns.get(0);
+            Expression expression = specialize(value, analyzeLike(pattern), not);
+            if (expression != null) {
+                return expression;
+            }
+            return binary(value, new ValueExpression(likeToRegex(pattern)), not ? Operation.NOT_REGEX_LIKE : Operation.REGEX_LIKE);
+        }
+        List<Expression> literals = new ArrayList<>();
+        List<Expression> regexes = new ArrayList<>();
+        for (String pattern : patterns) {
+            Analysis analysis = analyzeLike(pattern);
+            if (analysis.getShape() == Shape.EXACT) {
+                literals.add(new ValueExpression(analysis.getLiteral()));
+            }
+            regexes.add(new ValueExpression(likeToRegex(pattern)));
+        }
+        if (literals.size() == patterns.size()) {
+            return binary(value, stringList(literals), not ? Operation.NOT_IN : Operation.EQUALS_ANY);
+        }
+        return binary(value, stringList(regexes), not ? Operation.NOT_REGEX_LIKE_ANY : Operation.REGEX_LIKE_ANY);
+    }
+
+    /**
+     * Counts the regexes that a LIKE, NOT LIKE, LIKE ANY or NOT LIKE ANY with the given patterns is compiled into by
+     * {@link #compileLike(Expression, List, boolean, boolean)}.
+     *
+     * @param patterns The LIKE patterns.
+     * @param any Whether this is a LIKE ANY.
+     * @return The number of regexes that the patterns are matched with.
+     */
+    public static int countLikeRegexes(List<String> patterns, boolean any) {
+        if (!any) {
+            return (int) patterns.stream().map(PatternAnalyzer::analyzeLike).filter(analysis -> !isSpecializable(analysis)).count();
+        }
+        // A LIKE ANY is only rewritten if all of its patterns are exact, and otherwise matches every pattern as a regex
+        return patterns.stream().allMatch(pattern -> analyzeLike(pattern).getShape() == Shape.EXACT) ? 0 : patterns.size();
+    }
+
+    private static boolean isSpecializable(Analysis analysis) {
+        Shape shape = analysis.getShape();
+        return shape == Shape.EXACT || shape == Shape.PREFIX || shape == Shape.SUFFIX;
+    }
+
+    // Returns an equality or SUBSTRING equality check for exact, prefix and suffix patterns and null otherwise
+    private static Expression specialize(Expression value, Analysis analysis, boolean not) {
+        Operation op = not ? Operation.NOT_EQUALS : Operation.EQUALS;
+        String literal = analysis.getLiteral();
+        switch (analysis.getShape()) {
+            case EXACT:
+                return binary(value, new ValueExpression(literal), op);
+            case PREFIX:
+                return binary(substring(value, new ValueExpression(1), new ValueExpression(literal.length())), new ValueExpression(literal), op);
+            case SUFFIX:
+                return binary(substring(value, new ValueExpression(-literal.length())), new ValueExpression(literal), op);
+            default:
+                return null;
+        }
+    }
+
+    private static void appendQuoted(StringBuilder regex, StringBuilder literal) {
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    private static ListExpression stringList(List<Expression> values) {
+        ListExpression list = new ListExpression(values);
+        list.setType(Type.STRING_LIST);
+        return list;
+    }
+
+    private static BinaryExpression binary(Expression left, Expression right, Operation op) {
+        BinaryExpression expression = new BinaryExpression(left, right, op);
+        expression.setType(Type.BOOLEAN);
+        return expression;
+    }
+
+    private static NAryExpression substring(Expression... operands) {
+        NAryExpression expression = new NAryExpression(new ArrayList<>(Arrays.asList(operands)), Operation.SUBSTRING);
+        expression.setType(Type.STRING);
+        return expression;
+    }
+
+    private static boolean isStringValue(Expression expression) {
+        return expression instanceof ValueExpression && ((ValueExpression) expression).getValue() instanceof String;
+    }
+
+    /**
+     * Gets the literal patterns in the right operand of a RLIKE or RLIKE ANY.
+     *
+     * @param expression The right operand.
+     * @return A {@link List} of the literal patterns. Non-literal patterns are skipped.
+     */
+    static List<String> getLiteralPatterns(Expression expression) {
+        if (isStringValue(expression)) {
+            return Collections.singletonList((String) ((ValueExpression) expression).getValue());
+        }
+        if (!(expression instanceof ListExpression)) {
+            return Collections.emptyList();
+        }
+        List<String> patterns = new ArrayList<>();
+        for (Expression value : ((ListExpression) expression).getValues()) {
+            if (isStringValue(value)) {
+                patterns.add((String) ((ValueExpression) value).getValue());
+            }
+        }
+        return patterns;
+    }
+
+    // Returns the literal that the given pattern matches or null if it is not a plain literal
+    private static String unescape(String pattern) {
+        StringBuilder builder = new StringBuilder();
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= length) {
+                    return null;
+                }
+                char next = pattern.charAt(i + 1);
+                if (next == 'Q') {
+                    int end = pattern.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        return null;
+                    }
+                    builder.append(pattern, i + 2, end);
+                    i = end + 2;
+                } else if (Character.isLetterOrDigit(next)) {
+                    return null;
+                } else {
+                    builder.append(next);
+                    i += 2;
+                }
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isEscaped(String pattern, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && pattern.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static int skipEscape(String pattern, int index) {
+        if (index + 1 < pattern.length() && pattern.charAt(index + 1) == 'Q') {
+            int end = pattern.indexOf("\\E", index + 2);
+            return end < 0 ? pattern.length() : end + 2;
+        }
+        return index + 2;
+    }
+
+    private static int skipClass(String pattern, int index) {
+        int length = pattern.length();
+        int i = index + 1;
+        if (i < length && pattern.charAt(i) == '^') {
+            i++;
+        }
+        // A ] right after the opening bracket is a literal
+        if (i < length && pattern.charAt(i) == ']') {
+            i++;
+        }
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                i = skipClass(pattern, i);
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    // Returns the length of the unbounded quantifier (*, + or {n,}) at the index or 0 if there is none
+    private static int unboundedQuantifierLength(String pattern, int index) {
+        if (index >= pattern.length()) {
+            return 0;
+        }
+        char c = pattern.charAt(index);
+        if (c == '*' || c == '+') {
+            return 1;
+        }
+        if (c != '{') {
+            return 0;
+        }
+        int end = pattern.indexOf('}', index);
+        if (end < 0) {
+            return 0;
+        }
+        String bounds = pattern.substring(index + 1, end);
+        return bounds.matches("\\d+,") ? end - index + 1 : 0;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.pubsub.Metadata;
+import com.yahoo.bullet.pubsub.PubSubMessage;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.typesystem.Schema;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * This {@link LazyPubSubMessageSerDe} compiles the BQL query once in {@link #toMessage(String, Query, String)} and
+ * ships the plan encoded with {@link QueryCodec} alongside the BQL. The {@link #fromMessage(PubSubMessage)} decodes
+ * the plan directly without parsing or type checking the BQL again.
+ *
+ * The payload is a byte array that starts with the BQL so that it can always be read back. It is followed by a
+ * fingerprint of the compiler (the {@link QueryCodec} layout and the BQL and Bullet Core versions), a fingerprint of
+ * the settings that affect compilation (the query settings and the schema) and the encoded plan. If either fingerprint
+ * does not match the ones of the receiving SerDe, for instance in the middle of a rolling upgrade, or if the plan
+ * cannot be decoded, the BQL is compiled again instead.
+ *
+ * Messages that were not created by this SerDe are handled like in the {@link LazyPubSubMessageSerDe}. If the query
+ * cannot be compiled or encoded in {@link #toMessage(String, Query, String)}, it is sent as plain BQL.
+ */
+@Slf4j
+public class PrecompiledPubSubMessageSerDe extends LazyPubSubMessageSerDe {
+    private static final long serialVersionUID = 7720634871350947012L;
+
+    private static final String VERSION_FILE = "bullet_bql_version.properties";
+    private static final String CORE_POM_PROPERTIES = "META-INF/maven/com.yahoo.bullet/bullet-core/pom.properties";
+    private static final Properties VERSIONS = loadProperties(PrecompiledPubSubMessageSerDe.class, VERSION_FILE);
+
+    // The version of BQL that this was built as and the version of Bullet Core on the classpath, falling back to the
+    // one that this was built against
+    static final String BQL_VERSION = VERSIONS.getProperty("bullet.bql.version");
+    static final String CORE_VERSION = loadProperties(Query.class, CORE_POM_PROPERTIES).getProperty("version", VERSIONS.getProperty("bullet.core.version"));
+
+    public static final long COMPILER_FINGERPRINT = computeCompilerFingerprint();
+
+    private static final byte[] MAGIC = {'B', 'Q', 'L', 'P'};
+    private static final byte ENVELOPE_VERSION = 1;
+    // The version and the two fingerprints
+    private static final int FINGERPRINTS_SIZE = 1 + 2 * Long.BYTES;
+    private static final String QUERY_SETTINGS_PREFIX = "bullet.query.";
+
+    private final BQLConfig bqlConfig;
+    @Getter
+    private final long settingsFingerprint;
+
+    /**
+     * Constructor.
+     *
+     * @param config The {@link BulletConfig} to configure this class and the {@link com.yahoo.bullet.bql.BulletQueryBuilder}.
+     */
+    public PrecompiledPubSubMessageSerDe(BulletConfig config) {
+        super(config);
+        bqlConfig = new BQLConfig(config);
+        settingsFingerprint = computeSettingsFingerprint(bqlConfig);
+    }
+
+    /**
+     * Creates a message with the BQL and its encoded plan. The given {@link Query} is encoded if provided and must
+     * have been built from the BQL with the same settings. Otherwise, the BQL is compiled.
+     *
+     * @param id The ID of the query.
+     * @param query The {@link Query} built from the BQL or null.
+     * @param queryString The BQL query.
+     * @return The {@link PubSubMessage} to send.
+     */
+    @Override
+    public PubSubMessage toMessage(String id, Query query, String queryString) {
+        if (query == null) {
+            BQLResult result = queryBuilder.buildQuery(queryString);
+            if (result.hasErrors() || result.getQuery() == null) {
+                return super.toMessage(id, null, queryString);
+            }
+            query = result.getQuery();
+        }
+        byte[] plan;
+        try {
+            plan = QueryCodec.encode(query);
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not encode the query. Sending it as BQL instead", e);
+            return super.toMessage(id, query, queryString);
+        }
+        byte[] bql = queryString.getBytes(PubSubMessage.CHARSET);
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length + Integer.BYTES + bql.length + FINGERPRINTS_SIZE + plan.length);
+        buffer.put(MAGIC).putInt(bql.length).put(bql);
+        buffer.put(ENVELOPE_VERSION).putLong(COMPILER_FINGERPRINT).putLong(settingsFingerprint);
+        buffer.put(plan);
+        return toMessage(new PubSubMessage(id, buffer.array(), new Metadata(Metadata.Signal.CUSTOM, null)));
+    }
+
+    @Override
+    public PubSubMessage fromMessage(PubSubMessage message) {
+        Serializable content = message.getContent();
+        if (!message.hasSignal(Metadata.Signal.CUSTOM) || !isPrecompiled(content)) {
+            return super.fromMessage(message);
+        }
+        byte[] payload = (byte[]) content;
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        buffer.position(MAGIC.length);
+        int length = buffer.getInt();
+        String queryString = new String(payload, buffer.position(), length, PubSubMessage.CHARSET);
+        buffer.position(buffer.position() + length);
+
+        Query query = isCompatible(buffer) ? getPlan(payload, buffer.position()) : null;
+        if (query == null) {
+            query = getQuery(queryString);
+        }
+        message.setContent(query);
+        message.setMetadata(toMetadata(message.getMetadata(), queryString));
+        return message;
+    }
+
+    private boolean isCompatible(ByteBuffer buffer) {
+        return buffer.remaining() >= FINGERPRINTS_SIZE && buffer.get() == ENVELOPE_VERSION &&
+               buffer.getLong() == COMPILER_FINGERPRINT && buffer.getLong() == settingsFingerprint;
+    }
+
+    private Query getPlan(byte[] payload, int offset) {
+        ByteBuffer key = ByteBuffer.wrap(payload);
+        CachedQuery cached = getCache().get(key);
+        if (cached != null) {
+            return cached.copy(bqlConfig);
+        }
+        Query query;
+        try {
+            query = QueryCodec.decode(payload, offset, payload.length - offset);
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not decode the query plan. Compiling the BQL instead", e);
+            return null;
+        }
+        query.configure(bqlConfig);
+        // The key and the plan are copied so that the cache does not hold on to a buffer that the PubSub might reuse
+        getCache().putIfAbsent(ByteBuffer.wrap(payload.clone()), CachedQuery.ofPlan(Arrays.copyOfRange(payload, offset, payload.length)));
+        return query;
+    }
+
+    private static boolean isPrecompiled(Serializable content) {
+        if (!(content instanceof byte[])) {
+            return false;
+        }
+        byte[] payload = (byte[]) content;
+        if (payload.length < MAGIC.length + Integer.BYTES) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (payload[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        int length = ByteBuffer.wrap(payload, MAGIC.length, Integer.BYTES).getInt();
+        return length >= 0 && length <= payload.length - MAGIC.length - Integer.BYTES;
+    }
+
+    private static long computeCompilerFingerprint() {
+        return QueryCodec.hash(QueryCodec.FINGERPRINT + "|" + BQL_VERSION + "|" + CORE_VERSION);
+    }
+
+    private static Properties loadProperties(Class<?> clazz, String resource) {
+        Properties properties = new Properties();
+        try (InputStream stream = clazz.getClassLoader().getResourceAsStream(resource)) {
+            if (stream != null) {
+                properties.load(stream);
+            }
+        } catch (IOException e) {
+            log.warn("Could not read " + resource, e);
+        }
+        return properties;
+    }
+
+    private static long computeSettingsFingerprint(BQLConfig config) {
+        StringBuilder builder = new StringBuilder();
+        Map<String, Object> settings = new TreeMap<>(config.getAll(Optional.empty()));
+        settings.forEach((key, value) -> {
+            if (key.startsWith(QUERY_SETTINGS_PREFIX)) {
+                builder.append(key).append('=').append(value).append('\n');
+            }
+        });
+        Schema schema = config.getSchema();
+        if (schema != null) {
+            schema.getFields().forEach(field -> builder.append(field.getName()).append(':').append(field.getType()).append('\n'));
+        }
+        return QueryCodec.hash(builder.toString());
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.querying.Filter;
+import com.yahoo.bullet.querying.evaluators.Evaluator;
+import com.yahoo.bullet.record.BulletRecord;
+import com.yahoo.bullet.typesystem.Type;
+import com.yahoo.bullet.typesystem.TypedObject;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An index of the filters of many standing queries that finds the queries whose filter a record matches without
+ * evaluating every filter.
+ *
+ * Each query is indexed on one conjunct of its filter: an equality or IN on a top-level field, or the range that its
+ * comparisons and BETWEEN put on a top-level numeric field. Equalities are indexed in a hash index and ranges in an
+ * interval tree for each field, so a record is only checked against the queries whose indexed conjunct it satisfies
+ * and the queries that have no indexable conjunct. The whole filter of each of these candidates is then evaluated.
+ * An interval tree is rebuilt on the first lookup after its ranges change, so the index suits queries that change
+ * much less often than records arrive.
+ *
+ * Numbers are indexed by their double value, so the index never misses a match but may return a few extra candidates
+ * for very large longs. This class is not thread-safe.
+ */
+public class PredicateIndex {
+    private static class Entry {
+        private final Filter filter;
+        private final FieldIndex fieldIndex;
+        // The equality keys or the range that the query is indexed on, if any
+        private final Set<Object> keys;
+        private final Range range;
+
+        private Entry(Filter filter, FieldIndex fieldIndex, Set<Object> keys, Range range) {
+            this.filter = filter;
+            this.fieldIndex = fieldIndex;
+            this.keys = keys;
+            this.range = range;
+        }
+    }
+
+    private static class Range {
+        private double lower = Double.NEGATIVE_INFINITY;
+        private double upper = Double.POSITIVE_INFINITY;
+
+        private boolean isBounded() {
+            return lower != Double.NEGATIVE_INFINITY || upper != Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static class FieldIndex {
+        private final String name;
+        private final Evaluator evaluator;
+        private final Map<Object, Set<String>> equalities = new HashMap<>();
+        // Ranges with only a lower bound and only an upper bound, keyed by the bound that is searched
+        private final NavigableMap<Double, Set<String>> lowerBounds = new TreeMap<>();
+        private final NavigableMap<Double, Set<String>> upperBounds = new TreeMap<>();
+        // Ranges with both bounds and the tree that is built from them on the first lookup after they change
+        private final Map<String, Range> intervals = new HashMap<>();
+        private IntervalTree tree;
+        private int size;
+
+        private FieldIndex(String name, FieldExpression field) {
+            this.name = name;
+            this.evaluator = field.getEvaluator();
+        }
+
+        private void add(String id, Entry entry) {
+            size++;
+            if (entry.keys != null) {
+                entry.keys.forEach(key -> equalities.computeIfAbsent(key, k -> new HashSet<>()).add(id));
+                return;
+            }
+            Range range = entry.range;
+            if (range.upper == Double.POSITIVE_INFINITY) {
+                lowerBounds.computeIfAbsent(range.lower, k -> new HashSet<>()).add(id);
+            } else if (range.lower == Double.NEGATIVE_INFINITY) {
+                upperBounds.computeIfAbsent(range.upper, k -> new HashSet<>()).add(id);
+            } else {
+                intervals.put(id, range);
+                tree = null;
+            }
+        }
+
+        private void remove(String id, Entry entry) {
+            size--;
+            if (entry.keys != null) {
+                entry.keys.forEach(key -> removeFrom(equalities, key, id));
+                return;
+            }
+            Range range = entry.range;
+            if (range.upper == Double.POSITIVE_INFINITY) {
+                removeFrom(lowerBounds, range.lower, id);
+            } else if (range.lower == Double.NEGATIVE_INFINITY) {
+                removeFrom(upperBounds, range.upper, id);
+            } else {
+                intervals.remove(id);
+                tree = null;
+            }
+        }
+
+        private void addCandidates(BulletRecord<?> record, List<String> candidates) {
+            TypedObject object = evaluator.evaluate(record);
+            if (object == null || object.isNull()) {
+                return;
+            }
+            Serializable value = object.getValue();
+            Set<String> ids = equalities.get(toKey(value));
+            if (ids != null) {
+                candidates.addAll(ids);
+            }
+            if (!(value instanceof Number)) {
+                return;
+            }
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number)) {
+                return;
+            }
+            lowerBounds.headMap(number, true).values().forEach(candidates::addAll);
+            upperBounds.tailMap(number, true).values().forEach(candidates::addAll);
+            if (tree == null && !intervals.isEmpty()) {
+                tree = IntervalTree.build(new ArrayList<>(intervals.entrySet()));
+            }
+            if (tree != null) {
+                tree.addContaining(number, candidates);
+            }
+        }
+    }
+
+    /**
+     * A centered interval tree. Each node holds the ranges that contain its center, sorted by their lower and by their
+     * upper bounds, and the ranges entirely below and above the center are in its left and right subtrees. The center
+     * is the median of the bounds of the node's ranges, so a lookup visits O(log n) nodes and only reads the ranges
+     * that it returns, apart from one range per node.
+     */
+    private static class IntervalTree {
+        private final double center;
+        private final List<Map.Entry<String, Range>> byLower;
+        private final List<Map.Entry<String, Range>> byUpper;
+        private final IntervalTree left;
+        private final IntervalTree right;
+
+        private IntervalTree(double center, List<Map.Entry<String, Range>> ranges, IntervalTree left, IntervalTree right) {
+            this.center = center;
+            this.byLower = new ArrayList<>(ranges);
+            this.byLower.sort(Comparator.comparingDouble(range -> range.getValue().lower));
+            this.byUpper = new ArrayList<>(ranges);
+            this.byUpper.sort(Comparator.comparingDouble(range -> -range.getValue().upper));
+            this.left = left;
+            this.right = right;
+        }
+
+        private static IntervalTree build(List<Map.Entry<String, Range>> ranges) {
+            // Empty ranges match nothing and have no center that they contain
+            ranges.removeIf(range -> !(range.getValue().lower <= range.getValue().upper));
+            if (ranges.isEmpty()) {
+                return null;
+            }
+            double[] bounds = new double[ranges.size() * 2];
+            for (int i = 0; i < ranges.size(); i++) {
+                bounds[2 * i] = ranges.get(i).getValue().lower;
+                bounds[2 * i + 1] = ranges.get(i).getValue().upper;
+            }
+            Arrays.sort(bounds);
+            // The range that has the median as a bound contains it, so every level holds at least one range
+            double center = bounds[ranges.size()];
+            List<Map.Entry<String, Range>> below = new ArrayList<>();
+            List<Map.Entry<String, Range>> above = new ArrayList<>();
+            List<Map.Entry<String, Range>> containing = new ArrayList<>();
+            for (Map.Entry<String, Range> range : ranges) {
+                if (range.getValue().upper < center) {
+                    below.add(range);
+                } else if (range.getValue().lower > center) {
+                    above.add(range);
+                } else {
+                    containing.add(range);
+                }
+            }
+            return new IntervalTree(center, containing, build(below), build(above));
+        }
+
+        private void addContaining(double number, List<String> candidates) {
+            IntervalTree node = this;
+            while (node != null) {
+                if (number < node.center) {
+                    // Every range here ends at or after the center, so it contains the number if it starts before it
+                    for (int i = 0; i < node.byLower.size() && node.byLower.get(i).getValue().lower <= number; i++) {
+                        candidates.add(node.byLower.get(i).getKey());
+                    }
+                    node = node.left;
+                } else if (number > node.center) {
+                    for (int i = 0; i < node.byUpper.size() && node.byUpper.get(i).getValue().upper >= number; i++) {
+                        candidates.add(node.byUpper.get(i).getKey());
+                    }
+                    node = node.right;
+                } else {
+                    node.byLower.forEach(range -> candidates.add(range.getKey()));
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, FieldIndex> fieldIndexes = new HashMap<>();
+    // The queries that have no indexable conjunct and are candidates for every record
+    private final Map<String, Entry> remainder = new LinkedHashMap<>();
+
+    /**
+     * Adds a query to the index. If a query with the same ID was already added, it is replaced.
+     *
+     * @param id The ID of the query.
+     * @param query The {@link Query}.
+     */
+    public void add(String id, Query query) {
+        add(id, query.getFilter());
+    }
+
+    /**
+     * Adds a filter to the index. If a filter with the same ID was already added, it is replaced.
+     *
+     * @param id The ID of the filter.
+     * @param filter The filter {@link Expression} or null if every record matches.
+     */
+    public void add(String id, Expression filter) {
+        remove(id);
+        Filter compiled = filter != null ? new Filter(filter) : null;
+        List<Expression> conjuncts = new ArrayList<>();
+        if (filter != null) {
+            addConjuncts(filter, conjuncts);
+        }
+        Entry entry = createEntry(compiled, conjuncts);
+        entries.put(id, entry);
+        if (entry.fieldIndex == null) {
+            remainder.put(id, entry);
+        } else {
+            entry.fieldIndex.add(id, entry);
+        }
+    }
+
+    /**
+     * Removes a query from the index.
+     *
+     * @param id The ID of the query.
+     * @return True if the query was in the index and false otherwise.
+     */
+    public boolean remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.fieldIndex == null) {
+            remainder.remove(id);
+        } else {
+            entry.fieldIndex.remove(id, entry);
+            if (entry.fieldIndex.size == 0) {
+                fieldIndexes.remove(entry.fieldIndex.name);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the queries that the given record might match. These are the queries whose indexed conjunct the record
+     * satisfies and the queries without an indexable conjunct.
+     *
+     * @param record The {@link BulletRecord}.
+     * @return A {@link List} of the distinct IDs of the candidate queries.
+     */
+    public List<String> getCandidates(BulletRecord<?> record) {
+        List<String> candidates = new ArrayList<>(remainder.keySet());
+        for (FieldIndex fieldIndex : fieldIndexes.values()) {
+            fieldIndex.addCandidates(record, candidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * Gets the queries whose filter the given record matches.
+     *
+     * @param record The {@link BulletRecord}.
+     * @return A {@link List} of the IDs of the matching queries.
+     */
+    public List<String> match(BulletRecord<?> record) {
+        List<String> matches = new ArrayList<>();
+        for (String id : getCandidates(record)) {
+            Filter filter = entries.get(id).filter;
+            if (filter == null || filter.match(record)) {
+                matches.add(id);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of queries in the index.
+     *
+     * @return The number of queries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of queries that do not have an indexable conjunct and are checked against every record.
+     *
+     * @return The number of unindexed queries.
+     */
+    public int getUnindexedSize() {
+        return remainder.size();
+    }
+
+    private Entry createEntry(Filter filter, List<Expression> conjuncts) {
+        // Equalities are preferred since they are the most selective. Otherwise, the tightest range is used.
+        FieldExpression bestField = null;
+        Set<Object> bestKeys = null;
+        for (Expression conjunct : conjuncts) {
+            FieldExpression field = getEqualityField(conjunct);
+            if (field != null) {
+                Set<Object> keys = getEqualityKeys(conjunct);
+                if (keys != null && (bestKeys == null || keys.size() < bestKeys.size())) {
+                    bestField = field;
+                    bestKeys = keys;
+                }
+            }
+        }
+        if (bestKeys != null) {
+            return new Entry(filter, getFieldIndex(bestField), bestKeys, null);
+        }
+        Map<String, FieldExpression> rangeFields = new LinkedHashMap<>();
+        Map<String, Range> ranges = new LinkedHashMap<>();
+        for (Expression conjunct : conjuncts) {
+            addRange(conjunct, rangeFields, ranges);
+        }
+        String bestName = null;
+        for (Map.Entry<String, Range> range : ranges.entrySet()) {
+            if (bestName == null || isTighter(range.getValue(), ranges.get(bestName))) {
+                bestName = range.getKey();
+            }
+        }
+        if (bestName != null) {
+            return new Entry(filter, getFieldIndex(rangeFields.get(bestName)), null, ranges.get(bestName));
+        }
+        return new Entry(filter, null, null, null);
+    }
+
+    private FieldIndex getFieldIndex(FieldExpression field) {
+        String name = getName(field);
+        return fieldIndexes.computeIfAbsent(name, k -> new FieldIndex(name, field));
+    }
+
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOp() == Operation.AND) {
+            addConjuncts(((BinaryExpression) expression).getLeft(), conjuncts);
+            addConjuncts(((BinaryExpression) expression).getRight(), conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+
+    private static FieldExpression getEqualityField(Expression conjunct) {
+        if (!(conjunct instanceof BinaryExpression)) {
+            return null;
+        }
+        BinaryExpression binary = (BinaryExpression) conjunct;
+        switch (binary.getOp()) {
+            case EQUALS:
+                if (isIndexable(binary.getLeft()) && isLiteral(binary.getRight())) {
+                    return (FieldExpression) binary.getLeft();
+                }
+                return isIndexable(binary.getRight()) && isLiteral(binary.getLeft()) ? (FieldExpression) binary.getRight() : null;
+            case EQUALS_ANY:
+            case IN:
+                return isIndexable(binary.getLeft()) && isLiteralList(binary.getRight()) ? (FieldExpression) binary.getLeft() : null;
+            default:
+                return null;
+        }
+    }
+
+    private static Set<Object> getEqualityKeys(Expression conjunct) {
+        BinaryExpression binary = (BinaryExpression) conjunct;
+        Set<Object> keys = new HashSet<>();
+        if (binary.getOp() == Operation.EQUALS) {
+            Expression value = binary.getLeft() instanceof ValueExpression ? binary.getLeft() : binary.getRight();
+            keys.add(toKey(((ValueExpression) value).getValue()));
+            return keys;
+        }
+        Expression list = binary.getRight();
+        if (list instanceof ValueExpression) {
+            ((List<?>) ((ValueExpression) list).getValue()).forEach(item -> addKey(item, keys));
+        } else {
+            ((ListExpression) list).getValues().forEach(item -> addKey(((ValueExpression) item).getValue(), keys));
+        }
+        // An empty list or a list of only nulls cannot match any record
+        return keys;
+    }
+
+    private static void addKey(Object value, Set<Object> keys) {
+        if (value != null) {
+            keys.add(toKey((Serializable) value));
+        }
+    }
+
+    private static void addRange(Expression conjunct, Map<String, FieldExpression> fields, Map<String, Range> ranges) {
+        if (conjunct instanceof NAryExpression && ((NAryExpression) conjunct).getOp() == Operation.BETWEEN) {
+            List<Expression> operands = ((NAryExpression) conjunct).getOperands();
+            if (isNumericField(operands.get(0)) && isNumericLiteral(operands.get(1)) && isNumericLiteral(operands.get(2))) {
+                Range range = getRange((FieldExpression) operands.get(0), fields, ranges);
+                range.lower = Math.max(range.lower, toDouble(operands.get(1)));
+                range.upper = Math.min(range.upper, toDouble(operands.get(2)));
+            }
+            return;
+        }
+        if (!(conjunct instanceof BinaryExpression)) {
+            return;
+        }
+        BinaryExpression binary = (BinaryExpression) conjunct;
+        Operation op = binary.getOp();
+        Expression field = binary.getLeft();
+        Expression value = binary.getRight();
+        if (isNumericField(value) && isNumericLiteral(field)) {
+            op = flip(op);
+            field = binary.getRight();
+            value = binary.getLeft();
+        }
+        if (op == null || !isNumericField(field) || !isNumericLiteral(value)) {
+            return;
+        }
+        // The bounds are inclusive since the whole filter is evaluated for the candidates anyway
+        switch (op) {
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUALS:
+                Range lower = getRange((FieldExpression) field, fields, ranges);
+                lower.lower = Math.max(lower.lower, toDouble(value));
+                break;
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUALS:
+                Range upper = getRange((FieldExpression) field, fields, ranges);
+                upper.upper = Math.min(upper.upper, toDouble(value));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Range getRange(FieldExpression field, Map<String, FieldExpression> fields, Map<String, Range> ranges) {
+        String name = getName(field);
+        fields.putIfAbsent(name, field);
+        return ranges.computeIfAbsent(name, k -> new Range());
+    }
+
+    private static Operation flip(Operation op) {
+        switch (op) {
+            case GREATER_THAN:
+                return Operation.LESS_THAN;
+            case GREATER_THAN_OR_EQUALS:
+                return Operation.LESS_THAN_OR_EQUALS;
+            case LESS_THAN:
+                return Operation.GREATER_THAN;
+            case LESS_THAN_OR_EQUALS:
+                return Operation.GREATER_THAN_OR_EQUALS;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isTighter(Range range, Range other) {
+        // A range with both bounds is checked against fewer records than a range with one
+        if (range.isBounded() && other.isBounded()) {
+            boolean closed = range.lower != Double.NEGATIVE_INFINITY && range.upper != Double.POSITIVE_INFINITY;
+            boolean otherClosed = other.lower != Double.NEGATIVE_INFINITY && other.upper != Double.POSITIVE_INFINITY;
+            return closed && !otherClosed || closed == otherClosed && range.upper - range.lower < other.upper - other.lower;
+        }
+        return range.isBounded();
+    }
+
+    private static boolean isIndexable(Expression expression) {
+        if (!(expression instanceof FieldExpression)) {
+            return false;
+        }
+        FieldExpression field = (FieldExpression) expression;
+        return field.getKey() == null && field.getSubKey() == null && Type.isPrimitive(field.getType());
+    }
+
+    private static boolean isNumericField(Expression expression) {
+        return isIndexable(expression) && Type.isNumeric(expression.getType());
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof ValueExpression && Type.isPrimitive(expression.getType());
+    }
+
+    private static boolean isNumericLiteral(Expression expression) {
+        return expression instanceof ValueExpression && Type.isNumeric(expression.getType()) &&
+               !Double.isNaN(toDouble(expression));
+    }
+
+    private static boolean isLiteralList(Expression expression) {
+        if (expression instanceof ValueExpression) {
+            return Type.isPrimitiveList(expression.getType());
+        }
+        if (!(expression instanceof ListExpression)) {
+            return false;
+        }
+        Collection<Expression> values = ((ListExpression) expression).getValues();
+        return values.stream().allMatch(value -> value instanceof ValueExpression);
+    }
+
+    private static double toDouble(Expression expression) {
+        return ((Number) ((ValueExpression) expression).getValue()).doubleValue();
+    }
+
+    private static Object toKey(Serializable value) {
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        double number = ((Number) value).doubleValue();
+        // -0.0 and 0.0 are equal numbers but not equal doubles
+        return number == 0.0 ? 0.0 : number;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static String getName(FieldExpression field) {
+        return field.getField() + ":" + field.getType();
+    }
+}
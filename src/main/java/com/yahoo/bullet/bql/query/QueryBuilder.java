@@ -13,6 +13,7 @@ import com.yahoo.bullet.bql.tree.FieldExpressionNode;
 import com.yahoo.bullet.bql.tree.GroupOperationNode;
 import com.yahoo.bullet.bql.tree.LateralViewNode;
 import com.yahoo.bullet.bql.tree.LiteralNode;
+import com.yahoo.bullet.bql.tree.Node;
 import com.yahoo.bullet.bql.tree.SortItemNode;
 import com.yahoo.bullet.bql.tree.TableFunctionNode;
 import com.yahoo.bullet.bql.tree.TopKNode;
@@ -100,6 +101,10 @@ public class QueryBuilder {
     @Getter
     private Query query;
     private Query outerQuery;
+    private QueryBuilder outerQueryBuilder;
+
+    // Descriptions of the optimizations applied while building the query
+    private List<String> rewrites = new ArrayList<>();
 
     private LayeredSchema layeredSchema;
 
@@ -107,16 +112,30 @@ public class QueryBuilder {
     private Schema schema = new Schema();
     private Map<String, String> aliases = new HashMap<>();
 
-    private ExpressionVisitor expressionVisitor = new ExpressionVisitor(errors);
+    private ExpressionVisitor expressionVisitor = new ExpressionVisitor(errors, rewrites);
+    private CompilationDeadline deadline;
+
+    // The expressions that the nodes of the WHERE clause were built into
+    private Map<Node, Expression> filterMapping = Collections.emptyMap();
 
     public QueryBuilder(ProcessedQuery processedQuery, LayeredSchema layeredSchema) {
-        this.processedQuery = processedQuery;
-        this.layeredSchema = layeredSchema;
-        buildQuery();
+        this(processedQuery, layeredSchema, null);
     }
 
     public QueryBuilder(ProcessedQuery processedQuery, Schema schema) {
-        this(processedQuery, new LayeredSchema(schema));
+        this(processedQuery, new LayeredSchema(schema), null);
+    }
+
+    public QueryBuilder(ProcessedQuery processedQuery, Schema schema, CompilationDeadline deadline) {
+        this(processedQuery, new LayeredSchema(schema), deadline);
+    }
+
+    private QueryBuilder(ProcessedQuery processedQuery, LayeredSchema layeredSchema, CompilationDeadline deadline) {
+        this.processedQuery = processedQuery;
+        this.layeredSchema = layeredSchema;
+        this.deadline = deadline;
+        expressionVisitor.setDeadline(deadline);
+        buildQuery();
     }
 
     private void buildQuery() {
@@ -180,6 +199,7 @@ public class QueryBuilder {
         ExpressionNode whereNode = processedQuery.getWhere();
         if (whereNode != null) {
             filter = visit(processedQuery.getWhere());
+            filterMapping = expressionVisitor.getMapping();
             if (cannotCastToBoolean(filter.getType())) {
                 addError(whereNode, QueryError.WHERE_CANNOT_CAST_TO_BOOLEAN, whereNode);
             }
@@ -190,11 +210,12 @@ public class QueryBuilder {
         if (processedQuery.getOuterQuery() == null) {
             return;
         }
-        QueryBuilder builder = new QueryBuilder(processedQuery.getOuterQuery(), layeredSchema);
+        QueryBuilder builder = new QueryBuilder(processedQuery.getOuterQuery(), layeredSchema, deadline);
         if (builder.hasErrors()) {
             errors.addAll(builder.getErrors());
         } else {
             outerQuery = builder.query;
+            outerQueryBuilder = builder;
         }
     }
 
@@ -220,6 +241,7 @@ public class QueryBuilder {
 
         if (!additionalFields.isEmpty()) {
             postAggregations.add(new Culling(additionalFields));
+            rewrites.add("Projected the ORDER BY fields " + additionalFields + " that were not selected and culled them after sorting.");
         }
 
         // Create projection at the end because ORDER BY can add additional fields
@@ -519,6 +541,8 @@ public class QueryBuilder {
         checkDuplicates(fields.values());
 
         aggregation = new TopK(fields, limit, threshold, countAliasOrName);
+        rewrites.add("Special-K: rewrote the GROUP BY ordered by COUNT(*) descending with LIMIT " + limit +
+                     (threshold != null ? " and HAVING COUNT(*) >= " + threshold : "") + " into a TOP K aggregation.");
 
         doComputation();
     }
@@ -592,6 +616,16 @@ public class QueryBuilder {
         }
     }
 
+    /**
+     * Gets the {@link Expression} that a node of the WHERE clause was built into.
+     *
+     * @param node The {@link Node} in the WHERE clause.
+     * @return The {@link Expression} of the node or null if it is not in the WHERE clause.
+     */
+    Expression getFilterExpression(Node node) {
+        return filterMapping.get(node);
+    }
+
     private Expression visit(ExpressionNode node) {
         return expressionVisitor.process(node, layeredSchema);
     }
@@ -685,4 +719,27 @@ public class QueryBuilder {
     public boolean hasErrors() {
         return !errors.isEmpty();
     }
+
+    /**
+     * Gets the {@link QueryPlan} of the built query. The plan refers to the components of the query so if the query is
+     * configured first, the plan will show the configured values.
+     *
+     * @return The {@link QueryPlan} or null if the query has errors.
+     */
+    public QueryPlan getPlan() {
+        if (query == null) {
+            return null;
+        }
+        return new QueryPlan(processedQuery, query, rewrites, outerQueryBuilder != null ? outerQueryBuilder.getPlan() : null);
+    }
+
+    /**
+     * Gets the canonical {@link StageSignatures} of the table function, filter and projection of the built query.
+     * Queries that share a signature can share the evaluation of that stage.
+     *
+     * @return The {@link StageSignatures} or null if the query has errors.
+     */
+    public StageSignatures getSignatures() {
+        return query != null ? new StageSignatures(query) : null;
+    }
 }
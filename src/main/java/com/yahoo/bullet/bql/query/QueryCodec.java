@@ -0,0 +1,911 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.aggregations.Aggregation;
+import com.yahoo.bullet.query.aggregations.CountDistinct;
+import com.yahoo.bullet.query.aggregations.DistributionType;
+import com.yahoo.bullet.query.aggregations.GroupAll;
+import com.yahoo.bullet.query.aggregations.GroupBy;
+import com.yahoo.bullet.query.aggregations.LinearDistribution;
+import com.yahoo.bullet.query.aggregations.ManualDistribution;
+import com.yahoo.bullet.query.aggregations.Raw;
+import com.yahoo.bullet.query.aggregations.RegionDistribution;
+import com.yahoo.bullet.query.aggregations.TopK;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.query.postaggregations.Computation;
+import com.yahoo.bullet.query.postaggregations.Culling;
+import com.yahoo.bullet.query.postaggregations.Having;
+import com.yahoo.bullet.query.postaggregations.OrderBy;
+import com.yahoo.bullet.query.postaggregations.PostAggregation;
+import com.yahoo.bullet.query.tablefunctions.Explode;
+import com.yahoo.bullet.query.tablefunctions.LateralView;
+import com.yahoo.bullet.query.tablefunctions.TableFunction;
+import com.yahoo.bullet.querying.aggregations.grouping.GroupOperation;
+import com.yahoo.bullet.typesystem.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, versioned binary encoding for compiled {@link Query} objects that is much smaller and faster than Java
+ * serialization. The encoding is laid out as:
+ *
+ * <ul>
+ *   <li>A 4 byte magic number and a varint format version.</li>
+ *   <li>A string table with every field name, alias and string literal in the query stored once.</li>
+ *   <li>The query with all the enums (operations, types etc.) as varint ordinals and strings as varint indices into the
+ *       string table.</li>
+ *   <li>A 4 byte CRC32 checksum of everything before it.</li>
+ * </ul>
+ *
+ * Enums are encoded by their ordinals, so the encoding is only compatible between the same versions of Bullet Core and
+ * the {@link #VERSION} must be bumped whenever the layout changes.
+ *
+ * The decoded {@link Query} has every setting of the encoded one except for the aggregation sizes that are not set on
+ * construction, so it must be configured with the same {@link com.yahoo.bullet.common.BulletConfig} as the encoded
+ * {@link Query} before it is used. Configuring is idempotent, so this leaves the rest of the query unchanged.
+ */
+public final class QueryCodec {
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'B', 'Q', 'L', 'C'};
+    private static final int CHECKSUM_SIZE = 4;
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private static final int NULL = 0;
+
+    // Expression tags
+    private static final int VALUE = 1;
+    private static final int FIELD = 2;
+    private static final int UNARY = 3;
+    private static final int BINARY = 4;
+    private static final int N_ARY = 5;
+    private static final int LIST = 6;
+    private static final int CAST = 7;
+
+    // Value and field key tags
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int STRING = 7;
+    private static final int EXPRESSION = 8;
+
+    // Table function tags
+    private static final int EXPLODE = 1;
+    private static final int LATERAL_VIEW = 2;
+
+    // Aggregation tags
+    private static final int RAW = 1;
+    private static final int GROUP_BY = 2;
+    private static final int GROUP_ALL = 3;
+    private static final int COUNT_DISTINCT = 4;
+    private static final int TOP_K = 5;
+    private static final int LINEAR_DISTRIBUTION = 6;
+    private static final int REGION_DISTRIBUTION = 7;
+    private static final int MANUAL_DISTRIBUTION = 8;
+
+    // Post-aggregation tags
+    private static final int HAVING = 1;
+    private static final int COMPUTATION = 2;
+    private static final int ORDER_BY = 3;
+    private static final int CULLING = 4;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Type[] TYPES = Type.values();
+    private static final Window.Unit[] UNITS = Window.Unit.values();
+    private static final Projection.Type[] PROJECTION_TYPES = Projection.Type.values();
+    private static final OrderBy.Direction[] DIRECTIONS = OrderBy.Direction.values();
+    private static final DistributionType[] DISTRIBUTION_TYPES = DistributionType.values();
+    private static final GroupOperation.GroupOperationType[] GROUP_OPERATION_TYPES = GroupOperation.GroupOperationType.values();
+
+    /**
+     * A fingerprint of the {@link #VERSION} and the enums whose ordinals are encoded. Two encodings are only compatible
+     * if their fingerprints are the same.
+     */
+    public static final long FINGERPRINT = computeFingerprint();
+
+    private QueryCodec() {
+    }
+
+    /**
+     * Encodes the given {@link Query}.
+     *
+     * @param query The non-null {@link Query} to encode.
+     * @return The encoded bytes.
+     * @throws IllegalArgumentException if the query contains a component that cannot be encoded.
+     */
+    public static byte[] encode(Query query) {
+        Encoder body = new Encoder();
+        body.writeQuery(query);
+
+        Encoder output = new Encoder();
+        output.write(MAGIC, 0, MAGIC.length);
+        output.writeVarLong(VERSION);
+        output.writeVarLong(body.strings.size());
+        for (String string : body.strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeVarLong(bytes.length);
+            output.write(bytes, 0, bytes.length);
+        }
+        output.write(body.buffer(), 0, body.size());
+
+        CRC32 crc = new CRC32();
+        crc.update(output.buffer(), 0, output.size());
+        output.writeInt((int) crc.getValue());
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a {@link Query} that was encoded with {@link #encode(Query)}. The returned query must be configured
+     * before it is used.
+     *
+     * @param bytes The encoded bytes.
+     * @return The decoded {@link Query}.
+     * @throws IllegalArgumentException if the bytes are not a valid encoding of this version.
+     */
+    public static Query decode(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("The encoded query is too short.");
+        }
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decodes a {@link Query} that was encoded with {@link #encode(Query)} and is stored in a range of the given
+     * bytes. The returned query must be configured before it is used.
+     *
+     * @param bytes The bytes containing the encoded query.
+     * @param offset The offset of the encoded query in the bytes.
+     * @param length The length of the encoded query.
+     * @return The decoded {@link Query}.
+     * @throws IllegalArgumentException if the range is not a valid encoding of this version.
+     */
+    public static Query decode(byte[] bytes, int offset, int length) {
+        if (length < MAGIC.length + CHECKSUM_SIZE || offset < 0 || offset + length > bytes.length) {
+            throw new IllegalArgumentException("The encoded query is too short.");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[offset + i] != MAGIC[i]) {
+                throw new IllegalArgumentException("The bytes are not an encoded query.");
+            }
+        }
+        int end = offset + length;
+        int limit = end - CHECKSUM_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, limit - offset);
+        Decoder decoder = new Decoder(bytes, limit);
+        decoder.position = limit;
+        if ((int) crc.getValue() != decoder.readInt(end)) {
+            throw new IllegalArgumentException("The checksum of the encoded query does not match.");
+        }
+        decoder.position = offset + MAGIC.length;
+        long version = decoder.readVarLong();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoded query version " + version + ". Expected " + VERSION + ".");
+        }
+        decoder.readStrings();
+        Query query = decoder.readQuery();
+        if (decoder.position != limit) {
+            throw new IllegalArgumentException("Unexpected trailing bytes in the encoded query.");
+        }
+        return query;
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the UTF-8 bytes of the given string.
+     *
+     * @param value The non-null string to hash.
+     * @return The hash.
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long computeFingerprint() {
+        StringBuilder builder = new StringBuilder().append(VERSION);
+        for (Enum<?>[] values : new Enum<?>[][] {OPERATIONS, TYPES, UNITS, PROJECTION_TYPES, DIRECTIONS, DISTRIBUTION_TYPES, GROUP_OPERATION_TYPES}) {
+            builder.append('|');
+            for (Enum<?> value : values) {
+                builder.append(value.name()).append(',');
+            }
+        }
+        return hash(builder.toString());
+    }
+
+    private static class Encoder extends ByteArrayOutputStream {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+        private byte[] buffer() {
+            return buf;
+        }
+
+        private void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeBoolean(boolean value) {
+            write(value ? 1 : 0);
+        }
+
+        private void writeNullableInteger(Integer value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeSignedVarLong(value);
+            }
+        }
+
+        private void writeNullableLong(Long value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeSignedVarLong(value);
+            }
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(NULL);
+                return;
+            }
+            writeVarLong(strings.computeIfAbsent(value, k -> strings.size()) + 1);
+        }
+
+        private void writeEnum(Enum<?> value) {
+            writeVarLong(value == null ? NULL : value.ordinal() + 1);
+        }
+
+        private void writeStrings(Collection<String> values) {
+            writeVarLong(values.size());
+            values.forEach(this::writeString);
+        }
+
+        private void writeStringMap(Map<String, String> map) {
+            writeVarLong(map.size());
+            map.forEach((key, value) -> {
+                writeString(key);
+                writeString(value);
+            });
+        }
+
+        private void writeQuery(Query query) {
+            writeTableFunction(query.getTableFunction());
+            writeProjection(query.getProjection());
+            writeExpression(query.getFilter());
+            writeAggregation(query.getAggregation());
+            writePostAggregations(query.getPostAggregations());
+            writeWindow(query.getWindow());
+            writeNullableLong(query.getDuration());
+            Query outerQuery = query.getOuterQuery();
+            writeBoolean(outerQuery != null);
+            if (outerQuery != null) {
+                writeQuery(outerQuery);
+            }
+        }
+
+        private void writeProjection(Projection projection) {
+            writeEnum(projection.getType());
+            if (projection.getType() != Projection.Type.PASS_THROUGH) {
+                writeFields(projection.getFields());
+            }
+        }
+
+        private void writeFields(List<Field> fields) {
+            writeVarLong(fields.size());
+            for (Field field : fields) {
+                writeString(field.getName());
+                writeExpression(field.getValue());
+            }
+        }
+
+        private void writeWindow(Window window) {
+            writeNullableInteger(window.getEmitEvery());
+            writeEnum(window.getEmitType());
+            writeEnum(window.getIncludeType());
+            writeNullableInteger(window.getIncludeFirst());
+        }
+
+        private void writeTableFunction(TableFunction tableFunction) {
+            if (tableFunction == null) {
+                writeVarLong(NULL);
+            } else if (tableFunction instanceof Explode) {
+                Explode explode = (Explode) tableFunction;
+                writeVarLong(EXPLODE);
+                writeExpression(explode.getField());
+                writeString(explode.getKeyAlias());
+                writeString(explode.getValueAlias());
+                writeBoolean(explode.isOuter());
+            } else if (tableFunction instanceof LateralView) {
+                List<TableFunction> tableFunctions = ((LateralView) tableFunction).getTableFunctions();
+                writeVarLong(LATERAL_VIEW);
+                writeVarLong(tableFunctions.size());
+                tableFunctions.forEach(this::writeTableFunction);
+            } else {
+                throw new IllegalArgumentException("Cannot encode the table function " + tableFunction);
+            }
+        }
+
+        private void writeAggregation(Aggregation aggregation) {
+            if (aggregation instanceof Raw) {
+                writeVarLong(RAW);
+                writeNullableInteger(aggregation.getSize());
+            } else if (aggregation instanceof GroupBy) {
+                GroupBy groupBy = (GroupBy) aggregation;
+                writeVarLong(GROUP_BY);
+                writeNullableInteger(groupBy.getSize());
+                writeStringMap(groupBy.getFieldsToNames());
+                writeGroupOperations(groupBy.getOperations());
+            } else if (aggregation instanceof GroupAll) {
+                writeVarLong(GROUP_ALL);
+                writeGroupOperations(((GroupAll) aggregation).getOperations());
+            } else if (aggregation instanceof CountDistinct) {
+                CountDistinct countDistinct = (CountDistinct) aggregation;
+                writeVarLong(COUNT_DISTINCT);
+                writeStrings(countDistinct.getFields());
+                writeString(countDistinct.getName());
+            } else if (aggregation instanceof TopK) {
+                TopK topK = (TopK) aggregation;
+                writeVarLong(TOP_K);
+                writeStringMap(topK.getFieldsToNames());
+                writeNullableInteger(topK.getSize());
+                writeNullableLong(topK.getThreshold());
+                writeString(topK.getName());
+            } else if (aggregation instanceof LinearDistribution) {
+                LinearDistribution distribution = (LinearDistribution) aggregation;
+                writeVarLong(LINEAR_DISTRIBUTION);
+                writeDistribution(distribution.getField(), distribution.getDistributionType(), distribution.getSize());
+                writeVarLong(distribution.getNumberOfPoints());
+            } else if (aggregation instanceof RegionDistribution) {
+                RegionDistribution distribution = (RegionDistribution) aggregation;
+                writeVarLong(REGION_DISTRIBUTION);
+                writeDistribution(distribution.getField(), distribution.getDistributionType(), distribution.getSize());
+                writeLong(Double.doubleToLongBits(distribution.getStart()));
+                writeLong(Double.doubleToLongBits(distribution.getEnd()));
+                writeLong(Double.doubleToLongBits(distribution.getIncrement()));
+            } else if (aggregation instanceof ManualDistribution) {
+                ManualDistribution distribution = (ManualDistribution) aggregation;
+                writeVarLong(MANUAL_DISTRIBUTION);
+                writeDistribution(distribution.getField(), distribution.getDistributionType(), distribution.getSize());
+                writeVarLong(distribution.getPoints().size());
+                distribution.getPoints().forEach(point -> writeLong(Double.doubleToLongBits(point)));
+            } else {
+                throw new IllegalArgumentException("Cannot encode the aggregation " + aggregation);
+            }
+        }
+
+        private void writeDistribution(String field, DistributionType type, Integer size) {
+            writeString(field);
+            writeEnum(type);
+            writeNullableInteger(size);
+        }
+
+        private void writeGroupOperations(Set<GroupOperation> operations) {
+            writeVarLong(operations.size());
+            for (GroupOperation operation : operations) {
+                writeEnum(operation.getType());
+                writeString(operation.getField());
+                writeString(operation.getName());
+            }
+        }
+
+        private void writePostAggregations(List<PostAggregation> postAggregations) {
+            writeBoolean(postAggregations != null);
+            if (postAggregations == null) {
+                return;
+            }
+            writeVarLong(postAggregations.size());
+            for (PostAggregation postAggregation : postAggregations) {
+                if (postAggregation instanceof Having) {
+                    writeVarLong(HAVING);
+                    writeExpression(((Having) postAggregation).getExpression());
+                } else if (postAggregation instanceof Computation) {
+                    writeVarLong(COMPUTATION);
+                    writeFields(((Computation) postAggregation).getFields());
+                } else if (postAggregation instanceof OrderBy) {
+                    List<OrderBy.SortItem> items = ((OrderBy) postAggregation).getFields();
+                    writeVarLong(ORDER_BY);
+                    writeVarLong(items.size());
+                    for (OrderBy.SortItem item : items) {
+                        writeExpression(item.getExpression());
+                        writeEnum(item.getDirection());
+                    }
+                } else if (postAggregation instanceof Culling) {
+                    writeVarLong(CULLING);
+                    writeStrings(((Culling) postAggregation).getTransientFields());
+                } else {
+                    throw new IllegalArgumentException("Cannot encode the post-aggregation " + postAggregation);
+                }
+            }
+        }
+
+        private void writeExpressions(List<Expression> expressions) {
+            writeVarLong(expressions.size());
+            expressions.forEach(this::writeExpression);
+        }
+
+        private void writeExpression(Expression expression) {
+            if (expression == null) {
+                writeVarLong(NULL);
+                return;
+            }
+            if (expression instanceof ValueExpression) {
+                writeVarLong(VALUE);
+                writeValue(((ValueExpression) expression).getValue());
+            } else if (expression instanceof FieldExpression) {
+                FieldExpression field = (FieldExpression) expression;
+                writeVarLong(FIELD);
+                writeString(field.getField());
+                writeValue(field.getKey());
+                writeValue(field.getSubKey());
+            } else if (expression instanceof UnaryExpression) {
+                UnaryExpression unary = (UnaryExpression) expression;
+                writeVarLong(UNARY);
+                writeEnum(unary.getOp());
+                writeExpression(unary.getOperand());
+            } else if (expression instanceof BinaryExpression) {
+                BinaryExpression binary = (BinaryExpression) expression;
+                writeVarLong(BINARY);
+                writeEnum(binary.getOp());
+                writeExpression(binary.getLeft());
+                writeExpression(binary.getRight());
+            } else if (expression instanceof NAryExpression) {
+                NAryExpression nAry = (NAryExpression) expression;
+                writeVarLong(N_ARY);
+                writeEnum(nAry.getOp());
+                writeExpressions(nAry.getOperands());
+            } else if (expression instanceof ListExpression) {
+                writeVarLong(LIST);
+                writeExpressions(((ListExpression) expression).getValues());
+            } else if (expression instanceof CastExpression) {
+                CastExpression cast = (CastExpression) expression;
+                writeVarLong(CAST);
+                writeEnum(cast.getCastType());
+                writeExpression(cast.getValue());
+            } else {
+                throw new IllegalArgumentException("Cannot encode the expression " + expression);
+            }
+            writeEnum(expression.getType());
+        }
+
+        private void writeValue(Serializable value) {
+            if (value == null) {
+                writeVarLong(NULL);
+            } else if (value instanceof Boolean) {
+                writeVarLong((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                writeVarLong(INTEGER);
+                writeSignedVarLong((Integer) value);
+            } else if (value instanceof Long) {
+                writeVarLong(LONG);
+                writeSignedVarLong((Long) value);
+            } else if (value instanceof Float) {
+                writeVarLong(FLOAT);
+                writeInt(Float.floatToIntBits((Float) value));
+            } else if (value instanceof Double) {
+                writeVarLong(DOUBLE);
+                writeLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof String) {
+                writeVarLong(STRING);
+                writeString((String) value);
+            } else if (value instanceof Expression) {
+                writeVarLong(EXPRESSION);
+                writeExpression((Expression) value);
+            } else {
+                throw new IllegalArgumentException("Cannot encode the value " + value);
+            }
+        }
+    }
+
+    private static class Decoder {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+        private String[] strings;
+
+        private Decoder(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+
+        private int read(int end) {
+            if (position >= end) {
+                throw new IllegalArgumentException("Unexpected end of the encoded query.");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int read() {
+            return read(limit);
+        }
+
+        private int readInt(int end) {
+            return read(end) << 24 | read(end) << 16 | read(end) << 8 | read(end);
+        }
+
+        private long readLong() {
+            return (long) readInt(limit) << 32 | readInt(limit) & 0xFFFFFFFFL;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in the encoded query.");
+        }
+
+        private int readCount() {
+            long count = readVarLong();
+            // Every element takes at least a byte so this also guards against allocating huge collections
+            if (count < 0 || count > limit - position) {
+                throw new IllegalArgumentException("Invalid count in the encoded query.");
+            }
+            return (int) count;
+        }
+
+        private long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readSignedVarInt() {
+            return (int) readSignedVarLong();
+        }
+
+        private boolean readBoolean() {
+            return read() != 0;
+        }
+
+        private Integer readNullableInteger() {
+            return readBoolean() ? readSignedVarInt() : null;
+        }
+
+        private Long readNullableLong() {
+            return readBoolean() ? readSignedVarLong() : null;
+        }
+
+        private void readStrings() {
+            strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readCount();
+                strings[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+
+        private String readString() {
+            // An index is bounded by the string table rather than the remaining bytes since many references can trail it
+            long index = readVarLong();
+            if (index < 0 || index > strings.length) {
+                throw new IllegalArgumentException("Invalid string index in the encoded query.");
+            }
+            return index == NULL ? null : strings[(int) index - 1];
+        }
+
+        private <E extends Enum<E>> E readEnum(E[] values) {
+            long ordinal = readVarLong();
+            if (ordinal < 0 || ordinal > values.length) {
+                throw new IllegalArgumentException("Invalid enum ordinal in the encoded query.");
+            }
+            return ordinal == NULL ? null : values[(int) ordinal - 1];
+        }
+
+        private int readTag() {
+            return (int) readVarLong();
+        }
+
+        private List<String> readStringList() {
+            int size = readCount();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private Map<String, String> readStringMap() {
+            int size = readCount();
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        private Query readQuery() {
+            TableFunction tableFunction = readTableFunction();
+            Projection projection = readProjection();
+            Expression filter = readExpression();
+            Aggregation aggregation = readAggregation();
+            List<PostAggregation> postAggregations = readPostAggregations();
+            Window window = readWindow();
+            Long duration = readNullableLong();
+            Query outerQuery = readBoolean() ? readQuery() : null;
+            return new Query(tableFunction, projection, filter, aggregation, postAggregations, outerQuery, window, duration);
+        }
+
+        private Projection readProjection() {
+            Projection.Type type = readEnum(PROJECTION_TYPES);
+            if (type == Projection.Type.PASS_THROUGH) {
+                return new Projection();
+            }
+            return new Projection(readFields(), type == Projection.Type.COPY);
+        }
+
+        private List<Field> readFields() {
+            int size = readCount();
+            List<Field> fields = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                fields.add(new Field(readString(), readExpression()));
+            }
+            return fields;
+        }
+
+        private Window readWindow() {
+            Integer emitEvery = readNullableInteger();
+            Window.Unit emitType = readEnum(UNITS);
+            Window.Unit includeType = readEnum(UNITS);
+            Integer includeFirst = readNullableInteger();
+            if (emitType == null) {
+                return new Window();
+            } else if (includeType == null) {
+                return new Window(emitEvery, emitType);
+            }
+            return new Window(emitEvery, emitType, includeType, includeFirst);
+        }
+
+        private TableFunction readTableFunction() {
+            int tag = readTag();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case EXPLODE:
+                    return new Explode(readExpression(), readString(), readString(), readBoolean());
+                case LATERAL_VIEW:
+                    int size = readCount();
+                    List<TableFunction> tableFunctions = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        tableFunctions.add(readTableFunction());
+                    }
+                    return new LateralView(tableFunctions);
+                default:
+                    throw new IllegalArgumentException("Invalid table function tag " + tag + " in the encoded query.");
+            }
+        }
+
+        private Aggregation readAggregation() {
+            int tag = readTag();
+            switch (tag) {
+                case RAW:
+                    return new Raw(readNullableInteger());
+                case GROUP_BY:
+                    return new GroupBy(readNullableInteger(), readStringMap(), readGroupOperations());
+                case GROUP_ALL:
+                    return new GroupAll(readGroupOperations());
+                case COUNT_DISTINCT:
+                    return new CountDistinct(readStringList(), readString());
+                case TOP_K:
+                    return new TopK(readStringMap(), readNullableInteger(), readNullableLong(), readString());
+                case LINEAR_DISTRIBUTION:
+                    return new LinearDistribution(readString(), readEnum(DISTRIBUTION_TYPES), readNullableInteger(), (int) readVarLong());
+                case REGION_DISTRIBUTION:
+                    return new RegionDistribution(readString(), readEnum(DISTRIBUTION_TYPES), readNullableInteger(), readDouble(), readDouble(), readDouble());
+                case MANUAL_DISTRIBUTION:
+                    String field = readString();
+                    DistributionType type = readEnum(DISTRIBUTION_TYPES);
+                    Integer size = readNullableInteger();
+                    int count = readCount();
+                    List<Double> points = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        points.add(readDouble());
+                    }
+                    return new ManualDistribution(field, type, size, points);
+                default:
+                    throw new IllegalArgumentException("Invalid aggregation tag " + tag + " in the encoded query.");
+            }
+        }
+
+        private double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        private Set<GroupOperation> readGroupOperations() {
+            int size = readCount();
+            Set<GroupOperation> operations = new LinkedHashSet<>();
+            for (int i = 0; i < size; i++) {
+                operations.add(new GroupOperation(readEnum(GROUP_OPERATION_TYPES), readString(), readString()));
+            }
+            return operations;
+        }
+
+        private List<PostAggregation> readPostAggregations() {
+            if (!readBoolean()) {
+                return null;
+            }
+            int size = readCount();
+            List<PostAggregation> postAggregations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int tag = readTag();
+                switch (tag) {
+                    case HAVING:
+                        postAggregations.add(new Having(readExpression()));
+                        break;
+                    case COMPUTATION:
+                        postAggregations.add(new Computation(readFields()));
+                        break;
+                    case ORDER_BY:
+                        int count = readCount();
+                        List<OrderBy.SortItem> items = new ArrayList<>(count);
+                        for (int j = 0; j < count; j++) {
+                            items.add(new OrderBy.SortItem(readExpression(), readEnum(DIRECTIONS)));
+                        }
+                        postAggregations.add(new OrderBy(items));
+                        break;
+                    case CULLING:
+                        postAggregations.add(new Culling(new LinkedHashSet<>(readStringList())));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid post-aggregation tag " + tag + " in the encoded query.");
+                }
+            }
+            return postAggregations;
+        }
+
+        private List<Expression> readExpressions() {
+            int size = readCount();
+            List<Expression> expressions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                expressions.add(readExpression());
+            }
+            return expressions;
+        }
+
+        private Expression readExpression() {
+            int tag = readTag();
+            Expression expression;
+            switch (tag) {
+                case NULL:
+                    return null;
+                case VALUE:
+                    expression = new ValueExpression(readValue());
+                    break;
+                case FIELD:
+                    expression = readFieldExpression();
+                    break;
+                case UNARY:
+                    Operation unaryOp = readEnum(OPERATIONS);
+                    expression = new UnaryExpression(readExpression(), unaryOp);
+                    break;
+                case BINARY:
+                    Operation binaryOp = readEnum(OPERATIONS);
+                    Expression left = readExpression();
+                    expression = new BinaryExpression(left, readExpression(), binaryOp);
+                    break;
+                case N_ARY:
+                    Operation nAryOp = readEnum(OPERATIONS);
+                    expression = new NAryExpression(readExpressions(), nAryOp);
+                    break;
+                case LIST:
+                    expression = new ListExpression(readExpressions());
+                    break;
+                case CAST:
+                    Type castType = readEnum(TYPES);
+                    expression = new CastExpression(readExpression(), castType);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid expression tag " + tag + " in the encoded query.");
+            }
+            expression.setType(readEnum(TYPES));
+            return expression;
+        }
+
+        private FieldExpression readFieldExpression() {
+            String field = readString();
+            Serializable key = readValue();
+            Serializable subKey = readValue();
+            if (key == null) {
+                return new FieldExpression(field);
+            }
+            FieldExpression expression;
+            if (key instanceof Integer) {
+                expression = new FieldExpression(field, (Integer) key);
+            } else if (key instanceof String) {
+                expression = new FieldExpression(field, (String) key);
+            } else if (key instanceof Expression) {
+                expression = new FieldExpression(field, (Expression) key);
+            } else {
+                throw new IllegalArgumentException("Invalid field key in the encoded query.");
+            }
+            if (subKey == null) {
+                return expression;
+            } else if (subKey instanceof String) {
+                return new FieldExpression(expression, (String) subKey);
+            } else if (subKey instanceof Expression) {
+                return new FieldExpression(expression, (Expression) subKey);
+            }
+            throw new IllegalArgumentException("Invalid field sub-key in the encoded query.");
+        }
+
+        private Serializable readValue() {
+            int tag = readTag();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return true;
+                case FALSE:
+                    return false;
+                case INTEGER:
+                    return readSignedVarInt();
+                case LONG:
+                    return readSignedVarLong();
+                case FLOAT:
+                    return Float.intBitsToFloat(readInt(limit));
+                case DOUBLE:
+                    return readDouble();
+                case STRING:
+                    return readString();
+                case EXPRESSION:
+                    return readExpression();
+                default:
+                    throw new IllegalArgumentException("Invalid value tag " + tag + " in the encoded query.");
+            }
+        }
+    }
+}
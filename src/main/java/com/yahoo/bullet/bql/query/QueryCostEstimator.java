@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.aggregations.Aggregation;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.postaggregations.Computation;
+import com.yahoo.bullet.query.postaggregations.Having;
+import com.yahoo.bullet.query.postaggregations.OrderBy;
+import com.yahoo.bullet.query.postaggregations.PostAggregation;
+import com.yahoo.bullet.query.tablefunctions.Explode;
+import com.yahoo.bullet.query.tablefunctions.LateralView;
+import com.yahoo.bullet.query.tablefunctions.TableFunction;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Estimates a relative, unitless cost for a compiled {@link Query}. The cost is made up of a per-record part (expression
+ * nodes, RLIKE operations and table functions that run on every record), a per-query part (the aggregation sketch size)
+ * and a multiplier that grows logarithmically with the duration of the query. Outer queries run on the results of the
+ * inner query and are added without the duration multiplier.
+ */
+public class QueryCostEstimator implements Serializable {
+    private static final long serialVersionUID = 4218306219873410682L;
+
+    public static final long EXPRESSION_WEIGHT = 1L;
+    public static final long REGEX_WEIGHT = 25L;
+    public static final long TABLE_FUNCTION_WEIGHT = 10L;
+    public static final long SKETCH_ENTRIES_PER_UNIT = 64L;
+
+    private static final Set<Operation> REGEX_OPERATIONS = EnumSet.of(Operation.REGEX_LIKE, Operation.REGEX_LIKE_ANY,
+                                                                      Operation.NOT_REGEX_LIKE, Operation.NOT_REGEX_LIKE_ANY);
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    private final BulletConfig config;
+
+    /**
+     * Constructor that takes the {@link BulletConfig} used to configure the queries whose cost will be estimated. The
+     * sketch sizes for the aggregations are read from it.
+     *
+     * @param config The {@link BulletConfig} to use.
+     */
+    public QueryCostEstimator(BulletConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Estimates the cost of a configured {@link Query}.
+     *
+     * @param query The {@link Query} to estimate the cost of.
+     * @return The non-negative estimated cost.
+     */
+    public long estimate(Query query) {
+        long cost = (long) Math.ceil(getStageCost(query) * getDurationFactor(query.getDuration()));
+        Query outerQuery = query.getOuterQuery();
+        if (outerQuery != null) {
+            cost += getStageCost(outerQuery);
+        }
+        return cost;
+    }
+
+    private long getStageCost(Query query) {
+        long cost = getCost(query.getTableFunction());
+        if (query.getProjection().getFields() != null) {
+            cost += getFieldsCost(query.getProjection().getFields());
+        }
+        cost += getCost(query.getFilter());
+        cost += getCost(query.getAggregation());
+        if (query.getPostAggregations() != null) {
+            for (PostAggregation postAggregation : query.getPostAggregations()) {
+                cost += getCost(postAggregation);
+            }
+        }
+        return cost;
+    }
+
+    private long getCost(TableFunction tableFunction) {
+        if (tableFunction instanceof LateralView) {
+            return ((LateralView) tableFunction).getTableFunctions().stream().mapToLong(this::getCost).sum();
+        } else if (tableFunction instanceof Explode) {
+            return TABLE_FUNCTION_WEIGHT + getCost(((Explode) tableFunction).getField());
+        }
+        return 0L;
+    }
+
+    private long getCost(Aggregation aggregation) {
+        switch (aggregation.getType()) {
+            case GROUP:
+                return sketchCost(BulletConfig.GROUP_AGGREGATION_SKETCH_ENTRIES);
+            case COUNT_DISTINCT:
+                return sketchCost(BulletConfig.COUNT_DISTINCT_AGGREGATION_SKETCH_ENTRIES);
+            case DISTRIBUTION:
+                return sketchCost(BulletConfig.DISTRIBUTION_AGGREGATION_SKETCH_ENTRIES);
+            case TOP_K:
+                return sketchCost(BulletConfig.TOP_K_AGGREGATION_SKETCH_ENTRIES);
+            default:
+                Integer size = aggregation.getSize();
+                return size != null ? divideRoundingUp(size, SKETCH_ENTRIES_PER_UNIT) : 0L;
+        }
+    }
+
+    private long getCost(PostAggregation postAggregation) {
+        if (postAggregation instanceof Having) {
+            return getCost(((Having) postAggregation).getExpression());
+        } else if (postAggregation instanceof Computation) {
+            return getFieldsCost(((Computation) postAggregation).getFields());
+        } else if (postAggregation instanceof OrderBy) {
+            return ((OrderBy) postAggregation).getFields().stream().mapToLong(item -> getCost(item.getExpression())).sum();
+        }
+        return 0L;
+    }
+
+    private long getFieldsCost(Collection<Field> fields) {
+        return fields.stream().mapToLong(field -> getCost(field.getValue())).sum();
+    }
+
+    private long getCost(Expression expression) {
+        if (expression == null) {
+            return 0L;
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            long weight = REGEX_OPERATIONS.contains(binary.getOp()) ? REGEX_WEIGHT : EXPRESSION_WEIGHT;
+            return weight + getCost(binary.getLeft()) + getCost(binary.getRight());
+        } else if (expression instanceof UnaryExpression) {
+            return EXPRESSION_WEIGHT + getCost(((UnaryExpression) expression).getOperand());
+        } else if (expression instanceof NAryExpression) {
+            return EXPRESSION_WEIGHT + ((NAryExpression) expression).getOperands().stream().mapToLong(this::getCost).sum();
+        } else if (expression instanceof ListExpression) {
+            return EXPRESSION_WEIGHT + ((ListExpression) expression).getValues().stream().mapToLong(this::getCost).sum();
+        } else if (expression instanceof CastExpression) {
+            return EXPRESSION_WEIGHT + getCost(((CastExpression) expression).getValue());
+        } else if (expression instanceof FieldExpression) {
+            FieldExpression field = (FieldExpression) expression;
+            long cost = EXPRESSION_WEIGHT;
+            if (field.getKey() instanceof Expression) {
+                cost += getCost((Expression) field.getKey());
+            }
+            if (field.getSubKey() instanceof Expression) {
+                cost += getCost((Expression) field.getSubKey());
+            }
+            return cost;
+        }
+        return EXPRESSION_WEIGHT;
+    }
+
+    private long sketchCost(String entriesSetting) {
+        Number entries = config.getAs(entriesSetting, Number.class);
+        return entries != null ? divideRoundingUp(entries.longValue(), SKETCH_ENTRIES_PER_UNIT) : 0L;
+    }
+
+    private static double getDurationFactor(Long duration) {
+        if (duration == null || duration <= 0) {
+            return 1.0;
+        }
+        return 1.0 + Math.log1p(duration / MILLIS_PER_SECOND) / Math.log(2.0);
+    }
+
+    private static long divideRoundingUp(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
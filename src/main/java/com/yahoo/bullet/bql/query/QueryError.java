@@ -17,9 +17,29 @@ import java.util.List;
 public enum QueryError {
     EMPTY_QUERY("The given BQL query is empty.", "Please specify a non-empty query."),
     QUERY_TOO_LONG("The given BQL string is too long. (%d characters)"),
+    QUERY_TOO_MANY_NODES("The given BQL query has more than %d nodes.", "Please simplify the query."),
+    EXPRESSION_TOO_DEEP("The expression is nested more than %d levels deep.", "Please reduce the nesting of the expression."),
+    LIST_TOO_LARGE("The list has more than %d values.", "Please use a smaller list."),
+    TOO_MANY_RLIKE_OPERATIONS("The given BQL query has more than %d RLIKE patterns.", "Please use fewer RLIKE patterns."),
+    TOO_MANY_TABLE_FUNCTIONS("The given BQL query has more than %d table functions.", "Please use fewer table functions."),
+    OUTER_QUERY_TOO_DEEP("The given BQL query nests outer queries more than %d levels deep.", "Please remove the outer query."),
+    QUERY_TOO_EXPENSIVE("The given BQL query is too expensive. (estimated cost %d)"),
+    QUERY_COST_BUDGET_EXCEEDED("The given BQL query does not fit in the remaining cost budget. (estimated cost %d, remaining budget %d)"),
+    COMPILATION_TIMED_OUT("The given BQL query took longer than %d ms to compile.", "Please simplify the query."),
+    COMPILATION_CANCELLED("The compilation of the given BQL query was cancelled."),
     GENERIC_PARSING_ERROR("%s", "This is a parsing error."),
     GENERIC_ERROR("%s", "This is an application error and not a user error."),
 
+    QUERY_HAS_PARAMETERS("The given BQL query has bind parameters.", "Please prepare the query and bind values to its parameters instead."),
+    EXPLAIN_PREPARED("EXPLAIN statements cannot be prepared.", "Please remove EXPLAIN from the query."),
+    PARAMETER_TYPE_NOT_INFERRED("The type of the parameter %s cannot be inferred.",
+                                "Please compare the parameter with an expression of a known primitive or primitive list type. Parameters cannot be patterns."),
+    PARAMETER_TYPE_CONFLICT("The parameter %s is used as both %s and %s.", "Please use a different parameter for each type."),
+    PARAMETER_NOT_BINDABLE("The parameter %s cannot be bound in the built query.", "Please replace the parameter with a literal."),
+    PARAMETER_COUNT_MISMATCH("The prepared query has %d parameters. Values given: %d."),
+    PARAMETER_NOT_BOUND("No value was given for the parameter %s."),
+    PARAMETER_VALUE_MISMATCH("The value given for the parameter %s does not match its type. Type expected: %s. Value given: %s."),
+
     MULTIPLE_QUERY_TYPES("Query consists of multiple aggregation types.", "Please specify a valid query with only one aggregation type."),
     NESTED_AGGREGATE("Aggregates cannot be nested.", "Please remove any nested aggregates."),
     WHERE_WITH_AGGREGATE("WHERE clause cannot contain aggregates.", "If you wish to filter on an aggregate, please specify it in the HAVING clause."),
@@ -84,6 +104,11 @@ public enum QueryError {
     BINARY_TYPES_NOT_STRING("The types of the arguments in %s must be STRING. Types given: %s, %s."),
     BINARY_LHS_NOT_STRING("The type of the left operand in %s must be STRING. Type given: %s."),
     BINARY_RHS_NOT_STRING_LIST("The type of the right operand in %s must be STRING_LIST. Type given: %s."),
+    REGEX_INVALID("The pattern '%s' in %s is not a valid regular expression: %s."),
+    REGEX_BACKTRACKING_PRONE("The pattern '%s' in %s nests unbounded quantifiers and is prone to catastrophic backtracking.",
+                             "Please remove the quantifier on the group or make the quantifiers inside it bounded."),
+    LIKE_PATTERN_NOT_STRING_LITERAL("The pattern in %s must be a STRING literal."),
+    LIKE_ANY_PATTERNS_NOT_STRING_LITERALS("The patterns in %s must be a list of STRING literals."),
     SIZE_IS_HAS_WRONG_TYPE("The type of the first argument in %s must be some LIST, MAP, or STRING. Type given: %s."),
     SIZE_IS_NOT_NUMERIC("The type of the second argument in %s must be numeric. Type given: %s."),
     CONTAINS_KEY_HAS_WRONG_TYPE("The type of the first argument in %s must be some MAP or MAP_LIST. Type given: %s."),
@@ -130,7 +155,7 @@ public enum QueryError {
      * @return A {@link BulletError}.
      */
     public BulletError format() {
-        return new BulletError(errorFormat, resolutions);
+        return new FormattedError(this, errorFormat, resolutions);
     }
 
     /**
@@ -140,7 +165,7 @@ public enum QueryError {
      * @return A {@link BulletError}.
      */
     public BulletError format(Object... arguments) {
-        return format(errorFormat, resolutions, arguments);
+        return new FormattedError(this, String.format(errorFormat, arguments), resolutions);
     }
 
     /**
@@ -150,7 +175,7 @@ public enum QueryError {
      * @return A {@link BulletError}.
      */
     public BulletError format(NodeLocation location) {
-        return new BulletError(location + errorFormat, resolutions);
+        return new FormattedError(this, location + errorFormat, resolutions);
     }
 
     /**
@@ -161,7 +186,7 @@ public enum QueryError {
      * @return A {@link BulletError}.
      */
     public BulletError format(NodeLocation location, Object... arguments) {
-        return format(location + errorFormat, resolutions, arguments);
+        return new FormattedError(this, String.format(location + errorFormat, arguments), resolutions);
     }
 
     /**
@@ -172,10 +197,29 @@ public enum QueryError {
      * @return A {@link BulletError}.
      */
     public BulletError formatWithResolution(String resolution, Object... arguments) {
-        return format(errorFormat, Collections.singletonList(resolution), arguments);
+        return new FormattedError(this, String.format(errorFormat, arguments), Collections.singletonList(resolution));
+    }
+
+    /**
+     * Gets the {@link QueryError} that the given {@link BulletError} was formatted from, if any. The {@link QueryError}
+     * is carried by the errors that it formats, so errors with the same message are still told apart.
+     *
+     * @param error The {@link BulletError} to classify.
+     * @return The {@link QueryError} or null if the error was not formatted from one.
+     */
+    public static QueryError fromError(BulletError error) {
+        return error instanceof FormattedError ? ((FormattedError) error).queryError : null;
     }
 
-    private static BulletError format(String format, List<String> resolutions, Object... arguments) {
-        return new BulletError(String.format(format, arguments), resolutions);
+    // A BulletError that remembers the QueryError it was formatted from
+    private static class FormattedError extends BulletError {
+        private static final long serialVersionUID = 4409542718346125710L;
+
+        private final QueryError queryError;
+
+        private FormattedError(QueryError queryError, String error, List<String> resolutions) {
+            super(error, resolutions);
+            this.queryError = queryError;
+        }
     }
 }
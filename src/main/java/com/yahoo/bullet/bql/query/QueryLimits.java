@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.common.BulletConfig;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * The limits on the complexity of a query that are checked while its AST is built. A query that exceeds one fails
+ * with a located error as soon as the limit is reached, before the rest of the query is built.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class QueryLimits implements Serializable {
+    private static final long serialVersionUID = 1880361736532216455L;
+
+    /**
+     * No limits.
+     */
+    public static final QueryLimits NONE = new QueryLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                                                           Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int maxNodes;
+    private final int maxExpressionDepth;
+    private final int maxListSize;
+    private final int maxRegexOperations;
+    private final int maxTableFunctions;
+    private final int maxOuterQueryDepth;
+
+    /**
+     * Constructor that reads the limits from a {@link BulletConfig} validated by {@link BQLConfig}.
+     *
+     * @param config The {@link BulletConfig} to read the limits from.
+     */
+    public QueryLimits(BulletConfig config) {
+        this(config.getAs(BQLConfig.BQL_MAX_QUERY_NODES, Integer.class),
+             config.getAs(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, Integer.class),
+             config.getAs(BQLConfig.BQL_MAX_LIST_SIZE, Integer.class),
+             config.getAs(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, Integer.class),
+             config.getAs(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, Integer.class),
+             config.getAs(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, Integer.class));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.aggregations.Aggregation;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.postaggregations.Computation;
+import com.yahoo.bullet.query.postaggregations.Culling;
+import com.yahoo.bullet.query.postaggregations.Having;
+import com.yahoo.bullet.query.postaggregations.OrderBy;
+import com.yahoo.bullet.query.postaggregations.PostAggregation;
+import com.yahoo.bullet.query.tablefunctions.Explode;
+import com.yahoo.bullet.query.tablefunctions.LateralView;
+import com.yahoo.bullet.query.tablefunctions.TableFunction;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The plan of a compiled query as returned by an EXPLAIN statement. It holds the decisions made while building the
+ * {@link Query} along with the query components and can be rendered as text with {@link #toString()}.
+ */
+@Getter
+public class QueryPlan {
+    private static final String INDENT = "  ";
+    private static final String DELIMITER = ", ";
+
+    private final ProcessedQuery.QueryType queryType;
+    private final boolean specialK;
+    private final Projection.Type projectionType;
+    private final List<Field> projectedFields;
+    private final TableFunction tableFunction;
+    private final Expression filter;
+    private final Aggregation aggregation;
+    private final List<PostAggregation> postAggregations;
+    private final Window window;
+    private final Long duration;
+    private final List<String> rewrites;
+    private final QueryPlan outerPlan;
+
+    QueryPlan(ProcessedQuery processedQuery, Query query, List<String> rewrites, QueryPlan outerPlan) {
+        this.queryType = processedQuery.getQueryType();
+        this.specialK = processedQuery.isSpecialK();
+        this.projectionType = query.getProjection().getType();
+        this.projectedFields = query.getProjection().getFields() != null ? query.getProjection().getFields() : Collections.emptyList();
+        this.tableFunction = query.getTableFunction();
+        this.filter = query.getFilter();
+        this.aggregation = query.getAggregation();
+        this.postAggregations = query.getPostAggregations() != null ? query.getPostAggregations() : Collections.emptyList();
+        this.window = query.getWindow();
+        this.duration = query.getDuration();
+        this.rewrites = rewrites;
+        this.outerPlan = outerPlan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        append(builder, "");
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, String indent) {
+        line(builder, indent, "Query type: " + queryType + (specialK ? " (Special-K)" : ""));
+        if (projectionType == Projection.Type.PASS_THROUGH) {
+            line(builder, indent, "Projection: " + projectionType);
+        } else {
+            line(builder, indent, "Projection: " + projectionType + " [" + formatFields(projectedFields) + "]");
+        }
+        if (tableFunction != null) {
+            line(builder, indent, "Table function: " + formatTableFunction(tableFunction));
+        }
+        if (filter != null) {
+            line(builder, indent, "Filter: " + CompiledExpressionFormatter.format(filter));
+        }
+        line(builder, indent, "Aggregation: " + aggregation);
+        if (!postAggregations.isEmpty()) {
+            line(builder, indent, "Post-aggregations:");
+            for (PostAggregation postAggregation : postAggregations) {
+                line(builder, indent + INDENT, formatPostAggregation(postAggregation));
+            }
+        }
+        line(builder, indent, "Window: " + (window.getEmitType() != null ? window : "none"));
+        if (duration != null) {
+            line(builder, indent, "Duration: " + duration + " ms");
+        }
+        if (!rewrites.isEmpty()) {
+            line(builder, indent, "Rewrites:");
+            for (String rewrite : rewrites) {
+                line(builder, indent + INDENT, rewrite);
+            }
+        }
+        if (outerPlan != null) {
+            line(builder, indent, "Outer query:");
+            outerPlan.append(builder, indent + INDENT);
+        }
+    }
+
+    private static void line(StringBuilder builder, String indent, String text) {
+        builder.append(indent).append(text).append(System.lineSeparator());
+    }
+
+    private static String formatFields(List<Field> fields) {
+        return fields.stream().map(field -> {
+            String value = CompiledExpressionFormatter.format(field.getValue());
+            return value.equals(field.getName()) ? value : value + " AS " + field.getName();
+        }).collect(Collectors.joining(DELIMITER));
+    }
+
+    private static String formatTableFunction(TableFunction tableFunction) {
+        if (tableFunction instanceof LateralView) {
+            return "LATERAL VIEW " + ((LateralView) tableFunction).getTableFunctions().stream().map(QueryPlan::formatTableFunction)
+                                                                  .collect(Collectors.joining(DELIMITER));
+        }
+        if (tableFunction instanceof Explode) {
+            Explode explode = (Explode) tableFunction;
+            String aliases = explode.getValueAlias() != null ? "(" + explode.getKeyAlias() + DELIMITER + explode.getValueAlias() + ")" : explode.getKeyAlias();
+            return (explode.isOuter() ? "OUTER " : "") + "EXPLODE(" + CompiledExpressionFormatter.format(explode.getField()) + ") AS " + aliases;
+        }
+        return tableFunction.toString();
+    }
+
+    private static String formatPostAggregation(PostAggregation postAggregation) {
+        if (postAggregation instanceof Having) {
+            return "HAVING " + CompiledExpressionFormatter.format(((Having) postAggregation).getExpression());
+        } else if (postAggregation instanceof Computation) {
+            return "COMPUTATION " + formatFields(((Computation) postAggregation).getFields());
+        } else if (postAggregation instanceof OrderBy) {
+            return "ORDER BY " + ((OrderBy) postAggregation).getFields().stream()
+                                                             .map(item -> CompiledExpressionFormatter.format(item.getExpression()) + " " + item.getDirection())
+                                                             .collect(Collectors.joining(DELIMITER));
+        } else if (postAggregation instanceof Culling) {
+            return "CULLING " + ((Culling) postAggregation).getTransientFields();
+        }
+        return postAggregation.toString();
+    }
+}
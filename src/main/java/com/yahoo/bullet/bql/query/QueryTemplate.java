@@ -0,0 +1,337 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.tree.BinaryExpressionNode;
+import com.yahoo.bullet.bql.tree.ExpressionNode;
+import com.yahoo.bullet.bql.tree.LikePredicateNode;
+import com.yahoo.bullet.bql.tree.LiteralNode;
+import com.yahoo.bullet.bql.tree.Node;
+import com.yahoo.bullet.bql.tree.QueryNode;
+import com.yahoo.bullet.bql.util.ExpressionFormatter;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+import com.yahoo.bullet.typesystem.Type;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The template of a query where the literals of the WHERE clause are parameters. Queries that only differ in those
+ * literals share the same {@link #getKey()} as long as the literals have the same types and repeat in the same places.
+ * The {@link Plan} built for one of them can then be bound to the literals of the others without processing, building
+ * and type checking them again.
+ *
+ * Apart from the patterns of RLIKE and LIKE, which are compiled and rewritten based on their values, the checks done
+ * while building the query only depend on the types of the literals. Patterns and NULL are therefore kept as is in the
+ * key and every other literal of the WHERE clause is replaced with its type.
+ */
+public class QueryTemplate {
+    private static final Set<Operation> PATTERN_OPERATIONS =
+            EnumSet.of(Operation.REGEX_LIKE, Operation.REGEX_LIKE_ANY, Operation.NOT_REGEX_LIKE, Operation.NOT_REGEX_LIKE_ANY);
+    private static final Set<Operation> LOGICAL_OPERATIONS = EnumSet.of(Operation.AND, Operation.OR, Operation.XOR);
+
+    @Getter
+    private final String key;
+    // The distinct literals that are parameters in the order that they first appear
+    @Getter
+    private final List<LiteralNode> parameters = new ArrayList<>();
+
+    /**
+     * Constructor that creates the template of a parsed query.
+     *
+     * @param queryNode The non-null {@link QueryNode} of the query.
+     */
+    public QueryTemplate(QueryNode queryNode) {
+        key = new KeyFormatter(queryNode.getWhere()).process(queryNode);
+    }
+
+    /**
+     * Creates the {@link Plan} of this template from the {@link QueryBuilder} that built the query it was created from.
+     *
+     * @param builder The {@link QueryBuilder} of the query without errors.
+     * @return The {@link Plan} or null if the literals cannot be rebound in the built query.
+     */
+    public Plan createPlan(QueryBuilder builder) {
+        for (LiteralNode parameter : parameters) {
+            if (!(builder.getFilterExpression(parameter) instanceof ValueExpression)) {
+                return null;
+            }
+        }
+        return createPlan(builder, parameters);
+    }
+
+    /**
+     * Creates a {@link Plan} from the {@link QueryBuilder} of a query where the given nodes of the WHERE clause are the
+     * parameters.
+     *
+     * @param builder The {@link QueryBuilder} of the query without errors.
+     * @param parameters The distinct {@link Node} parameters of the WHERE clause.
+     * @return The {@link Plan} or null if the parameters cannot be rebound in the built query.
+     */
+    public static Plan createPlan(QueryBuilder builder, List<? extends Node> parameters) {
+        Query query = builder.getQuery();
+        List<Expression> expressions = new ArrayList<>();
+        for (Node parameter : parameters) {
+            Expression expression = builder.getFilterExpression(parameter);
+            if (expression == null) {
+                return null;
+            }
+            expressions.add(expression);
+        }
+        // Every parameter must still be in the filter. For instance, it may have been rewritten away
+        List<Expression> filterExpressions = new ArrayList<>();
+        collectExpressions(query.getFilter(), filterExpressions);
+        int[][] indices = new int[expressions.size()][];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = indicesOf(filterExpressions, expressions.get(i));
+            if (indices[i].length == 0) {
+                return null;
+            }
+        }
+        List<Type> types = expressions.stream().map(Expression::getType).collect(Collectors.toList());
+        return new Plan(LazyPubSubMessageSerDe.CachedQuery.of(query), indices, types);
+    }
+
+    /**
+     * A query built once for a {@link QueryTemplate}, or a prepared query, along with the positions of its parameters.
+     * The plan keeps its own encoded copy of the query, so every bound query is a new {@link Query} that shares nothing
+     * with the plan or the other bound queries.
+     */
+    public static class Plan {
+        private final LazyPubSubMessageSerDe.CachedQuery query;
+        // The positions of each parameter in the pre-order of the expressions of the filter. A parameter that is
+        // repeated may be the same expression in several places
+        private final int[][] indices;
+        private final List<Type> types;
+
+        private Plan(LazyPubSubMessageSerDe.CachedQuery query, int[][] indices, List<Type> types) {
+            this.query = query;
+            this.indices = indices;
+            this.types = types;
+        }
+
+        /**
+         * Gets the types of the parameters of this plan in order.
+         *
+         * @return The {@link List} of {@link Type} of the parameters.
+         */
+        public List<Type> getParameterTypes() {
+            return Collections.unmodifiableList(types);
+        }
+
+        /**
+         * Binds the literals of a query with the same template key to a new copy of the query of this plan. The
+         * returned query must be configured.
+         *
+         * @param template The {@link QueryTemplate} of the query to bind. It must have the same key as this plan.
+         * @return A new {@link Query} with the literals of the given template.
+         */
+        public Query bind(QueryTemplate template) {
+            List<Expression> values = new ArrayList<>(template.parameters.size());
+            for (LiteralNode parameter : template.parameters) {
+                values.add(new ValueExpression(parameter.getValue()));
+            }
+            return bind(values);
+        }
+
+        /**
+         * Binds the given expressions to the parameters of a new copy of the query of this plan. The returned query
+         * must be configured.
+         *
+         * @param expressions The typed {@link Expression} of each parameter in order.
+         * @return A new {@link Query} with the given expressions in place of the parameters.
+         */
+        public Query bind(List<? extends Expression> expressions) {
+            Query copy = query.decode();
+            if (indices.length == 0) {
+                return copy;
+            }
+            List<Expression> filterExpressions = new ArrayList<>();
+            collectExpressions(copy.getFilter(), filterExpressions);
+            Map<Expression, Expression> values = new IdentityHashMap<>();
+            for (int i = 0; i < indices.length; i++) {
+                for (int index : indices[i]) {
+                    values.put(filterExpressions.get(index), expressions.get(i));
+                }
+            }
+            Expression filter = substitute(copy.getFilter(), values);
+            return new Query(copy.getTableFunction(), copy.getProjection(), filter, copy.getAggregation(), copy.getPostAggregations(),
+                             copy.getOuterQuery(), copy.getWindow(), copy.getDuration());
+        }
+    }
+
+    private class KeyFormatter extends ExpressionFormatter.Formatter {
+        private final Node where;
+        private final Map<LiteralNode, Integer> indices = new HashMap<>();
+        private boolean parameterize;
+        private Node parent;
+
+        KeyFormatter(Node where) {
+            super(true);
+            this.where = where;
+        }
+
+        @Override
+        public String process(Node node, Void context) {
+            Node enclosing = parent;
+            parent = node;
+            String result;
+            if (node == null || node != where) {
+                result = super.process(node, context);
+            } else {
+                parameterize = true;
+                result = super.process(node, context);
+                parameterize = false;
+            }
+            parent = enclosing;
+            // The parser drops the parentheses around logical operations so they are added back to keep the grouping
+            return isGrouped(node, enclosing) ? "(" + result + ")" : result;
+        }
+
+        @Override
+        protected String visitBinaryExpression(BinaryExpressionNode node, Void context) {
+            if (!parameterize || !PATTERN_OPERATIONS.contains(node.getOp())) {
+                return super.visitBinaryExpression(node, context);
+            }
+            parameterize = false;
+            String result = super.visitBinaryExpression(node, context);
+            parameterize = true;
+            return result;
+        }
+
+        @Override
+        protected String visitLikePredicate(LikePredicateNode node, Void context) {
+            if (!parameterize) {
+                return super.visitLikePredicate(node, context);
+            }
+            parameterize = false;
+            String result = super.visitLikePredicate(node, context);
+            parameterize = true;
+            return result;
+        }
+
+        @Override
+        protected String visitLiteral(LiteralNode node, Void context) {
+            if (!parameterize || node.getValue() == null) {
+                return super.visitLiteral(node, context);
+            }
+            Integer index = indices.get(node);
+            if (index == null) {
+                index = parameters.size();
+                indices.put(node, index);
+                parameters.add(node);
+            }
+            return "?" + node.getValue().getClass().getSimpleName() + "#" + index;
+        }
+    }
+
+    private static boolean isGrouped(Node node, Node enclosing) {
+        if (!(node instanceof BinaryExpressionNode) || !(enclosing instanceof ExpressionNode)) {
+            return false;
+        }
+        Operation op = ((BinaryExpressionNode) node).getOp();
+        if (!LOGICAL_OPERATIONS.contains(op)) {
+            return false;
+        }
+        return !(enclosing instanceof BinaryExpressionNode) || ((BinaryExpressionNode) enclosing).getOp() != op;
+    }
+
+    // Collects the expressions in pre-order, which is the same for a query and its copies
+    private static void collectExpressions(Expression expression, List<Expression> values) {
+        if (expression == null) {
+            return;
+        }
+        values.add(expression);
+        if (expression instanceof UnaryExpression) {
+            collectExpressions(((UnaryExpression) expression).getOperand(), values);
+        } else if (expression instanceof BinaryExpression) {
+            collectExpressions(((BinaryExpression) expression).getLeft(), values);
+            collectExpressions(((BinaryExpression) expression).getRight(), values);
+        } else if (expression instanceof NAryExpression) {
+            ((NAryExpression) expression).getOperands().forEach(operand -> collectExpressions(operand, values));
+        } else if (expression instanceof ListExpression) {
+            ((ListExpression) expression).getValues().forEach(value -> collectExpressions(value, values));
+        } else if (expression instanceof CastExpression) {
+            collectExpressions(((CastExpression) expression).getValue(), values);
+        }
+    }
+
+    private static int[] indicesOf(List<Expression> expressions, Expression expression) {
+        return IntStream.range(0, expressions.size()).filter(i -> expressions.get(i) == expression).toArray();
+    }
+
+    static Expression substitute(Expression expression, Map<Expression, Expression> values) {
+        Expression value = values.get(expression);
+        if (value != null) {
+            return value;
+        }
+        Expression copy = expression;
+        if (expression instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) expression;
+            Expression operand = substitute(unary.getOperand(), values);
+            if (operand != unary.getOperand()) {
+                copy = new UnaryExpression(operand, unary.getOp());
+            }
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            Expression left = substitute(binary.getLeft(), values);
+            Expression right = substitute(binary.getRight(), values);
+            if (left != binary.getLeft() || right != binary.getRight()) {
+                copy = new BinaryExpression(left, right, binary.getOp());
+            }
+        } else if (expression instanceof NAryExpression) {
+            NAryExpression nary = (NAryExpression) expression;
+            List<Expression> operands = substitute(nary.getOperands(), values);
+            if (operands != nary.getOperands()) {
+                copy = new NAryExpression(operands, nary.getOp());
+            }
+        } else if (expression instanceof ListExpression) {
+            ListExpression list = (ListExpression) expression;
+            List<Expression> items = substitute(list.getValues(), values);
+            if (items != list.getValues()) {
+                copy = new ListExpression(items);
+            }
+        } else if (expression instanceof CastExpression) {
+            CastExpression cast = (CastExpression) expression;
+            Expression operand = substitute(cast.getValue(), values);
+            if (operand != cast.getValue()) {
+                copy = new CastExpression(operand, cast.getCastType());
+            }
+        }
+        if (copy != expression) {
+            copy.setType(expression.getType());
+        }
+        return copy;
+    }
+
+    private static List<Expression> substitute(List<Expression> expressions, Map<Expression, Expression> values) {
+        List<Expression> copies = new ArrayList<>(expressions.size());
+        boolean changed = false;
+        for (Expression expression : expressions) {
+            Expression copy = substitute(expression, values);
+            changed |= copy != expression;
+            copies.add(copy);
+        }
+        return changed ? copies : expressions;
+    }
+}
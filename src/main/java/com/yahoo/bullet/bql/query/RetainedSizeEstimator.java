@@ -0,0 +1,287 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.query.Query;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the heap retained by a compiled {@link Query} with a breakdown by its components. The sizes assume a 64-bit
+ * JVM with compressed references (12 byte object headers, 16 byte array headers, 4 byte references and 8 byte
+ * alignment) and compact strings. JDK lists, maps and sets are sized from their contents as if they were an
+ * {@link ArrayList}, {@link java.util.HashMap} or {@link java.util.HashSet} with no spare capacity. Enums are shared by
+ * every query and are not counted. An object that is referenced from more than one component is only counted once, in
+ * the first component in the order of {@link Component}.
+ */
+public final class RetainedSizeEstimator {
+    public enum Component {
+        // The query object itself and its duration
+        QUERY,
+        TABLE_FUNCTION,
+        PROJECTION,
+        FILTER,
+        AGGREGATION,
+        POST_AGGREGATIONS,
+        WINDOW,
+        OUTER_QUERY
+    }
+
+    private static final Component[] COMPONENTS = Component.values();
+
+    private static final long OBJECT_HEADER = 12L;
+    private static final long ARRAY_HEADER = 16L;
+    private static final long REFERENCE = 4L;
+    private static final long ALIGNMENT = 8L;
+    private static final long STRING = 24L;
+    private static final long ARRAY_LIST = 24L;
+    private static final long HASH_SET = 16L;
+    private static final long HASH_MAP = 48L;
+    private static final long HASH_MAP_NODE = 32L;
+    private static final long LINKED_HASH_MAP = 56L;
+    private static final long LINKED_HASH_MAP_NODE = 40L;
+    private static final int MIN_TABLE_SIZE = 16;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private RetainedSizeEstimator() {
+    }
+
+    /**
+     * The estimated retained size of a query and of each of its components.
+     */
+    public static class RetainedSize {
+        private final long[] bytes = new long[COMPONENTS.length];
+
+        private RetainedSize() {
+        }
+
+        /**
+         * Gets the estimated size of a component. Components that the query does not have, such as the filter of a
+         * query without a WHERE clause, have a size of 0.
+         *
+         * @param component The {@link Component}.
+         * @return The size in bytes.
+         */
+        public long getBytes(Component component) {
+            return bytes[component.ordinal()];
+        }
+
+        /**
+         * Gets the estimated size of the whole query.
+         *
+         * @return The size in bytes.
+         */
+        public long getTotalBytes() {
+            long total = 0L;
+            for (long component : bytes) {
+                total += component;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("{");
+            for (Component component : COMPONENTS) {
+                long size = bytes[component.ordinal()];
+                if (size != 0L) {
+                    builder.append(builder.length() > 1 ? ", " : "").append(component).append(": ").append(size).append("B");
+                }
+            }
+            return builder.append(builder.length() > 1 ? ", " : "").append("TOTAL: ").append(getTotalBytes()).append("B}").toString();
+        }
+    }
+
+    /**
+     * Estimates the heap retained by a compiled {@link Query}.
+     *
+     * @param query The {@link Query} to estimate the size of.
+     * @return The {@link RetainedSize} of the query.
+     */
+    public static RetainedSize estimate(Query query) {
+        Walker walker = new Walker();
+        RetainedSize size = new RetainedSize();
+        walker.visited.put(query, Boolean.TRUE);
+        size.bytes[Component.QUERY.ordinal()] = LAYOUTS.get(query.getClass()).size + walker.walk(query.getDuration());
+        size.bytes[Component.TABLE_FUNCTION.ordinal()] = walker.walk(query.getTableFunction());
+        size.bytes[Component.PROJECTION.ordinal()] = walker.walk(query.getProjection());
+        size.bytes[Component.FILTER.ordinal()] = walker.walk(query.getFilter());
+        size.bytes[Component.AGGREGATION.ordinal()] = walker.walk(query.getAggregation());
+        size.bytes[Component.POST_AGGREGATIONS.ordinal()] = walker.walk(query.getPostAggregations());
+        size.bytes[Component.WINDOW.ordinal()] = walker.walk(query.getWindow());
+        size.bytes[Component.OUTER_QUERY.ordinal()] = walker.walk(query.getOuterQuery());
+        return size;
+    }
+
+    // Visible for testing
+    static long estimate(Object object) {
+        return new Walker().walk(object);
+    }
+
+    private static class Walker {
+        private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+        private final Deque<Object> pending = new ArrayDeque<>();
+
+        // Sums the sizes of the objects reachable from the root that have not been counted yet
+        private long walk(Object root) {
+            long size = 0L;
+            push(root);
+            while (!pending.isEmpty()) {
+                size += visit(pending.pop());
+            }
+            return size;
+        }
+
+        private void push(Object object) {
+            if (object == null || object instanceof Enum || object instanceof Class || visited.put(object, Boolean.TRUE) != null) {
+                return;
+            }
+            pending.push(object);
+        }
+
+        private long visit(Object object) {
+            if (object instanceof String) {
+                return STRING + getStringBytes((String) object);
+            }
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                return visitArray(object, type.getComponentType());
+            }
+            if (object instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) object;
+                map.forEach((key, value) -> {
+                    push(key);
+                    push(value);
+                });
+                return getMapBytes(map.size(), object instanceof LinkedHashMap);
+            }
+            if (object instanceof Set) {
+                Set<?> set = (Set<?>) object;
+                set.forEach(this::push);
+                return HASH_SET + getMapBytes(set.size(), object instanceof LinkedHashSet);
+            }
+            if (object instanceof Collection) {
+                Collection<?> collection = (Collection<?>) object;
+                collection.forEach(this::push);
+                return ARRAY_LIST + getArrayBytes(collection.size(), REFERENCE);
+            }
+            Layout layout = LAYOUTS.get(type);
+            for (Field field : layout.references) {
+                push(layout.get(field, object));
+            }
+            return layout.size;
+        }
+
+        private long visitArray(Object array, Class<?> componentType) {
+            int length = Array.getLength(array);
+            if (componentType.isPrimitive()) {
+                return getArrayBytes(length, getFieldBytes(componentType));
+            }
+            for (int i = 0; i < length; i++) {
+                push(Array.get(array, i));
+            }
+            return getArrayBytes(length, REFERENCE);
+        }
+    }
+
+    // The shallow size of a class and the reference fields to follow. Fields of JDK classes are not followed.
+    private static class Layout {
+        private final long size;
+        private final List<Field> references = new ArrayList<>();
+
+        Layout(Class<?> type) {
+            long fields = 0L;
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                boolean follow = !current.getName().startsWith("java.");
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> fieldType = field.getType();
+                    fields += fieldType.isPrimitive() ? getFieldBytes(fieldType) : REFERENCE;
+                    if (follow && !fieldType.isPrimitive() && makeAccessible(field)) {
+                        references.add(field);
+                    }
+                }
+            }
+            size = align(OBJECT_HEADER + fields);
+        }
+
+        private Object get(Field field, Object object) {
+            try {
+                return field.get(object);
+            } catch (IllegalAccessException e) {
+                // The field was made accessible when the layout was created
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static boolean makeAccessible(Field field) {
+            try {
+                field.setAccessible(true);
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+    }
+
+    private static long getStringBytes(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > 0xFF) {
+                return getArrayBytes(string.length(), Character.BYTES);
+            }
+        }
+        return getArrayBytes(string.length(), Byte.BYTES);
+    }
+
+    private static long getMapBytes(int size, boolean linked) {
+        if (size == 0) {
+            return linked ? LINKED_HASH_MAP : HASH_MAP;
+        }
+        int table = Math.max(MIN_TABLE_SIZE, Integer.highestOneBit((int) Math.ceil(size / LOAD_FACTOR) - 1) << 1);
+        return (linked ? LINKED_HASH_MAP : HASH_MAP) + getArrayBytes(table, REFERENCE) +
+               (long) size * (linked ? LINKED_HASH_MAP_NODE : HASH_MAP_NODE);
+    }
+
+    private static long getArrayBytes(int length, long elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    private static long getFieldBytes(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return Long.BYTES;
+        } else if (type == int.class || type == float.class) {
+            return Integer.BYTES;
+        } else if (type == short.class || type == char.class) {
+            return Short.BYTES;
+        }
+        return Byte.BYTES;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
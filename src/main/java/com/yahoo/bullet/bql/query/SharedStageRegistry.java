@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.query.StageSignatures.Signature;
+import com.yahoo.bullet.bql.query.StageSignatures.Stage;
+import com.yahoo.bullet.query.Query;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups the active queries by the {@link StageSignatures} of their stages. A backend registers each query when it
+ * starts and unregisters it when it is done. It can then evaluate a stage once per record for each group of queries
+ * that share the signature of that stage instead of once per query.
+ *
+ * This class is thread-safe. The groups that it returns are copies.
+ */
+public class SharedStageRegistry {
+    private final Map<String, StageSignatures> queries = new HashMap<>();
+    private final Map<Signature, Set<String>> groups = new HashMap<>();
+
+    /**
+     * Registers a query. If a query with the same ID is already registered, it is replaced.
+     *
+     * @param id The ID of the query.
+     * @param query The {@link Query}.
+     * @return The {@link StageSignatures} of the query.
+     */
+    public StageSignatures register(String id, Query query) {
+        StageSignatures signatures = new StageSignatures(query);
+        register(id, signatures);
+        return signatures;
+    }
+
+    /**
+     * Registers a query by its signatures. If a query with the same ID is already registered, it is replaced.
+     *
+     * @param id The ID of the query.
+     * @param signatures The {@link StageSignatures} of the query.
+     */
+    public synchronized void register(String id, StageSignatures signatures) {
+        unregister(id);
+        queries.put(id, signatures);
+        for (Signature signature : signatures.getAll()) {
+            groups.computeIfAbsent(signature, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Unregisters a query.
+     *
+     * @param id The ID of the query.
+     * @return True if the query was registered and false otherwise.
+     */
+    public synchronized boolean unregister(String id) {
+        StageSignatures signatures = queries.remove(id);
+        if (signatures == null) {
+            return false;
+        }
+        for (Signature signature : signatures.getAll()) {
+            Set<String> group = groups.get(signature);
+            group.remove(id);
+            if (group.isEmpty()) {
+                groups.remove(signature);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the IDs of the queries that share the given signature.
+     *
+     * @param signature The {@link Signature} of a stage.
+     * @return The {@link Set} of IDs in the order that they were registered. It is empty if there are none.
+     */
+    public synchronized Set<String> getGroup(Signature signature) {
+        Set<String> group = groups.get(signature);
+        return group == null ? Collections.emptySet() : new LinkedHashSet<>(group);
+    }
+
+    /**
+     * Gets the groups of at least two queries that share the signature of the given stage.
+     *
+     * @param stage The {@link Stage}.
+     * @return A {@link Map} of each shared {@link Signature} of the stage to the IDs of the queries that share it.
+     */
+    public synchronized Map<Signature, Set<String>> getSharedGroups(Stage stage) {
+        Map<Signature, Set<String>> shared = new HashMap<>();
+        groups.forEach((signature, group) -> {
+            if (signature.getStage() == stage && group.size() > 1) {
+                shared.put(signature, new LinkedHashSet<>(group));
+            }
+        });
+        return shared;
+    }
+
+    /**
+     * Gets the {@link StageSignatures} of a registered query.
+     *
+     * @param id The ID of the query.
+     * @return The {@link StageSignatures} or null if the query is not registered.
+     */
+    public synchronized StageSignatures getSignatures(String id) {
+        return queries.get(id);
+    }
+
+    /**
+     * Gets the number of registered queries.
+     *
+     * @return The number of queries.
+     */
+    public synchronized int size() {
+        return queries.size();
+    }
+}
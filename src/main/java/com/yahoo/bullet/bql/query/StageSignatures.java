@@ -0,0 +1,205 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.tablefunctions.Explode;
+import com.yahoo.bullet.query.tablefunctions.LateralView;
+import com.yahoo.bullet.query.tablefunctions.TableFunction;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The canonical signatures of the stages of a query that are evaluated for every record, in the order that they are
+ * applied: the table function, the filter and the projection. Two queries with the same signature for a stage produce
+ * the same records out of that stage, so the stage can be evaluated once per record for all of them.
+ *
+ * Since a stage only sees the records that the previous stages produced, the signature of a stage covers the previous
+ * stages as well. The operands of AND, OR and XOR are flattened and sorted and the operands of = and != are sorted,
+ * so the order in which a filter was written does not matter. Fields are qualified with their types.
+ */
+@Getter
+public class StageSignatures {
+    private static final Set<Operation> FLATTENED_OPERATIONS = EnumSet.of(Operation.AND, Operation.OR, Operation.XOR);
+    private static final Set<Operation> SYMMETRIC_OPERATIONS = EnumSet.of(Operation.EQUALS, Operation.NOT_EQUALS);
+    private static final String DELIMITER = ", ";
+
+    public enum Stage {
+        TABLE_FUNCTION,
+        FILTER,
+        PROJECTION
+    }
+
+    /**
+     * The signature of a stage. Signatures are equal if they are for the same stage and have the same canonical form.
+     */
+    @Getter
+    @EqualsAndHashCode(exclude = "hash")
+    public static class Signature {
+        private final Stage stage;
+        private final String canonical;
+        private final long hash;
+
+        private Signature(Stage stage, String canonical) {
+            this.stage = stage;
+            this.canonical = canonical;
+            this.hash = QueryCodec.hash(canonical);
+        }
+
+        @Override
+        public String toString() {
+            return stage + ":" + String.format("%016x", hash);
+        }
+    }
+
+    // Each of these is null if the query does not have the stage
+    private final Signature tableFunction;
+    private final Signature filter;
+    private final Signature projection;
+
+    /**
+     * Constructor that computes the signatures of the stages of the given query.
+     *
+     * @param query The non-null {@link Query}.
+     */
+    public StageSignatures(Query query) {
+        String prefix = "";
+        if (query.getTableFunction() != null) {
+            tableFunction = new Signature(Stage.TABLE_FUNCTION, canonicalize(query.getTableFunction()));
+            prefix = tableFunction.getCanonical() + " | ";
+        } else {
+            tableFunction = null;
+        }
+        if (query.getFilter() != null) {
+            filter = new Signature(Stage.FILTER, prefix + "WHERE " + canonicalize(query.getFilter()));
+            prefix = filter.getCanonical() + " | ";
+        } else {
+            filter = null;
+        }
+        Projection queryProjection = query.getProjection();
+        if (queryProjection != null && queryProjection.getType() != Projection.Type.PASS_THROUGH) {
+            projection = new Signature(Stage.PROJECTION, prefix + canonicalize(queryProjection));
+        } else {
+            projection = null;
+        }
+    }
+
+    /**
+     * Gets the signature of the given stage.
+     *
+     * @param stage The {@link Stage}.
+     * @return The {@link Signature} of the stage or null if the query does not have it.
+     */
+    public Signature get(Stage stage) {
+        switch (stage) {
+            case TABLE_FUNCTION:
+                return tableFunction;
+            case FILTER:
+                return filter;
+            default:
+                return projection;
+        }
+    }
+
+    /**
+     * Gets the signatures of the stages that the query has.
+     *
+     * @return The {@link List} of non-null {@link Signature} in the order that the stages are applied.
+     */
+    public List<Signature> getAll() {
+        List<Signature> signatures = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            Signature signature = get(stage);
+            if (signature != null) {
+                signatures.add(signature);
+            }
+        }
+        return signatures;
+    }
+
+    private static String canonicalize(TableFunction tableFunction) {
+        if (tableFunction instanceof LateralView) {
+            List<TableFunction> tableFunctions = ((LateralView) tableFunction).getTableFunctions();
+            return "LATERAL VIEW (" + tableFunctions.stream().map(StageSignatures::canonicalize).collect(Collectors.joining(DELIMITER)) + ")";
+        }
+        if (tableFunction instanceof Explode) {
+            Explode explode = (Explode) tableFunction;
+            return (explode.isOuter() ? "OUTER " : "") + "EXPLODE(" + canonicalize(explode.getField()) + DELIMITER +
+                   explode.getKeyAlias() + DELIMITER + explode.getValueAlias() + ")";
+        }
+        return tableFunction.toString();
+    }
+
+    private static String canonicalize(Projection projection) {
+        List<Field> fields = projection.getFields();
+        String items = fields == null ? "" : fields.stream().map(field -> field.getName() + " = " + canonicalize(field.getValue()))
+                                                           .collect(Collectors.joining(DELIMITER));
+        return "SELECT " + projection.getType() + " (" + items + ")";
+    }
+
+    private static String canonicalize(Expression expression) {
+        if (expression instanceof FieldExpression) {
+            return CompiledExpressionFormatter.format(expression) + ":" + expression.getType();
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            Operation op = binary.getOp();
+            List<String> operands = new ArrayList<>();
+            if (FLATTENED_OPERATIONS.contains(op)) {
+                addOperands(binary, op, operands);
+                operands.sort(null);
+            } else {
+                operands.add(canonicalize(binary.getLeft()));
+                operands.add(canonicalize(binary.getRight()));
+                if (SYMMETRIC_OPERATIONS.contains(op)) {
+                    operands.sort(null);
+                }
+            }
+            return op.name() + "(" + String.join(DELIMITER, operands) + ")";
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) expression;
+            return unary.getOp().name() + "(" + canonicalize(unary.getOperand()) + ")";
+        } else if (expression instanceof NAryExpression) {
+            NAryExpression nAry = (NAryExpression) expression;
+            return nAry.getOp().name() + "(" + join(nAry.getOperands()) + ")";
+        } else if (expression instanceof ListExpression) {
+            return "[" + join(((ListExpression) expression).getValues()) + "]";
+        } else if (expression instanceof CastExpression) {
+            CastExpression cast = (CastExpression) expression;
+            return "CAST(" + canonicalize(cast.getValue()) + " AS " + cast.getCastType() + ")";
+        }
+        return CompiledExpressionFormatter.format(expression);
+    }
+
+    private static void addOperands(Expression expression, Operation op, List<String> operands) {
+        if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOp() == op) {
+            addOperands(((BinaryExpression) expression).getLeft(), op, operands);
+            addOperands(((BinaryExpression) expression).getRight(), op, operands);
+        } else {
+            operands.add(canonicalize(expression));
+        }
+    }
+
+    private static String join(List<Expression> expressions) {
+        return expressions.stream().map(StageSignatures::canonicalize).collect(Collectors.joining(DELIMITER));
+    }
+}
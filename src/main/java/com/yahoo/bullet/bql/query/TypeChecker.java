@@ -9,6 +9,7 @@ import com.yahoo.bullet.bql.tree.BetweenPredicateNode;
 import com.yahoo.bullet.bql.tree.BinaryExpressionNode;
 import com.yahoo.bullet.bql.tree.CastExpressionNode;
 import com.yahoo.bullet.bql.tree.ExpressionNode;
+import com.yahoo.bullet.bql.tree.LikePredicateNode;
 import com.yahoo.bullet.bql.tree.ListExpressionNode;
 import com.yahoo.bullet.bql.tree.NAryExpressionNode;
 import com.yahoo.bullet.bql.tree.Node;
@@ -21,7 +22,9 @@ import com.yahoo.bullet.query.expressions.Expression;
 import com.yahoo.bullet.query.expressions.FieldExpression;
 import com.yahoo.bullet.query.expressions.ListExpression;
 import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
 import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
 import com.yahoo.bullet.query.tablefunctions.TableFunctionType;
 import com.yahoo.bullet.typesystem.Type;
 
@@ -31,6 +34,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 public class TypeChecker {
@@ -93,6 +97,21 @@ public class TypeChecker {
         return Optional.empty();
     }
 
+    static Optional<List<BulletError>> validateLikeType(LikePredicateNode node, Expression value, Expression pattern) {
+        // The patterns must be literals whatever the type of the value is, so they are checked even if it is unknown
+        Type valueType = value.getType();
+        List<BulletError> errors = new ArrayList<>();
+        if (!Type.isUnknown(valueType) && valueType != Type.STRING) {
+            errors.add(makeErrorOnly(node, QueryError.BINARY_LHS_NOT_STRING, node, valueType));
+        }
+        if (!node.isAny() && !(pattern instanceof ValueExpression && pattern.getType() == Type.STRING)) {
+            errors.add(makeErrorOnly(node, QueryError.LIKE_PATTERN_NOT_STRING_LITERAL, node));
+        } else if (node.isAny() && !isStringLiteralList(pattern)) {
+            errors.add(makeErrorOnly(node, QueryError.LIKE_ANY_PATTERNS_NOT_STRING_LITERALS, node));
+        }
+        return !errors.isEmpty() ? Optional.of(errors) : Optional.empty();
+    }
+
     static Optional<List<BulletError>> validateUnaryType(ExpressionNode node, UnaryExpression unaryExpression) {
         Type operandType = unaryExpression.getOperand().getType();
         if (Type.isUnknown(operandType)) {
@@ -245,6 +264,13 @@ public class TypeChecker {
         Type leftType = binaryExpression.getLeft().getType();
         Type rightType = binaryExpression.getRight().getType();
         if (Type.isUnknown(leftType) || Type.isUnknown(rightType)) {
+            // Literal patterns are checked even if the value type is unknown since they would otherwise fail at runtime
+            if (isRegexOperation(binaryExpression.getOp())) {
+                Optional<List<BulletError>> patternErrors = validatePatterns(node, binaryExpression.getRight());
+                if (patternErrors.isPresent()) {
+                    return patternErrors;
+                }
+            }
             return unknownError();
         }
         List<BulletError> errors = new ArrayList<>();
@@ -310,7 +336,7 @@ public class TypeChecker {
                 if (leftType != Type.STRING || rightType != Type.STRING) {
                     return makeError(node, QueryError.BINARY_TYPES_NOT_STRING, node, leftType, rightType);
                 }
-                return Optional.empty();
+                return validatePatterns(node, binaryExpression.getRight());
             case REGEX_LIKE_ANY:
             case NOT_REGEX_LIKE_ANY:
                 if (leftType != Type.STRING) {
@@ -319,7 +345,7 @@ public class TypeChecker {
                 if (rightType != Type.STRING_LIST) {
                     errors.add(makeErrorOnly(node, QueryError.BINARY_RHS_NOT_STRING_LIST, node, rightType));
                 }
-                return !errors.isEmpty() ? Optional.of(errors) : Optional.empty();
+                return !errors.isEmpty() ? Optional.of(errors) : validatePatterns(node, binaryExpression.getRight());
             case SIZE_IS:
                 if (!isCollection(leftType) && leftType != Type.STRING) {
                     errors.add(makeErrorOnly(node, QueryError.SIZE_IS_HAS_WRONG_TYPE, node, leftType));
@@ -406,6 +432,26 @@ public class TypeChecker {
         return Optional.empty();
     }
 
+    private static boolean isRegexOperation(Operation op) {
+        return op == Operation.REGEX_LIKE || op == Operation.NOT_REGEX_LIKE || op == Operation.REGEX_LIKE_ANY || op == Operation.NOT_REGEX_LIKE_ANY;
+    }
+
+    private static Optional<List<BulletError>> validatePatterns(BinaryExpressionNode node, Expression patterns) {
+        List<BulletError> errors = new ArrayList<>();
+        for (String pattern : PatternAnalyzer.getLiteralPatterns(patterns)) {
+            try {
+                PatternAnalyzer.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                errors.add(makeErrorOnly(node, QueryError.REGEX_INVALID, pattern, node, e.getDescription()));
+                continue;
+            }
+            if (PatternAnalyzer.isBacktrackingProne(pattern)) {
+                errors.add(makeErrorOnly(node, QueryError.REGEX_BACKTRACKING_PRONE, pattern, node));
+            }
+        }
+        return !errors.isEmpty() ? Optional.of(errors) : Optional.empty();
+    }
+
     // This is a static method and not a constant because a static final Optional is semantically inappropriate
     private static Optional<List<BulletError>> unknownError() {
         return Optional.of(Collections.emptyList());
@@ -431,6 +477,12 @@ public class TypeChecker {
         return makeError(makeErrorOnly(node, error, arguments));
     }
 
+    private static boolean isStringLiteralList(Expression expression) {
+        return expression instanceof ListExpression &&
+               expression.getType() == Type.STRING_LIST &&
+               ((ListExpression) expression).getValues().stream().allMatch(ValueExpression.class::isInstance);
+    }
+
     private static boolean isCollection(Type type) {
         return Type.isList(type) || Type.isMap(type);
     }
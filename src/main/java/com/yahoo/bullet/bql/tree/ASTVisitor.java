@@ -208,6 +208,17 @@ public abstract class ASTVisitor<R, C> {
         return visitExpression(node, context);
     }
 
+    /**
+     * Visit a {@link LikePredicateNode} with passed in context.
+     *
+     * @param node A {@link LikePredicateNode}.
+     * @param context A {@link C}.
+     * @return A {@link R}.
+     */
+    protected R visitLikePredicate(LikePredicateNode node, C context) {
+        return visitExpression(node, context);
+    }
+
     /**
      * Visit a {@link BetweenPredicateNode} with passed in context.
      *
@@ -350,4 +361,15 @@ public abstract class ASTVisitor<R, C> {
     protected R visitLiteral(LiteralNode node, C context) {
         return visitExpression(node, context);
     }
+
+    /**
+     * Visit a {@link ParameterNode} with passed in context.
+     *
+     * @param node A {@link ParameterNode}.
+     * @param context A {@link C}.
+     * @return A {@link R}.
+     */
+    protected R visitParameter(ParameterNode node, C context) {
+        return visitExpression(node, context);
+    }
 }
@@ -87,6 +87,13 @@ public abstract class DefaultTraversalVisitor<R, C> extends ASTVisitor<R, C> {
         return null;
     }
 
+    @Override
+    protected R visitLikePredicate(LikePredicateNode node, C context) {
+        process(node.getExpression(), context);
+        process(node.getPattern(), context);
+        return null;
+    }
+
     @Override
     protected R visitBetweenPredicate(BetweenPredicateNode node, C context) {
         process(node.getExpression(), context);
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.tree;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@Getter
+public class LikePredicateNode extends ExpressionNode {
+    private final ExpressionNode expression;
+    private final ExpressionNode pattern;
+    private final boolean not;
+    private final boolean any;
+
+    public LikePredicateNode(ExpressionNode expression, ExpressionNode pattern, boolean not, boolean any, NodeLocation nodeLocation) {
+        super(nodeLocation);
+        this.expression = expression;
+        this.pattern = pattern;
+        this.not = not;
+        this.any = any;
+    }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitLikePredicate(this, context);
+    }
+
+    @Override
+    public List<ExpressionNode> getChildren() {
+        return Arrays.asList(expression, pattern);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof LikePredicateNode)) {
+            return false;
+        }
+        LikePredicateNode other = (LikePredicateNode) obj;
+        return Objects.equals(expression, other.expression) &&
+               Objects.equals(pattern, other.pattern) &&
+               not == other.not &&
+               any == other.any;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(expression, pattern, not, any);
+    }
+}
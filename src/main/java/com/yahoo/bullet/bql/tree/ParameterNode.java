@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.tree;
+
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * A bind parameter of a prepared query. It is either positional (?) or named (:name).
+ */
+@Getter
+public class ParameterNode extends ExpressionNode {
+    // Null for positional parameters
+    private final String parameterName;
+    // The position of a positional parameter or the order in which a named parameter first appears
+    private final int index;
+
+    public ParameterNode(String parameterName, int index, NodeLocation nodeLocation) {
+        super(nodeLocation);
+        this.parameterName = parameterName;
+        this.index = index;
+    }
+
+    /**
+     * Returns whether this is a named parameter.
+     *
+     * @return True if this parameter has a name and false if it is positional.
+     */
+    public boolean isNamed() {
+        return parameterName != null;
+    }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitParameter(this, context);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ParameterNode)) {
+            return false;
+        }
+        ParameterNode other = (ParameterNode) obj;
+        return Objects.equals(parameterName, other.parameterName) && index == other.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(parameterName, index);
+    }
+}
@@ -8,6 +8,8 @@ package com.yahoo.bullet.bql.tree;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 @Getter
@@ -23,6 +25,9 @@ public class QueryNode extends Node {
     private final WindowNode window;
     private final String limit;
     private QueryNode outerQuery;
+    private boolean explain;
+    // The distinct bind parameters of the statement. Not used for equals() and hashCode()
+    private List<ParameterNode> parameters = Collections.emptyList();
 
     public QueryNode(SelectNode select, StreamNode stream, LateralViewNode lateralView, ExpressionNode where, GroupByNode groupBy,
                      ExpressionNode having, OrderByNode orderBy, WindowNode window, String limit, NodeLocation nodeLocation) {
@@ -61,11 +66,12 @@ public class QueryNode extends Node {
                Objects.equals(orderBy, other.orderBy) &&
                Objects.equals(window, other.window) &&
                Objects.equals(limit, other.limit) &&
-               Objects.equals(outerQuery, other.outerQuery);
+               Objects.equals(outerQuery, other.outerQuery) &&
+               explain == other.explain;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(select, stream, lateralView, where, groupBy, having, orderBy, window, limit, outerQuery);
+        return Objects.hash(select, stream, lateralView, where, groupBy, having, orderBy, window, limit, outerQuery, explain);
     }
 }
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.CastExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.ListExpression;
+import com.yahoo.bullet.query.expressions.NAryExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.query.expressions.UnaryExpression;
+import com.yahoo.bullet.query.expressions.ValueExpression;
+
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Formats the compiled {@link Expression} of a Bullet query back into BQL-like text. Unlike the expressions in the
+ * tree, compiled expressions have no parentheses so nested infix operations are always parenthesized.
+ */
+public final class CompiledExpressionFormatter {
+    private static final String DELIMITER = ", ";
+    private static final Set<Operation> INFIX_OPERATIONS =
+            EnumSet.of(Operation.ADD, Operation.SUB, Operation.MUL, Operation.DIV, Operation.MOD,
+                       Operation.EQUALS, Operation.EQUALS_ANY, Operation.EQUALS_ALL,
+                       Operation.NOT_EQUALS, Operation.NOT_EQUALS_ANY, Operation.NOT_EQUALS_ALL,
+                       Operation.GREATER_THAN, Operation.GREATER_THAN_ANY, Operation.GREATER_THAN_ALL,
+                       Operation.LESS_THAN, Operation.LESS_THAN_ANY, Operation.LESS_THAN_ALL,
+                       Operation.GREATER_THAN_OR_EQUALS, Operation.GREATER_THAN_OR_EQUALS_ANY, Operation.GREATER_THAN_OR_EQUALS_ALL,
+                       Operation.LESS_THAN_OR_EQUALS, Operation.LESS_THAN_OR_EQUALS_ANY, Operation.LESS_THAN_OR_EQUALS_ALL,
+                       Operation.REGEX_LIKE, Operation.REGEX_LIKE_ANY, Operation.NOT_REGEX_LIKE, Operation.NOT_REGEX_LIKE_ANY,
+                       Operation.IN, Operation.NOT_IN, Operation.AND, Operation.OR, Operation.XOR);
+    private static final Set<Operation> PREFIX_OR_POSTFIX_OPERATIONS = EnumSet.of(Operation.NOT, Operation.IS_NULL, Operation.IS_NOT_NULL);
+
+    private CompiledExpressionFormatter() {
+    }
+
+    /**
+     * Formats the given {@link Expression} as a {@link String}.
+     *
+     * @param expression The {@link Expression} to format.
+     * @return The string representation of the given {@link Expression} or null if it is null.
+     */
+    public static String format(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        if (expression instanceof ValueExpression) {
+            return formatValue(((ValueExpression) expression).getValue());
+        } else if (expression instanceof FieldExpression) {
+            return formatField((FieldExpression) expression);
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            if (INFIX_OPERATIONS.contains(binary.getOp())) {
+                return formatOperand(binary.getLeft()) + " " + binary.getOp() + " " + formatOperand(binary.getRight());
+            }
+            return binary.getOp() + "(" + format(binary.getLeft()) + DELIMITER + format(binary.getRight()) + ")";
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) expression;
+            switch (unary.getOp()) {
+                case IS_NULL:
+                case IS_NOT_NULL:
+                    return formatOperand(unary.getOperand()) + " " + unary.getOp();
+                case NOT:
+                    return "NOT " + formatOperand(unary.getOperand());
+                default:
+                    return unary.getOp() + "(" + format(unary.getOperand()) + ")";
+            }
+        } else if (expression instanceof NAryExpression) {
+            NAryExpression nAry = (NAryExpression) expression;
+            List<Expression> operands = nAry.getOperands();
+            if ((nAry.getOp() == Operation.BETWEEN || nAry.getOp() == Operation.NOT_BETWEEN) && operands.size() == 3) {
+                return formatOperand(operands.get(0)) + " " + nAry.getOp() + " (" + format(operands.get(1)) + DELIMITER + format(operands.get(2)) + ")";
+            }
+            return nAry.getOp() + "(" + join(operands) + ")";
+        } else if (expression instanceof ListExpression) {
+            return "[" + join(((ListExpression) expression).getValues()) + "]";
+        } else if (expression instanceof CastExpression) {
+            CastExpression cast = (CastExpression) expression;
+            return "CAST(" + format(cast.getValue()) + " AS " + cast.getCastType() + ")";
+        }
+        return expression.toString();
+    }
+
+    private static String formatOperand(Expression expression) {
+        String formatted = format(expression);
+        if (expression instanceof BinaryExpression && INFIX_OPERATIONS.contains(((BinaryExpression) expression).getOp())) {
+            return "(" + formatted + ")";
+        }
+        if (expression instanceof UnaryExpression && PREFIX_OR_POSTFIX_OPERATIONS.contains(((UnaryExpression) expression).getOp())) {
+            return "(" + formatted + ")";
+        }
+        return formatted;
+    }
+
+    private static String formatField(FieldExpression expression) {
+        StringBuilder builder = new StringBuilder(expression.getField());
+        appendKey(builder, expression.getKey());
+        appendKey(builder, expression.getSubKey());
+        return builder.toString();
+    }
+
+    private static void appendKey(StringBuilder builder, Serializable key) {
+        if (key == null) {
+            return;
+        }
+        if (key instanceof Expression) {
+            builder.append("[").append(format((Expression) key)).append("]");
+        } else if (key instanceof Integer) {
+            builder.append("[").append(key).append("]");
+        } else {
+            builder.append(".").append(key);
+        }
+    }
+
+    private static String formatValue(Serializable value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof String) {
+            return "'" + ((String) value).replace("'", "''") + "'";
+        } else if (value instanceof Long) {
+            return value + "L";
+        } else if (value instanceof Float) {
+            return value + "f";
+        }
+        return value.toString();
+    }
+
+    private static String join(List<Expression> expressions) {
+        return expressions.stream().map(CompiledExpressionFormatter::format).collect(Collectors.joining(DELIMITER));
+    }
+}
@@ -22,12 +22,14 @@ import com.yahoo.bullet.bql.tree.IdentifierNode;
 import com.yahoo.bullet.bql.tree.BinaryExpressionNode;
 import com.yahoo.bullet.bql.tree.CastExpressionNode;
 import com.yahoo.bullet.bql.tree.LateralViewNode;
+import com.yahoo.bullet.bql.tree.LikePredicateNode;
 import com.yahoo.bullet.bql.tree.ListExpressionNode;
 import com.yahoo.bullet.bql.tree.LiteralNode;
 import com.yahoo.bullet.bql.tree.NAryExpressionNode;
 import com.yahoo.bullet.bql.tree.Node;
 import com.yahoo.bullet.bql.tree.NullPredicateNode;
 import com.yahoo.bullet.bql.tree.OrderByNode;
+import com.yahoo.bullet.bql.tree.ParameterNode;
 import com.yahoo.bullet.bql.tree.ParenthesesExpressionNode;
 import com.yahoo.bullet.bql.tree.QueryNode;
 import com.yahoo.bullet.bql.tree.SelectItemNode;
@@ -66,10 +68,11 @@ public final class ExpressionFormatter {
 
         @Override
         protected String visitQuery(QueryNode node, Void context) {
+            String prefix = node.isExplain() ? "EXPLAIN " : "";
             if (node.getOuterQuery() == null) {
-                return visitQueryNode(node, null);
+                return prefix + visitQueryNode(node, null);
             } else {
-                return visitQueryNode(node.getOuterQuery(), node);
+                return prefix + visitQueryNode(node.getOuterQuery(), node);
             }
         }
 
@@ -110,11 +113,21 @@ public final class ExpressionFormatter {
             }
             if (queryNode.getLimit() != null) {
                 builder.append(" LIMIT ")
-                       .append(queryNode.getLimit());
+                       .append(formatLimit(queryNode.getLimit()));
             }
             return builder.toString();
         }
 
+        /**
+         * Formats the number of the LIMIT clause.
+         *
+         * @param limit The non-null limit.
+         * @return The formatted limit.
+         */
+        protected String formatLimit(String limit) {
+            return limit;
+        }
+
         @Override
         protected String visitSelect(SelectNode node, Void context) {
             return "SELECT " + (node.isDistinct() ? "DISTINCT " : "") + join(node.getSelectItems());
@@ -200,6 +213,11 @@ public final class ExpressionFormatter {
             return process(node.getExpression()) + (node.isNot() ? " IS NOT NULL" : " IS NULL");
         }
 
+        @Override
+        protected String visitLikePredicate(LikePredicateNode node, Void context) {
+            return process(node.getExpression()) + (node.isNot() ? " NOT LIKE " : " LIKE ") + (node.isAny() ? "ANY " : "") + process(node.getPattern());
+        }
+
         @Override
         protected String visitBetweenPredicate(BetweenPredicateNode node, Void context) {
             if (node.isNot()) {
@@ -341,6 +359,11 @@ public final class ExpressionFormatter {
             return node.getValue();
         }
 
+        @Override
+        protected String visitParameter(ParameterNode node, Void context) {
+            return node.isNamed() ? ":" + node.getParameterName() : "?";
+        }
+
         @Override
         protected String visitLiteral(LiteralNode node, Void context) {
             Serializable value = node.getValue();
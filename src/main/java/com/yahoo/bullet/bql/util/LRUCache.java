@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.bql.metrics.CompilerListeners;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe cache that evicts its least recently used entry once it is full. A capacity of 0 disables the
+ * cache. It also counts its hits and misses, and reports its lookups to the
+ * {@link com.yahoo.bullet.bql.metrics.CompilerListener} if it has a name.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class LRUCache<K, V> {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    @Getter
+    private final int capacity;
+    private final String name;
+    private final Map<K, V> map;
+
+    // An access-ordered map that removes its eldest entry once it has more entries than the capacity
+    private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = -2613588396318052513L;
+
+        private final int capacity;
+
+        private BoundedMap(int capacity) {
+            super(16, LOAD_FACTOR, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor that takes the maximum number of entries to keep.
+     *
+     * @param capacity The non-negative capacity of the cache.
+     */
+    public LRUCache(int capacity) {
+        this(null, capacity);
+    }
+
+    /**
+     * Constructor that takes the name to report the lookups with and the maximum number of entries to keep.
+     *
+     * @param name The name of the cache or null to not report the lookups.
+     * @param capacity The non-negative capacity of the cache.
+     */
+    public LRUCache(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.map = new BoundedMap<>(capacity);
+    }
+
+    /**
+     * Gets the value for the given key and marks it as recently used.
+     *
+     * @param key The key to look up.
+     * @return The cached value or null if there is none.
+     */
+    public V get(K key) {
+        V value = lookup(key);
+        if (name != null) {
+            CompilerListeners.getListener().onCacheLookup(name, value != null);
+        }
+        return value;
+    }
+
+    private synchronized V lookup(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Adds the given value for the key unless a value is already cached for it. Values are usually computed outside
+     * the cache, so this lets the first of several concurrent computations win.
+     *
+     * @param key The key to add.
+     * @param value The non-null value to add.
+     * @return The value that is cached for the key after this call.
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        if (capacity == 0) {
+            return value;
+        }
+        V existing = map.putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Removes the value for the given key.
+     *
+     * @param key The key to remove.
+     * @return The removed value or null if there was none.
+     */
+    public synchronized V remove(K key) {
+        return map.remove(key);
+    }
+
+    /**
+     * Removes all the entries. The hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * Gets the number of entries in the cache.
+     *
+     * @return The number of cached entries.
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Gets the number of lookups that found a value.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that did not find a value.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
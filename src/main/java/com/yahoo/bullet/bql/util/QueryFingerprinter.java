@@ -0,0 +1,318 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.tree.BinaryExpressionNode;
+import com.yahoo.bullet.bql.tree.DistributionNode;
+import com.yahoo.bullet.bql.tree.ExpressionNode;
+import com.yahoo.bullet.bql.tree.IdentifierNode;
+import com.yahoo.bullet.bql.tree.LinearDistributionNode;
+import com.yahoo.bullet.bql.tree.ListExpressionNode;
+import com.yahoo.bullet.bql.tree.LiteralNode;
+import com.yahoo.bullet.bql.tree.ManualDistributionNode;
+import com.yahoo.bullet.bql.tree.Node;
+import com.yahoo.bullet.bql.tree.ParameterNode;
+import com.yahoo.bullet.bql.tree.ParenthesesExpressionNode;
+import com.yahoo.bullet.bql.tree.QueryNode;
+import com.yahoo.bullet.bql.tree.StreamNode;
+import com.yahoo.bullet.bql.tree.TableFunctionNode;
+import com.yahoo.bullet.bql.tree.TopKNode;
+import com.yahoo.bullet.bql.tree.UnaryExpressionNode;
+import com.yahoo.bullet.bql.tree.WindowIncludeNode;
+import com.yahoo.bullet.bql.tree.WindowNode;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.expressions.Operation;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the fingerprint of the shape of a query. The template of the query is formatted in a single pass over the
+ * {@link Node} tree like the {@link ExpressionFormatter} but with the following normalized away:
+ * <ul>
+ *   <li>Literals, bind parameters, lists of them and the numbers in the stream, window, LIMIT, TOP and distribution clauses are
+ *   replaced with ?.</li>
+ *   <li>Whitespace, keyword case, identifier quoting and redundant parentheses.</li>
+ *   <li>The operand order of the commutative operators AND, OR, XOR, +, *, = and !=.</li>
+ *   <li>The names of the select and table function aliases, which are replaced with $1, $2, etc. where they are defined
+ *   and where an identifier refers to them: table function aliases in the rest of the query, select aliases in HAVING,
+ *   ORDER BY and the outer query. Other identifiers are fields and keep their names.</li>
+ * </ul>
+ * The template is then hashed into a 128-bit fingerprint.
+ */
+public final class QueryFingerprinter {
+    private static final String PLACEHOLDER = "?";
+    private static final String ALIAS_PREFIX = "$";
+    private static final Set<Operation> COMMUTATIVE_OPERATIONS =
+            EnumSet.of(Operation.AND, Operation.OR, Operation.XOR, Operation.ADD, Operation.MUL, Operation.EQUALS, Operation.NOT_EQUALS);
+    private static final Set<Operation> FUNCTION_OPERATIONS =
+            EnumSet.of(Operation.SIZE_IS, Operation.CONTAINS_KEY, Operation.CONTAINS_VALUE, Operation.FILTER);
+
+    private QueryFingerprinter() {
+    }
+
+    @Getter
+    @EqualsAndHashCode(exclude = "template")
+    public static class Fingerprint {
+        private final long high;
+        private final long low;
+        private final String template;
+
+        private Fingerprint(String template) {
+            this.template = template;
+            byte[] digest = digest(template);
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            this.high = buffer.getLong();
+            this.low = buffer.getLong();
+        }
+
+        /**
+         * Returns a 64-bit fingerprint for when 128 bits are not needed.
+         *
+         * @return The high 64 bits of the fingerprint.
+         */
+        public long getHash64() {
+            return high;
+        }
+
+        /**
+         * Returns the 128-bit fingerprint as 32 hexadecimal characters.
+         *
+         * @return The hexadecimal {@link String} of the fingerprint.
+         */
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+
+        private static byte[] digest(String template) {
+            try {
+                return MessageDigest.getInstance("MD5").digest(template.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support MD5
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class Fingerprinter extends ExpressionFormatter.Formatter {
+        private final Map<String, String> aliases = new HashMap<>();
+        // The aliases that the identifiers in each clause can refer to and the identifiers that name the aliases
+        private final Map<Node, Map<String, String>> scopes = new IdentityHashMap<>();
+        private final Set<Node> names = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Map<String, String> scope = Collections.emptyMap();
+
+        Fingerprinter() {
+            super(false);
+        }
+
+        @Override
+        public String process(Node node, Void context) {
+            if (names.contains(node)) {
+                return aliases.get(((IdentifierNode) node).getValue());
+            }
+            Map<String, String> clauseScope = node != null ? scopes.get(node) : null;
+            if (clauseScope == null) {
+                return super.process(node, context);
+            }
+            Map<String, String> enclosing = scope;
+            scope = clauseScope;
+            String result = super.process(node, context);
+            scope = enclosing;
+            return result;
+        }
+
+        @Override
+        protected String visitQuery(QueryNode node, Void context) {
+            // Aliases are named before formatting since the outer query refers to the aliases of the inner query
+            Map<String, String> inner = addScopes(node, Collections.emptyMap());
+            if (node.getOuterQuery() != null) {
+                addScopes(node.getOuterQuery(), inner);
+            }
+            return super.visitQuery(node, context);
+        }
+
+        // The fields of the query that are named by the table functions of its lateral view and by the query it reads
+        // from are visible in every clause. Its select aliases are only visible in HAVING and ORDER BY. Returns the
+        // select aliases, which are the fields that an outer query reads.
+        private Map<String, String> addScopes(QueryNode node, Map<String, String> inner) {
+            Map<String, String> fields = new HashMap<>(inner);
+            if (node.getLateralView() != null) {
+                for (TableFunctionNode tableFunction : node.getLateralView().getTableFunctions()) {
+                    addAlias(tableFunction.getKeyAlias(), fields);
+                    addAlias(tableFunction.getValueAlias(), fields);
+                }
+            }
+            Map<String, String> selectAliases = new HashMap<>();
+            node.getSelect().getSelectItems().forEach(item -> addAlias(item.getAlias(), selectAliases));
+            Map<String, String> all = new HashMap<>(fields);
+            all.putAll(selectAliases);
+            addScope(node.getSelect(), fields);
+            addScope(node.getLateralView(), fields);
+            addScope(node.getWhere(), fields);
+            addScope(node.getGroupBy(), fields);
+            addScope(node.getHaving(), all);
+            addScope(node.getOrderBy(), all);
+            return selectAliases;
+        }
+
+        private void addAlias(IdentifierNode alias, Map<String, String> scope) {
+            if (alias != null) {
+                String name = aliases.computeIfAbsent(alias.getValue(), k -> ALIAS_PREFIX + (aliases.size() + 1));
+                scope.put(alias.getValue(), name);
+                names.add(alias);
+            }
+        }
+
+        private void addScope(Node clause, Map<String, String> scope) {
+            if (clause != null) {
+                scopes.put(clause, scope);
+            }
+        }
+
+        @Override
+        protected String formatLimit(String limit) {
+            return PLACEHOLDER;
+        }
+
+        @Override
+        protected String visitStream(StreamNode node, Void context) {
+            return node.getTimeDuration() == null ? "STREAM()" : "STREAM(?, TIME)";
+        }
+
+        @Override
+        protected String visitWindow(WindowNode node, Void context) {
+            if (node.getWindowInclude() != null) {
+                return "WINDOWING EVERY(?, " + node.getEmitType() + ", " + process(node.getWindowInclude()) + ")";
+            }
+            return "WINDOWING TUMBLING(?, " + node.getEmitType() + ")";
+        }
+
+        @Override
+        protected String visitWindowInclude(WindowIncludeNode node, Void context) {
+            if (node.getIncludeUnit() == Window.Unit.ALL) {
+                return node.getIncludeUnit().toString();
+            }
+            return "FIRST, ?, " + node.getIncludeUnit();
+        }
+
+        @Override
+        protected String visitListExpression(ListExpressionNode node, Void context) {
+            boolean allLiterals = !node.getExpressions().isEmpty() && node.getExpressions().stream().allMatch(QueryFingerprinter::isValue);
+            String items = allLiterals ? PLACEHOLDER + "..." : node.getExpressions().stream().map(this::process).collect(Collectors.joining(", "));
+            return node.isParenthesized() ? "(" + items + ")" : "[" + items + "]";
+        }
+
+        @Override
+        protected String visitUnaryExpression(UnaryExpressionNode node, Void context) {
+            return node.getOp() + "(" + process(node.getExpression()) + ")";
+        }
+
+        @Override
+        protected String visitDistribution(DistributionNode node, Void context) {
+            String kind = node instanceof LinearDistributionNode ? "LINEAR" : node instanceof ManualDistributionNode ? "MANUAL" : "REGION";
+            return node.getType().getName() + "(" + process(node.getExpression()) + ", " + kind + ", ?)";
+        }
+
+        @Override
+        protected String visitTopK(TopKNode node, Void context) {
+            String threshold = node.getThreshold() != null ? "?, " : "";
+            return "TOP(?, " + threshold + node.getExpressions().stream().map(this::process).collect(Collectors.joining(", ")) + ")";
+        }
+
+        @Override
+        protected String visitBinaryExpression(BinaryExpressionNode node, Void context) {
+            Operation op = node.getOp();
+            if (FUNCTION_OPERATIONS.contains(op)) {
+                return super.visitBinaryExpression(node, context);
+            }
+            if (!COMMUTATIVE_OPERATIONS.contains(op)) {
+                // Parentheses are dropped from the operands so every infix operation is parenthesized instead
+                return "(" + super.visitBinaryExpression(node, context) + ")";
+            }
+            List<String> operands = new ArrayList<>();
+            addOperands(node, op, operands);
+            operands.sort(null);
+            return operands.stream().collect(Collectors.joining(" " + op + " ", "(", ")"));
+        }
+
+        private void addOperands(ExpressionNode node, Operation op, List<String> operands) {
+            ExpressionNode expression = unwrap(node);
+            if (expression instanceof BinaryExpressionNode && ((BinaryExpressionNode) expression).getOp() == op) {
+                addOperands(((BinaryExpressionNode) expression).getLeft(), op, operands);
+                addOperands(((BinaryExpressionNode) expression).getRight(), op, operands);
+            } else {
+                operands.add(process(expression));
+            }
+        }
+
+        @Override
+        protected String visitParenthesesExpression(ParenthesesExpressionNode node, Void context) {
+            return process(unwrap(node));
+        }
+
+        @Override
+        protected String visitIdentifier(IdentifierNode node, Void context) {
+            return scope.getOrDefault(node.getValue(), node.getValue());
+        }
+
+        @Override
+        protected String visitLiteral(LiteralNode node, Void context) {
+            return PLACEHOLDER;
+        }
+
+        @Override
+        protected String visitParameter(ParameterNode node, Void context) {
+            return PLACEHOLDER;
+        }
+
+        private static ExpressionNode unwrap(ExpressionNode node) {
+            while (node instanceof ParenthesesExpressionNode) {
+                node = ((ParenthesesExpressionNode) node).getExpression();
+            }
+            return node;
+        }
+    }
+
+    private static boolean isValue(ExpressionNode node) {
+        return node instanceof LiteralNode || node instanceof ParameterNode;
+    }
+
+    /**
+     * Computes the {@link Fingerprint} of the given {@link Node}.
+     *
+     * @param node The non-null {@link Node} to fingerprint. This is usually a {@link QueryNode}.
+     * @return The {@link Fingerprint} of the node.
+     */
+    public static Fingerprint fingerprint(Node node) {
+        return new Fingerprint(new Fingerprinter().process(node));
+    }
+
+    /**
+     * Parses the given BQL and computes its {@link Fingerprint}. The query is not type checked.
+     *
+     * @param bql The BQL query.
+     * @return The {@link Fingerprint} of the query.
+     * @throws com.yahoo.bullet.bql.parser.ParsingException if the query is not valid.
+     */
+    public static Fingerprint fingerprint(String bql) {
+        return fingerprint(new BQLParser().createQueryNode(bql));
+    }
+}
@@ -33,4 +33,162 @@ public class BQLConfigTest {
         config.validate();
         Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_LENGTH, Integer.class), (Integer) BQLConfig.DEFAULT_BQL_MAX_QUERY_LENGTH);
     }
+
+    @Test
+    public void testDefaultQueryCosts() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_COST, Long.class), (Long) BQLConfig.DEFAULT_BQL_MAX_QUERY_COST);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_COST_BUDGET, Long.class), (Long) BQLConfig.DEFAULT_BQL_QUERY_COST_BUDGET);
+    }
+
+    @Test
+    public void testValidateQueryCosts() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_COST, 100);
+        config.set(BQLConfig.BQL_QUERY_COST_BUDGET, 1000.5);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_COST, Long.class), (Long) 100L);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_COST_BUDGET, Long.class), (Long) 1000L);
+
+        config.set(BQLConfig.BQL_MAX_QUERY_COST, -1);
+        config.set(BQLConfig.BQL_QUERY_COST_BUDGET, 0);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_COST, Long.class), (Long) BQLConfig.DEFAULT_BQL_MAX_QUERY_COST);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_COST_BUDGET, Long.class), (Long) BQLConfig.DEFAULT_BQL_QUERY_COST_BUDGET);
+    }
+
+    @Test
+    public void testValidateQueryCacheSize() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_CACHE_SIZE, Integer.class), (Integer) BQLConfig.DEFAULT_BQL_QUERY_CACHE_SIZE);
+
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 0);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_CACHE_SIZE, Integer.class), (Integer) 0);
+
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_CACHE_SIZE, Integer.class), (Integer) BQLConfig.DEFAULT_BQL_QUERY_CACHE_SIZE);
+    }
+
+    @Test
+    public void testValidateQueryTemplateCacheSize() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, Integer.class), (Integer) BQLConfig.DEFAULT_BQL_QUERY_TEMPLATE_CACHE_SIZE);
+
+        config.set(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, 0);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, Integer.class), (Integer) 0);
+
+        config.set(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, Integer.class), (Integer) BQLConfig.DEFAULT_BQL_QUERY_TEMPLATE_CACHE_SIZE);
+    }
+
+    @Test
+    public void testValidateCompilationProfileEnable() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertFalse(config.getAs(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, Boolean.class));
+
+        config.set(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, true);
+        config.validate();
+        Assert.assertTrue(config.getAs(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, Boolean.class));
+
+        config.set(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, "yes");
+        config.validate();
+        Assert.assertFalse(config.getAs(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, Boolean.class));
+    }
+
+    @Test
+    public void testValidateCompilationThreads() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_THREADS, Integer.class), (Integer) 0);
+
+        config.set(BQLConfig.BQL_COMPILATION_THREADS, 4L);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_THREADS, Integer.class), (Integer) 4);
+
+        config.set(BQLConfig.BQL_COMPILATION_THREADS, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_THREADS, Integer.class), (Integer) 0);
+    }
+
+    @Test
+    public void testValidateCompilationTimeout() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, Long.class), (Long) 0L);
+
+        config.set(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, 500);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, Long.class), (Long) 500L);
+
+        config.set(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, Long.class), (Long) 0L);
+    }
+
+    @Test
+    public void testValidateQueryLimits() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_NODES, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, Integer.class), (Integer) Integer.MAX_VALUE);
+
+        config.set(BQLConfig.BQL_MAX_QUERY_NODES, 100);
+        config.set(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, 10L);
+        config.set(BQLConfig.BQL_MAX_LIST_SIZE, 50);
+        config.set(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, 0);
+        config.set(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, 0);
+        config.set(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, 0);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_NODES, Integer.class), (Integer) 100);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, Integer.class), (Integer) 10);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_LIST_SIZE, Integer.class), (Integer) 50);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, Integer.class), (Integer) 0);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, Integer.class), (Integer) 0);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, Integer.class), (Integer) 0);
+
+        config.set(BQLConfig.BQL_MAX_QUERY_NODES, 0);
+        config.set(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, -1);
+        config.set(BQLConfig.BQL_MAX_LIST_SIZE, 0);
+        config.set(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, -1);
+        config.set(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, -1);
+        config.set(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_QUERY_NODES, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_LIST_SIZE, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, Integer.class), (Integer) Integer.MAX_VALUE);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, Integer.class), (Integer) Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testValidateServerSettings() {
+        BQLConfig config = new BQLConfig();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_HOST, String.class), "localhost");
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_PORT, Integer.class), (Integer) 9090);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_THREADS, Integer.class), (Integer) 8);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_MAX_BATCH_SIZE, Integer.class), (Integer) 1000);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_MAX_REQUEST_BYTES, Integer.class), (Integer) 1048576);
+
+        config.set(BQLConfig.BQL_SERVER_HOST, "0.0.0.0");
+        config.set(BQLConfig.BQL_SERVER_PORT, 0);
+        config.set(BQLConfig.BQL_SERVER_THREADS, 2L);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_HOST, String.class), "0.0.0.0");
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_PORT, Integer.class), (Integer) 0);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_THREADS, Integer.class), (Integer) 2);
+
+        config.set(BQLConfig.BQL_SERVER_HOST, 1);
+        config.set(BQLConfig.BQL_SERVER_PORT, 65536);
+        config.set(BQLConfig.BQL_SERVER_THREADS, 0);
+        config.set(BQLConfig.BQL_SERVER_MAX_BATCH_SIZE, 0);
+        config.set(BQLConfig.BQL_SERVER_MAX_REQUEST_BYTES, -1);
+        config.validate();
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_HOST, String.class), "localhost");
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_PORT, Integer.class), (Integer) 9090);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_THREADS, Integer.class), (Integer) 8);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_MAX_BATCH_SIZE, Integer.class), (Integer) 1000);
+        Assert.assertEquals(config.getAs(BQLConfig.BQL_SERVER_MAX_REQUEST_BYTES, Integer.class), (Integer) 1048576);
+    }
 }
@@ -0,0 +1,276 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.yahoo.bullet.bql.query.QueryCodec;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class BulletBQLServerTest {
+    private BulletBQLServer server;
+
+    private static class HttpResponse {
+        private final int status;
+        private final JsonElement body;
+
+        private HttpResponse(int status, JsonElement body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "src/test/resources/test_schema.json");
+        config.set(BQLConfig.BQL_SERVER_PORT, 0);
+        config.set(BQLConfig.BQL_SERVER_THREADS, 2);
+        config.set(BQLConfig.BQL_SERVER_MAX_BATCH_SIZE, 3);
+        config.set(BQLConfig.BQL_SERVER_MAX_REQUEST_BYTES, 200);
+        config.validate();
+        server = new BulletBQLServer(config);
+        server.start();
+    }
+
+    @AfterMethod
+    public void teardown() {
+        server.close();
+    }
+
+    @Test
+    public void testCompile() throws IOException {
+        HttpResponse response = request("POST", "/compile", "SELECT abc FROM STREAM() WHERE abc > 5");
+        Assert.assertEquals(response.status, 200);
+        JsonObject json = response.body.getAsJsonObject();
+        Assert.assertEquals(json.get("bql").getAsString(), "SELECT abc FROM STREAM() WHERE abc > 5");
+        Assert.assertTrue(json.get("query").getAsString().startsWith("{tableFunction: null, projection: {fields: [{name: abc"));
+        Assert.assertEquals(json.get("errors").getAsJsonArray().size(), 0);
+        Assert.assertTrue(json.get("cost").getAsLong() > 0L);
+
+        Query query = QueryCodec.decode(Base64.getDecoder().decode(json.get("encoded").getAsString()));
+        Assert.assertEquals(query.getAggregation().getType(), AggregationType.RAW);
+        Assert.assertEquals(query.toString(), json.get("query").getAsString());
+    }
+
+    @Test
+    public void testCompileWithErrors() throws IOException {
+        HttpResponse response = request("POST", "/compile", "SELECT * FROM STREAM() GROUP BY 1");
+        Assert.assertEquals(response.status, 200);
+        JsonObject json = response.body.getAsJsonObject();
+        Assert.assertTrue(json.get("query").isJsonNull());
+        Assert.assertTrue(json.get("encoded").isJsonNull());
+        JsonObject error = json.get("errors").getAsJsonArray().get(0).getAsJsonObject();
+        Assert.assertEquals(error.get("error").getAsString(), "Query consists of multiple aggregation types.");
+        Assert.assertTrue(error.get("resolutions").isJsonArray());
+    }
+
+    @Test
+    public void testCompileBatch() throws IOException {
+        HttpResponse response = request("POST", "/compile/batch", "[\"SELECT * FROM STREAM()\", \"SELECT * FROM STREAM() GROUP BY 1\", \"SELECT * FROM STREAM()\"]");
+        Assert.assertEquals(response.status, 200);
+        JsonArray results = response.body.getAsJsonArray();
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).getAsJsonObject().get("errors").getAsJsonArray().size(), 0);
+        Assert.assertEquals(results.get(1).getAsJsonObject().get("errors").getAsJsonArray().size(), 1);
+        Assert.assertEquals(results.get(2), results.get(0));
+    }
+
+    @Test
+    public void testInvalidBatches() throws IOException {
+        HttpResponse response = request("POST", "/compile/batch", "[\"SELECT * FROM STREAM()\"");
+        Assert.assertEquals(response.status, 400);
+        Assert.assertEquals(response.body.getAsJsonObject().get("error").getAsString(), "The batch is not valid JSON.");
+
+        response = request("POST", "/compile/batch", "{\"bql\": \"SELECT * FROM STREAM()\"}");
+        Assert.assertEquals(response.status, 400);
+        Assert.assertEquals(response.body.getAsJsonObject().get("error").getAsString(), "The batch must be a JSON array of BQL strings.");
+
+        response = request("POST", "/compile/batch", "[\"SELECT * FROM STREAM()\", 1]");
+        Assert.assertEquals(response.status, 400);
+
+        response = request("POST", "/compile/batch", "[\"a\", \"b\", \"c\", \"d\"]");
+        Assert.assertEquals(response.status, 413);
+        Assert.assertEquals(response.body.getAsJsonObject().get("error").getAsString(), "The batch has more than 3 queries.");
+    }
+
+    @Test
+    public void testRequestTooLarge() throws IOException {
+        StringBuilder bql = new StringBuilder("SELECT * FROM STREAM() WHERE abc IN (0");
+        for (int i = 1; i < 100; i++) {
+            bql.append(", ").append(i);
+        }
+        HttpResponse response = request("POST", "/compile", bql.append(")").toString());
+        Assert.assertEquals(response.status, 413);
+        Assert.assertEquals(response.body.getAsJsonObject().get("error").getAsString(), "The request body is larger than 200 bytes.");
+    }
+
+    @Test
+    public void testMalformedContentLength() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("POST /compile HTTP/1.1\r\nHost: localhost\r\nContent-Length: abc\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(socket.getInputStream());
+            Assert.assertTrue(response.startsWith("HTTP/1.1 400"), response);
+        }
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "The Content-Length header is not a number\\.")
+    public void testParseMalformedLength() {
+        BulletBQLServer.parseLength("abc");
+    }
+
+    @Test
+    public void testParseLength() {
+        Assert.assertEquals(BulletBQLServer.parseLength(" 42 "), 42L);
+    }
+
+    @Test
+    public void testUnknownPathsAndMethods() throws IOException {
+        Assert.assertEquals(request("GET", "/compile", null).status, 405);
+        Assert.assertEquals(request("POST", "/compile/other", "SELECT * FROM STREAM()").status, 404);
+        Assert.assertEquals(request("POST", "/health", "").status, 405);
+        Assert.assertEquals(request("GET", "/metrics/other", null).status, 404);
+        Assert.assertEquals(request("GET", "/other", null).status, 404);
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        request("POST", "/compile", "SELECT * FROM STREAM() WHERE abc > 5");
+        request("POST", "/compile", "SELECT * FROM STREAM() WHERE abc > 6");
+
+        HttpResponse response = request("GET", "/cache", null);
+        Assert.assertEquals(response.status, 200);
+        JsonObject template = response.body.getAsJsonObject().get("template").getAsJsonObject();
+        Assert.assertEquals(template.get("size").getAsInt(), 1);
+        Assert.assertEquals(template.get("hits").getAsLong(), 1L);
+        Assert.assertEquals(template.get("misses").getAsLong(), 1L);
+
+        response = request("DELETE", "/cache", null);
+        Assert.assertEquals(response.status, 200);
+        Assert.assertEquals(response.body.getAsJsonObject().get("template").getAsJsonObject().get("size").getAsInt(), 0);
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        request("POST", "/compile", "SELECT * FROM STREAM()");
+        request("POST", "/compile/batch", "[\"SELECT * FROM STREAM() GROUP BY 1\", \"SELECT COUNT(*) FROM STREAM()\"]");
+        request("GET", "/compile", null);
+
+        HttpResponse response = request("GET", "/metrics", null);
+        Assert.assertEquals(response.status, 200);
+        JsonObject json = response.body.getAsJsonObject();
+        JsonObject counts = json.get("server").getAsJsonObject();
+        Assert.assertEquals(counts.get("requests").getAsLong(), 4L);
+        Assert.assertEquals(counts.get("rejectedRequests").getAsLong(), 1L);
+        Assert.assertEquals(counts.get("batches").getAsLong(), 1L);
+        Assert.assertEquals(counts.get("queries").getAsLong(), 3L);
+        Assert.assertEquals(json.get("parses").getAsLong(), 3L);
+        Assert.assertEquals(json.get("errors").getAsJsonObject().get("MULTIPLE_QUERY_TYPES").getAsLong(), 1L);
+        Assert.assertEquals(json.get("latencies").getAsJsonObject().get("RAW").getAsJsonObject().get("count").getAsLong(), 1L);
+        Assert.assertEquals(json.get("latencies").getAsJsonObject().get("GROUP").getAsJsonObject().get("count").getAsLong(), 1L);
+        Assert.assertEquals(json.get("failureLatencies").getAsJsonObject().get("count").getAsLong(), 1L);
+        Assert.assertEquals(json.get("queryLengths").getAsJsonObject().get("count").getAsLong(), 3L);
+        Assert.assertTrue(json.get("caches").getAsJsonObject().has("template"));
+    }
+
+    @Test
+    public void testKeepAlive() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 3; i++) {
+                out.write("GET /health HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String response = readResponse(in);
+                Assert.assertTrue(response.startsWith("HTTP/1.1 200"));
+                Assert.assertTrue(response.endsWith("{\"status\":\"OK\"}"));
+            }
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        int port = server.getPort();
+        Assert.assertNotEquals(port, 0);
+        server.close();
+        server.close();
+        Assert.assertEquals(server.getPort(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testStartTwice() throws IOException {
+        server.start();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownArgument() throws IOException {
+        BulletBQLServer.main(new String[] {"--port=0"});
+    }
+
+    private HttpResponse request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new HttpResponse(status, new JsonParser().parse(new String(readAll(in), StandardCharsets.UTF_8)));
+        }
+    }
+
+    // Reads the headers and then the number of bytes in the Content-Length header so that the connection stays usable
+    private static String readResponse(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        while (!headers.toString().endsWith("\r\n\r\n")) {
+            headers.append((char) in.read());
+        }
+        int length = 0;
+        for (String header : headers.toString().split("\r\n")) {
+            if (header.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(header.substring("content-length:".length()).trim());
+            }
+        }
+        byte[] body = new byte[length];
+        for (int read = 0; read < length; ) {
+            read += in.read(body, read, length - read);
+        }
+        return headers + new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -5,6 +5,8 @@
  */
 package com.yahoo.bullet.bql;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
@@ -13,16 +15,23 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 
 public class BulletBQLTest {
     private final InputStream systemIn = System.in;
     private final PrintStream systemOut = System.out;
+    private final PrintStream systemErr = System.err;
 
     @AfterClass
     public void restoreStreams() {
         System.setIn(systemIn);
         System.setOut(systemOut);
+        System.setErr(systemErr);
     }
 
     @Test
@@ -43,6 +52,75 @@ public class BulletBQLTest {
         Assert.assertTrue(content.contains("error: Query consists of multiple aggregation types."));
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        Path queries = Files.createTempFile("queries", ".bql");
+        Path output = Files.createTempFile("queries", ".jsonl");
+        Files.write(queries, Arrays.asList("SELECT * FROM STREAM()", "", "SELECT * FROM STREAM() GROUP BY 1", "SELECT abc FROM STREAM() WHERE abc > 5"));
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err));
+
+        BulletBQL.main(new String[] {"--schema=src/test/resources/test_schema.json", "--threads=2", "--output=" + output, queries.toString()});
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Assert.assertEquals(lines.size(), 3);
+
+        JsonObject first = new JsonParser().parse(lines.get(0)).getAsJsonObject();
+        Assert.assertEquals(first.get("file").getAsString(), queries.toString());
+        Assert.assertEquals(first.get("line").getAsInt(), 1);
+        Assert.assertEquals(first.get("bql").getAsString(), "SELECT * FROM STREAM()");
+        Assert.assertTrue(first.get("query").getAsString().startsWith("{tableFunction: null, projection: {fields: null, type: PASS_THROUGH}"));
+        Assert.assertEquals(first.get("errors").getAsJsonArray().size(), 0);
+        Assert.assertEquals(first.get("length").getAsInt(), 22);
+        Assert.assertTrue(first.get("nodes").getAsInt() > 0);
+        Assert.assertTrue(first.get("timeMs").getAsDouble() > 0.0);
+
+        JsonObject second = new JsonParser().parse(lines.get(1)).getAsJsonObject();
+        Assert.assertEquals(second.get("line").getAsInt(), 3);
+        Assert.assertTrue(second.get("query").isJsonNull());
+        Assert.assertEquals(second.get("errors").getAsJsonArray().get(0).getAsJsonObject().get("error").getAsString(),
+                            "Query consists of multiple aggregation types.");
+
+        JsonObject third = new JsonParser().parse(lines.get(2)).getAsJsonObject();
+        Assert.assertEquals(third.get("line").getAsInt(), 4);
+        Assert.assertEquals(third.get("errors").getAsJsonArray().size(), 0);
+
+        String summary = err.toString();
+        Assert.assertTrue(summary.startsWith("Compiled 3 queries (1 with errors) in "));
+        Assert.assertTrue(summary.contains("on 2 threads"));
+        Assert.assertTrue(summary.contains("Compile time (ms): p50 "));
+        Assert.assertTrue(summary.contains("p99.9 "));
+    }
+
+    @Test
+    public void testBatchWithConfig() throws Exception {
+        Path config = Files.createTempFile("config", ".yaml");
+        Path queries = Files.createTempFile("queries", ".bql");
+        Files.write(config, Arrays.asList("bullet.bql.max.query.length: 30", "bullet.record.schema.file.name: src/test/resources/test_schema.json"));
+        Files.write(queries, Arrays.asList("SELECT * FROM STREAM()", "SELECT abc FROM STREAM() WHERE abc > 5"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+
+        BulletBQL.main(new String[] {"--config=" + config, queries.toString()});
+
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 2);
+        Assert.assertEquals(new JsonParser().parse(lines[0]).getAsJsonObject().get("errors").getAsJsonArray().size(), 0);
+        Assert.assertEquals(new JsonParser().parse(lines[1]).getAsJsonObject().get("errors").getAsJsonArray().get(0).getAsJsonObject().get("error").getAsString(),
+                            "The given BQL string is too long. (38 characters)");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownArgument() {
+        BulletBQL.main(new String[] {"--foo=bar"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonPositiveThreads() {
+        BulletBQL.main(new String[] {"--threads=0", "queries.bql"});
+    }
+
     @Test
     public void testConstructor() {
         // coverage
@@ -5,8 +5,21 @@
  */
 package com.yahoo.bullet.bql;
 
+import com.yahoo.bullet.bql.metrics.CompilerListener;
+import com.yahoo.bullet.bql.metrics.CompilerListeners;
 import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.query.CompilationDeadline;
+import com.yahoo.bullet.bql.query.CompilationProfile;
+import com.yahoo.bullet.bql.query.CompilationProfile.Phase;
+import com.yahoo.bullet.bql.query.ProcessedQuery;
+import com.yahoo.bullet.bql.query.QueryBuilder;
+import com.yahoo.bullet.bql.query.QueryCodec;
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.bql.query.QueryProcessor;
+import com.yahoo.bullet.bql.util.QueryGenerator;
 import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.BulletError;
+import com.yahoo.bullet.common.BulletException;
 import com.yahoo.bullet.query.expressions.Expression;
 import com.yahoo.bullet.typesystem.Type;
 import org.mockito.Mockito;
@@ -15,7 +28,22 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class BulletQueryBuilderTest {
     private BulletQueryBuilder builder;
@@ -55,6 +83,140 @@ public class BulletQueryBuilderTest {
         Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("Please reduce the length of the query to at most 10 characters."));
     }
 
+    @Test
+    public void testBuildQueryFromBytes() {
+        Assert.assertEquals(builder.buildQueryFromBytes(null).getErrors().get(0).getError(), "The given BQL query is empty.");
+        Assert.assertEquals(builder.buildQueryFromBytes(new byte[0]).getErrors().get(0).getError(), "The given BQL query is empty.");
+
+        String bql = "SELECT abc, COUNT(*) FROM STREAM(1000, TIME) WHERE c = 'ünïcode' GROUP BY abc";
+        BQLResult expected = builder.buildQuery(bql);
+        BQLResult result = builder.buildQueryFromBytes(bql.getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().toString(), expected.getQuery().toString());
+        Assert.assertEquals(result.getBql(), expected.getBql());
+        Assert.assertEquals(result.getCost(), expected.getCost());
+
+        result = builder.buildQueryFromBytes("SELECT * FROM STREAM();\n ;".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(result.getErrors().get(0).getError(), "2:2: extraneous input ';' expecting <EOF>");
+    }
+
+    @Test
+    public void testBQLBytesMaxLength() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_LENGTH, 10);
+        config.validate();
+
+        builder = new BulletQueryBuilder(config);
+
+        // The length is in characters and not bytes
+        Assert.assertFalse(builder.buildQueryFromBytes("ééééé".getBytes(StandardCharsets.UTF_8)).getErrors().get(0).getError().contains("too long"));
+
+        BQLResult result = builder.buildQueryFromBytes("SELECT * FROM STREAM()".getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The given BQL string is too long. (22 characters)");
+    }
+
+    @Test
+    public void testBQLMaxQueryCost() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_COST, 20L);
+        config.validate();
+
+        builder = new BulletQueryBuilder(config);
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getCost(), 16L);
+
+        result = builder.buildQuery("SELECT COUNT(DISTINCT abc) FROM STREAM(1000, TIME)");
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertEquals(result.getErrors().size(), 1);
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The given BQL query is too expensive. (estimated cost 512)");
+        Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("Please simplify the query or shorten its duration to reduce its cost to at most 20."));
+    }
+
+    @Test
+    public void testQueryCostBudget() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_COST_BUDGET, 40L);
+        config.validate();
+
+        builder = new BulletQueryBuilder(config);
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        BQLResult other = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        BQLResult rejected = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        Assert.assertEquals(result.getCost(), 16L);
+
+        Assert.assertFalse(builder.acquire(result).isPresent());
+        Assert.assertFalse(builder.acquire(other).isPresent());
+        Assert.assertEquals(builder.getRunningCost(), 32L);
+
+        Optional<BulletError> error = builder.acquire(rejected);
+        Assert.assertTrue(error.isPresent());
+        Assert.assertEquals(error.get().getError(), "The given BQL query does not fit in the remaining cost budget. (estimated cost 16, remaining budget 8)");
+        Assert.assertEquals(error.get().getResolutions(), Collections.singletonList("Please try again once running queries have finished or reduce the cost of the query."));
+        Assert.assertEquals(builder.getRunningCost(), 32L);
+
+        // A rejected query holds nothing
+        builder.release(rejected);
+        Assert.assertEquals(builder.getRunningCost(), 32L);
+
+        builder.release(result);
+        Assert.assertEquals(builder.getRunningCost(), 16L);
+        Assert.assertFalse(builder.acquire(rejected).isPresent());
+        Assert.assertEquals(builder.getRunningCost(), 32L);
+
+        builder.release(other);
+        builder.release(rejected);
+        Assert.assertEquals(builder.getRunningCost(), 0L);
+    }
+
+    @Test
+    public void testQueryCostBudgetIsReleasedOnce() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_COST_BUDGET, 40L);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+        BulletQueryBuilder otherBuilder = new BulletQueryBuilder(config);
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        BQLResult other = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        Assert.assertFalse(builder.acquire(result).isPresent());
+        Assert.assertFalse(builder.acquire(other).isPresent());
+
+        // Releasing twice only releases once
+        builder.release(result);
+        builder.release(result);
+        Assert.assertEquals(builder.getRunningCost(), 16L);
+
+        // Releasing a result that another builder or no builder admitted does nothing
+        BQLResult foreign = otherBuilder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        builder.release(foreign);
+        Assert.assertFalse(otherBuilder.acquire(foreign).isPresent());
+        builder.release(foreign);
+        Assert.assertEquals(builder.getRunningCost(), 16L);
+        Assert.assertEquals(otherBuilder.getRunningCost(), 16L);
+        builder.release(builder.buildQuery("SELECT foo FROM STREAM()"));
+        Assert.assertEquals(builder.getRunningCost(), 16L);
+
+        // The budget still lets no more than it holds through
+        Assert.assertFalse(builder.acquire(result).isPresent());
+        Assert.assertTrue(builder.acquire(builder.buildQuery("SELECT * FROM STREAM(1000, TIME)")).isPresent());
+        builder.release(result);
+        builder.release(other);
+        otherBuilder.release(foreign);
+        Assert.assertEquals(builder.getRunningCost(), 0L);
+        Assert.assertEquals(otherBuilder.getRunningCost(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testQueryCostBudgetIsAcquiredOnce() {
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM(1000, TIME)");
+        builder.acquire(result);
+        builder.acquire(result);
+    }
+
     @Test
     public void testFormattedBQLStringInResult() {
         BQLResult result = builder.buildQuery("select * from stream();");
@@ -63,6 +225,74 @@ public class BulletQueryBuilderTest {
         Assert.assertEquals(result.getBql(), "SELECT * FROM STREAM()");
     }
 
+    @Test
+    public void testFingerprintInResult() {
+        BQLResult resultA = builder.buildQuery("select abc as x from stream() where abc > 5 and c = 'a' limit 1");
+        BQLResult resultB = builder.buildQuery("SELECT abc AS y FROM STREAM() WHERE c = 'b' AND abc > 10 LIMIT 2");
+        Assert.assertFalse(resultA.hasErrors());
+        Assert.assertEquals(resultA.getFingerprint().getTemplate(), "SELECT abc AS $1 FROM STREAM() WHERE ((? = c) AND (abc > ?)) LIMIT ?");
+        Assert.assertEquals(resultA.getFingerprint(), resultB.getFingerprint());
+        Assert.assertSame(resultA.getFingerprint(), resultA.getFingerprint());
+
+        BQLResult explain = builder.buildQuery("EXPLAIN SELECT abc FROM STREAM()");
+        Assert.assertTrue(explain.isExplain());
+        Assert.assertEquals(explain.getFingerprint().getTemplate(), "EXPLAIN SELECT abc FROM STREAM()");
+
+        BQLResult invalid = builder.buildQuery("SELECT COUNT(*), abc FROM STREAM()");
+        Assert.assertTrue(invalid.hasErrors());
+        Assert.assertEquals(invalid.getFingerprint().getTemplate(), "SELECT COUNT(*), abc FROM STREAM()");
+
+        Assert.assertNull(builder.buildQuery("not a valid query").getFingerprint());
+    }
+
+    @Test
+    public void testCompilationProfile() {
+        Assert.assertNull(builder.buildQuery("SELECT * FROM STREAM()").getProfile());
+
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_COMPILATION_PROFILE_ENABLE, true);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+
+        BQLResult result = builder.buildQuery("SELECT abc + 1 AS x FROM STREAM() WHERE abc > 5");
+        CompilationProfile profile = result.getProfile();
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(profile.getCount(Phase.LEX), 15);
+        Assert.assertTrue(profile.getCount(Phase.PARSE_SLL) > profile.getCount(Phase.BUILD_AST));
+        Assert.assertEquals(profile.getCount(Phase.PARSE_LL), 0);
+        Assert.assertEquals(profile.getNanos(Phase.PARSE_LL), 0L);
+        Assert.assertEquals(profile.getCount(Phase.BUILD_AST), 10);
+        Assert.assertEquals(profile.getCount(Phase.TEMPLATE), 10);
+        Assert.assertEquals(profile.getCount(Phase.PROCESS), 10);
+        Assert.assertEquals(profile.getCount(Phase.TYPE_CHECK), 10);
+        Assert.assertEquals(profile.getCount(Phase.FORMAT), result.getBql().length());
+        for (Phase phase : Phase.values()) {
+            if (phase != Phase.PARSE_LL) {
+                Assert.assertTrue(profile.getNanos(phase) > 0L, phase.toString());
+            }
+        }
+        long total = 0L;
+        for (Phase phase : Phase.values()) {
+            total += profile.getNanos(phase);
+        }
+        Assert.assertEquals(profile.getTotalNanos(), total);
+        Assert.assertTrue(profile.toString().startsWith("{LEX: "));
+        Assert.assertFalse(profile.toString().contains("PARSE_LL"));
+
+        // A query that reuses the plan of its template is neither processed nor type checked
+        profile = builder.buildQuery("SELECT abc + 1 AS x FROM STREAM() WHERE abc > 10").getProfile();
+        Assert.assertEquals(profile.getCount(Phase.TEMPLATE), 10);
+        Assert.assertEquals(profile.getNanos(Phase.PROCESS), 0L);
+        Assert.assertEquals(profile.getNanos(Phase.TYPE_CHECK), 0L);
+        Assert.assertTrue(profile.getNanos(Phase.CONFIGURE) > 0L);
+
+        // Failed queries have the phases up to the failure
+        result = builder.buildQuery("SELECT abc FROM STREAM() WHERE");
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertTrue(result.getProfile().getNanos(Phase.LEX) > 0L);
+        Assert.assertEquals(result.getProfile().getNanos(Phase.PROCESS), 0L);
+    }
+
     @Test
     public void testBQLNoSchema() {
         BQLResult result = builder.buildQuery("SELECT foo FROM STREAM()");
@@ -79,7 +309,7 @@ public class BulletQueryBuilderTest {
         BQLResult result = builder.buildQuery("not a valid query");
         Assert.assertTrue(result.hasErrors());
         Assert.assertEquals(result.getErrors().size(), 1);
-        Assert.assertEquals(result.getErrors().get(0).getError(), "1:1: mismatched input 'not' expecting 'SELECT'");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:1: mismatched input 'not' expecting {'EXPLAIN', 'SELECT'}");
         Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("This is a parsing error."));
     }
 
@@ -101,11 +331,301 @@ public class BulletQueryBuilderTest {
         Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("Please specify a positive number."));
     }
 
+    @Test
+    public void testConcurrentBuildsMatchSequentialBuilds() throws Exception {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        List<String> corpus = new ArrayList<>(new QueryGenerator(config.getSchema(), 7L).next(200));
+        corpus.addAll(Arrays.asList("SELECT foo FROM STREAM()", "SELECT * FROM STREAM() WHERE", "SELECT COUNT(*), abc FROM STREAM()"));
+        BulletQueryBuilder reference = new BulletQueryBuilder(config);
+        List<String> expected = corpus.stream().map(bql -> describe(reference.buildQuery(bql))).collect(Collectors.toList());
+
+        // One builder shared by every thread, each starting at a different query
+        BulletQueryBuilder shared = new BulletQueryBuilder(config);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> mismatches = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int offset = i * corpus.size() / threads;
+                mismatches.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int j = 0; j < corpus.size() * 2; j++) {
+                        int index = (offset + j) % corpus.size();
+                        if (!expected.get(index).equals(describe(shared.buildQuery(corpus.get(index))))) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            for (Future<Integer> count : mismatches) {
+                Assert.assertEquals(count.get().intValue(), 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBuildQueries() {
+        List<String> batch = Arrays.asList("SELECT * FROM STREAM()", "SELECT foo", null, "SELECT abc FROM STREAM()", "SELECT * FROM STREAM()");
+        List<BQLResult> results = builder.buildQueries(batch);
+        Assert.assertEquals(results.size(), 5);
+        Assert.assertEquals(results.get(0).getBql(), "SELECT * FROM STREAM()");
+        Assert.assertTrue(results.get(1).hasErrors());
+        Assert.assertEquals(results.get(2).getErrors().get(0).getError(), "The given BQL query is empty.");
+        Assert.assertEquals(results.get(3).getBql(), "SELECT abc FROM STREAM()");
+        // Identical strings are only compiled once
+        Assert.assertSame(results.get(4), results.get(0));
+        Assert.assertTrue(builder.buildQueries(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testBuildQueriesOnExecutor() {
+        AtomicInteger tasks = new AtomicInteger();
+        builder = new BulletQueryBuilder(new BulletConfig(), runnable -> {
+            tasks.incrementAndGet();
+            runnable.run();
+        });
+        List<BQLResult> results = builder.buildQueries(Arrays.asList("SELECT a FROM STREAM()", "SELECT b FROM STREAM()", "SELECT a FROM STREAM()"));
+        Assert.assertEquals(tasks.get(), 2);
+        Assert.assertEquals(results.get(0).getBql(), "SELECT a FROM STREAM()");
+        Assert.assertEquals(results.get(1).getBql(), "SELECT b FROM STREAM()");
+        Assert.assertSame(results.get(2), results.get(0));
+    }
+
+    @Test
+    public void testBuildQueryAsyncOnBoundedPool() throws Exception {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_COMPILATION_THREADS, 2);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+        BQLResult result = builder.buildQueryAsync("SELECT * FROM STREAM()").get();
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getBql(), "SELECT * FROM STREAM()");
+
+        Field field = BulletQueryBuilder.class.getDeclaredField("executor");
+        field.setAccessible(true);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) field.get(builder);
+        Assert.assertEquals(executor.getMaximumPoolSize(), 2);
+        Assert.assertTrue(executor.allowsCoreThreadTimeOut());
+
+        List<String> batch = Collections.nCopies(10, "SELECT abc FROM STREAM() WHERE abc > 1");
+        Assert.assertEquals(builder.buildQueriesAsync(batch).get().size(), 10);
+    }
+
+    @Test
+    public void testCancelledDeadline() {
+        CompilationDeadline deadline = new CompilationDeadline(0L);
+        Assert.assertFalse(deadline.isExpired());
+        deadline.cancel();
+        Assert.assertTrue(deadline.isCancelled());
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM()", deadline);
+        Assert.assertEquals(result.getErrors().size(), 1);
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The compilation of the given BQL query was cancelled.");
+        Assert.assertFalse(builder.buildQuery("SELECT * FROM STREAM()", null).hasErrors());
+    }
+
+    @Test
+    public void testExpiredDeadline() throws Exception {
+        CompilationDeadline deadline = new CompilationDeadline(1L);
+        Thread.sleep(5L);
+        Assert.assertTrue(deadline.isExpired());
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM()", deadline);
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The given BQL query took longer than 1 ms to compile.");
+        Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("Please simplify the query."));
+    }
+
+    @Test
+    public void testDeadlineCheckedWhileBuildingQuery() {
+        ProcessedQuery processedQuery = QueryProcessor.visit(new BQLParser().createQueryNode("SELECT abc + 1 FROM STREAM() WHERE abc > 1"));
+        CompilationDeadline deadline = new CompilationDeadline(0L);
+        deadline.cancel();
+        try {
+            new QueryBuilder(processedQuery, new BulletConfig().getSchema(), deadline);
+            Assert.fail();
+        } catch (BulletException e) {
+            Assert.assertEquals(e.getError().getError(), "The compilation of the given BQL query was cancelled.");
+        }
+    }
+
+    @Test
+    public void testCompilationTimeout() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, 1L);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM() WHERE abc IN (" + values(100000) + ")");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The given BQL query took longer than 1 ms to compile.");
+        result = builder.buildQueryFromBytes(("SELECT * FROM STREAM() WHERE abc IN (" + values(100000) + ")").getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(result.getErrors().get(0).getError(), "The given BQL query took longer than 1 ms to compile.");
+    }
+
+    @Test
+    public void testCancelAsyncCompilation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        builder = new BulletQueryBuilder(new BulletConfig(), runnable -> new Thread(() -> {
+            started.countDown();
+            runnable.run();
+            finished.countDown();
+        }).start());
+        List<QueryError> errors = Collections.synchronizedList(new ArrayList<>());
+        CompilerListener listener = new CompilerListener() {
+            @Override
+            public void onError(QueryError error) {
+                errors.add(error);
+            }
+        };
+        CompilerListeners.register(listener);
+        try {
+            CompletableFuture<BQLResult> future = builder.buildQueryAsync("SELECT * FROM STREAM() WHERE abc IN (" + values(300000) + ")");
+            started.await();
+            Thread.sleep(50L);
+            Assert.assertTrue(future.cancel(true));
+            Assert.assertTrue(finished.await(10L, TimeUnit.SECONDS));
+            Assert.assertEquals(errors, Collections.singletonList(QueryError.COMPILATION_CANCELLED));
+        } finally {
+            CompilerListeners.unregister(listener);
+        }
+    }
+
+    @Test
+    public void testBatchCompilationTimeoutExcludesQueueing() throws Exception {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_COMPILATION_TIMEOUT_MS, 1000L);
+        config.validate();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            builder = new BulletQueryBuilder(config, executor);
+            // The batch waits behind this task for longer than the time limit
+            CountDownLatch started = new CountDownLatch(1);
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(1200L);
+                } catch (InterruptedException ignored) {
+                }
+            });
+            started.await();
+            List<BQLResult> results = builder.buildQueries(Arrays.asList("SELECT * FROM STREAM()", "SELECT abc FROM STREAM()", "SELECT COUNT(*) FROM STREAM()"));
+            Assert.assertEquals(results.size(), 3);
+            results.forEach(result -> Assert.assertFalse(result.hasErrors(), String.valueOf(result.getErrors())));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRestartDeadline() throws Exception {
+        CompilationDeadline deadline = new CompilationDeadline(50L);
+        Thread.sleep(60L);
+        Assert.assertTrue(deadline.isExpired());
+        deadline.start();
+        Assert.assertFalse(deadline.isExpired());
+        deadline.check();
+        deadline.cancel();
+        deadline.start();
+        Assert.assertTrue(deadline.isCancelled());
+    }
+
+    @Test
+    public void testCancelBatchCompilation() {
+        List<Runnable> tasks = new ArrayList<>();
+        builder = new BulletQueryBuilder(new BulletConfig(), tasks::add);
+        CompletableFuture<List<BQLResult>> batch = builder.buildQueriesAsync(Arrays.asList("SELECT a FROM STREAM()", "SELECT b FROM STREAM()"));
+        Assert.assertEquals(tasks.size(), 2);
+        Assert.assertTrue(batch.cancel(true));
+        // The compilations are cancelled and do not run
+        tasks.forEach(Runnable::run);
+        Assert.assertTrue(batch.isCancelled());
+    }
+
+    @Test
+    public void testQueryLimits() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_NODES, 20);
+        config.set(BQLConfig.BQL_MAX_EXPRESSION_DEPTH, 4);
+        config.set(BQLConfig.BQL_MAX_LIST_SIZE, 3);
+        config.set(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, 2);
+        config.set(BQLConfig.BQL_MAX_TABLE_FUNCTIONS, 0);
+        config.set(BQLConfig.BQL_MAX_OUTER_QUERY_DEPTH, 0);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+
+        Assert.assertFalse(builder.buildQuery("SELECT * FROM STREAM() WHERE abc IN (1, 2, 3) AND ((((aaa))) + 1 > 5)").hasErrors());
+        Assert.assertFalse(builder.buildQuery("SELECT * FROM STREAM() WHERE aaa RLIKE ANY ['a', 'b']").hasErrors());
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM() WHERE abc + 1 + 2 + 3 > 5");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The expression is nested more than 4 levels deep.");
+        Assert.assertEquals(result.getErrors().get(0).getResolutions(), Collections.singletonList("Please reduce the nesting of the expression."));
+
+        result = builder.buildQuery("SELECT * FROM STREAM() WHERE abc IN (1, 2, 3, 4)");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:38: The list has more than 3 values.");
+
+        result = builder.buildQuery("SELECT [1, 2, 3, 4] AS l FROM STREAM()");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:8: The list has more than 3 values.");
+
+        result = builder.buildQuery("SELECT * FROM STREAM() WHERE aaa RLIKE ANY ['a', 'b', 'c']");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The given BQL query has more than 2 RLIKE patterns.");
+
+        result = builder.buildQuery("SELECT * FROM STREAM() WHERE aaa RLIKE 'a' AND aaa RLIKE 'b' AND aaa RLIKE 'c'");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:66: The given BQL query has more than 2 RLIKE patterns.");
+
+        result = builder.buildQuery("SELECT * FROM STREAM() LATERAL VIEW EXPLODE(ccc) AS x");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:37: The given BQL query has more than 0 table functions.");
+
+        result = builder.buildQuery("SELECT * FROM (SELECT * FROM STREAM())");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:1: The given BQL query nests outer queries more than 0 levels deep.");
+
+        result = builder.buildQuery("SELECT abc, aaa, abc AS a, aaa AS b, abc AS c, aaa AS d, abc AS e, aaa AS f FROM STREAM()");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:55: The given BQL query has more than 20 nodes.");
+
+        Assert.assertTrue(builder.prepare("SELECT * FROM STREAM() WHERE abc IN (1, 2, 3, ?, 5)").hasErrors());
+    }
+
+    @Test
+    public void testLikeCountsAgainstRegexLimit() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_MAX_RLIKE_OPERATIONS, 2);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+
+        // Exact, prefix and suffix patterns are not matched with regexes
+        Assert.assertFalse(builder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE 'a%' AND c LIKE '%b' AND c NOT LIKE 'c' AND c LIKE ANY ['d', 'e', 'f']").hasErrors());
+        Assert.assertFalse(builder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE '%a%' AND c RLIKE 'b'").hasErrors());
+
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE '%a%' AND c NOT LIKE 'b_' AND c LIKE 'c%d'");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:67: The given BQL query has more than 2 RLIKE patterns.");
+
+        result = builder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE ANY ['a', 'b', 'c%']");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The given BQL query has more than 2 RLIKE patterns.");
+
+        result = builder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE '%a%' AND c RLIKE ANY ['b', 'c']");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:47: The given BQL query has more than 2 RLIKE patterns.");
+    }
+
+    private static String values(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+    }
+
+    private static String describe(BQLResult result) {
+        if (result.hasErrors()) {
+            return result.getErrors().toString();
+        }
+        return Arrays.toString(QueryCodec.encode(result.getQuery())) + ":" + result.getCost();
+    }
+
     @Test
     public void testExceptionCatchAll() throws Exception {
         // Catch-all is only necessary in the case of a programming error, so this cannot happen normally
         BQLParser mockParser = Mockito.mock(BQLParser.class);
-        Mockito.when(mockParser.createQueryNode(Mockito.anyString())).thenThrow(new NullPointerException());
+        Mockito.when(mockParser.createQueryNode(Mockito.anyString(), Mockito.any(), Mockito.any())).thenThrow(new NullPointerException());
 
         Field field = BulletQueryBuilder.class.getDeclaredField("bqlParser");
         field.setAccessible(true);
@@ -0,0 +1,227 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql;
+
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.BulletError;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.typesystem.Type;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PreparedQueryTest {
+    private BulletQueryBuilder builder;
+
+    @BeforeMethod
+    public void setup() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.set(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, 0);
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+    }
+
+    private PreparedQuery prepare(String bql) {
+        PreparedQuery prepared = builder.prepare(bql);
+        Assert.assertFalse(prepared.hasErrors(), String.valueOf(prepared.getErrors()));
+        return prepared;
+    }
+
+    // Checks that the bound query is the same as the query built with the values as literals
+    private void assertBind(BQLResult result, String bql) {
+        BQLResult expected = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), String.valueOf(result.getErrors()));
+        Assert.assertFalse(expected.hasErrors(), String.valueOf(expected.getErrors()));
+        Assert.assertEquals(result.getQuery().toString(), expected.getQuery().toString());
+        Assert.assertEquals(result.getQuery().getFilter(), expected.getQuery().getFilter());
+        Assert.assertEquals(result.getCost(), expected.getCost());
+        Assert.assertEquals(result.getBql(), expected.getBql());
+    }
+
+    private static void assertError(BQLResult result, String error) {
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertEquals(result.getErrors().get(0).getError(), error);
+    }
+
+    private static void assertError(PreparedQuery prepared, String error) {
+        Assert.assertTrue(prepared.hasErrors());
+        Assert.assertEquals(prepared.getErrors().get(0).getError(), error);
+        assertError(prepared.bind(), error);
+        assertError(prepared.bind(Collections.emptyMap()), error);
+    }
+
+    @Test
+    public void testPositionalParameters() {
+        PreparedQuery prepared = prepare("SELECT abc FROM STREAM() WHERE abc > ? AND c IN ? LIMIT 5");
+        Assert.assertEquals(prepared.getParameterTypes(), Arrays.asList(Type.INTEGER, Type.STRING_LIST));
+        Assert.assertEquals(prepared.getParameters().size(), 2);
+
+        assertBind(prepared.bind(5, Arrays.asList("a", "b")), "SELECT abc FROM STREAM() WHERE abc > 5 AND c IN ['a', 'b'] LIMIT 5");
+        assertBind(prepared.bind(7, Collections.singletonList("it's")), "SELECT abc FROM STREAM() WHERE abc > 7 AND c IN ['it''s'] LIMIT 5");
+    }
+
+    @Test
+    public void testNamedParameters() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE (abc = :x OR def < :y) AND abc != :x");
+        Assert.assertEquals(prepared.getParameterTypes(), Arrays.asList(Type.INTEGER, Type.FLOAT));
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("x", 1);
+        values.put("y", 2.5f);
+        assertBind(prepared.bind(values), "SELECT * FROM STREAM() WHERE (abc = 1 OR def < 2.5f) AND abc != 1");
+        assertBind(prepared.bind(3, 0.5f), "SELECT * FROM STREAM() WHERE (abc = 3 OR def < 0.5f) AND abc != 3");
+
+        values.remove("y");
+        assertError(prepared.bind(values), "1:49: No value was given for the parameter :y.");
+        Assert.assertEquals(prepared.bind(values).getErrors().size(), 1);
+    }
+
+    @Test
+    public void testBindDoesNotModifyPlan() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE abc = ? OR c = ?");
+        Query first = prepared.bind(1, "a").getQuery();
+        Query second = prepared.bind(2, "b").getQuery();
+        assertBind(prepared.bind(1, "a"), "SELECT * FROM STREAM() WHERE abc = 1 OR c = 'a'");
+        Assert.assertNotEquals(first.getFilter(), second.getFilter());
+        Assert.assertNotSame(first.getProjection(), second.getProjection());
+        Assert.assertNotSame(first.getAggregation(), second.getAggregation());
+        Assert.assertEquals(prepared.bind(1, "a").getFingerprint(), prepared.bind(2, "b").getFingerprint());
+    }
+
+    @Test
+    public void testInferredTypes() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE ? < abc AND b AND NOT ? AND SIZEIS(eee, ?) AND CONTAINSKEY(ddd, ?) " +
+                                         "AND abc BETWEEN (?, ?) AND ? BETWEEN (def, 10.0) AND a IN (?, 5L) AND c = ANY ? AND c RLIKE 'a.*' " +
+                                         "AND ? RLIKE 'b.*' AND CONTAINSVALUE(eee, ?) AND abc + ? > 0");
+        Assert.assertEquals(prepared.getParameterTypes(), Arrays.asList(Type.INTEGER, Type.BOOLEAN, Type.INTEGER, Type.STRING, Type.INTEGER, Type.INTEGER,
+                                                                         Type.FLOAT, Type.LONG, Type.STRING_LIST, Type.STRING, Type.STRING, Type.INTEGER));
+        assertBind(prepared.bind(1, false, 2, "k", 3, 4, 5.5f, 6L, Arrays.asList("x", "y"), "z", "v", 7),
+                   "SELECT * FROM STREAM() WHERE 1 < abc AND b AND NOT false AND SIZEIS(eee, 2) AND CONTAINSKEY(ddd, 'k') " +
+                   "AND abc BETWEEN (3, 4) AND 5.5f BETWEEN (def, 10.0) AND a IN (6L, 5L) AND c = ANY ['x', 'y'] AND c RLIKE 'a.*' " +
+                   "AND 'z' RLIKE 'b.*' AND CONTAINSVALUE(eee, 'v') AND abc + 7 > 0");
+    }
+
+    @Test
+    public void testNumericConversions() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE abc = ? AND a = ? AND def = ? AND def + 1.0 = ?");
+        assertBind(prepared.bind(1L, 2, 0.5, 3), "SELECT * FROM STREAM() WHERE abc = 1 AND a = 2L AND def = 0.5f AND def + 1.0 = 3.0");
+
+        assertError(prepared.bind(5000000000L, 2, 0.5, 3),
+                    "1:36: The value given for the parameter ? does not match its type. Type expected: INTEGER. Value given: 5000000000.");
+        assertError(prepared.bind(1, 2.0, 0.5, 3), "1:46: The value given for the parameter ? does not match its type. Type expected: LONG. Value given: 2.0.");
+        assertError(prepared.bind(1, 2, 0.1, 3), "1:58: The value given for the parameter ? does not match its type. Type expected: FLOAT. Value given: 0.1.");
+        assertError(prepared.bind("1", 2, 0.5, 3), "1:36: The value given for the parameter ? does not match its type. Type expected: INTEGER. Value given: 1.");
+        Assert.assertEquals(prepared.bind("1", "2", 0.5, 3).getErrors().size(), 2);
+
+        // Integral values must convert to FLOAT and DOUBLE exactly
+        assertBind(prepared.bind(1, 2, 16777216L, 9007199254740992L),
+                   "SELECT * FROM STREAM() WHERE abc = 1 AND a = 2L AND def = 1.6777216E7f AND def + 1.0 = 9.007199254740992E15");
+        assertError(prepared.bind(1, 2, 16777217, 3),
+                    "1:58: The value given for the parameter ? does not match its type. Type expected: FLOAT. Value given: 16777217.");
+        assertError(prepared.bind(1, 2, 0.5, 9007199254740993L),
+                    "1:76: The value given for the parameter ? does not match its type. Type expected: DOUBLE. Value given: 9007199254740993.");
+        assertError(prepared.bind(1, 2, 0.5, Long.MAX_VALUE),
+                    "1:76: The value given for the parameter ? does not match its type. Type expected: DOUBLE. Value given: 9223372036854775807.");
+    }
+
+    @Test
+    public void testBindErrors() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE abc = ? AND c IN ?");
+        Assert.assertEquals(prepared.getParameterTypes(), Arrays.asList(Type.INTEGER, Type.STRING_LIST));
+
+        assertError(prepared.bind(1), "The prepared query has 2 parameters. Values given: 1.");
+        assertError(prepared.bind((Object[]) null), "The prepared query has 2 parameters. Values given: 1.");
+        assertError(prepared.bind(null, Collections.emptyList()),
+                    "1:36: The value given for the parameter ? does not match its type. Type expected: INTEGER. Value given: null.");
+        assertError(prepared.bind(1, "a"), "1:47: The value given for the parameter ? does not match its type. Type expected: STRING_LIST. Value given: a.");
+        assertError(prepared.bind(1, Arrays.asList("a", 2)),
+                    "1:47: The value given for the parameter ? does not match its type. Type expected: STRING_LIST. Value given: [a, 2].");
+        assertError(prepared.bind(Collections.singletonMap("x", 1)), "1:36: No value was given for the parameter ?.");
+        assertBind(prepared.bind(1, Collections.singletonList("x")), "SELECT * FROM STREAM() WHERE abc = 1 AND c IN ['x']");
+    }
+
+    @Test
+    public void testTypeNotInferred() {
+        String error = "1:36: The type of the parameter ? cannot be inferred.";
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE abc = ? + ?"), error);
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE ? = ?"), "1:30: The type of the parameter ? cannot be inferred.");
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE c RLIKE ?"), "1:38: The type of the parameter ? cannot be inferred.");
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE c LIKE ?"), "1:37: The type of the parameter ? cannot be inferred.");
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE ddd = ?"), "1:36: The type of the parameter ? cannot be inferred.");
+
+        PreparedQuery prepared = builder.prepare("SELECT * FROM STREAM() WHERE abc = ? + ?");
+        BulletError bulletError = prepared.getErrors().get(0);
+        Assert.assertEquals(bulletError.getResolutions().size(), 1);
+    }
+
+    @Test
+    public void testTypeConflict() {
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE abc = :x AND c = :x"), "1:47: The parameter :x is used as both INTEGER and STRING.");
+        prepare("SELECT * FROM STREAM() WHERE abc = :x AND abc > :x");
+    }
+
+    @Test
+    public void testPrepareErrors() {
+        assertError(builder.prepare(null), "The given BQL query is empty.");
+        assertError(builder.prepare("EXPLAIN SELECT * FROM STREAM() WHERE abc = ?"), "EXPLAIN statements cannot be prepared.");
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE abc = ? OR abc = :x"),
+                    "1:47: Positional (?) and named (:name) parameters cannot be mixed.");
+        assertError(builder.prepare("SELECT COUNT(*) FROM STREAM() WHERE COUNT(*) > ?"), "WHERE clause cannot contain aggregates.");
+        assertError(builder.prepare("SELECT * FROM STREAM() WHERE abc = ? AND c = 5"), "1:42: The left and right operands in c = 5 must be comparable. Types given: STRING, INTEGER.");
+
+        BulletConfig config = new BulletConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_LENGTH, 10);
+        config.validate();
+        assertError(new BulletQueryBuilder(config).prepare("SELECT * FROM STREAM()"), "The given BQL string is too long. (22 characters)");
+    }
+
+    @Test
+    public void testNoParameters() {
+        PreparedQuery prepared = prepare("SELECT * FROM STREAM() WHERE abc = 1");
+        Assert.assertTrue(prepared.getParameters().isEmpty());
+        assertBind(prepared.bind(), "SELECT * FROM STREAM() WHERE abc = 1");
+    }
+
+    @Test
+    public void testTooExpensive() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.set(BQLConfig.BQL_MAX_QUERY_COST, 1L);
+        config.validate();
+        PreparedQuery prepared = new BulletQueryBuilder(config).prepare("SELECT * FROM STREAM() WHERE abc = ?");
+        Assert.assertFalse(prepared.hasErrors());
+        BQLResult result = prepared.bind(1);
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertTrue(result.getErrors().get(0).getError().startsWith("The given BQL query is too expensive."));
+    }
+
+    @Test
+    public void testNoSchema() {
+        PreparedQuery prepared = new BulletQueryBuilder(new BulletConfig()).prepare("SELECT * FROM STREAM() WHERE abc = ? AND (b OR ?)");
+        assertError(prepared, "1:36: The type of the parameter ? cannot be inferred.");
+        Assert.assertEquals(prepared.getErrors().size(), 1);
+    }
+
+    @Test
+    public void testBuildQueryWithParameters() {
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM() WHERE abc = ?");
+        assertError(result, "The given BQL query has bind parameters.");
+        Assert.assertNotNull(result.getFingerprint());
+    }
+
+    @Test
+    public void testParameterTypesList() {
+        List<Type> types = prepare("SELECT * FROM STREAM() WHERE abc IN (?, ?)").getParameterTypes();
+        Assert.assertEquals(types, Arrays.asList(Type.INTEGER, Type.INTEGER));
+    }
+}
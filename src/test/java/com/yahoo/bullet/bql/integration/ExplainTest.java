@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.integration;
+
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.query.ProcessedQuery;
+import com.yahoo.bullet.bql.query.QueryPlan;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ExplainTest extends IntegrationTest {
+    private QueryPlan explain(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertTrue(result.isExplain());
+        Assert.assertNull(result.getQuery());
+        return result.getPlan();
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testNotExplain() {
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM()");
+        Assert.assertFalse(result.isExplain());
+        Assert.assertNull(result.getPlan());
+        Assert.assertNotNull(result.getQuery());
+    }
+
+    @Test
+    public void testExplainBQL() {
+        BQLResult result = builder.buildQuery("explain select * from stream()");
+        Assert.assertEquals(result.getBql(), "EXPLAIN SELECT * FROM STREAM()");
+        Assert.assertTrue(result.getCost() > 0);
+    }
+
+    @Test
+    public void testExplainErrors() {
+        BQLResult result = builder.buildQuery("EXPLAIN SELECT foo FROM STREAM()");
+        Assert.assertTrue(result.hasErrors());
+        Assert.assertFalse(result.isExplain());
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:16: The field foo does not exist in the schema.");
+    }
+
+    @Test
+    public void testExplainSelect() {
+        QueryPlan plan = explain("EXPLAIN SELECT abc, def + 1 AS x FROM STREAM(2000, TIME) WHERE c RLIKE 'a.b' AND NOT b ORDER BY a");
+        Assert.assertEquals(plan.getQueryType(), ProcessedQuery.QueryType.SELECT);
+        Assert.assertFalse(plan.isSpecialK());
+        Assert.assertEquals(plan.getProjectionType(), Projection.Type.NO_COPY);
+        Assert.assertEquals(plan.getProjectedFields().size(), 3);
+        Assert.assertEquals(plan.getAggregation().getType(), AggregationType.RAW);
+        Assert.assertEquals(plan.getPostAggregations().size(), 2);
+        Assert.assertEquals(plan.getDuration(), (Long) 2000L);
+        Assert.assertNull(plan.getOuterPlan());
+        Assert.assertEquals(plan.toString(),
+                            lines("Query type: SELECT",
+                                  "Projection: NO_COPY [abc, def + 1 AS x, a]",
+                                  "Filter: (c RLIKE 'a.b') AND (NOT b)",
+                                  "Aggregation: {size: 500, type: RAW}",
+                                  "Post-aggregations:",
+                                  "  ORDER BY a ASC",
+                                  "  CULLING [a]",
+                                  "Window: none",
+                                  "Duration: 2000 ms",
+                                  "Rewrites:",
+                                  "  Projected the ORDER BY fields [a] that were not selected and culled them after sorting."));
+    }
+
+    @Test
+    public void testExplainTableFunction() {
+        QueryPlan plan = explain("EXPLAIN SELECT * FROM STREAM(MAX, TIME) LATERAL VIEW OUTER EXPLODE(ddd) AS (k, v) WHERE k IS NOT NULL AND abc BETWEEN (1, 5)");
+        Assert.assertEquals(plan.getProjectionType(), Projection.Type.PASS_THROUGH);
+        Assert.assertEquals(plan.getProjectedFields(), Collections.emptyList());
+        Assert.assertEquals(plan.getRewrites(), Collections.emptyList());
+        Assert.assertEquals(plan.toString(),
+                            lines("Query type: SELECT_ALL",
+                                  "Projection: PASS_THROUGH",
+                                  "Table function: LATERAL VIEW OUTER EXPLODE(ddd) AS (k, v)",
+                                  "Filter: (k IS NOT NULL) AND abc BETWEEN (1, 5)",
+                                  "Aggregation: {size: 500, type: RAW}",
+                                  "Window: none",
+                                  "Duration: " + Long.MAX_VALUE + " ms"));
+
+        plan = explain("EXPLAIN SELECT EXPLODE(eee) AS x FROM STREAM(1000, TIME)");
+        Assert.assertEquals(plan.getQueryType(), ProcessedQuery.QueryType.SELECT_TABLE_FUNCTION);
+        Assert.assertTrue(plan.toString().contains("Table function: EXPLODE(eee) AS x"));
+    }
+
+    @Test
+    public void testExplainSpecialK() {
+        QueryPlan plan = explain("EXPLAIN SELECT abc, COUNT(*) AS cnt FROM STREAM(1000, TIME) GROUP BY abc HAVING COUNT(*) >= 5 ORDER BY COUNT(*) DESC LIMIT 10");
+        Assert.assertEquals(plan.getQueryType(), ProcessedQuery.QueryType.GROUP);
+        Assert.assertTrue(plan.isSpecialK());
+        Assert.assertEquals(plan.getAggregation().getType(), AggregationType.TOP_K);
+        Assert.assertEquals(plan.toString(),
+                            lines("Query type: GROUP (Special-K)",
+                                  "Projection: PASS_THROUGH",
+                                  "Aggregation: {size: 10, type: TOP_K, fieldsToNames: {abc=abc}, threshold: 5, name: cnt}",
+                                  "Window: none",
+                                  "Duration: 1000 ms",
+                                  "Rewrites:",
+                                  "  Special-K: rewrote the GROUP BY ordered by COUNT(*) descending with LIMIT 10 and HAVING COUNT(*) >= 5 into a TOP K aggregation."));
+
+        plan = explain("EXPLAIN SELECT abc, COUNT(*) AS cnt FROM STREAM(1000, TIME) GROUP BY abc ORDER BY COUNT(*) DESC LIMIT 10");
+        Assert.assertEquals(plan.getRewrites(), Collections.singletonList("Special-K: rewrote the GROUP BY ordered by COUNT(*) descending with LIMIT 10 into a TOP K aggregation."));
+    }
+
+    @Test
+    public void testExplainGroupByWithWindow() {
+        QueryPlan plan = explain("EXPLAIN SELECT abc + 1 AS x, AVG(def) AS avg FROM STREAM(1000, TIME) GROUP BY abc HAVING avg > 1.0 WINDOWING TUMBLING(1000, TIME)");
+        Assert.assertEquals(plan.toString(),
+                            lines("Query type: GROUP",
+                                  "Projection: PASS_THROUGH",
+                                  "Aggregation: {size: 500, type: GROUP, fields: {abc=abc}, operations: [{type: AVG, field: def, name: avg}]}",
+                                  "Post-aggregations:",
+                                  "  HAVING avg > 1.0",
+                                  "  COMPUTATION abc + 1 AS x",
+                                  "  CULLING [abc]",
+                                  "Window: {emitEvery: 1000, emitType: TIME, includeType: null, includeFirst: null}",
+                                  "Duration: 1000 ms"));
+    }
+
+    @Test
+    public void testExplainOuterQuery() {
+        QueryPlan plan = explain("EXPLAIN SELECT avg + 1 AS x FROM (SELECT abc, AVG(def) AS avg FROM STREAM(1000, TIME) GROUP BY abc) WHERE avg > 5.0 ORDER BY x");
+        Assert.assertNotNull(plan.getOuterPlan());
+        Assert.assertEquals(plan.getOuterPlan().getQueryType(), ProcessedQuery.QueryType.SELECT);
+        Assert.assertEquals(plan.toString(),
+                            lines("Query type: GROUP",
+                                  "Projection: PASS_THROUGH",
+                                  "Aggregation: {size: 500, type: GROUP, fields: {abc=abc}, operations: [{type: AVG, field: def, name: avg}]}",
+                                  "Window: none",
+                                  "Duration: 1000 ms",
+                                  "Outer query:",
+                                  "  Query type: SELECT",
+                                  "  Projection: NO_COPY [avg + 1 AS x]",
+                                  "  Filter: avg > 5.0",
+                                  "  Aggregation: {size: 500, type: RAW}",
+                                  "  Post-aggregations:",
+                                  "    ORDER BY x ASC",
+                                  "  Window: none",
+                                  "  Duration: " + Long.MAX_VALUE + " ms"));
+    }
+
+    @Test
+    public void testExplainRegexLikeRewrites() {
+        QueryPlan plan = explain("EXPLAIN SELECT * FROM STREAM() WHERE c RLIKE '(?s)foo.*' AND c NOT RLIKE ANY ['a', 'b']");
+        Assert.assertEquals(plan.getRewrites(), Arrays.asList("Rewrote c RLIKE '(?s)foo.*' into SUBSTRING(c, 1, 3) = 'foo'.",
+                                                              "Rewrote c NOT RLIKE ANY ['a', 'b'] into c NOT IN ['a', 'b']."));
+    }
+}
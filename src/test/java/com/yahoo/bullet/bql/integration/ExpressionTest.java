@@ -307,30 +307,65 @@ public class ExpressionTest extends IntegrationTest {
 
     @Test
     public void testBinaryOperationsRegexLike() {
-        build("SELECT c RLIKE 'abc', c RLIKE ANY ['abc'], c NOT RLIKE 'abc', c NOT RLIKE ANY ['abc'] FROM STREAM()");
+        build("SELECT c RLIKE 'a.c', c RLIKE ANY ['a.c'], c NOT RLIKE 'a.c', c NOT RLIKE ANY ['a.c'] FROM STREAM()");
         Assert.assertEquals(query.getProjection().getFields().size(), 4);
-        Assert.assertEquals(query.getProjection().getFields().get(0), new Field("c RLIKE 'abc'",
+        Assert.assertEquals(query.getProjection().getFields().get(0), new Field("c RLIKE 'a.c'",
                                                                                 binary(field("c", Type.STRING),
-                                                                                       value("abc"),
+                                                                                       value("a.c"),
                                                                                        Operation.REGEX_LIKE,
                                                                                        Type.BOOLEAN)));
-        Assert.assertEquals(query.getProjection().getFields().get(1), new Field("c RLIKE ANY ['abc']",
+        Assert.assertEquals(query.getProjection().getFields().get(1), new Field("c RLIKE ANY ['a.c']",
                                                                                 binary(field("c", Type.STRING),
-                                                                                       list(Type.STRING_LIST, value("abc")),
+                                                                                       list(Type.STRING_LIST, value("a.c")),
                                                                                        Operation.REGEX_LIKE_ANY,
                                                                                        Type.BOOLEAN)));
-        Assert.assertEquals(query.getProjection().getFields().get(2), new Field("c NOT RLIKE 'abc'",
+        Assert.assertEquals(query.getProjection().getFields().get(2), new Field("c NOT RLIKE 'a.c'",
                                                                                 binary(field("c", Type.STRING),
-                                                                                       value("abc"),
+                                                                                       value("a.c"),
                                                                                        Operation.NOT_REGEX_LIKE,
                                                                                        Type.BOOLEAN)));
-        Assert.assertEquals(query.getProjection().getFields().get(3), new Field("c NOT RLIKE ANY ['abc']",
+        Assert.assertEquals(query.getProjection().getFields().get(3), new Field("c NOT RLIKE ANY ['a.c']",
                                                                                 binary(field("c", Type.STRING),
-                                                                                       list(Type.STRING_LIST, value("abc")),
+                                                                                       list(Type.STRING_LIST, value("a.c")),
                                                                                        Operation.NOT_REGEX_LIKE_ANY,
                                                                                        Type.BOOLEAN)));
     }
 
+    @Test
+    public void testRegexLikeRewrites() {
+        build("SELECT c RLIKE '^foo$', c NOT RLIKE '(?s)foo.*', c RLIKE '(?s).*f\\.o', c RLIKE '.*foo.*', c RLIKE ANY ['foo', 'b\\Q.*\\E'], " +
+              "c NOT RLIKE ANY ['foo', 'b.r'], c RLIKE 'foo.*' FROM STREAM()");
+        Assert.assertEquals(query.getProjection().getFields().get(0).getValue(), binary(field("c", Type.STRING),
+                                                                                        value("foo"),
+                                                                                        Operation.EQUALS,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(1).getValue(), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(1), value(3)),
+                                                                                        value("foo"),
+                                                                                        Operation.NOT_EQUALS,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(2).getValue(), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(-3)),
+                                                                                        value("f.o"),
+                                                                                        Operation.EQUALS,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(3).getValue(), binary(field("c", Type.STRING),
+                                                                                        value(".*foo.*"),
+                                                                                        Operation.REGEX_LIKE,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(4).getValue(), binary(field("c", Type.STRING),
+                                                                                        list(Type.STRING_LIST, value("foo"), value("b.*")),
+                                                                                        Operation.EQUALS_ANY,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(5).getValue(), binary(field("c", Type.STRING),
+                                                                                        list(Type.STRING_LIST, value("foo"), value("b.r")),
+                                                                                        Operation.NOT_REGEX_LIKE_ANY,
+                                                                                        Type.BOOLEAN));
+        // Without DOTALL, the .* does not match line terminators
+        Assert.assertEquals(query.getProjection().getFields().get(6).getValue(), binary(field("c", Type.STRING),
+                                                                                        value("foo.*"),
+                                                                                        Operation.REGEX_LIKE,
+                                                                                        Type.BOOLEAN));
+    }
+
     @Test
     public void testBinaryOperationsIn() {
         build("SELECT 'abc' IN aaa, 'abc' NOT IN aaa FROM STREAM()");
@@ -644,6 +679,41 @@ public class ExpressionTest extends IntegrationTest {
         Assert.assertEquals(field.getValue(), nary(Type.LONG, Operation.UNIX_TIMESTAMP, value(123), value("def")));
     }
 
+    @Test
+    public void testLikePredicate() {
+        build("SELECT c LIKE 'foo', c NOT LIKE 'foo%', c LIKE '%f\\%o', c LIKE '%foo%', c NOT LIKE 'f_o', c LIKE ANY ['foo', 'bar'], " +
+              "c NOT LIKE ANY ['foo', 'b%'] FROM STREAM()");
+        Assert.assertEquals(query.getProjection().getFields().size(), 7);
+        Assert.assertEquals(query.getProjection().getFields().get(0), new Field("c LIKE 'foo'", binary(field("c", Type.STRING),
+                                                                                                        value("foo"),
+                                                                                                        Operation.EQUALS,
+                                                                                                        Type.BOOLEAN)));
+        Assert.assertEquals(query.getProjection().getFields().get(1).getValue(), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(1), value(3)),
+                                                                                        value("foo"),
+                                                                                        Operation.NOT_EQUALS,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(2).getValue(), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(-3)),
+                                                                                        value("f%o"),
+                                                                                        Operation.EQUALS,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(3).getValue(), binary(field("c", Type.STRING),
+                                                                                        value("(?s).*\\Qfoo\\E.*"),
+                                                                                        Operation.REGEX_LIKE,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(4).getValue(), binary(field("c", Type.STRING),
+                                                                                        value("(?s)\\Qf\\E.\\Qo\\E"),
+                                                                                        Operation.NOT_REGEX_LIKE,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(5).getValue(), binary(field("c", Type.STRING),
+                                                                                        list(Type.STRING_LIST, value("foo"), value("bar")),
+                                                                                        Operation.EQUALS_ANY,
+                                                                                        Type.BOOLEAN));
+        Assert.assertEquals(query.getProjection().getFields().get(6).getValue(), binary(field("c", Type.STRING),
+                                                                                        list(Type.STRING_LIST, value("(?s)\\Qfoo\\E"), value("(?s)\\Qb\\E.*")),
+                                                                                        Operation.NOT_REGEX_LIKE_ANY,
+                                                                                        Type.BOOLEAN));
+    }
+
     @Test
     public void testBetweenPredicate() {
         build("SELECT abc BETWEEN (5, 10), abc NOT BETWEEN (5, 10) FROM STREAM()");
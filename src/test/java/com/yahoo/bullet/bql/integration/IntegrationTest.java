@@ -7,6 +7,7 @@ package com.yahoo.bullet.bql.integration;
 
 import com.yahoo.bullet.bql.BQLResult;
 import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.QueryCodec;
 import com.yahoo.bullet.common.BulletConfig;
 import com.yahoo.bullet.common.BulletError;
 import com.yahoo.bullet.common.SerializerDeserializer;
@@ -17,6 +18,7 @@ import org.testng.annotations.BeforeClass;
 import java.util.List;
 
 public abstract class IntegrationTest {
+    protected BulletConfig config;
     protected BulletQueryBuilder builder;
     protected Query query;
     protected List<BulletError> errors;
@@ -25,7 +27,7 @@ public abstract class IntegrationTest {
 
     @BeforeClass
     public void setup() {
-        BulletConfig config = new BulletConfig();
+        config = new BulletConfig();
         config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
         config.validate();
         builder = new BulletQueryBuilder(config);
@@ -40,6 +42,11 @@ public abstract class IntegrationTest {
         if (query != null) {
             // Check that query is indeed serializable
             Assert.assertNotNull(SerializerDeserializer.toBytes(query));
+            // Check that the query round-trips through the binary encoding
+            Query decoded = QueryCodec.decode(QueryCodec.encode(query));
+            decoded.configure(config);
+            Assert.assertEquals(decoded.toString(), query.toString());
+            Assert.assertEquals(decoded.getFilter(), query.getFilter());
         }
     }
 }
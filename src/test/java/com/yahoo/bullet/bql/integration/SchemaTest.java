@@ -8,9 +8,17 @@ package com.yahoo.bullet.bql.integration;
 import com.yahoo.bullet.bql.BQLResult;
 import com.yahoo.bullet.bql.BulletQueryBuilder;
 import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.typesystem.Type;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import static com.yahoo.bullet.bql.util.QueryUtil.binary;
+import static com.yahoo.bullet.bql.util.QueryUtil.field;
+import static com.yahoo.bullet.bql.util.QueryUtil.list;
+import static com.yahoo.bullet.bql.util.QueryUtil.nary;
+import static com.yahoo.bullet.bql.util.QueryUtil.value;
+
 /**
  * Tests that cover any instance of unknowns i.e. verify that type-checking errors propagate but don't create more error messages.
  * Type-checking still applies where return types can be expected, i.e. AVG(unknown) has type DOUBLE.
@@ -77,4 +85,55 @@ public class SchemaTest extends IntegrationTest {
         Assert.assertEquals(result.getErrors().get(0).getError(), "1:9: The left and right operands in SIZEIS(CAST(IF(foo IS NOT NULL, 5, 10) AS STRING), 10) + 5 must be numeric. Types given: BOOLEAN, INTEGER.");
         Assert.assertEquals(result.getErrors().size(), 1);
     }
+
+    @Test
+    public void testLikeUnknown() {
+        BQLResult result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE '%abc'");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().getFilter(), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.UNKNOWN), value(-3)),
+                                                                  value("abc"),
+                                                                  Operation.EQUALS,
+                                                                  Type.BOOLEAN));
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c NOT LIKE 'abc'");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().getFilter(), binary(field("c", Type.UNKNOWN), value("abc"), Operation.NOT_EQUALS, Type.BOOLEAN));
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c NOT LIKE '%a%b%'");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().getFilter(), binary(field("c", Type.UNKNOWN),
+                                                                  value("(?s).*\\Qa\\E.*\\Qb\\E.*"),
+                                                                  Operation.NOT_REGEX_LIKE,
+                                                                  Type.BOOLEAN));
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE ANY ['foo', 'b%']");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().getFilter(), binary(field("c", Type.UNKNOWN),
+                                                                  list(Type.STRING_LIST, value("(?s)\\Qfoo\\E"), value("(?s)\\Qb\\E.*")),
+                                                                  Operation.REGEX_LIKE_ANY,
+                                                                  Type.BOOLEAN));
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c LIKE d");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The pattern in c LIKE d must be a STRING literal.");
+        Assert.assertEquals(result.getErrors().size(), 1);
+    }
+
+    @Test
+    public void testRegexLikeUnknown() {
+        BQLResult result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c RLIKE '(a+)+'");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The pattern '(a+)+' in c RLIKE '(a+)+' nests unbounded quantifiers and is prone to catastrophic backtracking.");
+        Assert.assertEquals(result.getErrors().size(), 1);
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c RLIKE '(a'");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The pattern '(a' in c RLIKE '(a' is not a valid regular expression: Unclosed group.");
+        Assert.assertEquals(result.getErrors().size(), 1);
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c NOT RLIKE ANY ['a', '[a']");
+        Assert.assertEquals(result.getErrors().get(0).getError(), "1:30: The pattern '[a' in c NOT RLIKE ANY ['a', '[a'] is not a valid regular expression: Unclosed character class.");
+        Assert.assertEquals(result.getErrors().size(), 1);
+
+        result = noSchemaBuilder.buildQuery("SELECT * FROM STREAM() WHERE c RLIKE 'a.*b'");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(result.getQuery().getFilter(), binary(field("c", Type.UNKNOWN), value("a.*b"), Operation.REGEX_LIKE, Type.BOOLEAN));
+    }
 }
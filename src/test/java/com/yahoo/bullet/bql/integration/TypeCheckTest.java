@@ -8,6 +8,8 @@ package com.yahoo.bullet.bql.integration;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+
 public class TypeCheckTest extends IntegrationTest {
     @Test
     public void testTypeCheckNumericOperation() {
@@ -58,6 +60,34 @@ public class TypeCheckTest extends IntegrationTest {
         Assert.assertEquals(errors.size(), 4);
     }
 
+    @Test
+    public void testTypeCheckLikePredicate() {
+        build("SELECT abc LIKE 'foo', c LIKE c, c LIKE ['foo'], c LIKE ANY 'foo', c NOT LIKE ANY eee FROM STREAM()");
+        Assert.assertEquals(errors.get(0).getError(), "1:8: The type of the left operand in abc LIKE 'foo' must be STRING. Type given: INTEGER.");
+        Assert.assertEquals(errors.get(1).getError(), "1:24: The pattern in c LIKE c must be a STRING literal.");
+        Assert.assertEquals(errors.get(2).getError(), "1:34: The pattern in c LIKE ['foo'] must be a STRING literal.");
+        Assert.assertEquals(errors.get(3).getError(), "1:50: The patterns in c LIKE ANY 'foo' must be a list of STRING literals.");
+        Assert.assertEquals(errors.get(4).getError(), "1:68: The patterns in c NOT LIKE ANY eee must be a list of STRING literals.");
+        Assert.assertEquals(errors.size(), 5);
+    }
+
+    @Test
+    public void testTypeCheckRegexLikeInvalidPattern() {
+        build("SELECT c RLIKE 'a(b', c NOT RLIKE ANY ['a', '[a'] FROM STREAM()");
+        Assert.assertEquals(errors.get(0).getError(), "1:8: The pattern 'a(b' in c RLIKE 'a(b' is not a valid regular expression: Unclosed group.");
+        Assert.assertEquals(errors.get(1).getError(), "1:23: The pattern '[a' in c NOT RLIKE ANY ['a', '[a'] is not a valid regular expression: Unclosed character class.");
+        Assert.assertEquals(errors.size(), 2);
+    }
+
+    @Test
+    public void testTypeCheckRegexLikeBacktrackingPronePattern() {
+        build("SELECT c RLIKE '(a+)+b', c RLIKE ANY ['(.*a){2,}', '(ab)+'] FROM STREAM()");
+        Assert.assertEquals(errors.get(0).getError(), "1:8: The pattern '(a+)+b' in c RLIKE '(a+)+b' nests unbounded quantifiers and is prone to catastrophic backtracking.");
+        Assert.assertEquals(errors.get(0).getResolutions(), Collections.singletonList("Please remove the quantifier on the group or make the quantifiers inside it bounded."));
+        Assert.assertEquals(errors.get(1).getError(), "1:26: The pattern '(.*a){2,}' in c RLIKE ANY ['(.*a){2,}', '(ab)+'] nests unbounded quantifiers and is prone to catastrophic backtracking.");
+        Assert.assertEquals(errors.size(), 2);
+    }
+
     @Test
     public void testTypeCheckSizeIs() {
         build("SELECT SIZEIS(abc, 5), SIZEIS(aaa, 'foo'), SIZEIS('foo', 'foo') FROM STREAM()");
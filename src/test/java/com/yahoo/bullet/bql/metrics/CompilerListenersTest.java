@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompilerListenersTest {
+    @Test
+    public void testRegisterAndUnregister() {
+        Assert.assertFalse(CompilerListeners.isListening());
+        CompilerListener none = CompilerListeners.getListener();
+        none.onCompile(AggregationType.RAW, 1L);
+
+        CompilerMetrics first = new CompilerMetrics();
+        CompilerMetrics second = new CompilerMetrics();
+        CompilerListeners.register(first);
+        CompilerListeners.register(first);
+        Assert.assertTrue(CompilerListeners.isListening());
+        Assert.assertSame(CompilerListeners.getListener(), first);
+
+        CompilerListeners.register(second);
+        CompilerListener listener = CompilerListeners.getListener();
+        listener.onParse(10, 5, true);
+        listener.onCompile(AggregationType.GROUP, 100L);
+        listener.onError(QueryError.NESTED_AGGREGATE);
+        listener.onCacheLookup(CompilerListener.QUERY_CACHE, true);
+        for (CompilerMetrics metrics : new CompilerMetrics[] {first, second}) {
+            Assert.assertEquals(metrics.getParseCount(), 1L);
+            Assert.assertEquals(metrics.getLatencies(AggregationType.GROUP).getCount(), 1L);
+            Assert.assertEquals(metrics.getErrorCount(QueryError.NESTED_AGGREGATE), 1L);
+            Assert.assertEquals(metrics.getCacheHits(CompilerListener.QUERY_CACHE), 1L);
+        }
+
+        Assert.assertTrue(CompilerListeners.unregister(first));
+        Assert.assertFalse(CompilerListeners.unregister(first));
+        Assert.assertSame(CompilerListeners.getListener(), second);
+        Assert.assertTrue(CompilerListeners.unregister(second));
+        Assert.assertFalse(CompilerListeners.isListening());
+        Assert.assertSame(CompilerListeners.getListener(), none);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.QueryError;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class CompilerMetricsTest {
+    private CompilerMetrics metrics;
+    private BulletQueryBuilder builder;
+
+    @BeforeMethod
+    public void setup() {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+        metrics = new CompilerMetrics();
+        CompilerListeners.register(metrics);
+    }
+
+    @AfterMethod
+    public void teardown() {
+        CompilerListeners.unregister(metrics);
+    }
+
+    @Test
+    public void testBuiltQueries() {
+        builder.buildQuery("SELECT * FROM STREAM() WHERE abc > 5");
+        builder.buildQuery("SELECT * FROM STREAM() WHERE abc > 10");
+        builder.buildQuery("SELECT c, COUNT(*) FROM STREAM() GROUP BY c");
+
+        Assert.assertEquals(metrics.getLatencies(AggregationType.RAW).getCount(), 2L);
+        Assert.assertEquals(metrics.getLatencies(AggregationType.GROUP).getCount(), 1L);
+        Assert.assertEquals(metrics.getLatencies(AggregationType.TOP_K).getCount(), 0L);
+        Assert.assertTrue(metrics.getLatencies(AggregationType.RAW).getMax() > 0L);
+        Assert.assertEquals(metrics.getFailureLatencies().getCount(), 0L);
+
+        Assert.assertEquals(metrics.getParseCount(), 3L);
+        Assert.assertEquals(metrics.getFallbackCount(), 0L);
+        Assert.assertEquals(metrics.getQueryLengths().getMax(), 43L);
+        Assert.assertEquals(metrics.getNodeCounts().getCount(), 3L);
+        Assert.assertEquals(metrics.getErrorCounts(), Collections.emptyMap());
+
+        // The second query reuses the template of the first
+        Assert.assertEquals(metrics.getCacheHits(CompilerListener.TEMPLATE_CACHE), 1L);
+        Assert.assertEquals(metrics.getCacheMisses(CompilerListener.TEMPLATE_CACHE), 2L);
+    }
+
+    @Test
+    public void testFailedQueries() {
+        builder.buildQuery("SELECT foo FROM STREAM()");
+        builder.buildQuery("SELECT foo, bar FROM STREAM()");
+        builder.buildQuery("SELECT SUM(COUNT(*)) FROM STREAM()");
+        builder.buildQuery("SELECT FROM STREAM()");
+
+        Assert.assertEquals(metrics.getFailureLatencies().getCount(), 4L);
+        Assert.assertEquals(metrics.getErrorCount(QueryError.FIELD_NOT_IN_SCHEMA), 3L);
+        Assert.assertEquals(metrics.getErrorCount(QueryError.NESTED_AGGREGATE), 1L);
+        Assert.assertEquals(metrics.getErrorCount(QueryError.GENERIC_PARSING_ERROR), 1L);
+        Assert.assertEquals(metrics.getErrorCount(null), 0L);
+        Assert.assertEquals(metrics.getErrorCounts().size(), 3);
+        // The query that did not parse has no size
+        Assert.assertEquals(metrics.getParseCount(), 3L);
+    }
+
+    @Test
+    public void testErrorsWithTheSameMessage() {
+        builder.buildQuery("SELECT NOT 'foo' FROM STREAM()");
+        builder.buildQuery("SELECT AVG(aaa) FROM STREAM()");
+
+        Assert.assertEquals(metrics.getErrorCount(QueryError.NOT_HAS_WRONG_TYPE), 1L);
+        Assert.assertEquals(metrics.getErrorCount(QueryError.EXPECTED_NUMERIC_OR_BOOLEAN_TYPE), 1L);
+        Assert.assertEquals(metrics.getErrorCounts().size(), 2);
+    }
+
+    @Test
+    public void testFallbacks() {
+        metrics.onParse(10, 3, false);
+        metrics.onParse(20, 7, true);
+        metrics.onError(null);
+        Assert.assertEquals(metrics.getParseCount(), 2L);
+        Assert.assertEquals(metrics.getFallbackCount(), 1L);
+        Assert.assertEquals(metrics.getQueryLengths().getSum(), 30L);
+        Assert.assertEquals(metrics.getNodeCounts().getMax(), 7L);
+        Assert.assertEquals(metrics.getErrorCount(null), 1L);
+    }
+}
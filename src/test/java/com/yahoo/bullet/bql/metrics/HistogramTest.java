@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class HistogramTest {
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(histogram.getCount(), 0L);
+        Assert.assertEquals(histogram.getSum(), 0L);
+        Assert.assertEquals(histogram.getMax(), 0L);
+        Assert.assertEquals(histogram.getMean(), 0.0);
+        Assert.assertEquals(histogram.getValueAtPercentile(50.0), 0L);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5L);
+        Assert.assertEquals(histogram.getCount(), 11L);
+        Assert.assertEquals(histogram.getSum(), 55L);
+        Assert.assertEquals(histogram.getMax(), 10L);
+        Assert.assertEquals(histogram.getValueAtPercentile(0.0), 0L);
+        Assert.assertEquals(histogram.getValueAtPercentile(50.0), 5L);
+        Assert.assertEquals(histogram.getValueAtPercentile(100.0), 10L);
+        Assert.assertEquals(histogram.toString(), "{count: 11, mean: 5.0, p50: 5, p99: 10, max: 10}");
+    }
+
+    @Test
+    public void testBuckets() {
+        long[] values = {0L, 15L, 16L, 31L, 32L, 33L, 1000L, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        int previous = -1;
+        for (long value : values) {
+            int index = Histogram.getIndex(value);
+            Assert.assertTrue(index >= previous);
+            Assert.assertTrue(Histogram.getUpperBound(index) >= value);
+            Assert.assertTrue(index == 0 || Histogram.getUpperBound(index - 1) < value);
+            previous = index;
+        }
+        Assert.assertEquals(Histogram.getUpperBound(Histogram.getIndex(32L)), 33L);
+        Assert.assertEquals(Histogram.getUpperBound(Histogram.getIndex(Long.MAX_VALUE)), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testPercentilesAreWithinTheBucketError() {
+        Histogram histogram = new Histogram();
+        long[] values = new Random(1L).longs(10000, 0L, 10000000L).sorted().toArray();
+        for (long value : values) {
+            histogram.record(value);
+        }
+        for (double percentile : new double[] {1.0, 25.0, 50.0, 90.0, 99.0, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100.0 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue(actual >= expected && actual <= expected * 1.0625, percentile + ": " + actual + " vs " + expected);
+        }
+        Assert.assertEquals(histogram.getValueAtPercentile(100.0), values[values.length - 1]);
+    }
+
+    @Test
+    public void testConcurrentRecording() {
+        Histogram histogram = new Histogram();
+        IntStream.range(0, 100000).parallel().forEach(histogram::record);
+        Assert.assertEquals(histogram.getCount(), 100000L);
+        Assert.assertEquals(histogram.getSum(), 99999L * 100000L / 2);
+        Assert.assertEquals(histogram.getMax(), 99999L);
+    }
+}
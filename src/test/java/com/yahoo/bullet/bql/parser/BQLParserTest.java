@@ -32,4 +32,56 @@ public class BQLParserTest {
         QueryNode node = parser.createQueryNode("SELECT all FROM STREAM()");
         Assert.assertEquals(node.getSelect().getSelectItems().get(0).getExpression().getName(), "all");
     }
+
+    @Test
+    public void testExplain() {
+        QueryNode node = parser.createQueryNode("EXPLAIN SELECT * FROM STREAM()");
+        Assert.assertTrue(node.isExplain());
+
+        node = parser.createQueryNode("EXPLAIN SELECT abc FROM (SELECT * FROM STREAM())");
+        Assert.assertTrue(node.isExplain());
+        Assert.assertNotNull(node.getOuterQuery());
+        Assert.assertFalse(node.getOuterQuery().isExplain());
+
+        node = parser.createQueryNode("SELECT explain FROM STREAM()");
+        Assert.assertFalse(node.isExplain());
+        Assert.assertEquals(node.getSelect().getSelectItems().get(0).getExpression().getName(), "explain");
+    }
+
+    @Test
+    public void testParameters() {
+        QueryNode node = parser.createQueryNode("SELECT * FROM STREAM() WHERE abc = ? AND c IN (?, ?)");
+        Assert.assertEquals(node.getParameters().size(), 3);
+        Assert.assertEquals(node.getParameters().get(2).getIndex(), 2);
+        Assert.assertFalse(node.getParameters().get(0).isNamed());
+        Assert.assertEquals(node.getWhere().getName(), "abc = ? AND c IN (?, ?)");
+
+        node = parser.createQueryNode("SELECT * FROM STREAM() WHERE abc = :x AND (def > :y OR def < :x)");
+        Assert.assertEquals(node.getParameters().size(), 2);
+        Assert.assertEquals(node.getParameters().get(0).getParameterName(), "x");
+        Assert.assertEquals(node.getParameters().get(1).getParameterName(), "y");
+        Assert.assertEquals(node.getParameters().get(1).getIndex(), 1);
+        Assert.assertEquals(node.getWhere().getName(), "abc = :x AND def > :y OR def < :x");
+
+        node = parser.createQueryNode("SELECT abc FROM (SELECT abc FROM STREAM() WHERE abc = ?)");
+        Assert.assertEquals(node.getParameters().size(), 1);
+
+        node = parser.createQueryNode("SELECT abc:INTEGER FROM STREAM()");
+        Assert.assertTrue(node.getParameters().isEmpty());
+    }
+
+    @Test(expectedExceptions = ParsingException.class, expectedExceptionsMessageRegExp = "1:47: Positional \\(\\?\\) and named \\(:name\\) parameters cannot be mixed\\.")
+    public void testMixedParameters() {
+        parser.createQueryNode("SELECT * FROM STREAM() WHERE abc = ? OR abc = :x");
+    }
+
+    @Test(expectedExceptions = ParsingException.class, expectedExceptionsMessageRegExp = "1:14: Parameters are only supported in the WHERE clause of the query\\.")
+    public void testParameterOutsideWhere() {
+        parser.createQueryNode("SELECT abc + ? FROM STREAM() WHERE abc = ?");
+    }
+
+    @Test(expectedExceptions = ParsingException.class, expectedExceptionsMessageRegExp = ".*Parameters are only supported in the WHERE clause of the query\\.")
+    public void testParameterInOuterQuery() {
+        parser.createQueryNode("SELECT abc FROM (SELECT abc FROM STREAM()) WHERE abc = ?");
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.parser;
+
+import com.yahoo.bullet.bql.util.ExpressionFormatter;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class ByteArrayCharStreamTest {
+    private static ByteArrayCharStream stream(String value) {
+        return new ByteArrayCharStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameAsInputStream(String value) {
+        CharStream expected = new ANTLRInputStream(value);
+        CharStream actual = stream(value);
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertEquals(actual.getText(Interval.of(0, value.length() + 5)), expected.getText(Interval.of(0, value.length() + 5)));
+        Assert.assertEquals(actual.getText(Interval.of(value.length(), value.length())), "");
+        Assert.assertEquals(actual.LA(-1), IntStream.EOF);
+        while (expected.LA(1) != IntStream.EOF) {
+            Assert.assertEquals(actual.LA(1), expected.LA(1));
+            Assert.assertEquals(actual.LA(0), 0);
+            expected.consume();
+            actual.consume();
+            Assert.assertEquals(actual.LA(-1), expected.LA(-1));
+            Assert.assertEquals(actual.index(), expected.index());
+        }
+        Assert.assertEquals(actual.LA(1), IntStream.EOF);
+    }
+
+    @Test
+    public void testASCIIIsReadInPlace() {
+        Assert.assertTrue(stream("SELECT * FROM STREAM()").isInPlace());
+        assertSameAsInputStream("SELECT * FROM STREAM()");
+        assertSameAsInputStream("");
+    }
+
+    @Test
+    public void testUnicodeIsDecoded() {
+        Assert.assertFalse(stream("SELECT 'ü' FROM STREAM()").isInPlace());
+        assertSameAsInputStream("SELECT 'ü😀' FROM STREAM()");
+    }
+
+    @Test
+    public void testText() {
+        ByteArrayCharStream stream = stream("abcdef");
+        Assert.assertEquals(stream.getText(Interval.of(1, 3)), "bcd");
+        stream = stream("äbcdef");
+        Assert.assertEquals(stream.getText(Interval.of(0, 1)), "äb");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testConsumeEOF() {
+        stream("").consume();
+    }
+
+    @Test
+    public void testMarkAndSeek() {
+        ByteArrayCharStream stream = stream("abc");
+        int marker = stream.mark();
+        stream.consume();
+        stream.consume();
+        stream.release(marker);
+        stream.seek(1);
+        Assert.assertEquals(stream.LA(1), 'b');
+        stream.seek(10);
+        Assert.assertEquals(stream.index(), 3);
+        Assert.assertEquals(stream.getSourceName(), IntStream.UNKNOWN_SOURCE_NAME);
+    }
+
+    @Test
+    public void testParsing() {
+        String bql = "SELECT abc AS \"ü\" FROM STREAM() WHERE c = 'ß'";
+        Assert.assertEquals(ExpressionFormatter.format(new BQLParser().createQueryNode(stream(bql)), true),
+                            ExpressionFormatter.format(new BQLParser().createQueryNode(bql), true));
+    }
+}
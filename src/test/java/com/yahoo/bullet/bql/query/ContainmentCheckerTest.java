@@ -0,0 +1,222 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.ContainmentChecker.Derivation;
+import com.yahoo.bullet.bql.query.ContainmentChecker.Kind;
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Query;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ContainmentCheckerTest {
+    private BulletQueryBuilder builder;
+
+    @BeforeClass
+    public void setup() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+    }
+
+    private Query query(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql);
+        return result.getQuery();
+    }
+
+    private Derivation check(String bqlA, String bqlB) {
+        return ContainmentChecker.check(query(bqlA), query(bqlB));
+    }
+
+    private void assertDerivation(String bqlA, String bqlB, Kind kind, String residual) {
+        Derivation derivation = check(bqlA, bqlB);
+        Assert.assertEquals(derivation.getKind(), kind, derivation.toString());
+        Assert.assertTrue(derivation.isDerivable());
+        Assert.assertNull(derivation.getReason());
+        if (residual == null) {
+            Assert.assertNull(derivation.getResidualFilter());
+        } else {
+            Assert.assertEquals(CompiledExpressionFormatter.format(derivation.getResidualFilter()), residual);
+        }
+    }
+
+    private void assertNotDerivable(String bqlA, String bqlB, String reason) {
+        Derivation derivation = check(bqlA, bqlB);
+        Assert.assertEquals(derivation.getKind(), Kind.NONE);
+        Assert.assertFalse(derivation.isDerivable());
+        Assert.assertEquals(derivation.getReason(), reason);
+        Assert.assertEquals(derivation.toString(), "NONE: " + reason);
+    }
+
+    private void assertFilterImplied(String whereB, String whereA) {
+        Derivation derivation = check("SELECT COUNT(*) FROM STREAM() WHERE " + whereA, "SELECT COUNT(*) FROM STREAM() WHERE " + whereB);
+        Assert.assertTrue(derivation.isDerivable(), whereB + " should imply " + whereA);
+    }
+
+    private void assertFilterNotImplied(String whereB, String whereA) {
+        assertNotDerivable("SELECT COUNT(*) FROM STREAM() WHERE " + whereA, "SELECT COUNT(*) FROM STREAM() WHERE " + whereB, ContainmentChecker.FILTER);
+    }
+
+    @Test
+    public void testIdentical() {
+        assertDerivation("SELECT abc FROM STREAM() WHERE c = 'x'", "SELECT abc FROM STREAM() WHERE c = 'x'", Kind.IDENTICAL, null);
+        Assert.assertEquals(check("SELECT * FROM STREAM()", "SELECT * FROM STREAM()").toString(), "IDENTICAL");
+    }
+
+    @Test
+    public void testFilterImplication() {
+        assertFilterImplied("c = 'x' AND abc > 5", "abc > 5");
+        assertFilterImplied("abc > 5", "abc > 5 AND abc > 1");
+        assertFilterImplied("abc = 5", "abc > 1");
+        assertFilterImplied("abc = 5", "abc >= 5");
+        assertFilterImplied("abc = 5", "abc IN (4, 5)");
+        assertFilterImplied("abc IN (4, 5)", "abc BETWEEN (4, 5)");
+        assertFilterImplied("abc IN (4, 5)", "abc = ANY [3, 4, 5]");
+        assertFilterImplied("abc BETWEEN (4, 5)", "abc > 3 AND 6 > abc");
+        assertFilterImplied("abc > 3 AND abc < 10", "abc BETWEEN (3, 10)");
+        assertFilterImplied("abc >= 5 AND abc <= 5", "abc = 5");
+        assertFilterImplied("c IN ('a', 'b') AND c = 'a'", "c = 'a'");
+        assertFilterImplied("SIZEOF(eee) > 2 AND b", "b");
+        assertFilterImplied("b", "b");
+
+        assertFilterNotImplied("abc > 5", "abc > 6");
+        assertFilterNotImplied("abc >= 5", "abc > 5");
+        assertFilterNotImplied("abc BETWEEN (3, 10)", "abc > 3");
+        assertFilterNotImplied("abc IN (4, 5)", "abc = 4");
+        assertFilterNotImplied("abc > 4", "abc IN (5, 6)");
+        assertFilterNotImplied("c = 'a'", "c = 'b'");
+        assertFilterNotImplied("abc = 5", "def > 1.0");
+        assertFilterNotImplied("b OR abc > 1", "b");
+        assertFilterNotImplied("abc > 1", "abc > 1 OR b");
+    }
+
+    @Test
+    public void testNoFilter() {
+        assertDerivation("SELECT COUNT(*) FROM STREAM()", "SELECT COUNT(*) FROM STREAM() WHERE abc > 1", Kind.STREAM, "abc > 1");
+        assertNotDerivable("SELECT * FROM STREAM() WHERE abc > 1", "SELECT * FROM STREAM()", ContainmentChecker.FILTER);
+    }
+
+    @Test
+    public void testStream() {
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() WHERE abc > 1 GROUP BY c", "SELECT * FROM STREAM() WHERE abc > 1 AND c = 'x' LIMIT 5",
+                         Kind.STREAM, "c = 'x'");
+        assertDerivation("SELECT COUNT(*) FROM STREAM() WHERE abc > 1", "SELECT COUNT(*) FROM STREAM() WHERE abc > 5", Kind.STREAM, "abc > 5");
+        assertDerivation("SELECT DISTINCT abc, c FROM STREAM() WHERE abc > 1", "SELECT c, COUNT(*) FROM STREAM() WHERE abc = 2 GROUP BY c", Kind.STREAM, "abc = 2");
+        assertDerivation("SELECT DISTINCT abc, c FROM STREAM() WHERE abc > 1", "SELECT c AS d, abc + 1 AS x FROM STREAM() WHERE abc = 2", Kind.STREAM, "abc = 2");
+        assertDerivation("SELECT COUNT(*) FROM STREAM() WHERE c = 'x'", "SELECT c FROM STREAM() WHERE c = 'x'", Kind.STREAM, null);
+        assertDerivation("SELECT * FROM STREAM() LATERAL VIEW EXPLODE(eee) AS e WHERE abc > 1",
+                         "SELECT e FROM STREAM() LATERAL VIEW EXPLODE(eee) AS e WHERE abc > 1", Kind.STREAM, null);
+        assertDerivation("SELECT * FROM STREAM(30000, TIME) WHERE abc > 1", "SELECT * FROM STREAM(20000, TIME) WHERE abc > 1", Kind.STREAM, null);
+    }
+
+    @Test
+    public void testStreamRawSize() {
+        // A closes after one record, which B may not want
+        assertNotDerivable("SELECT * FROM STREAM(30000, TIME) WHERE abc > 5 LIMIT 1", "SELECT * FROM STREAM(30000, TIME) WHERE abc > 6 LIMIT 500",
+                           ContainmentChecker.SIZE);
+        assertNotDerivable("SELECT * FROM STREAM() WHERE abc > 5 LIMIT 1", "SELECT * FROM STREAM() WHERE abc > 5 LIMIT 2", ContainmentChecker.SIZE);
+        assertNotDerivable("SELECT * FROM STREAM() WHERE abc > 5 LIMIT 10", "SELECT * FROM STREAM() WHERE abc > 5", ContainmentChecker.SIZE);
+        assertNotDerivable("SELECT * FROM STREAM() WHERE abc > 1", "SELECT * FROM STREAM() WHERE abc > 1 AND c = 'x' LIMIT 5", ContainmentChecker.SIZE);
+        assertNotDerivable("SELECT * FROM STREAM() WHERE abc > 1", "SELECT COUNT(*) FROM STREAM() WHERE abc > 1", ContainmentChecker.SIZE);
+        assertNotDerivable("SELECT *, abc + 1 AS x FROM STREAM()", "SELECT SUM(def) FROM STREAM()", ContainmentChecker.SIZE);
+
+        assertDerivation("SELECT * FROM STREAM() WHERE abc > 5 LIMIT 10", "SELECT * FROM STREAM() WHERE abc > 5 LIMIT 5", Kind.STREAM, null);
+        assertDerivation("SELECT * FROM STREAM() WHERE abc > 5 LIMIT 10", "SELECT abc FROM STREAM() WHERE abc > 5 LIMIT 10", Kind.STREAM, null);
+        // The default size is at least as large as any other
+        assertDerivation("SELECT * FROM STREAM() WHERE abc > 5", "SELECT * FROM STREAM() WHERE abc > 5 LIMIT 10", Kind.STREAM, null);
+    }
+
+    @Test
+    public void testStreamFields() {
+        assertNotDerivable("SELECT abc FROM STREAM() WHERE abc > 1", "SELECT abc FROM STREAM() WHERE abc > 1 AND c = 'x'", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT abc FROM STREAM()", "SELECT c FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT c AS abc FROM STREAM()", "SELECT abc FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT abc FROM STREAM()", "SELECT * FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT *, abc + 1 AS x FROM STREAM()", "SELECT * FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT abc FROM STREAM()", "SELECT c, COUNT(*) FROM STREAM() GROUP BY c", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT abc FROM STREAM()", "SELECT SUM(def) FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT abc FROM STREAM()", "SELECT COUNT(DISTINCT c) FROM STREAM()", ContainmentChecker.FIELDS);
+        assertNotDerivable("SELECT ddd['k'] AS k FROM STREAM()", "SELECT ddd['k'] AS k FROM STREAM() WHERE abc > 1", ContainmentChecker.FIELDS);
+    }
+
+    @Test
+    public void testRollup() {
+        Derivation derivation = check("SELECT abc, c, COUNT(*), SUM(def) AS s FROM STREAM() WHERE abc IN (1, 2) AND c IN ('x', 'y', 'z') GROUP BY abc, c",
+                                      "SELECT c AS d, COUNT(*) AS n, SUM(def) FROM STREAM() WHERE abc IN (1, 2) AND c IN ('x', 'y') GROUP BY c");
+        Assert.assertEquals(derivation.getKind(), Kind.ROLLUP);
+        Assert.assertEquals(CompiledExpressionFormatter.format(derivation.getResidualFilter()), "c IN ['x', 'y']");
+        Map<String, String> names = new HashMap<>();
+        names.put("d", "c");
+        names.put("n", "COUNT(*)");
+        names.put("SUM(def)", "s");
+        Assert.assertEquals(derivation.getNames(), names);
+
+        assertDerivation("SELECT c AS x, MIN(def) FROM STREAM() WHERE c IN ('a', 'b') GROUP BY c", "SELECT MIN(def) AS m FROM STREAM() WHERE c IN ('a', 'b') AND c = 'a'",
+                         Kind.ROLLUP, "x = 'a'");
+        assertDerivation("SELECT c, MAX(def) FROM STREAM() WHERE c = 'a' GROUP BY c LIMIT 1", "SELECT MAX(def) FROM STREAM() WHERE c = 'a'", Kind.ROLLUP, null);
+    }
+
+    @Test
+    public void testRollupSize() {
+        String bqlB = "SELECT c, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') AND abc IN (1, 2, 3) GROUP BY c";
+        assertDerivation("SELECT c, abc, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') AND abc IN (1, 2, 3) GROUP BY c, abc LIMIT 6", bqlB, Kind.ROLLUP, null);
+        // A has more groups than its size so it can drop groups that B needs, but it does not stop reading records
+        assertDerivation("SELECT c, abc, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') AND abc IN (1, 2, 3) GROUP BY c, abc LIMIT 5", bqlB, Kind.STREAM, null);
+        // The number of groups of A is not limited by its filter
+        assertDerivation("SELECT c, abc, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') GROUP BY c, abc", "SELECT c, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') GROUP BY c",
+                         Kind.STREAM, null);
+        assertDerivation("SELECT c, abc, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') AND abc > 3 GROUP BY c, abc",
+                         "SELECT c, COUNT(*) FROM STREAM() WHERE c IN ('a', 'b') AND abc > 3 GROUP BY c", Kind.STREAM, null);
+        assertDerivation("SELECT c, MAX(def) FROM STREAM() GROUP BY c", "SELECT MAX(def) FROM STREAM()", Kind.STREAM, null);
+    }
+
+    @Test
+    public void testApproximateRollup() {
+        // A can truncate its groups and B cannot be computed from its records either
+        Derivation derivation = check("SELECT abc + 1 AS x, MIN(def) FROM STREAM() GROUP BY abc + 1", "SELECT MIN(def) AS m FROM STREAM() WHERE abc + 1 > 5");
+        Assert.assertEquals(derivation.getKind(), Kind.APPROXIMATE_ROLLUP);
+        Assert.assertFalse(derivation.isDerivable());
+        Assert.assertEquals(derivation.getReason(), ContainmentChecker.TRUNCATION);
+        Assert.assertEquals(CompiledExpressionFormatter.format(derivation.getResidualFilter()), "x > 5");
+        Assert.assertEquals(derivation.getNames(), Collections.singletonMap("m", "MIN(def)"));
+        Assert.assertEquals(derivation.toString(), "APPROXIMATE_ROLLUP: " + ContainmentChecker.TRUNCATION + " WHERE x > 5");
+    }
+
+    @Test
+    public void testRollupFallsBackToStream() {
+        // The residual filter reads a field that A does not group by
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() GROUP BY c", "SELECT c, COUNT(*) FROM STREAM() WHERE abc > 1 GROUP BY c", Kind.STREAM, "abc > 1");
+        // AVG cannot be combined
+        assertDerivation("SELECT c, AVG(def) FROM STREAM() GROUP BY c", "SELECT AVG(def) FROM STREAM() WHERE c = 'x'", Kind.STREAM, "c = 'x'");
+        // B groups by a field that A does not
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() GROUP BY c", "SELECT abc, COUNT(*) FROM STREAM() GROUP BY abc", Kind.STREAM, null);
+        // A operation that A does not compute
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() GROUP BY c", "SELECT c, SUM(def) FROM STREAM() GROUP BY c", Kind.STREAM, null);
+        // A drops groups with HAVING
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() GROUP BY c HAVING COUNT(*) > 1", "SELECT COUNT(*) FROM STREAM()", Kind.STREAM, null);
+        // The results are emitted at different times
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM(20000, TIME) GROUP BY c", "SELECT COUNT(*) FROM STREAM(10000, TIME)", Kind.STREAM, null);
+        assertDerivation("SELECT c, COUNT(*) FROM STREAM() GROUP BY c WINDOWING TUMBLING(1000, TIME)", "SELECT COUNT(*) FROM STREAM()", Kind.STREAM, null);
+    }
+
+    @Test
+    public void testNotDerivable() {
+        assertNotDerivable("SELECT * FROM STREAM(10000, TIME)", "SELECT * FROM STREAM(20000, TIME) WHERE b", ContainmentChecker.DURATION);
+        assertNotDerivable("SELECT * FROM STREAM() LATERAL VIEW EXPLODE(eee) AS e", "SELECT * FROM STREAM()", ContainmentChecker.TABLE_FUNCTION);
+        assertNotDerivable("SELECT * FROM STREAM()", "SELECT * FROM STREAM() LATERAL VIEW EXPLODE(eee) AS e", ContainmentChecker.TABLE_FUNCTION);
+        assertNotDerivable("SELECT * FROM STREAM()", "SELECT * FROM (SELECT * FROM STREAM()) WHERE b", ContainmentChecker.OUTER_QUERY);
+    }
+}
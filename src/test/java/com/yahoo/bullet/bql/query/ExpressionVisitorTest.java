@@ -11,18 +11,18 @@ public class ExpressionVisitorTest {
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "This method should not be called\\.")
     public void testProcess() {
         // coverage
-        new ExpressionVisitor(null).process(null);
+        new ExpressionVisitor(null, null).process(null);
     }
 
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "This method should not be called\\.")
     public void testVisitNode() {
         // coverage
-        new ExpressionVisitor(null).visitNode(null, null);
+        new ExpressionVisitor(null, null).visitNode(null, null);
     }
 
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "This method should not be called\\.")
     public void testVisitExpression() {
         // coverage
-        new ExpressionVisitor(null).visitExpression(null, null);
+        new ExpressionVisitor(null, null).visitExpression(null, null);
     }
 }
@@ -6,7 +6,9 @@
 package com.yahoo.bullet.bql.query;
 
 import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
 import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.SerializerDeserializer;
 import com.yahoo.bullet.pubsub.Metadata;
 import com.yahoo.bullet.pubsub.PubSubMessage;
 import com.yahoo.bullet.query.Projection;
@@ -18,6 +20,34 @@ import org.testng.annotations.Test;
 import java.util.HashMap;
 
 public class LazyPubSubMessageSerDeTest {
+    // Stores the name of a field to select instead of BQL
+    private static class FieldSerDe extends LazyPubSubMessageSerDe {
+        private static final long serialVersionUID = 1L;
+
+        private FieldSerDe(BulletConfig config) {
+            super(config);
+        }
+
+        @Override
+        protected Query toQuery(String queryString) {
+            return queryBuilder.buildQuery("SELECT " + queryString + " FROM STREAM()").getQuery();
+        }
+    }
+
+    // Also lexes the bytes itself
+    private static class BytesFieldSerDe extends FieldSerDe {
+        private static final long serialVersionUID = 1L;
+
+        private BytesFieldSerDe(BulletConfig config) {
+            super(config);
+        }
+
+        @Override
+        protected Query toQuery(byte[] payload) {
+            return queryBuilder.buildQueryFromBytes(payload).getQuery();
+        }
+    }
+
     @Test
     public void testLazyMessage() {
         LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
@@ -58,10 +88,10 @@ public class LazyPubSubMessageSerDeTest {
     @Test
     public void testQueryCreation() {
         BQLConfig config = new BQLConfig();
-        config.set(BulletConfig.AGGREGATION_MAX_SIZE, 5);
+        config.set(BulletConfig.AGGREGATION_MAX_SIZE, 600);
         LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
 
-        PubSubMessage message = serDe.toMessage("id", null, "SELECT * FROM STREAM(MAX, TIME) LIMIT 100");
+        PubSubMessage message = serDe.toMessage("id", null, "SELECT * FROM STREAM(MAX, TIME) LIMIT 1000");
         long created = message.getMetadata().getCreated();
         PubSubMessage result = serDe.fromMessage(message);
 
@@ -69,16 +99,136 @@ public class LazyPubSubMessageSerDeTest {
         Query actual = result.getContentAsQuery();
         Assert.assertEquals(actual.getProjection().getType(), Projection.Type.PASS_THROUGH);
         Assert.assertEquals(actual.getAggregation().getType(), AggregationType.RAW);
-        Assert.assertEquals((long) actual.getAggregation().getSize(), 5L);
+        Assert.assertEquals((long) actual.getAggregation().getSize(), 600L);
         Assert.assertEquals((long) actual.getDuration(), Long.MAX_VALUE);
         Metadata metadata = result.getMetadata();
         Assert.assertNull(metadata.getSignal());
-        Assert.assertEquals(metadata.getContent(), "SELECT * FROM STREAM(MAX, TIME) LIMIT 100");
+        Assert.assertEquals(metadata.getContent(), "SELECT * FROM STREAM(MAX, TIME) LIMIT 1000");
         Assert.assertEquals(metadata.getCreated(), created);
 
-        Assert.assertNotSame(message, result);
-        Assert.assertNotSame(message.getMetadata(), metadata);
-        Assert.assertEquals(message.getMetadata().getCreated(), metadata.getCreated());
+        // The message and its plain metadata are rewritten in place
+        Assert.assertSame(message, result);
+        Assert.assertSame(message.getMetadata(), metadata);
+    }
+
+    @Test
+    public void testQueryCreationWithCustomMetadata() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        Metadata original = new Metadata(Metadata.Signal.CUSTOM, null) {
+        };
+        original.setCreated(42L);
+        PubSubMessage result = serDe.fromMessage(new PubSubMessage("id", "SELECT * FROM STREAM()", original));
+
+        Metadata metadata = result.getMetadata();
+        Assert.assertNotSame(metadata, original);
+        Assert.assertNull(metadata.getSignal());
+        Assert.assertEquals(metadata.getContent(), "SELECT * FROM STREAM()");
+        Assert.assertEquals(metadata.getCreated(), 42L);
+        Assert.assertEquals(original.getSignal(), Metadata.Signal.CUSTOM);
+
+        result = serDe.fromMessage(new PubSubMessage("id", "SELECT * FROM STREAM()".getBytes(PubSubMessage.CHARSET), original));
+        metadata = result.getMetadata();
+        Assert.assertEquals(metadata.getContent(), "SELECT * FROM STREAM()");
+        Assert.assertEquals(metadata.getCreated(), 42L);
+        Assert.assertEquals(result.getContentAsQuery().getAggregation().getType(), AggregationType.RAW);
+    }
+
+    @Test
+    public void testQueryCreationFromBytes() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        String bql = "SELECT * FROM STREAM(30000, TIME) WHERE name = 'café' LIMIT 10";
+        Metadata original = new Metadata(Metadata.Signal.CUSTOM, null);
+        original.setCreated(42L);
+        PubSubMessage message = new PubSubMessage("id", bql.getBytes(PubSubMessage.CHARSET), original);
+        PubSubMessage result = serDe.fromMessage(message);
+
+        Assert.assertSame(result, message);
+        Query query = result.getContentAsQuery();
+        Assert.assertEquals((long) query.getDuration(), 30000L);
+        Assert.assertEquals((long) query.getAggregation().getSize(), 10L);
+        Assert.assertEquals(query.getFilter(), serDe.fromMessage(serDe.toMessage("id", null, bql)).getContentAsQuery().getFilter());
+
+        Metadata metadata = result.getMetadata();
+        Assert.assertNull(metadata.getSignal());
+        Assert.assertTrue(metadata.hasContent());
+        Assert.assertEquals(metadata.getCreated(), 42L);
+        Assert.assertEquals(metadata.getContent(), bql);
+        Assert.assertSame(metadata.getContent(), metadata.getContent());
+
+        Metadata copy = metadata.copy();
+        Assert.assertEquals(copy.getContent(), bql);
+        Assert.assertEquals(copy.getCreated(), 42L);
+
+        metadata.setContent("foo");
+        Assert.assertEquals(metadata.getContent(), "foo");
+    }
+
+    @Test
+    public void testPayloadMetadataDoesNotShareThePayload() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        byte[] payload = "SELECT * FROM STREAM() LIMIT 7".getBytes(PubSubMessage.CHARSET);
+        Metadata metadata = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getMetadata();
+
+        // The PubSub reuses the buffer before the content is read
+        payload[payload.length - 1] = '8';
+        Assert.assertEquals(metadata.getContent(), "SELECT * FROM STREAM() LIMIT 7");
+    }
+
+    @Test
+    public void testQueryCacheWithBytes() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        byte[] payload = "SELECT * FROM STREAM(5000, TIME) LIMIT 7".getBytes(PubSubMessage.CHARSET);
+        Query query = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getContentAsQuery();
+
+        // The cached key must not be affected by the payload buffer being reused
+        byte[] reused = payload.clone();
+        payload[payload.length - 1] = '8';
+        Query cached = serDe.fromMessage(new PubSubMessage("id", reused, Metadata.Signal.CUSTOM)).getContentAsQuery();
+        Assert.assertNotSame(cached, query);
+        Assert.assertEquals(cached.toString(), query.toString());
+        Query different = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getContentAsQuery();
+        Assert.assertEquals((long) different.getAggregation().getSize(), 8L);
+    }
+
+    @Test
+    public void testPayloadMetadataIsSerializedAsMetadata() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        byte[] payload = "SELECT * FROM STREAM()".getBytes(PubSubMessage.CHARSET);
+        Metadata metadata = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getMetadata();
+        long created = metadata.getCreated();
+
+        Metadata deserialized = SerializerDeserializer.fromBytes(SerializerDeserializer.toBytes(metadata));
+        Assert.assertEquals(deserialized.getClass(), Metadata.class);
+        Assert.assertEquals(deserialized.getContent(), "SELECT * FROM STREAM()");
+        Assert.assertEquals(deserialized.getCreated(), created);
+    }
+
+    @Test
+    public void testBytesAreConvertedWithOverriddenToQuery() {
+        LazyPubSubMessageSerDe serDe = new FieldSerDe(new BQLConfig());
+        byte[] payload = "abc".getBytes(PubSubMessage.CHARSET);
+        PubSubMessage message = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM));
+        Assert.assertEquals(message.getContentAsQuery().toString(), serDe.toQuery("abc").toString());
+        Assert.assertEquals(message.getMetadata().getContent(), "abc");
+
+        // Still after the SerDe is serialized
+        serDe = SerializerDeserializer.fromBytes(SerializerDeserializer.toBytes(serDe));
+        message = serDe.fromMessage(new PubSubMessage("id", "c".getBytes(PubSubMessage.CHARSET), Metadata.Signal.CUSTOM));
+        Assert.assertEquals(message.getContentAsQuery().toString(), serDe.toQuery("c").toString());
+    }
+
+    @Test
+    public void testBytesAreLexedWhenBothAreOverridden() {
+        LazyPubSubMessageSerDe serDe = new BytesFieldSerDe(new BQLConfig());
+        byte[] payload = "SELECT c FROM STREAM()".getBytes(PubSubMessage.CHARSET);
+        Query query = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getContentAsQuery();
+        Assert.assertEquals(query.toString(), serDe.toQuery("c").toString());
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testInvalidQueryCreationFromBytes() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        serDe.fromMessage(new PubSubMessage("id", "garbage".getBytes(PubSubMessage.CHARSET), Metadata.Signal.CUSTOM));
     }
 
     @Test(expectedExceptions = RuntimeException.class)
@@ -86,4 +236,119 @@ public class LazyPubSubMessageSerDeTest {
         LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
         serDe.fromMessage(serDe.toMessage("", null, "garbage"));
     }
+
+    @Test
+    public void testQueryCacheIsSharedBetweenInstances() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 2);
+        config.validate();
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
+        LazyPubSubMessageSerDe other = new LazyPubSubMessageSerDe(config);
+        Assert.assertSame(serDe.getCache(), other.getCache());
+        Assert.assertEquals(serDe.getCache().getCapacity(), 2);
+
+        Query query = serDe.fromMessage(serDe.toMessage("id", null, "SELECT * FROM STREAM()")).getContentAsQuery();
+        Query cached = other.fromMessage(other.toMessage("other", null, "SELECT * FROM STREAM()")).getContentAsQuery();
+        Assert.assertNotSame(query, cached);
+        Assert.assertEquals(query.toString(), cached.toString());
+        Assert.assertEquals(serDe.getCache().size(), 1);
+        Assert.assertEquals(serDe.getCache().getHits(), 1L);
+        Assert.assertEquals(serDe.getCache().getMisses(), 1L);
+
+        Query different = serDe.fromMessage(serDe.toMessage("id", null, "SELECT * FROM STREAM() LIMIT 1")).getContentAsQuery();
+        Assert.assertNotSame(query, different);
+        Assert.assertEquals(serDe.getCache().size(), 2);
+    }
+
+    @Test
+    public void testCachedQueriesAreNotShared() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 3);
+        config.validate();
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
+        byte[] payload = "SELECT abc FROM STREAM() WHERE abc > 1".getBytes(PubSubMessage.CHARSET);
+
+        Query query = serDe.fromMessage(serDe.toMessage("id", null, "SELECT abc FROM STREAM() WHERE abc > 1")).getContentAsQuery();
+        Query fromBytes = serDe.fromMessage(new PubSubMessage("id", payload, Metadata.Signal.CUSTOM)).getContentAsQuery();
+        BulletConfig smaller = new BulletConfig();
+        smaller.set(BulletConfig.QUERY_DEFAULT_DURATION, 1000L);
+        smaller.set(BulletConfig.QUERY_MAX_DURATION, 1000L);
+        smaller.validate();
+        query.configure(smaller);
+        fromBytes.configure(smaller);
+        Assert.assertEquals((long) query.getDuration(), 1000L);
+
+        Query cached = serDe.fromMessage(serDe.toMessage("id", null, "SELECT abc FROM STREAM() WHERE abc > 1")).getContentAsQuery();
+        Query cachedFromBytes = serDe.fromMessage(new PubSubMessage("id", payload.clone(), Metadata.Signal.CUSTOM)).getContentAsQuery();
+        Assert.assertEquals(serDe.getCache().getHits(), 2L);
+        Assert.assertEquals((long) cached.getDuration(), Long.MAX_VALUE);
+        Assert.assertEquals((long) cachedFromBytes.getDuration(), Long.MAX_VALUE);
+        Assert.assertEquals(cached.getFilter(), new BulletQueryBuilder(config).buildQuery("SELECT abc FROM STREAM() WHERE abc > 1").getQuery().getFilter());
+    }
+
+    @Test
+    public void testSharedCachesAreBounded() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 4);
+        config.validate();
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
+        Assert.assertSame(new LazyPubSubMessageSerDe(config).getCache(), serDe.getCache());
+        for (int i = 0; i < 16; i++) {
+            BQLConfig other = new BQLConfig();
+            other.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 100 + i);
+            other.validate();
+            new LazyPubSubMessageSerDe(other);
+        }
+        // The cache of the first settings is no longer shared but the instance keeps using it
+        Assert.assertNotSame(new LazyPubSubMessageSerDe(config).getCache(), serDe.getCache());
+        Assert.assertEquals(serDe.getCache().getCapacity(), 4);
+    }
+
+    @Test
+    public void testQueryCacheIsNotSharedBetweenSettings() {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.AGGREGATION_MAX_SIZE, 700);
+        config.validate();
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
+        LazyPubSubMessageSerDe other = new LazyPubSubMessageSerDe(new BQLConfig());
+        Assert.assertNotSame(serDe.getCache(), other.getCache());
+
+        Query query = serDe.fromMessage(serDe.toMessage("id", null, "SELECT * FROM STREAM() LIMIT 1000")).getContentAsQuery();
+        Query unshared = other.fromMessage(other.toMessage("id", null, "SELECT * FROM STREAM() LIMIT 1000")).getContentAsQuery();
+        Assert.assertEquals((int) query.getAggregation().getSize(), 700);
+        Assert.assertEquals((int) unshared.getAggregation().getSize(), 500);
+    }
+
+    @Test
+    public void testQueryCacheDisabled() {
+        BQLConfig config = new BQLConfig();
+        config.set(BQLConfig.BQL_QUERY_CACHE_SIZE, 0);
+        config.validate();
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(config);
+
+        Query query = serDe.fromMessage(serDe.toMessage("id", null, "SELECT * FROM STREAM()")).getContentAsQuery();
+        Query recompiled = serDe.fromMessage(serDe.toMessage("id", null, "SELECT * FROM STREAM()")).getContentAsQuery();
+        Assert.assertNotSame(query, recompiled);
+        Assert.assertEquals(query.toString(), recompiled.toString());
+        Assert.assertEquals(serDe.getCache().size(), 0);
+    }
+
+    @Test
+    public void testInvalidQueryIsNotCached() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        int size = serDe.getCache().size();
+        try {
+            serDe.fromMessage(serDe.toMessage("", null, "garbage"));
+            Assert.fail();
+        } catch (RuntimeException ignored) {
+        }
+        Assert.assertEquals(serDe.getCache().size(), size);
+    }
+
+    @Test
+    public void testDeserializedSerDeUsesSharedCache() {
+        LazyPubSubMessageSerDe serDe = new LazyPubSubMessageSerDe(new BQLConfig());
+        LazyPubSubMessageSerDe deserialized = SerializerDeserializer.fromBytes(SerializerDeserializer.toBytes(serDe));
+        Assert.assertSame(deserialized.getCache(), serDe.getCache());
+    }
 }
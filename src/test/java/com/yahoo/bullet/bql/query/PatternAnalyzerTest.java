@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.query.PatternAnalyzer.Analysis;
+import com.yahoo.bullet.bql.query.PatternAnalyzer.Shape;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.record.simple.TypedSimpleBulletRecord;
+import com.yahoo.bullet.typesystem.Type;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.yahoo.bullet.bql.util.QueryUtil.binary;
+import static com.yahoo.bullet.bql.util.QueryUtil.field;
+import static com.yahoo.bullet.bql.util.QueryUtil.list;
+import static com.yahoo.bullet.bql.util.QueryUtil.nary;
+import static com.yahoo.bullet.bql.util.QueryUtil.value;
+
+public class PatternAnalyzerTest {
+    private static void assertAnalysis(String pattern, Shape shape, String literal) {
+        Analysis analysis = PatternAnalyzer.analyze(pattern);
+        Assert.assertEquals(analysis.getShape(), shape);
+        Assert.assertEquals(analysis.getLiteral(), literal);
+    }
+
+    @Test(expectedExceptions = PatternSyntaxException.class)
+    public void testCompileInvalid() {
+        PatternAnalyzer.compile("(a");
+    }
+
+    @Test
+    public void testAnalyzeExact() {
+        assertAnalysis("foo", Shape.EXACT, "foo");
+        assertAnalysis("^foo$", Shape.EXACT, "foo");
+        assertAnalysis("", Shape.EXACT, "");
+        assertAnalysis("a\\.b\\$", Shape.EXACT, "a.b$");
+        assertAnalysis("\\Q.*\\E", Shape.EXACT, ".*");
+        assertAnalysis("a b-c", Shape.EXACT, "a b-c");
+    }
+
+    @Test
+    public void testAnalyzeWildcards() {
+        assertAnalysis("foo.*", Shape.PREFIX, "foo");
+        assertAnalysis("^foo.*$", Shape.PREFIX, "foo");
+        assertAnalysis(".*foo", Shape.SUFFIX, "foo");
+        assertAnalysis(".*foo.*", Shape.CONTAINS, "foo");
+        assertAnalysis(".*\\.\\*.*", Shape.CONTAINS, ".*");
+        assertAnalysis("(?s)foo.*", Shape.PREFIX, "foo");
+        assertAnalysis("(?s)^.*foo$", Shape.SUFFIX, "foo");
+    }
+
+    @Test
+    public void testAnalyzeRegex() {
+        assertAnalysis(".*", Shape.REGEX, null);
+        assertAnalysis(".*.*", Shape.REGEX, null);
+        assertAnalysis("f.o", Shape.REGEX, null);
+        assertAnalysis("foo.*?", Shape.REGEX, null);
+        assertAnalysis("foo\\.*", Shape.REGEX, null);
+        assertAnalysis("\\d+", Shape.REGEX, null);
+        assertAnalysis("a|b", Shape.REGEX, null);
+        assertAnalysis("(?i)foo", Shape.REGEX, null);
+        assertAnalysis("\\Qfoo.*", Shape.REGEX, null);
+        assertAnalysis("foo\\", Shape.REGEX, null);
+    }
+
+    @Test
+    public void testBacktrackingProne() {
+        Assert.assertTrue(PatternAnalyzer.isBacktrackingProne("(a+)+"));
+        Assert.assertTrue(PatternAnalyzer.isBacktrackingProne("(a*)*b"));
+        Assert.assertTrue(PatternAnalyzer.isBacktrackingProne("(.*a){2,}"));
+        Assert.assertTrue(PatternAnalyzer.isBacktrackingProne("x(?:(ab)+c)*"));
+        Assert.assertTrue(PatternAnalyzer.isBacktrackingProne("((a|b)+)+"));
+    }
+
+    @Test
+    public void testNotBacktrackingProne() {
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("a+b*"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("(ab)+"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("(a+){2,5}"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("(a+)?"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("[(a+)]+"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("\\(a+\\)+"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("\\Q(a+)+\\E"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne("[]a+](b)+"));
+        Assert.assertFalse(PatternAnalyzer.isBacktrackingProne(")+"));
+    }
+
+    @Test
+    public void testRewriteNotApplicable() {
+        BinaryExpression notLiteral = binary(field("c", Type.STRING), field("c", Type.STRING), Operation.REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(notLiteral), notLiteral);
+
+        BinaryExpression notList = binary(field("c", Type.STRING), field("eee", Type.STRING_LIST), Operation.REGEX_LIKE_ANY, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(notList), notList);
+
+        BinaryExpression notAllLiterals = binary(field("c", Type.STRING), list(Type.STRING_LIST, value("a"), field("c", Type.STRING)), Operation.REGEX_LIKE_ANY, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(notAllLiterals), notAllLiterals);
+
+        BinaryExpression notRegex = binary(field("c", Type.STRING), value("a"), Operation.EQUALS, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(notRegex), notRegex);
+
+        BinaryExpression contains = binary(field("c", Type.STRING), value(".*a.*"), Operation.NOT_REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(contains), contains);
+
+        // Without DOTALL, . does not match line terminators
+        BinaryExpression prefix = binary(field("c", Type.STRING), value("abc.*"), Operation.REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(prefix), prefix);
+
+        BinaryExpression suffix = binary(field("c", Type.STRING), value(".*abc"), Operation.NOT_REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertSame(PatternAnalyzer.rewrite(suffix), suffix);
+    }
+
+    @Test
+    public void testRewriteRegexLikeWithDotAll() {
+        BinaryExpression expression = binary(field("c", Type.STRING), value("(?s)abc.*"), Operation.REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertEquals(PatternAnalyzer.rewrite(expression), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(1), value(3)),
+                                                                        value("abc"),
+                                                                        Operation.EQUALS,
+                                                                        Type.BOOLEAN));
+
+        expression = binary(field("c", Type.STRING), value("(?s).*abc"), Operation.NOT_REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertEquals(PatternAnalyzer.rewrite(expression), binary(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(-3)),
+                                                                        value("abc"),
+                                                                        Operation.NOT_EQUALS,
+                                                                        Type.BOOLEAN));
+
+        expression = binary(field("c", Type.STRING), value("(?s)abc"), Operation.REGEX_LIKE, Type.BOOLEAN);
+        Assert.assertEquals(PatternAnalyzer.rewrite(expression), binary(field("c", Type.STRING), value("abc"), Operation.EQUALS, Type.BOOLEAN));
+    }
+
+    @Test
+    public void testRewriteRegexLikeAny() {
+        BinaryExpression expression = binary(field("c", Type.STRING), list(Type.STRING_LIST, value("^a$"), value("b")), Operation.REGEX_LIKE_ANY, Type.BOOLEAN);
+        Assert.assertEquals(PatternAnalyzer.rewrite(expression), binary(field("c", Type.STRING),
+                                                                        list(Type.STRING_LIST, value("a"), value("b")),
+                                                                        Operation.EQUALS_ANY,
+                                                                        Type.BOOLEAN));
+    }
+
+    private static void assertLikeAnalysis(String pattern, Shape shape, String literal) {
+        Analysis analysis = PatternAnalyzer.analyzeLike(pattern);
+        Assert.assertEquals(analysis.getShape(), shape);
+        Assert.assertEquals(analysis.getLiteral(), literal);
+    }
+
+    @Test
+    public void testCountLikeRegexes() {
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.singletonList("foo"), false), 0);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.singletonList("foo%"), false), 0);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.singletonList("%foo"), false), 0);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.singletonList("%foo%"), false), 1);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.singletonList("f_o"), false), 1);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Collections.emptyList(), false), 0);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Arrays.asList("foo", "bar"), true), 0);
+        Assert.assertEquals(PatternAnalyzer.countLikeRegexes(Arrays.asList("foo", "bar%", "baz"), true), 3);
+    }
+
+    @Test
+    public void testAnalyzeLike() {
+        assertLikeAnalysis("foo", Shape.EXACT, "foo");
+        assertLikeAnalysis("", Shape.EXACT, "");
+        assertLikeAnalysis("f.o*", Shape.EXACT, "f.o*");
+        assertLikeAnalysis("f\\%o\\_", Shape.EXACT, "f%o_");
+        assertLikeAnalysis("foo\\", Shape.EXACT, "foo\\");
+        assertLikeAnalysis("foo%", Shape.PREFIX, "foo");
+        assertLikeAnalysis("foo%%", Shape.PREFIX, "foo");
+        assertLikeAnalysis("%foo", Shape.SUFFIX, "foo");
+        assertLikeAnalysis("%%foo", Shape.SUFFIX, "foo");
+        assertLikeAnalysis("%foo%", Shape.CONTAINS, "foo");
+        assertLikeAnalysis("%", Shape.REGEX, null);
+        assertLikeAnalysis("f_o", Shape.REGEX, null);
+        assertLikeAnalysis("f%o", Shape.REGEX, null);
+        assertLikeAnalysis("%f%o%", Shape.REGEX, null);
+    }
+
+    @Test
+    public void testLikeToRegex() {
+        Assert.assertEquals(PatternAnalyzer.likeToRegex("f.o%"), "(?s)\\Qf.o\\E.*");
+        Assert.assertEquals(PatternAnalyzer.likeToRegex("_\\%_"), "(?s).\\Q%\\E.");
+        Assert.assertTrue(Pattern.matches(PatternAnalyzer.likeToRegex("a\\\\E%"), "a\\Ebc"));
+        Assert.assertEquals(PatternAnalyzer.likeToRegex(""), "(?s)");
+    }
+
+    @Test
+    public void testCompiledLikeMatchesLikeSemantics() {
+        String[] patterns = {"foo", "foo%", "%foo", "%foo%", "f_o", "%", "_", "f%o", "%o_", "a.c%", "\\%%", "", "f\\_o"};
+        String[] values = {"foo", "fo", "fooo", "xfoo", "xfoox", "f\no", "", "a.cd", "abcd", "%x", "f_o", "fxo", "foo\nbar"};
+        FieldExpression c = field("c", Type.STRING);
+        for (String pattern : patterns) {
+            Pattern reference = Pattern.compile(PatternAnalyzer.likeToRegex(pattern));
+            for (boolean not : new boolean[] {false, true}) {
+                Expression like = PatternAnalyzer.compileLike(c, Collections.singletonList(pattern), false, not);
+                Expression likeAny = PatternAnalyzer.compileLike(c, Arrays.asList(pattern, pattern), true, not);
+                for (String value : values) {
+                    TypedSimpleBulletRecord record = new TypedSimpleBulletRecord();
+                    record.setString("c", value);
+                    boolean expected = reference.matcher(value).matches() != not;
+                    Assert.assertEquals(like.getEvaluator().evaluate(record).getValue(), expected, pattern + " " + value);
+                    Assert.assertEquals(likeAny.getEvaluator().evaluate(record).getValue(), expected, pattern + " " + value);
+                }
+            }
+        }
+    }
+}
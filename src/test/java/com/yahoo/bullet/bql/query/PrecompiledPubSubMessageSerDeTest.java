@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.SerializerDeserializer;
+import com.yahoo.bullet.pubsub.Metadata;
+import com.yahoo.bullet.pubsub.PubSubMessage;
+import com.yahoo.bullet.query.Query;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PrecompiledPubSubMessageSerDeTest {
+    private static final String BQL = "SELECT abc, COUNT(*) AS cnt FROM STREAM(20000, TIME) WHERE abc > 5 GROUP BY abc HAVING cnt > 1 LIMIT 600";
+
+    private static BulletQueryBuilder spyOnBuilder(LazyPubSubMessageSerDe serDe) {
+        BulletQueryBuilder spy = Mockito.spy(serDe.queryBuilder);
+        serDe.queryBuilder = spy;
+        return spy;
+    }
+
+    private static int getVersionOffset(String bql) {
+        return 8 + bql.getBytes(PubSubMessage.CHARSET).length;
+    }
+
+    private static BQLConfig config(int maxSize) {
+        BQLConfig config = new BQLConfig();
+        config.set(BulletConfig.AGGREGATION_MAX_SIZE, maxSize);
+        config.validate();
+        return config;
+    }
+
+    private static PubSubMessage copy(PubSubMessage message) {
+        return new PubSubMessage(message.getId(), message.getContentAsByteArray().clone(), new Metadata(Metadata.Signal.CUSTOM, null));
+    }
+
+    @Test
+    public void testCompilerVersions() {
+        Assert.assertNotNull(PrecompiledPubSubMessageSerDe.BQL_VERSION);
+        Assert.assertFalse(PrecompiledPubSubMessageSerDe.BQL_VERSION.contains("${"));
+        Assert.assertNotNull(PrecompiledPubSubMessageSerDe.CORE_VERSION);
+        Assert.assertFalse(PrecompiledPubSubMessageSerDe.CORE_VERSION.contains("${"));
+    }
+
+    @Test
+    public void testPrecompiledQuery() {
+        PrecompiledPubSubMessageSerDe sender = new PrecompiledPubSubMessageSerDe(config(800));
+        PrecompiledPubSubMessageSerDe receiver = new PrecompiledPubSubMessageSerDe(config(800));
+        Assert.assertEquals(sender.getSettingsFingerprint(), receiver.getSettingsFingerprint());
+
+        PubSubMessage message = sender.toMessage("id", null, BQL);
+        Assert.assertEquals(message.getId(), "id");
+        Assert.assertEquals(message.getMetadata().getSignal(), Metadata.Signal.CUSTOM);
+        Assert.assertTrue(message.getContent() instanceof byte[]);
+
+        BulletQueryBuilder builder = spyOnBuilder(receiver);
+        PubSubMessage result = receiver.fromMessage(copy(message));
+        Mockito.verifyZeroInteractions(builder);
+
+        Query expected = new BulletQueryBuilder(config(800)).buildQuery(BQL).getQuery();
+        Query actual = result.getContentAsQuery();
+        Assert.assertEquals(actual.toString(), expected.toString());
+        Assert.assertEquals((int) actual.getAggregation().getSize(), 600);
+        Assert.assertNull(result.getMetadata().getSignal());
+        Assert.assertEquals(result.getMetadata().getContent(), BQL);
+
+        // The decoded plan is cached and each message gets its own copy
+        Query cached = receiver.fromMessage(copy(message)).getContentAsQuery();
+        Assert.assertNotSame(cached, actual);
+        Assert.assertEquals(cached.toString(), actual.toString());
+        Mockito.verifyZeroInteractions(builder);
+    }
+
+    @Test
+    public void testProvidedQueryIsEncoded() {
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        Query query = new BulletQueryBuilder(new BQLConfig()).buildQuery(BQL).getQuery();
+        BulletQueryBuilder builder = spyOnBuilder(serDe);
+
+        PubSubMessage result = serDe.fromMessage(serDe.toMessage("id", query, BQL));
+        Mockito.verifyZeroInteractions(builder);
+        Assert.assertEquals(result.getContentAsQuery().toString(), query.toString());
+    }
+
+    @Test
+    public void testRecompilesWhenSettingsDiffer() {
+        // A query that is not in the shared cache yet
+        String bql = BQL.replace("20000", "20001");
+        PrecompiledPubSubMessageSerDe sender = new PrecompiledPubSubMessageSerDe(config(800));
+        PrecompiledPubSubMessageSerDe receiver = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        Assert.assertNotEquals(sender.getSettingsFingerprint(), receiver.getSettingsFingerprint());
+
+        BulletQueryBuilder builder = spyOnBuilder(receiver);
+        PubSubMessage result = receiver.fromMessage(sender.toMessage("id", null, bql));
+        Mockito.verify(builder).buildQuery(bql);
+        Assert.assertEquals((int) result.getContentAsQuery().getAggregation().getSize(), 500);
+        Assert.assertEquals(result.getMetadata().getContent(), bql);
+    }
+
+    @Test
+    public void testRecompilesWhenCompilerDiffers() {
+        // A query that is not in the shared cache yet
+        String bql = BQL.replace("20000", "20002");
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        PubSubMessage message = serDe.toMessage("id", null, bql);
+        byte[] payload = message.getContentAsByteArray();
+        // Flip a bit in the compiler fingerprint after the envelope version
+        payload[getVersionOffset(bql) + 1] ^= 1;
+
+        BulletQueryBuilder builder = spyOnBuilder(serDe);
+        Assert.assertEquals((int) serDe.fromMessage(message).getContentAsQuery().getAggregation().getSize(), 500);
+        Mockito.verify(builder).buildQuery(bql);
+    }
+
+    @Test
+    public void testRecompilesWhenPlanIsCorrupted() {
+        // A query that is not in the shared cache yet
+        String bql = BQL.replace("20000", "20003");
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        PubSubMessage message = serDe.toMessage("id", null, bql);
+        byte[] payload = message.getContentAsByteArray();
+        payload[payload.length - 10] ^= 1;
+
+        BulletQueryBuilder builder = spyOnBuilder(serDe);
+        Query query = serDe.fromMessage(message).getContentAsQuery();
+        Mockito.verify(builder).buildQuery(bql);
+        Assert.assertEquals(query.toString(), new BulletQueryBuilder(new BQLConfig()).buildQuery(bql).getQuery().toString());
+    }
+
+    @Test
+    public void testInvalidBQLIsSentAsBQL() {
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        PubSubMessage message = serDe.toMessage("id", null, "garbage");
+        Assert.assertEquals(message.getContent(), "garbage");
+        Assert.assertEquals(message.getMetadata().getSignal(), Metadata.Signal.CUSTOM);
+        try {
+            serDe.fromMessage(message);
+            Assert.fail();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    @Test
+    public void testOtherMessages() {
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        PubSubMessage lazy = new LazyPubSubMessageSerDe(new BQLConfig()).toMessage("id", null, BQL);
+        Assert.assertEquals(serDe.fromMessage(lazy).getMetadata().getContent(), BQL);
+
+        byte[] bytes = "SELECT * FROM STREAM()".getBytes(PubSubMessage.CHARSET);
+        PubSubMessage result = serDe.fromMessage(new PubSubMessage("id", bytes, Metadata.Signal.CUSTOM));
+        Assert.assertEquals(result.getMetadata().getContent(), "SELECT * FROM STREAM()");
+
+        // Looks like the magic but the BQL length is invalid
+        byte[] truncated = {'B', 'Q', 'L', 'P', 0, 0, 0, 9};
+        Assert.assertThrows(RuntimeException.class, () -> serDe.fromMessage(new PubSubMessage("id", truncated, Metadata.Signal.CUSTOM)));
+
+        PubSubMessage kill = new PubSubMessage("id", Metadata.Signal.KILL);
+        Assert.assertSame(serDe.fromMessage(kill), kill);
+    }
+
+    @Test
+    public void testSerializable() {
+        PrecompiledPubSubMessageSerDe serDe = new PrecompiledPubSubMessageSerDe(new BQLConfig());
+        PrecompiledPubSubMessageSerDe deserialized = SerializerDeserializer.fromBytes(SerializerDeserializer.toBytes(serDe));
+        Assert.assertEquals(deserialized.getSettingsFingerprint(), serDe.getSettingsFingerprint());
+        Assert.assertSame(deserialized.getCache(), serDe.getCache());
+        Assert.assertEquals(deserialized.fromMessage(serDe.toMessage("id", null, BQL)).getMetadata().getContent(), BQL);
+    }
+}
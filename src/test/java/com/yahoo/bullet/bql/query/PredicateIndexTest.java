@@ -0,0 +1,275 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.querying.Filter;
+import com.yahoo.bullet.record.BulletRecord;
+import com.yahoo.bullet.record.simple.TypedSimpleBulletRecord;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PredicateIndexTest {
+    private BulletQueryBuilder builder;
+    private PredicateIndex index;
+
+    @BeforeClass
+    public void setup() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+    }
+
+    @BeforeMethod
+    public void setupIndex() {
+        index = new PredicateIndex();
+    }
+
+    private Query query(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql);
+        return result.getQuery();
+    }
+
+    private void add(String id, String where) {
+        index.add(id, query("SELECT * FROM STREAM(MAX, TIME)" + (where != null ? " WHERE " + where : "")));
+    }
+
+    private static TypedSimpleBulletRecord record(Integer abc, String c, Float def) {
+        TypedSimpleBulletRecord record = new TypedSimpleBulletRecord();
+        if (abc != null) {
+            record.setInteger("abc", abc);
+        }
+        if (c != null) {
+            record.setString("c", c);
+        }
+        if (def != null) {
+            record.setFloat("def", def);
+        }
+        return record;
+    }
+
+    private void assertMatches(BulletRecord record, String... ids) {
+        Assert.assertEquals(new HashSet<>(index.match(record)), new HashSet<>(Arrays.asList(ids)));
+    }
+
+    private void assertCandidates(BulletRecord record, String... ids) {
+        Assert.assertEquals(new HashSet<>(index.getCandidates(record)), new HashSet<>(Arrays.asList(ids)));
+    }
+
+    @Test
+    public void testEqualities() {
+        add("a", "c = 'x' AND abc > 5");
+        add("b", "'y' = c");
+        add("c", "c IN ('x', 'z')");
+        add("d", "abc = ANY [1, 2] AND c = 'y'");
+        Assert.assertEquals(index.size(), 4);
+        Assert.assertEquals(index.getUnindexedSize(), 0);
+
+        assertCandidates(record(1, "x", null), "a", "c");
+        assertMatches(record(1, "x", null), "c");
+        assertMatches(record(6, "x", null), "a", "c");
+        assertMatches(record(2, "y", null), "b", "d");
+        assertMatches(record(3, "y", null), "b");
+        assertCandidates(record(3, "w", null));
+        assertCandidates(record(null, null, null));
+    }
+
+    @Test
+    public void testNumericKeys() {
+        add("a", "def = 0.0");
+        add("b", "abc = 5");
+        add("c", "a = 5");
+        assertMatches(record(5, null, 0.0f), "a", "b");
+        TypedSimpleBulletRecord record = record(null, null, null);
+        record.setLong("a", 5L);
+        assertMatches(record, "c");
+    }
+
+    @Test
+    public void testRanges() {
+        add("a", "abc > 5");
+        add("b", "abc <= 5");
+        add("c", "abc BETWEEN (3, 8)");
+        add("d", "10 < abc AND abc < 20 AND abc > 12");
+        add("e", "def >= 1.5 AND abc < 100");
+        Assert.assertEquals(index.getUnindexedSize(), 0);
+
+        assertMatches(record(5, null, null), "b", "c");
+        assertCandidates(record(5, null, null), "a", "b", "c");
+        assertMatches(record(6, null, null), "a", "c");
+        assertMatches(record(11, null, null), "a");
+        assertCandidates(record(11, null, null), "a");
+        assertMatches(record(13, null, 2.0f), "a", "d", "e");
+        assertMatches(record(200, null, 2.0f), "a");
+        assertCandidates(record(null, null, null));
+    }
+
+    @Test
+    public void testEqualitiesArePreferred() {
+        add("a", "abc > 5 AND c = 'x'");
+        add("b", "abc > 5 AND c IN ('x', 'y') AND c = 'y'");
+        assertCandidates(record(6, "z", null));
+        assertCandidates(record(6, "x", null), "a");
+        assertMatches(record(6, "y", null), "b");
+    }
+
+    @Test
+    public void testUnindexed() {
+        add("a", null);
+        add("b", "c = 'x' OR abc > 5");
+        add("c", "SIZEOF(eee) > 1");
+        add("d", "abc + 1 > 5");
+        add("e", "ddd['k'] = 'v'");
+        add("f", "c != 'x'");
+        add("g", "abc = 1");
+        Assert.assertEquals(index.getUnindexedSize(), 6);
+
+        TypedSimpleBulletRecord record = record(6, "y", null);
+        record.setStringList("eee", Arrays.asList("a", "b"));
+        record.setStringMap("ddd", Collections.singletonMap("k", "v"));
+        assertCandidates(record, "a", "b", "c", "d", "e", "f");
+        assertMatches(record, "a", "b", "c", "d", "e", "f");
+        assertMatches(record(1, "x", null), "a", "b", "g");
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        add("a", "c = 'x'");
+        add("b", "c = 'x'");
+        add("c", "abc BETWEEN (1, 2)");
+        add("d", "abc > 1");
+        add("e", "abc < 1");
+        add("f", null);
+        Assert.assertTrue(index.remove("a"));
+        Assert.assertFalse(index.remove("a"));
+        Assert.assertTrue(index.remove("c"));
+        Assert.assertTrue(index.remove("d"));
+        Assert.assertTrue(index.remove("e"));
+        Assert.assertTrue(index.remove("f"));
+        Assert.assertEquals(index.size(), 1);
+        assertMatches(record(2, "x", null), "b");
+
+        add("b", "c = 'y'");
+        Assert.assertEquals(index.size(), 1);
+        assertMatches(record(2, "x", null));
+        assertMatches(record(2, "y", null), "b");
+        Assert.assertTrue(index.remove("b"));
+        Assert.assertEquals(index.size(), 0);
+        assertCandidates(record(2, "y", null));
+    }
+
+    @Test
+    public void testManyQueriesMatchLikeTheirFilters() {
+        Random random = new Random(42);
+        String[] strings = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        Map<String, Filter> filters = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            String where;
+            int abc = random.nextInt(1000);
+            String c = strings[random.nextInt(strings.length)];
+            switch (random.nextInt(6)) {
+                case 0:
+                    where = "abc = " + abc + " AND c = '" + c + "'";
+                    break;
+                case 1:
+                    where = "abc IN (" + abc + ", " + (abc + 1) + ", " + (abc + 2) + ")";
+                    break;
+                case 2:
+                    where = "abc BETWEEN (" + abc + ", " + (abc + 10) + ") AND c != '" + c + "'";
+                    break;
+                case 3:
+                    where = "abc > " + abc + " AND abc < " + (abc + 20) + " AND def > 0.5";
+                    break;
+                case 4:
+                    where = "c = '" + c + "' AND def < " + random.nextFloat();
+                    break;
+                default:
+                    where = "c = '" + c + "' OR abc = " + abc + " AND c = 'i'";
+                    break;
+            }
+            Query query = query("SELECT * FROM STREAM(MAX, TIME) WHERE " + where);
+            String id = String.valueOf(i);
+            index.add(id, query);
+            filters.put(id, new Filter(query.getFilter()));
+        }
+        Assert.assertEquals(index.size(), 10000);
+
+        long candidates = 0;
+        for (int i = 0; i < 200; i++) {
+            TypedSimpleBulletRecord record = record(random.nextInt(1020), random.nextInt(10) == 0 ? "i" : strings[random.nextInt(strings.length)],
+                                                    random.nextFloat());
+            List<String> expected = new ArrayList<>();
+            filters.forEach((id, filter) -> {
+                if (filter.match(record)) {
+                    expected.add(id);
+                }
+            });
+            List<String> matches = index.match(record);
+            Assert.assertEquals(matches.size(), new HashSet<>(matches).size());
+            Assert.assertEquals(new HashSet<>(matches), new HashSet<>(expected));
+            candidates += index.getCandidates(record).size();
+        }
+        // Only the unindexed ORs and a fraction of the rest are checked against each record
+        Assert.assertTrue(candidates / 200 < 2500, "Average candidates: " + candidates / 200);
+    }
+
+    @Test
+    public void testManyRangesOnOneField() {
+        Random random = new Random(42);
+        Map<String, double[]> ranges = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // Nested, overlapping, single point and empty ranges
+            int lower = random.nextInt(1000);
+            int upper = lower + random.nextInt(200) - 10;
+            String id = String.valueOf(i);
+            add(id, "abc >= " + lower + " AND abc <= " + upper);
+            ranges.put(id, new double[]{lower, upper});
+            // Changes between lookups rebuild the ranges
+            if (i % 1000 == 999) {
+                String removed = String.valueOf(random.nextInt(i));
+                index.remove(removed);
+                ranges.remove(removed);
+                assertRangeCandidates(ranges, random.nextInt(1200) - 10);
+            }
+        }
+        Assert.assertEquals(index.getUnindexedSize(), 0);
+        for (int i = 0; i < 500; i++) {
+            assertRangeCandidates(ranges, random.nextInt(1220) - 10);
+        }
+        for (double[] range : ranges.values()) {
+            assertRangeCandidates(ranges, (int) range[0]);
+            assertRangeCandidates(ranges, (int) range[1]);
+        }
+    }
+
+    private void assertRangeCandidates(Map<String, double[]> ranges, int abc) {
+        List<String> expected = new ArrayList<>();
+        ranges.forEach((id, range) -> {
+            if (range[0] <= abc && abc <= range[1]) {
+                expected.add(id);
+            }
+        });
+        List<String> candidates = index.getCandidates(record(abc, null, null));
+        Assert.assertEquals(candidates.size(), expected.size());
+        Assert.assertEquals(new HashSet<>(candidates), new HashSet<>(expected));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.common.SerializerDeserializer;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.aggregations.Raw;
+import com.yahoo.bullet.query.tablefunctions.TableFunction;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+public class QueryCodecTest {
+    private static final String[] QUERIES = {
+        "SELECT * FROM STREAM()",
+        "SELECT abc, def AS x FROM STREAM(30000, TIME) WHERE abc > 5 AND c RLIKE 'f.*o' LIMIT 10",
+        "SELECT abc, COUNT(*) AS cnt, SUM(def) FROM STREAM() WHERE c IN ['a', 'b'] GROUP BY abc HAVING cnt > 10 ORDER BY cnt DESC",
+        "SELECT COUNT(DISTINCT abc, def) FROM STREAM()",
+        "SELECT TOP(10, 5, abc, def) FROM STREAM()",
+        "SELECT QUANTILE(abc, LINEAR, 11) FROM STREAM()",
+        "SELECT QUANTILE(abc, REGION, 0.0, 1.0, 0.25) FROM STREAM()",
+        "SELECT FREQ(abc, MANUAL, 1, 2, 5) FROM STREAM()",
+        "SELECT aaa[0].def AS x, ddd[c] AS y, bbb[c][c] AS z FROM STREAM() WINDOWING EVERY(5000, TIME, FIRST, 5000, TIME)",
+        "SELECT EXPLODE(ccc) AS z FROM STREAM() WINDOWING TUMBLING(5000, TIME)",
+        "SELECT * FROM STREAM() LATERAL VIEW OUTER EXPLODE(ddd) AS (k, v)",
+        "SELECT abc FROM (SELECT abc, COUNT(*) FROM STREAM(MAX, TIME) GROUP BY abc) WHERE abc IS NOT NULL ORDER BY abc",
+        "SELECT SIZEOF(c) AS a, IF(b, 1, -2) AS b, -5000000000 AS h, CAST(abc AS FLOAT) AS c, 1.5f AS d, 2.5 AS e, true AS f, NULL AS g FROM STREAM() WHERE abc BETWEEN (1, 5)"
+    };
+
+    private BulletConfig config;
+    private BulletQueryBuilder builder;
+
+    @BeforeClass
+    public void setup() {
+        config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+    }
+
+    private Query build(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql + " " + result.getErrors());
+        return result.getQuery();
+    }
+
+    private Query roundTrip(Query query) {
+        Query decoded = QueryCodec.decode(QueryCodec.encode(query));
+        decoded.configure(config);
+        return decoded;
+    }
+
+    private static byte[] withChecksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        int value = (int) crc.getValue();
+        bytes[bytes.length - 4] = (byte) (value >>> 24);
+        bytes[bytes.length - 3] = (byte) (value >>> 16);
+        bytes[bytes.length - 2] = (byte) (value >>> 8);
+        bytes[bytes.length - 1] = (byte) value;
+        return bytes;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (String bql : QUERIES) {
+            Query query = build(bql);
+            Query decoded = roundTrip(query);
+            Assert.assertEquals(decoded.toString(), query.toString(), bql);
+            Assert.assertEquals(decoded.getFilter(), query.getFilter(), bql);
+            Assert.assertEquals(decoded.getProjection().getFields(), query.getProjection().getFields(), bql);
+            Assert.assertEquals(decoded.getAggregation().getSize(), query.getAggregation().getSize(), bql);
+        }
+    }
+
+    @Test
+    public void testEncodingIsDeterministic() {
+        Query query = build(QUERIES[2]);
+        Assert.assertEquals(QueryCodec.encode(query), QueryCodec.encode(roundTrip(query)));
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() {
+        for (String bql : QUERIES) {
+            Query query = build(bql);
+            int encoded = QueryCodec.encode(query).length;
+            int serialized = SerializerDeserializer.toBytes(query).length;
+            Assert.assertTrue(encoded * 10 < serialized, bql + " " + encoded + " vs " + serialized);
+        }
+    }
+
+    @Test
+    public void testStringsAreStoredOnce() {
+        byte[] bytes = QueryCodec.encode(build("SELECT aaa FROM STREAM() WHERE SIZEOF(aaa) > 1 AND SIZEOF(aaa) < 5 ORDER BY SIZEOF(aaa)"));
+        String encoded = new String(bytes, StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(encoded.indexOf("aaa"), encoded.lastIndexOf("aaa"));
+    }
+
+    @Test
+    public void testManyStringsNearTheEnd() {
+        // The string indices at the end of the query exceed the number of bytes left after them
+        String values = IntStream.range(0, 1000).mapToObj(i -> "'value" + i + "'").collect(Collectors.joining(", "));
+        Query query = build("SELECT abc FROM STREAM() WHERE c IN (" + values + ")");
+        Assert.assertEquals(roundTrip(query).getFilter(), query.getFilter());
+    }
+
+    @Test
+    public void testDecodeRange() {
+        Query query = build(QUERIES[1]);
+        byte[] encoded = QueryCodec.encode(query);
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 7, encoded.length);
+        Query decoded = QueryCodec.decode(padded, 7, encoded.length);
+        decoded.configure(config);
+        Assert.assertEquals(decoded.toString(), query.toString());
+        Assert.assertThrows(IllegalArgumentException.class, () -> QueryCodec.decode(padded, 7, encoded.length + 4));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "The encoded query is too short\\.")
+    public void testNull() {
+        QueryCodec.decode(null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "The encoded query is too short\\.")
+    public void testTooShort() {
+        QueryCodec.decode(new byte[] {'B', 'Q', 'L'});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "The bytes are not an encoded query\\.")
+    public void testBadMagic() {
+        QueryCodec.decode(SerializerDeserializer.toBytes(build(QUERIES[0])));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "The checksum of the encoded query does not match\\.")
+    public void testCorrupted() {
+        byte[] bytes = QueryCodec.encode(build(QUERIES[1]));
+        bytes[bytes.length / 2] ^= 0x10;
+        QueryCodec.decode(bytes);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Unsupported encoded query version 2\\. Expected 1\\.")
+    public void testVersionMismatch() {
+        byte[] bytes = QueryCodec.encode(build(QUERIES[0]));
+        bytes[4] = 2;
+        QueryCodec.decode(withChecksum(bytes));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Unexpected end of the encoded query\\.")
+    public void testTruncated() {
+        byte[] bytes = QueryCodec.encode(build(QUERIES[1]));
+        QueryCodec.decode(withChecksum(Arrays.copyOfRange(bytes, 0, bytes.length - 6)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Unexpected trailing bytes in the encoded query\\.")
+    public void testTrailingBytes() {
+        byte[] bytes = QueryCodec.encode(build(QUERIES[1]));
+        QueryCodec.decode(withChecksum(Arrays.copyOf(bytes, bytes.length + 1)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Invalid string index in the encoded query\\.")
+    public void testInvalidStringIndex() {
+        // The projected field name is the first reference into the string table
+        byte[] bytes = QueryCodec.encode(build("SELECT abc FROM STREAM()"));
+        int index = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("abc") + 3;
+        // Skip the table function and projection tags and the field count
+        bytes[index + 3] = 5;
+        QueryCodec.decode(withChecksum(bytes));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Cannot encode the table function .*")
+    public void testUnsupportedComponent() {
+        TableFunction tableFunction = Mockito.mock(TableFunction.class);
+        QueryCodec.encode(new Query(tableFunction, new Projection(), null, new Raw(1), null, new Window(), 1L));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.aggregations.Raw;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class QueryCostEstimatorTest {
+    private BQLConfig config;
+    private BulletQueryBuilder builder;
+    private QueryCostEstimator estimator;
+
+    @BeforeClass
+    public void setup() {
+        config = new BQLConfig();
+        builder = new BulletQueryBuilder(config);
+        estimator = new QueryCostEstimator(config);
+    }
+
+    private long estimate(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors());
+        long cost = estimator.estimate(result.getQuery());
+        Assert.assertEquals(result.getCost(), cost);
+        return cost;
+    }
+
+    @Test
+    public void testRaw() {
+        // raw size 500 takes 8 units and a second of duration doubles the cost
+        Assert.assertEquals(estimate("SELECT * FROM STREAM(1000, TIME)"), 16L);
+    }
+
+    @Test
+    public void testDurationIsLogarithmic() {
+        Assert.assertEquals(estimate("SELECT * FROM STREAM(3000, TIME)"), 24L);
+        Assert.assertEquals(estimate("SELECT * FROM STREAM(7000, TIME)"), 32L);
+    }
+
+    @Test
+    public void testUnconfiguredQuery() {
+        Query query = new Query(new Projection(), null, new Raw(null), null, new Window(), null);
+        Assert.assertEquals(estimator.estimate(query), 0L);
+    }
+
+    @Test
+    public void testExpressions() {
+        // 1 for the projected field, 3 for the filter and 8 for the raw aggregation
+        Assert.assertEquals(estimate("SELECT abc FROM STREAM(1000, TIME) WHERE abc > 5"), 24L);
+        Assert.assertEquals(estimate("SELECT abc + 5 AS x, CAST(abc AS LONG) AS y FROM STREAM(1000, TIME) WHERE abc BETWEEN (1, 5)"), 34L);
+        Assert.assertEquals(estimate("SELECT aaa[0].def AS x FROM STREAM(1000, TIME) WHERE c IN ['a', 'b'] AND b IS NOT NULL"), 34L);
+        Assert.assertEquals(estimate("SELECT ddd[c] AS x FROM STREAM(1000, TIME)"), 20L);
+    }
+
+    @Test
+    public void testRegexIsWeighted() {
+        long regex = estimate("SELECT * FROM STREAM(1000, TIME) WHERE c RLIKE 'f[aeiou]o'");
+        long equals = estimate("SELECT * FROM STREAM(1000, TIME) WHERE c = 'f[aeiou]o'");
+        Assert.assertEquals(regex - equals, 2 * (QueryCostEstimator.REGEX_WEIGHT - QueryCostEstimator.EXPRESSION_WEIGHT));
+    }
+
+    @Test
+    public void testTableFunctions() {
+        Assert.assertEquals(estimate("SELECT EXPLODE(ccc) AS x FROM STREAM(1000, TIME)"), 38L);
+        Assert.assertEquals(estimate("SELECT * FROM STREAM(1000, TIME) LATERAL VIEW EXPLODE(ccc) AS x"), 38L);
+    }
+
+    @Test
+    public void testSketches() {
+        Assert.assertEquals(estimate("SELECT abc, COUNT(*) FROM STREAM(1000, TIME) GROUP BY abc"), 16L);
+        Assert.assertEquals(estimate("SELECT COUNT(DISTINCT abc) FROM STREAM(1000, TIME)"), 512L);
+        Assert.assertEquals(estimate("SELECT QUANTILE(abc, LINEAR, 11) FROM STREAM(1000, TIME)"), 32L);
+        Assert.assertEquals(estimate("SELECT TOP(10, abc) FROM STREAM(1000, TIME)"), 32L);
+    }
+
+    @Test
+    public void testSketchSizeFromConfig() {
+        BulletConfig bigSketches = new BQLConfig();
+        bigSketches.set(BulletConfig.COUNT_DISTINCT_AGGREGATION_SKETCH_ENTRIES, 65536);
+        bigSketches.validate();
+        BQLResult result = builder.buildQuery("SELECT COUNT(DISTINCT abc) FROM STREAM(1000, TIME)");
+        Assert.assertEquals(new QueryCostEstimator(bigSketches).estimate(result.getQuery()), 2048L);
+    }
+
+    @Test
+    public void testPostAggregations() {
+        Assert.assertEquals(estimate("SELECT abc, COUNT(*) AS cnt FROM STREAM(1000, TIME) GROUP BY abc HAVING cnt > 10 ORDER BY abc"), 24L);
+        Assert.assertEquals(estimate("SELECT abc + 1 AS x, COUNT(*) FROM STREAM(1000, TIME) GROUP BY abc"), 22L);
+    }
+
+    @Test
+    public void testOuterQueryIsNotScaledByDuration() {
+        long inner = estimate("SELECT abc, COUNT(*) FROM STREAM(1000, TIME) GROUP BY abc");
+        long outer = estimate("SELECT abc FROM (SELECT abc, COUNT(*) FROM STREAM(1000, TIME) GROUP BY abc)");
+        Assert.assertTrue(outer > inner);
+        Assert.assertTrue(outer - inner < inner);
+    }
+}
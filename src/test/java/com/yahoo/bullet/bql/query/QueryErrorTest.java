@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.tree.NodeLocation;
+import com.yahoo.bullet.common.BulletError;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class QueryErrorTest {
+    @Test
+    public void testFromError() {
+        for (QueryError error : QueryError.values()) {
+            Assert.assertEquals(QueryError.fromError(error.format()), error);
+        }
+        // Errors with the same message are told apart
+        BulletError notError = QueryError.NOT_HAS_WRONG_TYPE.format("NOT 'foo'", "STRING");
+        BulletError numericError = QueryError.EXPECTED_NUMERIC_OR_BOOLEAN_TYPE.format("NOT 'foo'", "STRING");
+        Assert.assertEquals(notError.getError(), numericError.getError());
+        Assert.assertEquals(QueryError.fromError(notError), QueryError.NOT_HAS_WRONG_TYPE);
+        Assert.assertEquals(QueryError.fromError(numericError), QueryError.EXPECTED_NUMERIC_OR_BOOLEAN_TYPE);
+        NodeLocation location = new NodeLocation(3, 4);
+        Assert.assertEquals(QueryError.fromError(QueryError.FIELD_NOT_IN_SCHEMA.format(location, "foo")), QueryError.FIELD_NOT_IN_SCHEMA);
+        Assert.assertEquals(QueryError.fromError(QueryError.QUERY_TOO_LONG.formatWithResolution("Shorten it.", 100)), QueryError.QUERY_TOO_LONG);
+        Assert.assertEquals(QueryError.fromError(QueryError.GENERIC_PARSING_ERROR.format("1:1: mismatched input")), QueryError.GENERIC_PARSING_ERROR);
+        Assert.assertEquals(QueryError.fromError(QueryError.GENERIC_ERROR.format("null")), QueryError.GENERIC_ERROR);
+        Assert.assertNull(QueryError.fromError(new BulletError("Something else.", Collections.singletonList("Fix it."))));
+        Assert.assertNull(QueryError.fromError(new BulletError(QueryError.EMPTY_QUERY.format().getError(), "Please specify a non-empty query.")));
+    }
+}
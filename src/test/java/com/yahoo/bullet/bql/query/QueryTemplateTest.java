@@ -0,0 +1,289 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.util.CompiledExpressionFormatter;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.expressions.BinaryExpression;
+import com.yahoo.bullet.record.simple.TypedSimpleBulletRecord;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class QueryTemplateTest {
+    private static final BQLParser PARSER = new BQLParser();
+
+    private BulletQueryBuilder builder;
+    private BulletQueryBuilder uncachedBuilder;
+
+    @BeforeMethod
+    public void setup() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+        config.set(BQLConfig.BQL_QUERY_TEMPLATE_CACHE_SIZE, 0);
+        uncachedBuilder = new BulletQueryBuilder(config);
+    }
+
+    private static QueryTemplate template(String bql) {
+        return new QueryTemplate(PARSER.createQueryNode(bql));
+    }
+
+    private static void assertSameKey(String bqlA, String bqlB) {
+        Assert.assertEquals(template(bqlA).getKey(), template(bqlB).getKey());
+    }
+
+    private static void assertDifferentKey(String bqlA, String bqlB) {
+        Assert.assertNotEquals(template(bqlA).getKey(), template(bqlB).getKey());
+    }
+
+    // Builds the query, checks that it is the same as the one built without the cache and returns it
+    private Query assertBuild(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        BQLResult expected = uncachedBuilder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql);
+        Assert.assertFalse(expected.hasErrors(), bql);
+        Assert.assertEquals(result.getQuery().toString(), expected.getQuery().toString());
+        Assert.assertEquals(result.getQuery().getFilter(), expected.getQuery().getFilter());
+        Assert.assertEquals(result.getCost(), expected.getCost());
+        Assert.assertEquals(result.getBql(), expected.getBql());
+        return result.getQuery();
+    }
+
+    private static String format(Query query) {
+        return CompiledExpressionFormatter.format(query.getFilter());
+    }
+
+    private void assertHits(long hits, long misses) {
+        Assert.assertEquals(builder.getTemplateCache().getHits(), hits);
+        Assert.assertEquals(builder.getTemplateCache().getMisses(), misses);
+    }
+
+    @Test
+    public void testKey() {
+        QueryTemplate template = template("SELECT abc + 1 FROM STREAM(1000, TIME) WHERE abc = 5 AND c != 'a' AND abc < 5 AND b LIMIT 10");
+        Assert.assertEquals(template.getKey(), "SELECT abc + 1 FROM STREAM(1000, TIME) WHERE abc = ?Integer#0 AND c != ?String#1 AND abc < ?Integer#0 AND b LIMIT 10");
+        Assert.assertEquals(template.getParameters().size(), 2);
+        Assert.assertEquals(template.getParameters().get(0).getValue(), 5);
+        Assert.assertEquals(template.getParameters().get(1).getValue(), "a");
+    }
+
+    @Test
+    public void testKeyOnlyParameterizesWhere() {
+        assertSameKey("SELECT abc FROM STREAM() WHERE abc > 1", "SELECT abc FROM STREAM() WHERE abc > 2");
+        assertDifferentKey("SELECT abc + 1 FROM STREAM() WHERE abc > 1", "SELECT abc + 2 FROM STREAM() WHERE abc > 1");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE abc > 1 LIMIT 1", "SELECT * FROM STREAM() WHERE abc > 1 LIMIT 2");
+        assertDifferentKey("SELECT abc, COUNT(*) FROM STREAM() GROUP BY abc HAVING COUNT(*) > 1",
+                           "SELECT abc, COUNT(*) FROM STREAM() GROUP BY abc HAVING COUNT(*) > 2");
+        assertDifferentKey("SELECT a FROM (SELECT abc AS a FROM STREAM()) WHERE a > 1", "SELECT a FROM (SELECT abc AS a FROM STREAM()) WHERE a > 2");
+        assertSameKey("SELECT a FROM (SELECT abc AS a FROM STREAM() WHERE abc > 1)", "SELECT a FROM (SELECT abc AS a FROM STREAM() WHERE abc > 2)");
+    }
+
+    @Test
+    public void testKeyTypesAndRepetitions() {
+        assertDifferentKey("SELECT * FROM STREAM() WHERE abc > 1", "SELECT * FROM STREAM() WHERE abc > 1L");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE abc > 1", "SELECT * FROM STREAM() WHERE abc > 1.5");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE c = 'a'", "SELECT * FROM STREAM() WHERE c = NULL");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE abc > 1 AND abc < 1", "SELECT * FROM STREAM() WHERE abc > 1 AND abc < 2");
+        assertSameKey("SELECT * FROM STREAM() WHERE abc > 1 AND abc < 1", "SELECT * FROM STREAM() WHERE abc > 2 AND abc < 2");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE abc IN [1, 2]", "SELECT * FROM STREAM() WHERE abc IN [1, 2, 3]");
+    }
+
+    @Test
+    public void testKeyKeepsLogicalGrouping() {
+        assertDifferentKey("SELECT * FROM STREAM() WHERE b AND (c = 'a' OR abc > 5)", "SELECT * FROM STREAM() WHERE (b AND c = 'a') OR abc > 5");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE NOT (b AND b)", "SELECT * FROM STREAM() WHERE NOT b AND b");
+        assertDifferentKey("SELECT a FROM (SELECT abc AS a, b FROM STREAM()) WHERE b AND (a > 1 OR a < 0)",
+                           "SELECT a FROM (SELECT abc AS a, b FROM STREAM()) WHERE (b AND a > 1) OR a < 0");
+        assertSameKey("SELECT * FROM STREAM() WHERE b AND (c = 'a' OR abc > 5)", "SELECT * FROM STREAM() WHERE b AND (c = 'b' OR abc > 6)");
+        Assert.assertEquals(template("SELECT * FROM STREAM() WHERE b AND (c = 'a' OR abc > 5)").getKey(),
+                            "SELECT * FROM STREAM() WHERE b AND (c = ?String#0 OR abc > ?Integer#1)");
+    }
+
+    @Test
+    public void testRebindKeepsLogicalGrouping() {
+        assertBuild("SELECT * FROM STREAM() WHERE b AND (c = 'a' OR abc > 5)");
+        Query query = assertBuild("SELECT * FROM STREAM() WHERE (b AND c = 'a') OR abc > 5");
+        assertHits(0, 2);
+        Assert.assertEquals(format(query), "(b AND (c = 'a')) OR (abc > 5)");
+    }
+
+    @Test
+    public void testKeyKeepsPatterns() {
+        assertDifferentKey("SELECT * FROM STREAM() WHERE c RLIKE 'a.*'", "SELECT * FROM STREAM() WHERE c RLIKE '.*a'");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE c NOT RLIKE ANY ['a.*']", "SELECT * FROM STREAM() WHERE c NOT RLIKE ANY ['.*a']");
+        assertDifferentKey("SELECT * FROM STREAM() WHERE c LIKE 'a%'", "SELECT * FROM STREAM() WHERE c LIKE '%a'");
+        assertSameKey("SELECT * FROM STREAM() WHERE c LIKE 'a%' AND abc = 1", "SELECT * FROM STREAM() WHERE c LIKE 'a%' AND abc = 2");
+    }
+
+    @Test
+    public void testRebind() {
+        assertBuild("SELECT abc, c FROM STREAM(1000, TIME) WHERE abc > 5 AND c = 'foo' LIMIT 10");
+        assertHits(0, 1);
+        Query query = assertBuild("SELECT abc, c FROM STREAM(1000, TIME) WHERE abc > 7 AND c = 'bar' LIMIT 10");
+        assertHits(1, 1);
+        Assert.assertEquals(format(query), "(abc > 7) AND (c = 'bar')");
+
+        // The original plan is unchanged
+        Query other = assertBuild("SELECT abc, c FROM STREAM(1000, TIME) WHERE abc > 5 AND c = 'foo' LIMIT 10");
+        assertHits(2, 1);
+        Assert.assertNotSame(other, query);
+        Assert.assertNotSame(other.getFilter(), query.getFilter());
+        Assert.assertEquals(format(other), "(abc > 5) AND (c = 'foo')");
+    }
+
+    @Test
+    public void testBoundQueriesShareNothing() {
+        String bql = "SELECT abc, COUNT(*) AS n FROM STREAM(1000, TIME) WHERE abc > %d AND c = 'foo' GROUP BY abc ORDER BY n WINDOWING TUMBLING(500, TIME)";
+        Query first = assertBuild(String.format(bql, 1));
+        Query second = assertBuild(String.format(bql, 2));
+        Query third = assertBuild(String.format(bql, 3));
+        assertHits(2, 1);
+        assertShareNothing(first, second);
+        assertShareNothing(second, third);
+        assertShareNothing(first, third);
+
+        bql = "SELECT a FROM (SELECT abc AS a FROM STREAM() WHERE abc > %d) WHERE a < 5";
+        first = assertBuild(String.format(bql, 1));
+        second = assertBuild(String.format(bql, 2));
+        assertHits(3, 2);
+        assertShareNothing(first, second);
+        assertShareNothing(first.getOuterQuery(), second.getOuterQuery());
+
+        // Configuring a bound query does not change the others
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.QUERY_DEFAULT_DURATION, 1000L);
+        config.set(BulletConfig.QUERY_MAX_DURATION, 1000L);
+        config.validate();
+        second.configure(config);
+        Assert.assertEquals(second.getDuration(), (Long) 1000L);
+        Assert.assertNotEquals(first.getDuration(), (Long) 1000L);
+        Assert.assertNotEquals(assertBuild(String.format(bql, 3)).getDuration(), (Long) 1000L);
+    }
+
+    private static void assertShareNothing(Query a, Query b) {
+        Assert.assertNotSame(a, b);
+        assertNotShared(a.getProjection(), b.getProjection());
+        assertNotShared(a.getProjection().getFields(), b.getProjection().getFields());
+        assertNotShared(a.getFilter(), b.getFilter());
+        assertNotShared(a.getAggregation(), b.getAggregation());
+        assertNotShared(a.getWindow(), b.getWindow());
+        assertNotShared(a.getPostAggregations(), b.getPostAggregations());
+        if (a.getPostAggregations() != null) {
+            assertNotShared(a.getPostAggregations().get(0), b.getPostAggregations().get(0));
+        }
+        // The parts of the filter that are not parameters are not shared either
+        if (a.getFilter() instanceof BinaryExpression) {
+            assertNotShared(((BinaryExpression) a.getFilter()).getLeft(), ((BinaryExpression) b.getFilter()).getLeft());
+        }
+    }
+
+    private static void assertNotShared(Object a, Object b) {
+        if (a != null || b != null) {
+            Assert.assertNotSame(a, b);
+        }
+    }
+
+    @Test
+    public void testRebindEvaluates() {
+        assertBuild("SELECT * FROM STREAM() WHERE abc BETWEEN (1, 10) AND SIZEOF(eee) != 2 AND c IN ('a', 'b')");
+        Query query = assertBuild("SELECT * FROM STREAM() WHERE abc BETWEEN (20, 30) AND SIZEOF(eee) != 0 AND c IN ('x', 'y')");
+        assertHits(1, 1);
+
+        TypedSimpleBulletRecord record = new TypedSimpleBulletRecord();
+        record.setInteger("abc", 25);
+        record.setString("c", "y");
+        record.setStringList("eee", Collections.singletonList("a"));
+        Assert.assertTrue((Boolean) query.getFilter().getEvaluator().evaluate(record).getValue());
+        record.setString("c", "a");
+        Assert.assertFalse((Boolean) query.getFilter().getEvaluator().evaluate(record).getValue());
+    }
+
+    @Test
+    public void testRebindRepeatedLiterals() {
+        assertBuild("SELECT abc + 1 AS x FROM STREAM() WHERE abc + 1 > 5 AND abc < 5");
+        Query query = assertBuild("SELECT abc + 1 AS x FROM STREAM() WHERE abc + 2 > 3 AND abc < 3");
+        assertHits(1, 1);
+        Assert.assertEquals(format(query), "((abc + 2) > 3) AND (abc < 3)");
+        // The projection shared the expression of the original filter and is unchanged
+        Assert.assertEquals(CompiledExpressionFormatter.format(query.getProjection().getFields().get(0).getValue()), "abc + 1");
+
+        // Different repetitions are a different template
+        assertBuild("SELECT abc + 1 AS x FROM STREAM() WHERE abc + 1 > 3 AND abc < 4");
+        assertHits(1, 2);
+    }
+
+    @Test
+    public void testRebindWithPatternsAndCasts() {
+        assertBuild("SELECT * FROM STREAM() WHERE c LIKE 'a%' AND c RLIKE '.*b' AND CAST(abc AS DOUBLE) > 1.5");
+        assertBuild("SELECT * FROM STREAM() WHERE c LIKE 'a%' AND c RLIKE '.*b' AND CAST(abc AS DOUBLE) > 2.5");
+        assertHits(1, 1);
+        assertBuild("SELECT * FROM STREAM() WHERE c LIKE 'b%' AND c RLIKE '.*b' AND CAST(abc AS DOUBLE) > 2.5");
+        assertHits(1, 2);
+    }
+
+    @Test
+    public void testRebindOtherQueryTypes() {
+        String[][] variants = {
+            {"SELECT COUNT(*), abc FROM STREAM() WHERE def > 1.0 GROUP BY abc", "SELECT COUNT(*), abc FROM STREAM() WHERE def > 2.0 GROUP BY abc"},
+            {"SELECT TOP(10, c) FROM STREAM() WHERE abc != 3", "SELECT TOP(10, c) FROM STREAM() WHERE abc != 4"},
+            {"SELECT QUANTILE(def, LINEAR, 5) FROM STREAM() WHERE c = 'x'", "SELECT QUANTILE(def, LINEAR, 5) FROM STREAM() WHERE c = 'y'"},
+            {"SELECT k FROM STREAM() LATERAL VIEW EXPLODE(eee) AS k WHERE k = 'x'", "SELECT k FROM STREAM() LATERAL VIEW EXPLODE(eee) AS k WHERE k = 'y'"},
+            {"SELECT a FROM (SELECT abc AS a FROM STREAM() WHERE abc > 1) WHERE a < 5", "SELECT a FROM (SELECT abc AS a FROM STREAM() WHERE abc > 2) WHERE a < 5"},
+            {"SELECT * FROM STREAM() WHERE IF(b, abc, 1) > 2 WINDOWING TUMBLING(1000, TIME)", "SELECT * FROM STREAM() WHERE IF(b, abc, 3) > 4 WINDOWING TUMBLING(1000, TIME)"}
+        };
+        for (String[] variant : variants) {
+            assertBuild(variant[0]);
+            assertBuild(variant[1]);
+        }
+        assertHits(variants.length, variants.length);
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        Assert.assertTrue(builder.buildQuery("SELECT * FROM STREAM() WHERE abc = 'a'").hasErrors());
+        Assert.assertTrue(builder.buildQuery("SELECT * FROM STREAM() WHERE abc = 'b'").hasErrors());
+        assertHits(0, 2);
+        Assert.assertEquals(builder.getTemplateCache().size(), 0);
+    }
+
+    @Test
+    public void testExplainIsNotCached() {
+        BQLResult result = builder.buildQuery("EXPLAIN SELECT * FROM STREAM() WHERE abc = 1");
+        Assert.assertTrue(result.isExplain());
+        Assert.assertEquals(builder.getTemplateCache().size(), 0);
+        builder.buildQuery("SELECT * FROM STREAM() WHERE abc = 1");
+        Assert.assertTrue(builder.buildQuery("EXPLAIN SELECT * FROM STREAM() WHERE abc = 2").isExplain());
+        assertHits(0, 1);
+    }
+
+    @Test
+    public void testCostIsCheckedOnHit() {
+        BulletConfig config = new BulletConfig();
+        config.set(BQLConfig.BQL_MAX_QUERY_COST, 30L);
+        BulletQueryBuilder costBuilder = new BulletQueryBuilder(config);
+        Assert.assertFalse(costBuilder.buildQuery("SELECT * FROM STREAM(1000, TIME) WHERE abc = 1").hasErrors());
+        Assert.assertFalse(costBuilder.buildQuery("SELECT * FROM STREAM(1000, TIME) WHERE abc = 2").hasErrors());
+        Assert.assertEquals(costBuilder.getTemplateCache().getHits(), 1L);
+        Assert.assertTrue(costBuilder.buildQuery("SELECT * FROM STREAM(100000, TIME) WHERE abc = 1").hasErrors());
+    }
+
+    @Test
+    public void testDisabled() {
+        uncachedBuilder.buildQuery("SELECT * FROM STREAM() WHERE abc = 1");
+        uncachedBuilder.buildQuery("SELECT * FROM STREAM() WHERE abc = 2");
+        Assert.assertEquals(uncachedBuilder.getTemplateCache().getHits(), 0L);
+        Assert.assertEquals(uncachedBuilder.getTemplateCache().getMisses(), 0L);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.RetainedSizeEstimator.Component;
+import com.yahoo.bullet.bql.query.RetainedSizeEstimator.RetainedSize;
+import com.yahoo.bullet.query.Field;
+import com.yahoo.bullet.query.Projection;
+import com.yahoo.bullet.query.Query;
+import com.yahoo.bullet.query.Window;
+import com.yahoo.bullet.query.aggregations.Raw;
+import com.yahoo.bullet.query.expressions.FieldExpression;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class RetainedSizeEstimatorTest {
+    private BulletQueryBuilder builder;
+
+    @BeforeClass
+    public void setup() {
+        builder = new BulletQueryBuilder(new BQLConfig());
+    }
+
+    private RetainedSize estimate(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors());
+        RetainedSize size = result.getRetainedSize();
+        long total = 0L;
+        for (Component component : Component.values()) {
+            total += size.getBytes(component);
+        }
+        Assert.assertEquals(size.getTotalBytes(), total);
+        return size;
+    }
+
+    @Test
+    public void testObjectSizes() {
+        Assert.assertEquals(RetainedSizeEstimator.estimate(1), 16L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate(1L), 24L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate("ab"), 48L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate("abcdefghi"), 56L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate("\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d"), 64L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate(new int[4]), 32L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate(Component.QUERY), 0L);
+    }
+
+    @Test
+    public void testCollectionSizes() {
+        Assert.assertEquals(RetainedSizeEstimator.estimate(new ArrayList<>(Collections.singletonList("ab"))), 96L);
+        // The shared string is only counted once
+        Assert.assertEquals(RetainedSizeEstimator.estimate(new ArrayList<>(Arrays.asList("ab", "ab"))), 96L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate(new HashMap<>(Collections.singletonMap("ab", 1))), 224L);
+        Assert.assertEquals(RetainedSizeEstimator.estimate(new HashMap<>()), 48L);
+    }
+
+    @Test
+    public void testUnconfiguredQuery() {
+        Query query = new Query(new Projection(), null, new Raw(null), null, new Window(), null);
+        RetainedSize size = RetainedSizeEstimator.estimate(query);
+        Assert.assertEquals(size.getBytes(Component.QUERY), 48L);
+        Assert.assertEquals(size.getBytes(Component.PROJECTION), 24L);
+        Assert.assertEquals(size.getBytes(Component.FILTER), 0L);
+        Assert.assertEquals(size.getBytes(Component.AGGREGATION), 24L);
+        Assert.assertEquals(size.getBytes(Component.WINDOW), 32L);
+        Assert.assertEquals(size.getTotalBytes(), 128L);
+        Assert.assertEquals(size.toString(), "{QUERY: 48B, PROJECTION: 24B, AGGREGATION: 24B, WINDOW: 32B, TOTAL: 128B}");
+    }
+
+    @Test
+    public void testSharedObjectsCountTowardsTheFirstComponent() {
+        FieldExpression expression = new FieldExpression("abc");
+        Projection projection = new Projection(Collections.singletonList(new Field("abc", expression)), false);
+        Query query = new Query(projection, expression, new Raw(null), null, new Window(), null);
+        RetainedSize size = RetainedSizeEstimator.estimate(query);
+        Assert.assertTrue(size.getBytes(Component.PROJECTION) > 0L);
+        Assert.assertEquals(size.getBytes(Component.FILTER), 0L);
+    }
+
+    @Test
+    public void testComponents() {
+        RetainedSize size = estimate("SELECT abc, c AS foo FROM STREAM(MAX, TIME) LATERAL VIEW EXPLODE(eee) AS x " +
+                                     "WHERE abc > 5 ORDER BY abc WINDOWING TUMBLING(1000, TIME) LIMIT 10");
+        for (Component component : Component.values()) {
+            Assert.assertEquals(size.getBytes(component) > 0L, component != Component.OUTER_QUERY, component.name());
+        }
+        Assert.assertTrue(estimate("SELECT abc FROM (SELECT abc FROM STREAM())").getBytes(Component.OUTER_QUERY) > 0L);
+    }
+
+    @Test
+    public void testFilterGrowsWithTheInList() {
+        long small = estimate("SELECT * FROM STREAM() WHERE abc IN (" + values(10) + ")").getBytes(Component.FILTER);
+        long large = estimate("SELECT * FROM STREAM() WHERE abc IN (" + values(1000) + ")").getBytes(Component.FILTER);
+        Assert.assertTrue(large > small * 50L);
+        Assert.assertTrue(large < small * 150L);
+    }
+
+    @Test
+    public void testRetainedSizeInResult() {
+        BQLResult result = builder.buildQuery("SELECT * FROM STREAM()");
+        Assert.assertSame(result.getRetainedSize(), result.getRetainedSize());
+        Assert.assertEquals(result.getRetainedSize().getTotalBytes(), RetainedSizeEstimator.estimate(result.getQuery()).getTotalBytes());
+        Assert.assertNull(builder.buildQuery("not a valid query").getRetainedSize());
+        Assert.assertNull(builder.buildQuery("EXPLAIN SELECT * FROM STREAM()").getRetainedSize());
+    }
+
+    private static String values(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+    }
+}
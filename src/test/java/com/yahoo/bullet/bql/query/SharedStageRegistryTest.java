@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.query.StageSignatures.Signature;
+import com.yahoo.bullet.bql.query.StageSignatures.Stage;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.Query;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class SharedStageRegistryTest {
+    private BulletQueryBuilder builder;
+    private SharedStageRegistry registry;
+
+    @BeforeMethod
+    public void setup() {
+        BulletConfig config = new BulletConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+        registry = new SharedStageRegistry();
+    }
+
+    private Query query(String bql) {
+        return builder.buildQuery(bql).getQuery();
+    }
+
+    @Test
+    public void testGroups() {
+        StageSignatures a = registry.register("a", query("SELECT COUNT(*) FROM STREAM() WHERE abc > 5 AND c = 'x'"));
+        registry.register("b", query("SELECT SUM(def) FROM STREAM() WHERE c = 'x' AND abc > 5"));
+        registry.register("c", query("SELECT * FROM STREAM() WHERE abc > 6"));
+        Assert.assertEquals(registry.size(), 3);
+
+        Assert.assertEquals(registry.getGroup(a.getFilter()), new HashSet<>(Arrays.asList("a", "b")));
+        Map<Signature, Set<String>> shared = registry.getSharedGroups(Stage.FILTER);
+        Assert.assertEquals(shared.size(), 1);
+        Assert.assertEquals(shared.get(a.getFilter()), new HashSet<>(Arrays.asList("a", "b")));
+        Assert.assertTrue(registry.getSharedGroups(Stage.PROJECTION).isEmpty());
+        Assert.assertEquals(registry.getSignatures("a"), a);
+
+        Assert.assertTrue(registry.unregister("b"));
+        Assert.assertFalse(registry.unregister("b"));
+        Assert.assertEquals(registry.getGroup(a.getFilter()), Collections.singleton("a"));
+        Assert.assertTrue(registry.getSharedGroups(Stage.FILTER).isEmpty());
+
+        Assert.assertTrue(registry.unregister("a"));
+        Assert.assertTrue(registry.getGroup(a.getFilter()).isEmpty());
+        Assert.assertNull(registry.getSignatures("a"));
+        Assert.assertEquals(registry.size(), 1);
+    }
+
+    @Test
+    public void testReregister() {
+        StageSignatures first = registry.register("a", query("SELECT abc FROM STREAM() WHERE abc > 5"));
+        StageSignatures second = registry.register("a", query("SELECT abc FROM STREAM() WHERE abc > 6"));
+        Assert.assertEquals(registry.size(), 1);
+        Assert.assertTrue(registry.getGroup(first.getFilter()).isEmpty());
+        Assert.assertTrue(registry.getGroup(first.getProjection()).isEmpty());
+        Assert.assertEquals(registry.getGroup(second.getProjection()), Collections.singleton("a"));
+    }
+
+    @Test
+    public void testGroupIsACopy() {
+        StageSignatures signatures = registry.register("a", query("SELECT * FROM STREAM() WHERE b"));
+        registry.getGroup(signatures.getFilter()).add("b");
+        Assert.assertEquals(registry.getGroup(signatures.getFilter()), Collections.singleton("a"));
+    }
+}
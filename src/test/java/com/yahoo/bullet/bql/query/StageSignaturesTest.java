@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.query;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.query.StageSignatures.Stage;
+import com.yahoo.bullet.common.BulletConfig;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class StageSignaturesTest {
+    private BQLConfig config;
+    private BulletQueryBuilder builder;
+
+    @BeforeClass
+    public void setup() {
+        BulletConfig bulletConfig = new BulletConfig();
+        bulletConfig.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        bulletConfig.validate();
+        config = new BQLConfig(bulletConfig);
+        builder = new BulletQueryBuilder(bulletConfig);
+    }
+
+    private StageSignatures signatures(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql);
+        return new StageSignatures(result.getQuery());
+    }
+
+    private void assertSame(Stage stage, String bqlA, String bqlB) {
+        StageSignatures.Signature a = signatures(bqlA).get(stage);
+        StageSignatures.Signature b = signatures(bqlB).get(stage);
+        Assert.assertNotNull(a);
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertEquals(a.getHash(), b.getHash());
+        Assert.assertEquals(a.toString(), b.toString());
+    }
+
+    private void assertDifferent(Stage stage, String bqlA, String bqlB) {
+        Assert.assertNotEquals(signatures(bqlA).get(stage), signatures(bqlB).get(stage));
+    }
+
+    @Test
+    public void testFilter() {
+        StageSignatures signatures = signatures("SELECT * FROM STREAM() WHERE abc > 5 AND c = 'foo'");
+        Assert.assertEquals(signatures.getFilter().getCanonical(), "WHERE AND(EQUALS('foo', c:STRING), GREATER_THAN(abc:INTEGER, 5))");
+        Assert.assertEquals(signatures.getFilter().getStage(), Stage.FILTER);
+        Assert.assertNull(signatures.getTableFunction());
+        Assert.assertNull(signatures.getProjection());
+        Assert.assertEquals(signatures.getAll().size(), 1);
+        Assert.assertTrue(signatures.toString().length() > 0);
+    }
+
+    @Test
+    public void testFilterIsShared() {
+        assertSame(Stage.FILTER, "SELECT * FROM STREAM() WHERE abc > 5 AND c = 'foo'", "SELECT COUNT(*) FROM STREAM() WHERE 'foo' = c AND abc > 5");
+        assertSame(Stage.FILTER, "SELECT abc FROM STREAM() WHERE (b AND abc > 5) AND c = 'foo'", "SELECT TOP(10, c) FROM STREAM() WHERE b AND (c = 'foo' AND abc > 5)");
+        assertDifferent(Stage.FILTER, "SELECT * FROM STREAM() WHERE abc > 5", "SELECT * FROM STREAM() WHERE abc > 6");
+        assertDifferent(Stage.FILTER, "SELECT * FROM STREAM() WHERE abc > 5", "SELECT * FROM STREAM() WHERE 5 > abc");
+        assertDifferent(Stage.FILTER, "SELECT * FROM STREAM() WHERE b AND (c = 'a' OR abc > 5)", "SELECT * FROM STREAM() WHERE (b AND c = 'a') OR abc > 5");
+        assertDifferent(Stage.FILTER, "SELECT * FROM STREAM() WHERE abc > 5", "SELECT * FROM STREAM() LATERAL VIEW EXPLODE(eee) AS x WHERE abc > 5");
+    }
+
+    @Test
+    public void testProjection() {
+        StageSignatures signatures = signatures("SELECT abc, c AS d FROM STREAM() WHERE b");
+        Assert.assertEquals(signatures.getProjection().getCanonical(), "WHERE b:BOOLEAN | SELECT NO_COPY (abc = abc:INTEGER, d = c:STRING)");
+        assertSame(Stage.PROJECTION, "SELECT abc, c AS d FROM STREAM() WHERE b", "SELECT abc, c AS d FROM STREAM() WHERE b LIMIT 5");
+        assertDifferent(Stage.PROJECTION, "SELECT abc, c AS d FROM STREAM() WHERE b", "SELECT abc, c AS d FROM STREAM()");
+        assertDifferent(Stage.PROJECTION, "SELECT abc, c AS d FROM STREAM()", "SELECT c AS d, abc FROM STREAM()");
+        Assert.assertNull(signatures("SELECT * FROM STREAM()").getProjection());
+        Assert.assertTrue(signatures("SELECT * FROM STREAM()").getAll().isEmpty());
+    }
+
+    @Test
+    public void testTableFunction() {
+        StageSignatures signatures = signatures("SELECT x FROM STREAM() LATERAL VIEW OUTER EXPLODE(eee) AS x WHERE x = 'a'");
+        Assert.assertEquals(signatures.getTableFunction().getCanonical(), "LATERAL VIEW (OUTER EXPLODE(eee:STRING_LIST, x, null))");
+        Assert.assertEquals(signatures.getFilter().getCanonical(), "LATERAL VIEW (OUTER EXPLODE(eee:STRING_LIST, x, null)) | WHERE EQUALS('a', x:STRING)");
+        Assert.assertEquals(signatures.getAll().size(), 3);
+        Assert.assertEquals(signatures("SELECT EXPLODE(ddd) AS (k, v) FROM STREAM()").getTableFunction().getCanonical(), "EXPLODE(ddd:STRING_MAP, k, v)");
+        assertDifferent(Stage.TABLE_FUNCTION, "SELECT EXPLODE(ddd) AS (k, v) FROM STREAM()", "SELECT OUTER EXPLODE(ddd) AS (k, v) FROM STREAM()");
+    }
+
+    @Test
+    public void testQueryBuilderSignatures() {
+        QueryBuilder queryBuilder = new QueryBuilder(QueryProcessor.visit(new BQLParser().createQueryNode("SELECT abc FROM STREAM() WHERE abc > 1")),
+                                                     config.getSchema());
+        Assert.assertEquals(queryBuilder.getSignatures().getFilter(), signatures("SELECT abc FROM STREAM() WHERE abc > 1").getFilter());
+
+        queryBuilder = new QueryBuilder(QueryProcessor.visit(new BQLParser().createQueryNode("SELECT foo FROM STREAM()")), config.getSchema());
+        Assert.assertNull(queryBuilder.getSignatures());
+    }
+}
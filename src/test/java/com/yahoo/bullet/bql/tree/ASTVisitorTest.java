@@ -123,6 +123,13 @@ public class ASTVisitorTest {
         Mockito.verify(visitor).visitNullPredicate(nullPredicate, null);
     }
 
+    @Test
+    public void testVisitLikePredicate() {
+        LikePredicateNode likePredicate = new LikePredicateNode(null, null, false, false, null);
+        visitor.process(likePredicate);
+        Mockito.verify(visitor).visitLikePredicate(likePredicate, null);
+    }
+
     @Test
     public void testVisitBetweenPredicate() {
         BetweenPredicateNode betweenPredicate = new BetweenPredicateNode(null, null, null, false, null);
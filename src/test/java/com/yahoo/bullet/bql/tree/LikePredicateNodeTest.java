@@ -0,0 +1,21 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.tree;
+
+import org.testng.annotations.Test;
+
+import static com.yahoo.bullet.bql.util.QueryUtil.identifier;
+
+public class LikePredicateNodeTest {
+    @Test
+    public void testEqualsAndHashCode() {
+        NodeUtils.testEqualsAndHashCode(() -> new LikePredicateNode(identifier("abc"), identifier("def"), true, true, null),
+                                        new LikePredicateNode(identifier("---"), identifier("def"), true, true, null),
+                                        new LikePredicateNode(identifier("abc"), identifier("---"), true, true, null),
+                                        new LikePredicateNode(identifier("abc"), identifier("def"), false, true, null),
+                                        new LikePredicateNode(identifier("abc"), identifier("def"), true, false, null));
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.tree;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ParameterNodeTest {
+    @Test
+    public void testEqualsAndHashCode() {
+        NodeUtils.testEqualsAndHashCode(() -> new ParameterNode("x", 0, null), new ParameterNode(null, 0, null), new ParameterNode("x", 1, null));
+    }
+
+    @Test
+    public void testName() {
+        Assert.assertEquals(new ParameterNode(null, 0, null).getName(), "?");
+        Assert.assertEquals(new ParameterNode("x", 0, null).getName(), ":x");
+        Assert.assertTrue(new ParameterNode("x", 0, null).isNamed());
+    }
+}
@@ -176,4 +176,18 @@ public class QueryNodeTest {
         Assert.assertNotEquals(nodeA, nodeB);
         Assert.assertNotEquals(nodeA.hashCode(), nodeB.hashCode());
     }
+
+    @Test
+    public void testExplainInEquals() {
+        QueryNode queryNode = new QueryNode(new SelectNode(false, Collections.emptyList(), null), new StreamNode("MAX", null),
+                                            null, null, null, null, null, null, null, null);
+        QueryNode other = new QueryNode(new SelectNode(false, Collections.emptyList(), null), new StreamNode("MAX", null),
+                                        null, null, null, null, null, null, null, null);
+        Assert.assertEquals(queryNode, other);
+        Assert.assertEquals(queryNode.hashCode(), other.hashCode());
+
+        other.setExplain(true);
+        Assert.assertTrue(other.isExplain());
+        Assert.assertNotEquals(queryNode, other);
+    }
 }
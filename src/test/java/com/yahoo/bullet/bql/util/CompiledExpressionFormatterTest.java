@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2020, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.query.expressions.Expression;
+import com.yahoo.bullet.query.expressions.Operation;
+import com.yahoo.bullet.typesystem.Type;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static com.yahoo.bullet.bql.util.QueryUtil.binary;
+import static com.yahoo.bullet.bql.util.QueryUtil.cast;
+import static com.yahoo.bullet.bql.util.QueryUtil.field;
+import static com.yahoo.bullet.bql.util.QueryUtil.list;
+import static com.yahoo.bullet.bql.util.QueryUtil.nary;
+import static com.yahoo.bullet.bql.util.QueryUtil.unary;
+import static com.yahoo.bullet.bql.util.QueryUtil.value;
+
+public class CompiledExpressionFormatterTest {
+    @Test
+    public void testNull() {
+        Assert.assertNull(CompiledExpressionFormatter.format(null));
+    }
+
+    @Test
+    public void testValues() {
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(null)), "NULL");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value("it's")), "'it''s'");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(5)), "5");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(5L)), "5L");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(5.0f)), "5.0f");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(5.0)), "5.0");
+        Assert.assertEquals(CompiledExpressionFormatter.format(value(true)), "true");
+    }
+
+    @Test
+    public void testFields() {
+        Assert.assertEquals(CompiledExpressionFormatter.format(field("abc", Type.INTEGER)), "abc");
+        Assert.assertEquals(CompiledExpressionFormatter.format(field("aaa", 0, "def", Type.STRING)), "aaa[0].def");
+        Assert.assertEquals(CompiledExpressionFormatter.format(field("ddd", "key", Type.STRING)), "ddd.key");
+        Assert.assertEquals(CompiledExpressionFormatter.format(field("ddd", field("c", Type.STRING), Type.STRING)), "ddd[c]");
+    }
+
+    @Test
+    public void testBinary() {
+        Expression sum = binary(field("abc", Type.INTEGER), value(5), Operation.ADD, Type.INTEGER);
+        Expression comparison = binary(sum, value(10), Operation.GREATER_THAN, Type.BOOLEAN);
+        Assert.assertEquals(CompiledExpressionFormatter.format(comparison), "(abc + 5) > 10");
+        Assert.assertEquals(CompiledExpressionFormatter.format(binary(field("ddd", Type.STRING_MAP), value("a"), Operation.CONTAINS_KEY, Type.BOOLEAN)),
+                            "CONTAINSKEY(ddd, 'a')");
+        Assert.assertEquals(CompiledExpressionFormatter.format(binary(field("c", Type.STRING), list(Type.STRING_LIST, value("a"), value("b")), Operation.NOT_IN, Type.BOOLEAN)),
+                            "c NOT IN ['a', 'b']");
+    }
+
+    @Test
+    public void testUnary() {
+        Expression isNull = unary(field("c", Type.STRING), Operation.IS_NULL, Type.BOOLEAN);
+        Assert.assertEquals(CompiledExpressionFormatter.format(isNull), "c IS NULL");
+        Assert.assertEquals(CompiledExpressionFormatter.format(unary(isNull, Operation.NOT, Type.BOOLEAN)), "NOT (c IS NULL)");
+        Assert.assertEquals(CompiledExpressionFormatter.format(unary(field("c", Type.STRING), Operation.SIZE_OF, Type.INTEGER)), "SIZEOF(c)");
+        Assert.assertEquals(CompiledExpressionFormatter.format(binary(unary(field("c", Type.STRING), Operation.SIZE_OF, Type.INTEGER), value(1), Operation.EQUALS, Type.BOOLEAN)),
+                            "SIZEOF(c) = 1");
+    }
+
+    @Test
+    public void testNAry() {
+        Assert.assertEquals(CompiledExpressionFormatter.format(nary(Type.BOOLEAN, Operation.BETWEEN, field("abc", Type.INTEGER), value(1), value(5))),
+                            "abc BETWEEN (1, 5)");
+        Assert.assertEquals(CompiledExpressionFormatter.format(nary(Type.BOOLEAN, Operation.NOT_BETWEEN, field("abc", Type.INTEGER), value(1), value(5))),
+                            "abc NOT BETWEEN (1, 5)");
+        Assert.assertEquals(CompiledExpressionFormatter.format(nary(Type.STRING, Operation.SUBSTRING, field("c", Type.STRING), value(1), value(5))),
+                            "SUBSTRING(c, 1, 5)");
+    }
+
+    @Test
+    public void testCast() {
+        Assert.assertEquals(CompiledExpressionFormatter.format(cast(field("abc", Type.INTEGER), Type.STRING, Type.STRING)), "CAST(abc AS STRING)");
+    }
+}
@@ -32,6 +32,18 @@ public class ExpressionFormatterTest {
         Assert.assertEquals(ExpressionFormatter.format(queryNode, true), "SELECT DISTINCT a, b AS c FROM STREAM(max, TIME) WHERE d GROUP BY e HAVING f ORDER BY g ASC, h DESC WINDOWING EVERY(1, TIME, FIRST, 1, TIME) LIMIT 1");
     }
 
+    @Test
+    public void testExplain() {
+        QueryNode queryNode = bqlParser.createQueryNode("explain select a from (select * from stream())");
+        Assert.assertEquals(ExpressionFormatter.format(queryNode, true), "EXPLAIN SELECT a FROM (SELECT * FROM STREAM())");
+    }
+
+    @Test
+    public void testLike() {
+        QueryNode queryNode = bqlParser.createQueryNode("select a like 'b%' from stream() where (a not like any ['%b', 'c_']) and b");
+        Assert.assertEquals(ExpressionFormatter.format(queryNode, true), "SELECT a LIKE 'b%' FROM STREAM() WHERE (a NOT LIKE ANY ['%b', 'c_']) AND b");
+    }
+
     @Test
     public void testTimeOnlyStream() {
         QueryNode queryNode = bqlParser.createQueryNode("select * from stream(2000, time)");
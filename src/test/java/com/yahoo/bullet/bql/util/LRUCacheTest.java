@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.bql.metrics.CompilerListeners;
+import com.yahoo.bullet.bql.metrics.CompilerMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LRUCacheTest {
+    @Test
+    public void testGetAndPut() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(cache.putIfAbsent("a", 1), (Integer) 1);
+        Assert.assertEquals(cache.putIfAbsent("a", 2), (Integer) 1);
+        Assert.assertEquals(cache.get("a"), (Integer) 1);
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(cache.getCapacity(), 2);
+        Assert.assertEquals(cache.getHits(), 1L);
+        Assert.assertEquals(cache.getMisses(), 1L);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        // Touch a so that b is the least recently used
+        cache.get("a");
+        cache.putIfAbsent("c", 3);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(cache.get("a"), (Integer) 1);
+        Assert.assertEquals(cache.get("c"), (Integer) 3);
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        Assert.assertEquals(cache.remove("a"), (Integer) 1);
+        Assert.assertNull(cache.remove("a"));
+        Assert.assertEquals(cache.size(), 1);
+        cache.get("b");
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getHits(), 1L);
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        LRUCache<String, Integer> cache = new LRUCache<>(0);
+        Assert.assertEquals(cache.putIfAbsent("a", 1), (Integer) 1);
+        Assert.assertEquals(cache.putIfAbsent("a", 2), (Integer) 2);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testNamedCacheReportsLookups() {
+        CompilerMetrics metrics = new CompilerMetrics();
+        CompilerListeners.register(metrics);
+        try {
+            LRUCache<String, Integer> named = new LRUCache<>("test", 2);
+            LRUCache<String, Integer> unnamed = new LRUCache<>(2);
+            named.get("a");
+            named.putIfAbsent("a", 1);
+            named.get("a");
+            unnamed.get("a");
+            Assert.assertEquals(metrics.getCacheHits("test"), 1L);
+            Assert.assertEquals(metrics.getCacheMisses("test"), 1L);
+            Assert.assertEquals(metrics.getCacheHitRate("test"), 0.5);
+            Assert.assertEquals(metrics.getCacheHitRate("other"), 0.0);
+        } finally {
+            CompilerListeners.unregister(metrics);
+        }
+    }
+}
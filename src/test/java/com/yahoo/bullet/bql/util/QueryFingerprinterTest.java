@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.bql.parser.BQLParser;
+import com.yahoo.bullet.bql.parser.ParsingException;
+import com.yahoo.bullet.bql.util.QueryFingerprinter.Fingerprint;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class QueryFingerprinterTest {
+    private static void assertTemplate(String bql, String template) {
+        Assert.assertEquals(QueryFingerprinter.fingerprint(bql).getTemplate(), template);
+    }
+
+    private static void assertSameFingerprint(String bqlA, String bqlB) {
+        Fingerprint a = QueryFingerprinter.fingerprint(bqlA);
+        Fingerprint b = QueryFingerprinter.fingerprint(bqlB);
+        Assert.assertEquals(a.getTemplate(), b.getTemplate());
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertEquals(a.toString(), b.toString());
+    }
+
+    private static void assertDifferentFingerprint(String bqlA, String bqlB) {
+        Fingerprint a = QueryFingerprinter.fingerprint(bqlA);
+        Fingerprint b = QueryFingerprinter.fingerprint(bqlB);
+        Assert.assertNotEquals(a.getTemplate(), b.getTemplate());
+        Assert.assertNotEquals(a, b);
+    }
+
+    @Test
+    public void testLiterals() {
+        assertTemplate("SELECT * FROM STREAM(30000, TIME) WHERE a = 5 AND c = 'foo' AND b != NULL LIMIT 10",
+                       "SELECT * FROM STREAM(?, TIME) WHERE ((? != b) AND (? = a) AND (? = c)) LIMIT ?");
+        assertSameFingerprint("SELECT abc + 1 FROM STREAM() WHERE c = 'a'", "SELECT abc + 2.5 FROM STREAM() WHERE c = 'it''s'");
+        assertSameFingerprint("SELECT * FROM STREAM(1000, TIME)", "SELECT * FROM STREAM(MAX, TIME)");
+    }
+
+    @Test
+    public void testLiteralLists() {
+        assertTemplate("SELECT * FROM STREAM() WHERE abc IN (1, 2, 3) AND eee = ['a', c]",
+                       "SELECT * FROM STREAM() WHERE (([?, c] = eee) AND (abc IN (?...)))");
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE abc IN (1)", "SELECT * FROM STREAM() WHERE abc IN (1, 2, 3)");
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE abc IN (?, ?) AND c = ?", "SELECT * FROM STREAM() WHERE abc IN (1, 2, 3) AND c = 'a'");
+    }
+
+    @Test
+    public void testWhitespaceAndCase() {
+        assertSameFingerprint("SELECT abc FROM STREAM() WHERE abc > 5", "select   abc\nfrom stream()   where abc>7");
+        assertSameFingerprint("SELECT \"abc\" FROM STREAM()", "SELECT abc FROM STREAM()");
+    }
+
+    @Test
+    public void testParentheses() {
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE ((abc > 5))", "SELECT * FROM STREAM() WHERE abc > 5");
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE NOT (b)", "SELECT * FROM STREAM() WHERE NOT b");
+        assertDifferentFingerprint("SELECT (abc - 1) - 2 FROM STREAM()", "SELECT abc - (1 - 2) FROM STREAM()");
+    }
+
+    @Test
+    public void testCommutativeOperands() {
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE a = 1 AND (c = 'x' OR b)", "SELECT * FROM STREAM() WHERE (b OR 'y' = c) AND 2 = a");
+        assertSameFingerprint("SELECT * FROM STREAM() WHERE (a > 1 AND b) AND c = 'x'", "SELECT * FROM STREAM() WHERE c = 'x' AND (b AND a > 1)");
+        assertSameFingerprint("SELECT abc * def + 1 FROM STREAM()", "SELECT 1 + def * abc FROM STREAM()");
+        assertDifferentFingerprint("SELECT abc - def FROM STREAM()", "SELECT def - abc FROM STREAM()");
+        assertDifferentFingerprint("SELECT * FROM STREAM() WHERE a > 1 AND b", "SELECT * FROM STREAM() WHERE a > 1 OR b");
+        assertDifferentFingerprint("SELECT * FROM STREAM() WHERE (a > 1 OR b) AND c", "SELECT * FROM STREAM() WHERE a > 1 OR (b AND c)");
+    }
+
+    @Test
+    public void testAliases() {
+        assertTemplate("SELECT abc AS x, COUNT(*) AS cnt FROM STREAM() GROUP BY abc ORDER BY cnt DESC",
+                       "SELECT abc AS $1, COUNT(*) AS $2 FROM STREAM() GROUP BY abc ORDER BY $2 DESC");
+        assertSameFingerprint("SELECT abc AS x FROM STREAM() ORDER BY x", "SELECT abc AS y FROM STREAM() ORDER BY y");
+        assertSameFingerprint("SELECT x FROM (SELECT abc AS x FROM STREAM())", "SELECT y FROM (SELECT abc AS y FROM STREAM())");
+        assertSameFingerprint("SELECT k, v FROM STREAM() LATERAL VIEW EXPLODE(ddd) AS (k, v)",
+                              "SELECT key, value FROM STREAM() LATERAL VIEW EXPLODE(ddd) AS (key, value)");
+        assertDifferentFingerprint("SELECT abc AS x, def AS y FROM STREAM() ORDER BY x", "SELECT abc AS x, def AS y FROM STREAM() ORDER BY y");
+        assertSameFingerprint("SELECT k FROM STREAM() LATERAL VIEW EXPLODE(eee) AS k WHERE k = 'x'",
+                              "SELECT j FROM STREAM() LATERAL VIEW EXPLODE(eee) AS j WHERE j = 'y'");
+        assertSameFingerprint("SELECT x FROM (SELECT abc AS x FROM STREAM()) WHERE x > 1", "SELECT y FROM (SELECT abc AS y FROM STREAM()) WHERE y > 2");
+    }
+
+    @Test
+    public void testFieldsWithTheNamesOfAliases() {
+        // The WHERE clause reads the fields b and c and not the aliases
+        assertTemplate("SELECT a AS b FROM STREAM() WHERE b > 1", "SELECT a AS $1 FROM STREAM() WHERE (b > ?)");
+        assertDifferentFingerprint("SELECT a AS b FROM STREAM() WHERE b > 1", "SELECT a AS c FROM STREAM() WHERE c > 1");
+        assertDifferentFingerprint("SELECT a AS b, b FROM STREAM()", "SELECT a AS c, c FROM STREAM()");
+        assertDifferentFingerprint("SELECT a AS b, COUNT(*) FROM STREAM() GROUP BY b", "SELECT a AS c, COUNT(*) FROM STREAM() GROUP BY c");
+        assertTemplate("SELECT a AS b, COUNT(*) AS n FROM STREAM() GROUP BY a HAVING n > 1 ORDER BY b",
+                       "SELECT a AS $1, COUNT(*) AS $2 FROM STREAM() GROUP BY a HAVING ($2 > ?) ORDER BY $1 ASC");
+    }
+
+    @Test
+    public void testAggregations() {
+        assertTemplate("SELECT TOP(10, 5, abc), QUANTILE(def, LINEAR, 11) FROM STREAM()",
+                       "SELECT TOP(?, ?, abc), QUANTILE(def, LINEAR, ?) FROM STREAM()");
+        assertSameFingerprint("SELECT QUANTILE(abc, MANUAL, 0.5, 0.9) FROM STREAM()", "SELECT QUANTILE(abc, MANUAL, 0.1) FROM STREAM()");
+        assertSameFingerprint("SELECT FREQ(abc, REGION, 1, 10, 1) FROM STREAM()", "SELECT FREQ(abc, REGION, 0, 100, 5) FROM STREAM()");
+        assertDifferentFingerprint("SELECT TOP(10, abc) FROM STREAM()", "SELECT TOP(10, 5, abc) FROM STREAM()");
+    }
+
+    @Test
+    public void testWindows() {
+        assertTemplate("SELECT * FROM STREAM() WINDOWING EVERY(5000, TIME, FIRST, 5000, TIME)",
+                       "SELECT * FROM STREAM() WINDOWING EVERY(?, TIME, FIRST, ?, TIME)");
+        assertSameFingerprint("SELECT * FROM STREAM() WINDOWING TUMBLING(1000, TIME)", "SELECT * FROM STREAM() WINDOWING TUMBLING(2000, TIME)");
+        assertSameFingerprint("SELECT * FROM STREAM() WINDOWING EVERY(1, RECORD, ALL)", "SELECT * FROM STREAM() WINDOWING EVERY(2, RECORD, ALL)");
+        assertDifferentFingerprint("SELECT * FROM STREAM() WINDOWING TUMBLING(1000, TIME)", "SELECT * FROM STREAM() WINDOWING TUMBLING(1000, RECORD)");
+    }
+
+    @Test
+    public void testFunctionOperations() {
+        assertSameFingerprint("SELECT SIZEIS(eee, 1), CONTAINSKEY(ddd, 'a') FROM STREAM()", "SELECT SIZEIS(eee, 2), CONTAINSKEY(ddd, 'b') FROM STREAM()");
+        assertTemplate("SELECT SIZEIS(eee, 1) FROM STREAM()", "SELECT SIZEIS(eee, ?) FROM STREAM()");
+    }
+
+    @Test
+    public void testExplain() {
+        assertDifferentFingerprint("EXPLAIN SELECT * FROM STREAM()", "SELECT * FROM STREAM()");
+    }
+
+    @Test
+    public void testFingerprint() {
+        Fingerprint fingerprint = QueryFingerprinter.fingerprint("SELECT * FROM STREAM()");
+        Assert.assertEquals(fingerprint.getHash64(), fingerprint.getHigh());
+        Assert.assertEquals(fingerprint.toString().length(), 32);
+        Assert.assertEquals(fingerprint.toString(), String.format("%016x%016x", fingerprint.getHigh(), fingerprint.getLow()));
+        Assert.assertEquals(fingerprint, QueryFingerprinter.fingerprint(new BQLParser().createQueryNode("SELECT * FROM STREAM()")));
+        Assert.assertNotEquals(fingerprint, null);
+    }
+
+    @Test(expectedExceptions = ParsingException.class)
+    public void testInvalidQuery() {
+        QueryFingerprinter.fingerprint("SELECT FROM");
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.typesystem.Schema;
+import com.yahoo.bullet.typesystem.Type;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Generates random, valid BQL queries over the fields of a {@link Schema} for load and fuzz testing. The queries follow
+ * the productions of the grammar: projections, lateral views, filters, group bys, havings, order bys, windows, limits,
+ * every aggregation and outer queries, with typed expressions over the primitive fields and the elements of the list
+ * and map fields. The {@link Options} control the size, expression depth, IN list length, aggregation types and
+ * nesting of the queries.
+ *
+ * <p>The same schema, options and seed always generate the same queries. The queries can also be written to and read
+ * back from a replay file with {@link #write(Path, long, List)} and {@link #read(Path)} so that a corpus stays the same
+ * even if the generator changes. This class is not thread-safe.</p>
+ */
+public class QueryGenerator {
+    public enum QueryType {
+        RAW, SELECT_DISTINCT, GROUP_BY, GROUP_ALL, COUNT_DISTINCT, DISTRIBUTION, TOP_K
+    }
+
+    /**
+     * The knobs of the generator. The defaults generate small to medium queries of every type.
+     */
+    @Getter @Setter
+    public static class Options {
+        // The maximum depth of an expression, where fields and literals have a depth of 0
+        private int maxDepth = 3;
+        private int maxSelectItems = 4;
+        // The maximum number of predicates in the WHERE clause, where 0 generates no WHERE clauses
+        private int maxPredicates = 4;
+        private int maxInListSize = 8;
+        private Set<QueryType> queryTypes = EnumSet.allOf(QueryType.class);
+        private double outerQueryProbability = 0.1;
+        private double lateralViewProbability = 0.1;
+        private double windowProbability = 0.2;
+    }
+
+    private static final String REPLAY_HEADER = "# seed: ";
+    private static final String[] WORDS = {"foo", "bar", "baz", "qux", "quux", "corge", "grault", "garply", "waldo", "fred"};
+    private static final String[] KEYS = {"k1", "k2", "k3", "key", "id"};
+    private static final String[] ARITHMETIC = {"+", "-", "*", "/"};
+    private static final String[] COMPARISONS = {"=", "!=", "<", "<=", ">", ">="};
+    private static final Type[] NUMERIC_TYPES = {Type.INTEGER, Type.LONG, Type.FLOAT, Type.DOUBLE};
+    private static final double LEAF_PROBABILITY = 0.3;
+
+    @AllArgsConstructor
+    private static class Typed {
+        private final String bql;
+        private final Type type;
+    }
+
+    // The fields and element accesses that can be referenced in the current query
+    private static class Scope {
+        private final List<Typed> numerics = new ArrayList<>();
+        private final List<Typed> strings = new ArrayList<>();
+        private final List<Typed> booleans = new ArrayList<>();
+        private final List<Typed> lists = new ArrayList<>();
+        private final List<Typed> maps = new ArrayList<>();
+
+        private void add(String bql, Type type) {
+            if (Type.isNumeric(type)) {
+                numerics.add(new Typed(bql, type));
+            } else if (type == Type.STRING) {
+                strings.add(new Typed(bql, type));
+            } else if (type == Type.BOOLEAN) {
+                booleans.add(new Typed(bql, type));
+            }
+        }
+
+        private List<Typed> getPrimitives() {
+            List<Typed> primitives = new ArrayList<>(numerics);
+            primitives.addAll(strings);
+            primitives.addAll(booleans);
+            return primitives;
+        }
+    }
+
+    @Getter
+    private final long seed;
+    private final Options options;
+    private final Random random;
+    private final Scope schemaScope = new Scope();
+    private Scope scope;
+    private int aliases;
+
+    /**
+     * Constructor that uses the default {@link Options}.
+     *
+     * @param schema The {@link Schema} of the fields to query.
+     * @param seed The seed of the random queries.
+     */
+    public QueryGenerator(Schema schema, long seed) {
+        this(schema, new Options(), seed);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param schema The {@link Schema} of the fields to query. It must have at least one numeric field.
+     * @param options The {@link Options} of the generator.
+     * @param seed The seed of the random queries.
+     */
+    public QueryGenerator(Schema schema, Options options, long seed) {
+        this.seed = seed;
+        this.options = options;
+        this.random = new Random(seed);
+        for (Schema.Field field : schema.getFields()) {
+            addField(field.getName(), field.getType());
+        }
+        if (schemaScope.numerics.isEmpty()) {
+            throw new IllegalArgumentException("The schema must have at least one numeric field.");
+        }
+    }
+
+    /**
+     * Generates the next query.
+     *
+     * @return A valid BQL query.
+     */
+    public String next() {
+        aliases = 0;
+        scope = schemaScope;
+        if (chance(options.outerQueryProbability)) {
+            return outerQuery();
+        }
+        return query(pick(new ArrayList<>(options.queryTypes)), null);
+    }
+
+    /**
+     * Generates the given number of queries.
+     *
+     * @param count The number of queries.
+     * @return A {@link List} of valid BQL queries.
+     */
+    public List<String> next(int count) {
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(next());
+        }
+        return queries;
+    }
+
+    /**
+     * Writes queries to a replay file, one per line, after a header with the seed they were generated with.
+     *
+     * @param file The {@link Path} of the file to write.
+     * @param seed The seed of the queries.
+     * @param queries The queries to write. They must not contain line breaks.
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(Path file, long seed, List<String> queries) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(REPLAY_HEADER + seed);
+            writer.newLine();
+            for (String query : queries) {
+                writer.write(query);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads the queries of a replay file. Blank lines and lines starting with # are skipped.
+     *
+     * @param file The {@link Path} of the file to read.
+     * @return The {@link List} of queries.
+     * @throws IOException if the file could not be read.
+     */
+    public static List<String> read(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.trim().isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.toList());
+    }
+
+    private void addField(String name, Type type) {
+        if (Type.isPrimitive(type)) {
+            schemaScope.add(name, type);
+        } else if (Type.isPrimitiveList(type)) {
+            schemaScope.lists.add(new Typed(name, type));
+            schemaScope.add(name + "[0]", type.getSubType());
+        } else if (Type.isPrimitiveMap(type)) {
+            schemaScope.maps.add(new Typed(name, type));
+            schemaScope.add(name + "['" + KEYS[0] + "']", type.getSubType());
+            schemaScope.add(name + "." + KEYS[1], type.getSubType());
+        } else if (Type.isComplexList(type)) {
+            schemaScope.lists.add(new Typed(name, type));
+            schemaScope.add(name + "[0]['" + KEYS[2] + "']", type.getSubType().getSubType());
+        } else if (Type.isComplexMap(type)) {
+            schemaScope.maps.add(new Typed(name, type));
+            schemaScope.add(name + "['" + KEYS[3] + "']['" + KEYS[4] + "']", type.getSubType().getSubType());
+        }
+    }
+
+    // Queries
+
+    // The query reads from the given inner query or from a stream if there is none
+    private String query(QueryType type, String innerQuery) {
+        StringBuilder bql = new StringBuilder("SELECT ");
+        String lateralView = null;
+        if (type == QueryType.RAW && !scope.lists.isEmpty() && chance(options.lateralViewProbability)) {
+            lateralView = lateralView();
+        }
+        List<String> groups = Collections.emptyList();
+        String having = null;
+        String orderBy = null;
+        boolean canLimit = true;
+        switch (type) {
+            case RAW:
+                if (lateralView == null && chance(0.2)) {
+                    bql.append("*");
+                } else {
+                    bql.append(String.join(", ", selectItems()));
+                }
+                if (chance(0.2)) {
+                    orderBy = pick(scope.getPrimitives()).bql + (random.nextBoolean() ? " ASC" : " DESC");
+                }
+                break;
+            case SELECT_DISTINCT:
+                bql.append("DISTINCT ").append(String.join(", ", distinct(between(1, 3))));
+                break;
+            case GROUP_BY:
+                groups = distinct(between(1, 3));
+                List<String> operations = groupOperations();
+                bql.append(String.join(", ", groups)).append(", ").append(String.join(", ", operations));
+                if (chance(0.3)) {
+                    having = "COUNT(*) " + pick(COMPARISONS) + " " + random.nextInt(100);
+                }
+                if (chance(0.3)) {
+                    String operation = pick(operations);
+                    orderBy = operation.substring(operation.lastIndexOf(' ') + 1) + " DESC";
+                }
+                break;
+            case GROUP_ALL:
+                bql.append(String.join(", ", groupOperations()));
+                break;
+            case COUNT_DISTINCT:
+                bql.append("COUNT(DISTINCT ").append(String.join(", ", distinct(between(1, 3)))).append(") AS ").append(alias());
+                canLimit = false;
+                break;
+            case DISTRIBUTION:
+                bql.append(distribution());
+                break;
+            case TOP_K:
+                bql.append("TOP(").append(between(1, 20));
+                if (random.nextBoolean()) {
+                    bql.append(", ").append(between(1, 10));
+                }
+                bql.append(", ").append(String.join(", ", distinct(between(1, 3)))).append(")");
+                canLimit = false;
+                break;
+        }
+        bql.append(" FROM ").append(innerQuery != null ? "(" + innerQuery + ")" : stream());
+        if (lateralView != null) {
+            bql.append(" LATERAL VIEW ").append(lateralView);
+        }
+        if (hasWhere()) {
+            bql.append(" WHERE ").append(where());
+        }
+        if (!groups.isEmpty()) {
+            bql.append(" GROUP BY ").append(String.join(", ", groups));
+        }
+        if (having != null) {
+            bql.append(" HAVING ").append(having);
+        }
+        if (orderBy != null) {
+            bql.append(" ORDER BY ").append(orderBy);
+        }
+        if (innerQuery == null && chance(options.windowProbability)) {
+            bql.append(" WINDOWING ").append(window(type));
+        }
+        if (canLimit && chance(0.5)) {
+            bql.append(" LIMIT ").append(between(1, 1000));
+        }
+        return bql.toString();
+    }
+
+    private String outerQuery() {
+        // The inner query projects aliased expressions that the outer query then works on
+        Scope inner = new Scope();
+        Set<String> expressions = new LinkedHashSet<>();
+        List<String> items = new ArrayList<>();
+        for (int i = between(1, options.maxSelectItems); i > 0; i--) {
+            // The first item is numeric so that the outer query always has a numeric field
+            Typed expression = i == 1 ? numeric(options.maxDepth) : expression();
+            if (expressions.add(expression.bql)) {
+                String alias = alias();
+                items.add(expression.bql + " AS " + alias);
+                inner.add(alias, expression.type);
+            }
+        }
+        String innerQuery = "SELECT " + String.join(", ", items) + " FROM " + stream() + (hasWhere() ? " WHERE " + where() : "") +
+                            " WINDOWING TUMBLING(" + between(1, 10) * 1000 + ", TIME)";
+        scope = inner;
+        List<QueryType> types = new ArrayList<>(options.queryTypes);
+        types.retainAll(EnumSet.of(QueryType.RAW, QueryType.GROUP_BY, QueryType.GROUP_ALL, QueryType.SELECT_DISTINCT));
+        return query(types.isEmpty() ? QueryType.RAW : pick(types), innerQuery);
+    }
+
+    private List<String> selectItems() {
+        // An expression can only be aliased once
+        Set<String> expressions = new LinkedHashSet<>();
+        List<String> items = new ArrayList<>();
+        for (int i = between(1, options.maxSelectItems); i > 0; i--) {
+            if (chance(0.4)) {
+                String field = pick(scope.getPrimitives()).bql;
+                if (expressions.add(field)) {
+                    items.add(field);
+                }
+            } else {
+                String expression = expression().bql;
+                if (expressions.add(expression)) {
+                    items.add(expression + (random.nextBoolean() ? " AS " : " ") + alias());
+                }
+            }
+        }
+        return items;
+    }
+
+    private String lateralView() {
+        // Exploded primitive lists add a field to the scope of the query
+        List<Typed> lists = scope.lists.stream().filter(list -> Type.isPrimitiveList(list.type)).collect(Collectors.toList());
+        if (lists.isEmpty()) {
+            return null;
+        }
+        Typed list = pick(lists);
+        String alias = alias();
+        Scope exploded = new Scope();
+        copy(scope, exploded);
+        exploded.add(alias, list.type.getSubType());
+        scope = exploded;
+        return (random.nextBoolean() ? "OUTER " : "") + "EXPLODE(" + list.bql + ") AS " + alias;
+    }
+
+    private String stream() {
+        return random.nextBoolean() ? "STREAM()" : "STREAM(" + (chance(0.2) ? "MAX" : between(1, 60) * 1000) + ", TIME)";
+    }
+
+    private boolean hasWhere() {
+        return options.maxPredicates > 0 && chance(0.8);
+    }
+
+    private String where() {
+        StringBuilder where = new StringBuilder(predicate());
+        for (int i = between(1, options.maxPredicates) - 1; i > 0; i--) {
+            where.append(random.nextInt(4) == 0 ? " OR " : " AND ").append(predicate());
+        }
+        return where.toString();
+    }
+
+    private String window(QueryType type) {
+        if (type == QueryType.RAW && random.nextBoolean()) {
+            return "TUMBLING(" + between(1, 100) + ", RECORD)";
+        }
+        if (random.nextBoolean()) {
+            return "TUMBLING(" + between(1, 10) * 1000 + ", TIME)";
+        }
+        int every = between(1, 10) * 1000;
+        return "EVERY(" + every + ", TIME, " + (type == QueryType.RAW ? "FIRST, " + every + ", TIME" : "ALL") + ")";
+    }
+
+    private List<String> groupOperations() {
+        // An operation can only be aliased once
+        Set<String> operations = new LinkedHashSet<>();
+        for (int i = between(1, 3); i > 0; i--) {
+            operations.add(groupOperation());
+        }
+        return operations.stream().map(operation -> operation + " AS " + alias()).collect(Collectors.toList());
+    }
+
+    private String groupOperation() {
+        if (chance(0.3)) {
+            return "COUNT(*)";
+        }
+        return pick(new String[] {"SUM", "AVG", "MIN", "MAX"}) + "(" + numeric(options.maxDepth - 1).bql + ")";
+    }
+
+    private String distribution() {
+        String field = pick(scope.numerics).bql;
+        String type = pick(new String[] {"QUANTILE", "FREQ", "CUMFREQ"});
+        switch (random.nextInt(3)) {
+            case 0:
+                return type + "(" + field + ", LINEAR, " + between(2, 20) + ")";
+            case 1:
+                if (type.equals("QUANTILE")) {
+                    return type + "(" + field + ", REGION, 0, 1, 0." + between(1, 5) + ")";
+                }
+                int start = random.nextInt(100);
+                return type + "(" + field + ", REGION, " + start + ", " + (start + between(10, 100)) + ", " + between(1, 10) + ")";
+            default:
+                if (type.equals("QUANTILE")) {
+                    return type + "(" + field + ", MANUAL, 0, 0.25, 0.5, 0.75, 1)";
+                }
+                // The points must be increasing
+                int point = random.nextInt(100);
+                List<String> points = new ArrayList<>();
+                for (int i = between(1, 5); i > 0; i--) {
+                    points.add(String.valueOf(point));
+                    point += between(1, 100);
+                }
+                return type + "(" + field + ", MANUAL, " + String.join(", ", points) + ")";
+        }
+    }
+
+    // Expressions
+
+    private Typed expression() {
+        switch (random.nextInt(3)) {
+            case 0:
+                return numeric(options.maxDepth);
+            case 1:
+                return string(options.maxDepth);
+            default:
+                return bool(options.maxDepth);
+        }
+    }
+
+    private String predicate() {
+        return bool(options.maxDepth).bql;
+    }
+
+    private Typed numeric(int depth) {
+        if (depth <= 0 || chance(LEAF_PROBABILITY)) {
+            return chance(0.7) ? pick(scope.numerics) : numericLiteral(pick(NUMERIC_TYPES));
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+                Typed left = numeric(depth - 1);
+                Typed right = numeric(depth - 1);
+                return new Typed("(" + left.bql + " " + pick(ARITHMETIC) + " " + right.bql + ")", promote(left.type, right.type));
+            case 2:
+                Typed operand = numeric(depth - 1);
+                return new Typed("ABS(" + operand.bql + ")", operand.type);
+            case 3:
+                if (!scope.lists.isEmpty() || !scope.maps.isEmpty()) {
+                    List<Typed> collections = new ArrayList<>(scope.lists);
+                    collections.addAll(scope.maps);
+                    return new Typed("SIZEOF(" + pick(collections).bql + ")", Type.INTEGER);
+                }
+                return new Typed("SIZEOF(" + string(depth - 1).bql + ")", Type.INTEGER);
+            default:
+                Type type = pick(NUMERIC_TYPES);
+                return new Typed("CAST(" + numeric(depth - 1).bql + " AS " + type + ")", type);
+        }
+    }
+
+    private Typed string(int depth) {
+        if (depth <= 0 || chance(LEAF_PROBABILITY)) {
+            return !scope.strings.isEmpty() && chance(0.7) ? pick(scope.strings) : stringLiteral();
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Typed(pick(new String[] {"TRIM", "LOWER", "UPPER"}) + "(" + string(depth - 1).bql + ")", Type.STRING);
+            case 1:
+                return new Typed("CAST(" + numeric(depth - 1).bql + " AS STRING)", Type.STRING);
+            case 2:
+                return new Typed("SUBSTRING(" + string(depth - 1).bql + ", " + between(1, 5) + ", " + between(1, 5) + ")", Type.STRING);
+            default:
+                return new Typed("IF(" + bool(depth - 1).bql + ", " + string(depth - 1).bql + ", " + string(depth - 1).bql + ")", Type.STRING);
+        }
+    }
+
+    private Typed bool(int depth) {
+        if (depth <= 1 || chance(LEAF_PROBABILITY)) {
+            return new Typed(comparison(Math.max(depth - 1, 0)), Type.BOOLEAN);
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Typed("(" + bool(depth - 1).bql + " AND " + bool(depth - 1).bql + ")", Type.BOOLEAN);
+            case 1:
+                return new Typed("(" + bool(depth - 1).bql + " OR " + bool(depth - 1).bql + ")", Type.BOOLEAN);
+            case 2:
+                return new Typed("(" + bool(depth - 1).bql + " XOR " + bool(depth - 1).bql + ")", Type.BOOLEAN);
+            default:
+                return new Typed("NOT (" + bool(depth - 1).bql + ")", Type.BOOLEAN);
+        }
+    }
+
+    private String comparison(int depth) {
+        switch (random.nextInt(12)) {
+            case 0:
+                if (!scope.booleans.isEmpty()) {
+                    return pick(scope.booleans).bql;
+                }
+                return numeric(depth).bql + " > " + numericLiteral(Type.INTEGER).bql;
+            case 1:
+                return numeric(depth).bql + " " + pick(COMPARISONS) + " " + numeric(depth).bql;
+            case 2:
+                return string(depth).bql + " " + pick(COMPARISONS) + " " + stringLiteral().bql;
+            case 3: {
+                Type type = pick(NUMERIC_TYPES);
+                return numeric(depth).bql + (chance(0.2) ? " NOT IN (" : " IN (") + join(between(1, options.maxInListSize), () -> numericLiteral(type).bql) + ")";
+            }
+            case 4:
+                return string(depth).bql + (chance(0.2) ? " NOT IN (" : " IN (") + join(between(1, options.maxInListSize), () -> stringLiteral().bql) + ")";
+            case 5: {
+                int lower = random.nextInt(1000);
+                return numeric(depth).bql + " BETWEEN (" + lower + ", " + (lower + between(1, 1000)) + ")";
+            }
+            case 6:
+                return string(depth).bql + (chance(0.2) ? " NOT LIKE '" : " LIKE '") + pick(WORDS).substring(0, 2) + pick(new String[] {"%", "_%", "%x"}) + "'";
+            case 7:
+                return string(depth).bql + " RLIKE '" + pick(WORDS) + pick(new String[] {".*", "[0-9]+", "$"}) + "'";
+            case 8:
+                return pick(scope.getPrimitives()).bql + (random.nextBoolean() ? " IS NULL" : " IS NOT NULL");
+            case 9:
+                if (!scope.maps.isEmpty()) {
+                    return "CONTAINSKEY(" + pick(scope.maps).bql + ", '" + pick(KEYS) + "')";
+                }
+                return numeric(depth).bql + " != " + numericLiteral(Type.LONG).bql;
+            case 10: {
+                List<Typed> lists = scope.lists.stream().filter(list -> Type.isPrimitiveList(list.type)).collect(Collectors.toList());
+                if (!lists.isEmpty()) {
+                    Typed list = pick(lists);
+                    return "CONTAINSVALUE(" + list.bql + ", " + literal(list.type.getSubType()).bql + ")";
+                }
+                return numeric(depth).bql + " = " + numericLiteral(Type.DOUBLE).bql;
+            }
+            default:
+                if (!scope.lists.isEmpty()) {
+                    return "SIZEIS(" + pick(scope.lists).bql + ", " + random.nextInt(5) + ")";
+                }
+                return string(depth).bql + " = " + stringLiteral().bql;
+        }
+    }
+
+    // Literals
+
+    private Typed literal(Type type) {
+        if (Type.isNumeric(type)) {
+            return numericLiteral(type);
+        }
+        if (type == Type.BOOLEAN) {
+            return new Typed(random.nextBoolean() ? "true" : "false", Type.BOOLEAN);
+        }
+        return stringLiteral();
+    }
+
+    private Typed numericLiteral(Type type) {
+        switch (type) {
+            case LONG:
+                return new Typed(random.nextInt(100000) + "L", type);
+            case FLOAT:
+                return new Typed(random.nextInt(1000) + "." + random.nextInt(100) + "F", type);
+            case DOUBLE:
+                return new Typed(random.nextInt(1000) + "." + random.nextInt(100), type);
+            default:
+                return new Typed(String.valueOf(random.nextInt(1000)), Type.INTEGER);
+        }
+    }
+
+    private Typed stringLiteral() {
+        return new Typed("'" + pick(WORDS) + "'", Type.STRING);
+    }
+
+    // Helpers
+
+    private List<String> distinct(int count) {
+        Set<String> fields = new LinkedHashSet<>();
+        List<Typed> primitives = scope.getPrimitives();
+        for (int i = 0; i < count; i++) {
+            fields.add(pick(primitives).bql);
+        }
+        return new ArrayList<>(fields);
+    }
+
+    private String alias() {
+        return "x" + aliases++;
+    }
+
+    private String join(int count, Supplier<String> supplier) {
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(supplier.get());
+        }
+        return String.join(", ", items);
+    }
+
+    private static void copy(Scope from, Scope to) {
+        to.numerics.addAll(from.numerics);
+        to.strings.addAll(from.strings);
+        to.booleans.addAll(from.booleans);
+        to.lists.addAll(from.lists);
+        to.maps.addAll(from.maps);
+    }
+
+    private static Type promote(Type left, Type right) {
+        for (Type type : new Type[] {Type.DOUBLE, Type.FLOAT, Type.LONG}) {
+            if (left == type || right == type) {
+                return type;
+            }
+        }
+        return Type.INTEGER;
+    }
+
+    private boolean chance(double probability) {
+        return random.nextDouble() < probability;
+    }
+
+    private int between(int min, int max) {
+        return min + random.nextInt(Math.max(max - min + 1, 1));
+    }
+
+    private <T> T pick(List<T> items) {
+        return items.get(random.nextInt(items.size()));
+    }
+
+    private <T> T pick(T[] items) {
+        return items[random.nextInt(items.length)];
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2021, Yahoo Inc.
+ *  Licensed under the terms of the Apache License, Version 2.0.
+ *  See the LICENSE file associated with the project for terms.
+ */
+package com.yahoo.bullet.bql.util;
+
+import com.yahoo.bullet.bql.BQLConfig;
+import com.yahoo.bullet.bql.BQLResult;
+import com.yahoo.bullet.bql.BulletQueryBuilder;
+import com.yahoo.bullet.bql.util.QueryGenerator.Options;
+import com.yahoo.bullet.bql.util.QueryGenerator.QueryType;
+import com.yahoo.bullet.common.BulletConfig;
+import com.yahoo.bullet.query.aggregations.AggregationType;
+import com.yahoo.bullet.typesystem.Schema;
+import com.yahoo.bullet.typesystem.Type;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+public class QueryGeneratorTest {
+    private BQLConfig config;
+    private BulletQueryBuilder builder;
+
+    @BeforeClass
+    public void setup() {
+        config = new BQLConfig();
+        config.set(BulletConfig.RECORD_SCHEMA_FILE_NAME, "test_schema.json");
+        config.validate();
+        builder = new BulletQueryBuilder(config);
+    }
+
+    private void assertValid(String bql) {
+        BQLResult result = builder.buildQuery(bql);
+        Assert.assertFalse(result.hasErrors(), bql + " " + result.getErrors());
+    }
+
+    @Test
+    public void testSameSeedGeneratesSameQueries() {
+        List<String> queries = new QueryGenerator(config.getSchema(), 42L).next(100);
+        Assert.assertEquals(new QueryGenerator(config.getSchema(), 42L).next(100), queries);
+        Assert.assertNotEquals(new QueryGenerator(config.getSchema(), 43L).next(100), queries);
+        Assert.assertEquals(new QueryGenerator(config.getSchema(), 42L).getSeed(), 42L);
+    }
+
+    @Test
+    public void testGeneratedQueriesAreValid() {
+        QueryGenerator generator = new QueryGenerator(config.getSchema(), 1L);
+        for (int i = 0; i < 500; i++) {
+            assertValid(generator.next());
+        }
+    }
+
+    @Test
+    public void testLargeQueriesAreValid() {
+        Options options = new Options();
+        options.setMaxDepth(6);
+        options.setMaxPredicates(8);
+        options.setMaxInListSize(50);
+        options.setOuterQueryProbability(0.5);
+        options.setLateralViewProbability(0.5);
+        QueryGenerator generator = new QueryGenerator(config.getSchema(), options, 2L);
+        for (int i = 0; i < 100; i++) {
+            assertValid(generator.next());
+        }
+    }
+
+    @Test
+    public void testQueryTypes() {
+        Options options = new Options();
+        options.setQueryTypes(EnumSet.of(QueryType.TOP_K));
+        options.setOuterQueryProbability(0.0);
+        QueryGenerator generator = new QueryGenerator(config.getSchema(), options, 3L);
+        for (int i = 0; i < 100; i++) {
+            BQLResult result = builder.buildQuery(generator.next());
+            Assert.assertFalse(result.hasErrors());
+            Assert.assertEquals(result.getQuery().getAggregation().getType(), AggregationType.TOP_K);
+        }
+    }
+
+    @Test
+    public void testSmallQueries() {
+        Options options = new Options();
+        options.setMaxDepth(0);
+        options.setMaxSelectItems(1);
+        options.setMaxPredicates(0);
+        options.setQueryTypes(EnumSet.of(QueryType.RAW));
+        options.setOuterQueryProbability(0.0);
+        options.setLateralViewProbability(0.0);
+        QueryGenerator generator = new QueryGenerator(config.getSchema(), options, 4L);
+        for (int i = 0; i < 100; i++) {
+            String bql = generator.next();
+            Assert.assertFalse(bql.contains(" WHERE "), bql);
+            Assert.assertFalse(bql.contains("LATERAL VIEW"), bql);
+            assertValid(bql);
+        }
+    }
+
+    @Test
+    public void testReplayFile() throws IOException {
+        Path file = Files.createTempFile("queries", ".bql");
+        try {
+            List<String> queries = new QueryGenerator(config.getSchema(), 5L).next(50);
+            QueryGenerator.write(file, 5L, queries);
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Assert.assertEquals(lines.get(0), "# seed: 5");
+            Assert.assertEquals(QueryGenerator.read(file), queries);
+
+            Files.write(file, Arrays.asList("# comment", "", "SELECT * FROM STREAM()", "  "), StandardCharsets.UTF_8);
+            Assert.assertEquals(QueryGenerator.read(file), Collections.singletonList("SELECT * FROM STREAM()"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSchemaWithoutNumericFields() {
+        new QueryGenerator(new Schema(Collections.singletonList(new Schema.PlainField("c", Type.STRING))), 6L);
+    }
+}